@@ -0,0 +1,66 @@
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/** JMH benchmark for playing a full hand in the rules engine.  'dealerHand'
+ * stays on the deal so the time is the deal, hand check and the dealer
+ * drawing out ('finishOffDealer'), 'strategyHand' plays the player hand out
+ * also (using 'TO_DealerStrategy'). <br>
+ * Run with 'ant bench' (add '-prof gc' for the allocation rate). <br><br>
+ * <b>Changes:</b>
+ * <ul>
+ * <li> 2026-10-18 - Initial release.
+ * </ul>
+ * @author Michael G. Slack
+ * @author slack@attglobal.net
+ * @version Version 1.00
+*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TO_HandBench
+{
+    // big enough bank to not run out during a run
+    private static final int BANK = 1000000000;
+
+    /** Number of decks in the shoe. */
+    @Param({"1", "3", "7"})
+    public int decks;
+
+    private TO_Engine engine = null;
+    private TO_Strategy strategy = new TO_DealerStrategy();
+
+    /** Method used to create the engine (and shoe). */
+    @Setup
+    public void setup()
+    {
+        engine = new TO_Engine(new TO_Shoe(decks, 21L), BANK);
+    }
+
+    /** Method used to top up the bank between iterations. */
+    @Setup(Level.Iteration)
+    public void topUp()
+    {
+        if (engine.getBank() < BANK / 2) engine.addToBank(BANK / 2);
+    }
+
+    /** Deal, check and stay (dealer finishes off the hand). */
+    @Benchmark
+    public int dealerHand()
+    {
+        engine.startHand(TwentyOneProps.START_MAX);
+        engine.checkHands();
+        engine.stay();
+        engine.clearHands();
+        return engine.getBank();
+    }
+
+    /** Deal and play the hand out with a strategy. */
+    @Benchmark
+    public int strategyHand()
+    {
+        return TO_Simulator.playHand(engine, strategy, TwentyOneProps.START_MAX);
+    }
+}
@@ -0,0 +1,79 @@
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/** JMH benchmark for rendering the card playing areas ('PlayArea.paint')
+ * into an offscreen image.  Runs headless, card images are loaded during
+ * setup (and warmup).  'paint' copies the kept back buffer, 'redraw' draws
+ * every card slot again first (the cost of a full repaint). <br>
+ * Run with 'ant bench' (add '-prof gc' for the allocation rate). <br><br>
+ * <b>Changes:</b>
+ * <ul>
+ * <li> 2026-10-18 - Initial release.
+ * <li> 2026-10-18 - Added full redraw benchmarks (paint is now a copy of the
+ *                   back buffer).
+ * </ul>
+ * @author Michael G. Slack
+ * @author slack@attglobal.net
+ * @version Version 1.00
+*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true"})
+public class TO_PaintBench
+{
+    private TwentyOne t21 = new TwentyOne();
+    private TwentyOne.PlayArea paDealer = null;
+    private TwentyOne.PlayArea paPlayer = null;
+    private BufferedImage img = new BufferedImage(367, 106, BufferedImage.TYPE_INT_RGB);
+    private Graphics g = null;
+
+    /** Method used to setup the engine and deal a hand to paint. */
+    @Setup
+    public void setup()
+    {
+        TO_Engine engine;
+
+        t21.setupEngine();
+        engine = t21.getEngine();
+        engine.startHand(TwentyOneProps.MIN_BET_AMT);
+        engine.checkHands();
+        paDealer = t21.new PlayArea(true);
+        paPlayer = t21.new PlayArea(false);
+        g = img.getGraphics();
+    }
+
+    /** Paint of the dealers playing area. */
+    @Benchmark
+    public void paintDealer()
+    {
+        paDealer.paint(g);
+    }
+
+    /** Paint of the players playing area. */
+    @Benchmark
+    public void paintPlayer()
+    {
+        paPlayer.paint(g);
+    }
+
+    /** Full redraw and paint of the dealers playing area. */
+    @Benchmark
+    public void redrawDealer()
+    {
+        paDealer.renderAll();
+        paDealer.paint(g);
+    }
+
+    /** Full redraw and paint of the players playing area. */
+    @Benchmark
+    public void redrawPlayer()
+    {
+        paPlayer.renderAll();
+        paPlayer.paint(g);
+    }
+}
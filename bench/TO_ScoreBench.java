@@ -0,0 +1,136 @@
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import com.slackandassociates.cards.*;
+import com.slackandassociates.cards.playingcards.*;
+
+/** JMH benchmark for scoring a 21 hand.  Measures the engine scoring
+ * (packed 'TO_Hand' state, built up a card at a time and scored) against
+ * the original 'TwentyOne' scoring over a 'CardHand' (scans the hand twice,
+ * once for points and once for an ace). <br>
+ * Run with 'ant bench' (add '-prof gc' for the allocation rate). <br><br>
+ * <b>Changes:</b>
+ * <ul>
+ * <li> 2026-10-18 - Initial release.
+ * <li> 2026-10-18 - Engine scoring changed to packed 'TO_Hand' state.
+ * <li> 2026-10-18 - Card hands built from the same card codes as the engine
+ *                   hands.
+ * </ul>
+ * @author Michael G. Slack
+ * @author slack@attglobal.net
+ * @version Version 1.00
+*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TO_ScoreBench
+{
+    // number of hands cycled through (power of 2)
+    private static final int HANDS = 1024;
+
+    /** Number of cards in the hands scored. */
+    @Param({"2", "3", "4", "5"})
+    public int cards;
+
+    private int[][] engineHands = new int[HANDS][];
+    private int[] packedHands = new int[HANDS];
+    private CardHand[] cardHands = new CardHand[HANDS];
+    private int idx = 0;
+
+    /** Method used to deal the hands to score (same cards in both forms,
+     * the card hands hold the faces of the engine card codes).
+    */
+    @Setup
+    public void setup()
+    {
+        TO_Shoe shoe = new TO_Shoe(1, 21L);
+        CardDeck deck = new CardDeck(CardDeck.JC_ONE_DECK, PlayingCardDeck.PC_DECK, PlayingCard.class);
+        Card[] faces = new Card[TO_Shoe.CARDS_PER_DECK];
+        int[] found = new int[TO_Shoe.RANKS];
+
+        // faces by card code (as 'TwentyOne.loadCardFaces')
+        for (int i = 0; i < TO_Shoe.CARDS_PER_DECK; i++) {
+            Card c = deck.getNextCard();
+            int r = c.getCardPointValue() - 1;
+
+            faces[(found[r]++ * TO_Shoe.RANKS) + r] = c;
+        }
+        for (int i = 0; i < HANDS; i++) {
+            engineHands[i] = new int[TwentyOneProps.MAX_DRAW_CARDS];
+            cardHands[i] = new CardHand(TwentyOneProps.MAX_DRAW_CARDS, false);
+            for (int j = 0; j < TwentyOneProps.MAX_DRAW_CARDS; j++)
+                engineHands[i][j] = TO_Engine.EMPTY_CARD;
+            for (int j = 0; j < cards; j++) {
+                if (shoe.getCardsLeft() == 0) shoe.shuffle();
+                engineHands[i][j] = shoe.getNextCard();
+                packedHands[i] = TO_Hand.add(packedHands[i], engineHands[i][j]);
+                cardHands[i].add(faces[engineHands[i][j]]);
+            }
+        }
+    }
+
+    /** Original scoring (from 'TwentyOne.getScoreOfHand') over a card hand. */
+    private static int getScoreOfHand(CardHand ch)
+    {
+        int iRet = 0;
+        int x = ch.getMaximumCardCount();
+
+        for (int i = 0; i < x; i++) {
+            Card c = ch.cardAt(i);
+            if (c != CardHand.EMPTY_CARD)
+                iRet += c.getCardPointValueFace10();
+            else
+                break; // no more...
+        }
+
+        for (int i = 0; i < x; i++) {
+            Card c = ch.cardAt(i);
+
+            if (c != CardHand.EMPTY_CARD) {
+                if (c.getCardPointValue() == 1) {
+                    if ((10 + iRet) <= 21) iRet += 10;
+                    break; // checked the one - leave
+                }
+            }
+            else {
+                break; // no more cards to check...
+            }
+        }
+
+        return iRet;
+    }
+
+    /** Engine scoring of a packed hand. */
+    @Benchmark
+    public int packedScore()
+    {
+        idx = (idx + 1) & (HANDS - 1);
+        return TO_Hand.getScore(packedHands[idx]);
+    }
+
+    /** Engine building up a packed hand (a card at a time) and scoring it,
+     * what the engine does as cards are dealt.
+    */
+    @Benchmark
+    public int packedAddAndScore()
+    {
+        int[] cs;
+        int hand = TO_Hand.EMPTY;
+
+        idx = (idx + 1) & (HANDS - 1);
+        cs = engineHands[idx];
+        for (int j = 0; j < cards; j++) hand = TO_Hand.add(hand, cs[j]);
+
+        return TO_Hand.getScore(hand);
+    }
+
+    /** Original scoring of a card hand. */
+    @Benchmark
+    public int cardHandScore()
+    {
+        idx = (idx + 1) & (HANDS - 1);
+        return getScoreOfHand(cardHands[idx]);
+    }
+}
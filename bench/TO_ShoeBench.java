@@ -0,0 +1,77 @@
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import com.slackandassociates.cards.*;
+import com.slackandassociates.cards.playingcards.*;
+
+/** JMH benchmark for shuffling and dealing, the original 'CardDeck' against
+ * the engine shoe ('TO_Shoe') for 1 to 7 decks (8 for the shoe only). <br>
+ * Run with 'ant bench' (add '-prof gc' for the allocation rate). <br><br>
+ * <b>Changes:</b>
+ * <ul>
+ * <li> 2026-10-18 - Initial release.
+ * </ul>
+ * @author Michael G. Slack
+ * @author slack@attglobal.net
+ * @version Version 1.00
+*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TO_ShoeBench
+{
+    /** Number of decks in the deck/shoe. */
+    @Param({"1", "2", "3", "4", "5", "6", "7"})
+    public int decks;
+
+    private CardDeck cards = null;
+    private TO_Shoe shoe = null;
+    private int iCardsLeft = 0;
+
+    /** Method used to create the deck and shoe. */
+    @Setup
+    public void setup()
+    {
+        cards = new CardDeck(decks, PlayingCardDeck.PC_DECK, PlayingCard.class);
+        cards.shuffle();
+        iCardsLeft = TO_Shoe.CARDS_PER_DECK * decks;
+        shoe = new TO_Shoe(decks, 21L);
+    }
+
+    /** Shuffle of the card deck. */
+    @Benchmark
+    public void cardDeckShuffle()
+    {
+        cards.shuffle();
+        iCardsLeft = TO_Shoe.CARDS_PER_DECK * decks;
+    }
+
+    /** Deal a card from the card deck (reshuffles when empty). */
+    @Benchmark
+    public Card cardDeckDeal()
+    {
+        if (iCardsLeft == 0) {
+            cards.shuffle();
+            iCardsLeft = TO_Shoe.CARDS_PER_DECK * decks;
+        }
+        iCardsLeft--;
+        return cards.getNextCard();
+    }
+
+    /** Shuffle of the engine shoe. */
+    @Benchmark
+    public void shoeShuffle()
+    {
+        shoe.shuffle();
+    }
+
+    /** Deal a card from the engine shoe (reshuffles when empty). */
+    @Benchmark
+    public int shoeDeal()
+    {
+        if (shoe.getCardsLeft() == 0) shoe.shuffle();
+        return shoe.getNextCard();
+    }
+}
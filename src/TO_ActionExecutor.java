@@ -0,0 +1,170 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/** Class used to run the game actions (button events) one at a time, in the
+ * order they were asked for, on a single worker thread with a bounded queue.
+ * All game state changes are made on this thread so actions can't overlap
+ * (start two hands, change the bank at the same time). <br>
+ * The time each action waited in the queue and took to run is kept by the
+ * action name.  Run time includes any time spent waiting on the player
+ * (dialogs). <br><br>
+ * <b>Changes:</b>
+ * <ul>
+ * <li> 2026-10-18 - Initial release.
+ * </ul>
+ * @author Michael G. Slack
+ * @author slack@attglobal.net
+ * @version Version 1.00
+*/
+public class TO_ActionExecutor
+{
+    // public statics
+    /** Default most actions that can be waiting to run. */
+    public static final int DEF_QUEUE_SIZE = 16;
+
+    // private references
+    private ThreadPoolExecutor exec = null;
+    private Map<String, Timing> timings = new LinkedHashMap<String, Timing>();
+
+    // ------------------------ Constructors -------------------------
+
+    /** Constructor to create the executor with the default queue size. */
+    public TO_ActionExecutor()
+    {
+        this(DEF_QUEUE_SIZE);
+    }
+
+    /** Constructor to create the executor.
+     * @param queueSize Most actions that can be waiting to run.
+    */
+    public TO_ActionExecutor(int queueSize)
+    {
+        exec = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                                      new ArrayBlockingQueue<Runnable>(queueSize),
+                                      new ThreadFactory() {
+                                          public Thread newThread(Runnable r) {
+                                              Thread t = new Thread(r, "game-action");
+                                              t.setDaemon(true);
+                                              return t;
+                                          }
+                                      });
+    }
+
+    // ------------------------ Private Methods --------------------------
+
+    /** Method to return the timing for an action (created if needed). */
+    private synchronized Timing getTiming(String sName)
+    {
+        Timing t = timings.get(sName);
+
+        if (t == null) {
+            t = new Timing();
+            timings.put(sName, t);
+        }
+
+        return t;
+    }
+
+    // ------------------------- Public Methods --------------------------
+
+    /** Method used to queue up an action to run.  Returns false if the queue
+     * is full (or shut down) and the action was dropped.
+     * @param sName Name of the action (timings are kept by name).
+     * @param action Action to run.
+    */
+    public boolean submit(final String sName, final Runnable action)
+    {
+        final long queued = System.nanoTime();
+        final Timing t = getTiming(sName);
+
+        try {
+            exec.execute(new Runnable() {
+                             public void run() {
+                                 long start = System.nanoTime();
+                                 try {
+                                     action.run();
+                                 }
+                                 catch (RuntimeException e) {
+                                     System.err.println("Action '" + sName + "' failed: " + e);
+                                 }
+                                 finally {
+                                     t.add(start - queued, System.nanoTime() - start);
+                                 }
+                             }
+                         });
+        }
+        catch (RejectedExecutionException e) {
+            t.drop();
+            return false;
+        }
+
+        return true;
+    }
+
+    /** Method used to stop the worker (actions waiting are not run). */
+    public void shutdown()
+    {
+        exec.shutdownNow();
+    }
+
+    /** Method to return the action timings as a report string. */
+    public synchronized String getTimings()
+    {
+        StringBuffer sb = new StringBuffer(400);
+
+        sb.append(String.format("%-10s %7s %7s %10s %10s %10s %10s%n", "Action", "Count",
+                                "Dropped", "Avg Wait", "Max Wait", "Avg Run", "Max Run"));
+        for (Map.Entry<String, Timing> e : timings.entrySet()) {
+            sb.append(String.format("%-10s ", e.getKey()));
+            sb.append(e.getValue().toString());
+            sb.append(String.format("%n"));
+        }
+
+        return sb.toString();
+    }
+
+    // ---------------------- Inner Classes -------------------------
+
+    /**
+     * Class used to hold the timings of an action (nanoseconds).
+    */
+    private static final class Timing
+    {
+        private long lCount = 0L;
+        private long lDropped = 0L;
+        private long lWait = 0L;
+        private long lMaxWait = 0L;
+        private long lRun = 0L;
+        private long lMaxRun = 0L;
+
+        /** Method used to add the timing of an action run. */
+        synchronized void add(long wait, long run)
+        {
+            lCount++;
+            lWait += wait;
+            lRun += run;
+            if (wait > lMaxWait) lMaxWait = wait;
+            if (run > lMaxRun) lMaxRun = run;
+        }
+
+        /** Method used to count an action dropped (queue full). */
+        synchronized void drop()
+        {
+            lDropped++;
+        }
+
+        /** Method to return the timings (milliseconds) as a string. */
+        public synchronized String toString()
+        {
+            double n = (lCount == 0L) ? 1.0 : lCount;
+
+            return String.format("%7d %7d %8.3fms %8.3fms %8.3fms %8.3fms", lCount, lDropped,
+                                 lWait / n / 1e6, lMaxWait / 1e6, lRun / n / 1e6, lMaxRun / 1e6);
+        }
+    }
+}
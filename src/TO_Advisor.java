@@ -0,0 +1,502 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** Class used to work out the exact expected value (net result in bets) of
+ * each action the player can take for the hand waiting in a 'TO_Engine',
+ * based on the cards not yet seen (left in the shoe plus the dealers down
+ * card).  Used to give the player a hint. <br>
+ * The chance of each final dealer result (17 through 21, over 21 or five
+ * cards) is worked out by going through every draw from the unseen cards.
+ * These dealer results are kept in a bounded LRU cache keyed by the dealer
+ * up card, what the down card is known not to be and the unseen cards, so
+ * looking at the hit and split draws (and repeat questions during a shoe)
+ * reuse the dealer results instead of working them out again. <br>
+ * Values follow the engine rules ('TO_Rules' of the engine): dealer draws
+ * to 16 (and a soft 17 if set), charlie cards without going over wins
+ * (dealers charlie beats all), a double takes one card, a surrender gives
+ * back half the bet unless the dealer has 21 under an ace (late surrender).
+ * Split hands get one more card each and stand, or (split hands played) are
+ * each played out the best way, doubled if the rules allow a double after a
+ * split and split again (up to the resplits allowed) when another card of
+ * the pair is drawn.  Split aces get one card each.  Played split hands are
+ * valued one at a time from the same unseen cards and a drawn ten is not
+ * counted as a pair (only the points of the cards are known). <br><br>
+ * <b>Changes:</b>
+ * <ul>
+ * <li> 2026-10-18 - Initial release.
+ * <li> 2026-10-18 - Values follow the engine rules, added surrender.
+ * <li> 2026-10-18 - Late surrender, split hands played (resplits, double
+ *                   after a split), values for the hand being played.
+ * </ul>
+ * @author Michael G. Slack
+ * @author slack@attglobal.net
+ * @version Version 1.00
+*/
+public class TO_Advisor
+{
+    // public statics - index into the action values
+    /** Value of a hit (then playing on the best way). */
+    public static final int V_HIT       = 0;
+
+    /** Value of staying. */
+    public static final int V_STAY      = 1;
+
+    /** Value of doubling down. */
+    public static final int V_DOUBLE    = 2;
+
+    /** Value of splitting. */
+    public static final int V_SPLIT     = 3;
+
+    /** Value of taking insurance (then playing on the best way). */
+    public static final int V_INSURANCE = 4;
+
+    /** Value of surrendering. */
+    public static final int V_SURRENDER = 5;
+
+    /** Number of action values. */
+    public static final int V_COUNT     = 6;
+
+    /** Default number of dealer results held in the cache. */
+    public static final int DEF_CACHE_SIZE = 8192;
+
+    // private statics
+    private static final int MAX_POINTS = TO_Shoe.MAX_POINTS;
+
+    // dealer result index (0 - 4 is 17 through 21)
+    private static final int D_BUST = 5;
+    private static final int D_FIVE = 6;
+    private static final int D_RESULTS = 7;
+
+    // private references
+    /** Unseen cards by points (working copy, changed while drawing). */
+    private int[] comp = new int[MAX_POINTS + 1];
+    private int iTotal = 0;
+    private int iUp = 0;
+    private int iExclude = 0;
+    private TO_Rules rules = TO_Rules.DEFAULT;
+    private int iCharlie = TO_Rules.MAX_CHARLIE;
+    private int iHands = 1;
+    private Map<Key, double[]> cache = null;
+    private long lHits = 0L;
+    private long lMisses = 0L;
+    private long lLastTime = 0L;
+
+    // ------------------------ Constructors -------------------------
+
+    /** Constructor to create the advisor with the default cache size. */
+    public TO_Advisor()
+    {
+        this(DEF_CACHE_SIZE);
+    }
+
+    /** Constructor to create the advisor.
+     * @param cacheSize Most dealer results held in the cache.
+    */
+    public TO_Advisor(final int cacheSize)
+    {
+        cache = new LinkedHashMap<Key, double[]>(cacheSize * 4 / 3 + 1, 0.75f, true) {
+                    protected boolean removeEldestEntry(Map.Entry<Key, double[]> e) {
+                        return size() > cacheSize;
+                    }
+                };
+    }
+
+    // ------------------------ Private Methods --------------------------
+
+    /** Method to return the unseen cards packed in a long (6 bits for each of
+     * ace through 9, 8 bits for tens) or -1 if they don't fit.
+    */
+    private long packComp()
+    {
+        long k = 0L;
+
+        for (int p = 1; p < MAX_POINTS; p++) {
+            if (comp[p] > 63) return -1L;
+            k = (k << 6) | comp[p];
+        }
+        if (comp[MAX_POINTS] > 255) return -1L;
+
+        return (k << 8) | comp[MAX_POINTS];
+    }
+
+    /** Method to return the chance the down card is not the excluded card
+     * (1.0 if nothing is excluded).
+    */
+    private double mass()
+    {
+        if (iExclude == 0) return 1.0;
+
+        return 1.0 - ((double) comp[iExclude] / iTotal);
+    }
+
+    /** Method to return the result of a player total against dealer result
+     * 'k' (1 win, 0 push, -1 loss).
+    */
+    private static int payoff(int p, int k)
+    {
+        if (k == D_FIVE) return -1;
+        if (k == D_BUST) return 1;
+
+        int d = k + 17;
+        return (p > d) ? 1 : ((p == d) ? 0 : -1);
+    }
+
+    /** Method used to add the dealer results (weighted) drawing out from
+     * hand 'dh' with the unseen cards.
+    */
+    private void dealerDraw(int dh, double w, double[] dist)
+    {
+        int t = TO_Hand.getScore(dh);
+
+        if (t > 21) {
+            dist[D_BUST] += w;
+            return;
+        }
+        if (TO_Hand.getCount(dh) == iCharlie) {
+            dist[D_FIVE] += w;
+            return;
+        }
+        if (!rules.dealerHits(dh)) {
+            dist[t - 17] += w;
+            return;
+        }
+        if (iTotal == 0) return; // out of cards
+
+        double tw = w / iTotal;
+        for (int p = 1; p <= MAX_POINTS; p++) {
+            int c = comp[p];
+            if (c == 0) continue;
+            comp[p]--;
+            iTotal--;
+            dealerDraw(TO_Hand.add(dh, p - 1), tw * c, dist);
+            comp[p]++;
+            iTotal++;
+        }
+    }
+
+    /** Method to return the dealer results for the unseen cards.  Results
+     * are chances for down cards that are not excluded, so they add up to
+     * 'mass()'.
+    */
+    private double[] getDealerDist()
+    {
+        long k = packComp();
+        Key key = null;
+        double[] dist = null;
+
+        if (k >= 0L) {
+            key = new Key(k, (iUp << 4) | iExclude | ((rules.isH17()) ? 0x100 : 0) |
+                             (iCharlie << 9));
+            dist = cache.get(key);
+        }
+        if (dist != null) {
+            lHits++;
+            return dist;
+        }
+
+        lMisses++;
+        dist = new double[D_RESULTS];
+        int up = TO_Hand.add(TO_Hand.EMPTY, iUp - 1);
+        for (int p = 1; p <= MAX_POINTS; p++) { // down card
+            int c = comp[p];
+            if ((c == 0) || (p == iExclude)) continue;
+            double w = (double) c / iTotal;
+            comp[p]--;
+            iTotal--;
+            dealerDraw(TO_Hand.add(up, p - 1), w, dist);
+            comp[p]++;
+            iTotal++;
+        }
+        if (key != null) cache.put(key, dist);
+
+        return dist;
+    }
+
+    /** Method to return the value of staying with 'pts'. */
+    private double stayValue(int pts)
+    {
+        double[] dist = getDealerDist();
+        double v = 0.0;
+
+        for (int k = 0; k < D_RESULTS; k++) v += dist[k] * payoff(pts, k);
+
+        return v;
+    }
+
+    /** Method to return the value of hitting hand 'ph' (then playing on the
+     * best way).
+    */
+    private double hitValue(int ph)
+    {
+        double v = 0.0;
+        double n = iTotal;
+
+        for (int p = 1; p <= MAX_POINTS; p++) {
+            int c = comp[p];
+            if (c == 0) continue;
+            double pr = c / n;
+            int nh = TO_Hand.add(ph, p - 1);
+            int t = TO_Hand.getScore(nh);
+            comp[p]--;
+            iTotal--;
+            if (t > 21)
+                v -= pr * mass();
+            else if (TO_Hand.getCount(nh) == iCharlie)
+                v += pr * mass();
+            else
+                v += pr * Math.max(stayValue(t), hitValue(nh));
+            comp[p]++;
+            iTotal++;
+        }
+
+        return v;
+    }
+
+    /** Method to return the value of doubling hand 'ph'. */
+    private double doubleValue(int ph)
+    {
+        double v = 0.0;
+        double n = iTotal;
+
+        for (int p = 1; p <= MAX_POINTS; p++) {
+            int c = comp[p];
+            if (c == 0) continue;
+            double pr = c / n;
+            int t = TO_Hand.getScore(TO_Hand.add(ph, p - 1));
+            comp[p]--;
+            iTotal--;
+            if (t > 21)
+                v -= pr * mass();
+            else
+                v += pr * stayValue(t);
+            comp[p]++;
+            iTotal++;
+        }
+
+        return v + v;
+    }
+
+    /** Method to return the value of splitting a pair worth 'sp' points
+     * (one more card to each hand, then both stay).
+    */
+    private double splitValue(int sp)
+    {
+        int h = TO_Hand.add(TO_Hand.EMPTY, sp - 1);
+        double v = 0.0;
+        double n1 = iTotal;
+
+        for (int p1 = 1; p1 <= MAX_POINTS; p1++) {
+            int c1 = comp[p1];
+            if (c1 == 0) continue;
+            double pr1 = c1 / n1;
+            int t1 = TO_Hand.getScore(TO_Hand.add(h, p1 - 1));
+            comp[p1]--;
+            iTotal--;
+            double n2 = iTotal;
+            for (int p2 = 1; p2 <= MAX_POINTS; p2++) {
+                int c2 = comp[p2];
+                if (c2 == 0) continue;
+                double pr2 = c2 / n2;
+                int t2 = TO_Hand.getScore(TO_Hand.add(h, p2 - 1));
+                comp[p2]--;
+                iTotal--;
+                double[] dist = getDealerDist();
+                double w = 0.0;
+                for (int k = 0; k < D_RESULTS; k++)
+                    w += dist[k] * (payoff(t1, k) + payoff(t2, k));
+                v += pr1 * pr2 * w;
+                comp[p2]++;
+                iTotal++;
+            }
+            comp[p1]++;
+            iTotal++;
+        }
+
+        return v;
+    }
+
+    /** Method to return the value of a played split hand started with a
+     * card worth 'sp' points ('hands' player hands in play, this one
+     * included).
+    */
+    private double splitHandValue(int sp, int hands)
+    {
+        int h = TO_Hand.add(TO_Hand.EMPTY, sp - 1);
+        double v = 0.0;
+        double n = iTotal;
+
+        for (int p = 1; p <= MAX_POINTS; p++) {
+            int c = comp[p];
+            if (c == 0) continue;
+            double pr = c / n;
+            int nh = TO_Hand.add(h, p - 1);
+            int t = TO_Hand.getScore(nh);
+            double hv;
+            comp[p]--;
+            iTotal--;
+            if (sp == 1) { // split aces, one card each
+                hv = stayValue(t);
+            }
+            else {
+                hv = Math.max(stayValue(t), hitValue(nh));
+                if (rules.isDoubleAfterSplit()) hv = Math.max(hv, doubleValue(nh));
+                if ((p == sp) && (sp != MAX_POINTS) && (hands < rules.getMaxHands()))
+                    hv = Math.max(hv, 2.0 * splitHandValue(sp, hands + 1));
+            }
+            v += pr * hv;
+            comp[p]++;
+            iTotal++;
+        }
+
+        return v;
+    }
+
+    /** Method used to fill in the (not normalized) values of the actions in
+     * the 'actions' mask for player hand 'ph'.  Returns the best value.
+    */
+    private double fillValues(int ph, int sp, int actions, double[] vals)
+    {
+        double best = Double.NEGATIVE_INFINITY;
+
+        if ((actions & TO_Engine.A_STAY) != 0) {
+            vals[V_STAY] = stayValue(TO_Hand.getScore(ph));
+            best = Math.max(best, vals[V_STAY]);
+        }
+        if ((actions & TO_Engine.A_HIT) != 0) {
+            vals[V_HIT] = hitValue(ph);
+            best = Math.max(best, vals[V_HIT]);
+        }
+        if ((actions & TO_Engine.A_DOUBLE) != 0) {
+            vals[V_DOUBLE] = doubleValue(ph);
+            best = Math.max(best, vals[V_DOUBLE]);
+        }
+        if ((actions & TO_Engine.A_SPLIT) != 0) {
+            if (rules.isSplitPlay())
+                vals[V_SPLIT] = 2.0 * splitHandValue(sp, iHands + 1);
+            else
+                vals[V_SPLIT] = splitValue(sp);
+            best = Math.max(best, vals[V_SPLIT]);
+        }
+
+        return best;
+    }
+
+    // ------------------------- Public Methods --------------------------
+
+    /** Method used to work out the expected value (net result in bets) of
+     * each action available to the player for the hand being played in the
+     * engine.  Values for actions not available are set to NaN.
+     * @param engine Engine with a hand waiting on a player action.
+     * @param vals Array (V_COUNT long) the values are put in.
+     * @return The 'vals' array.
+    */
+    public synchronized double[] getActionValues(TO_Engine engine, double[] vals)
+    {
+        long start = System.nanoTime();
+        int actions = engine.getActions();
+        TO_Shoe shoe = engine.getShoe();
+        double m;
+
+        for (int i = 0; i < V_COUNT; i++) vals[i] = Double.NaN;
+        if (engine.getState() != TO_Engine.ST_PLAYER) return vals;
+        rules = engine.getRules();
+        iCharlie = rules.getCharlie();
+
+        // unseen cards - left in shoe and the dealers down card
+        iTotal = 0;
+        for (int p = 1; p <= MAX_POINTS; p++) {
+            comp[p] = shoe.getCardsLeft(p);
+            iTotal += comp[p];
+        }
+        comp[TO_Shoe.getPoints(engine.getDealerCard(0))]++;
+        iTotal++;
+        iUp = TO_Shoe.getPoints(engine.getDealerCard(1));
+
+        int h = engine.getCurrentHand();
+        int ph = engine.getPlayerHand(h);
+        int sp = TO_Shoe.getPoints(engine.getPlayerCard(h, 0));
+        int bet = engine.getBet();
+        double sur = (double) (rules.getSurrenderRefund(bet) - bet) / bet;
+
+        // down card can't be an ace under a ten (hand would be over)
+        iHands = engine.getHandCount();
+        iExclude = (iUp == 10) ? 1 : 0;
+        m = mass();
+        fillValues(ph, sp, actions, vals);
+        for (int i = 0; i < V_INSURANCE; i++) vals[i] /= m;
+        if ((actions & TO_Engine.A_SURRENDER) != 0) {
+            // under an ace the dealers 21 (ten down) is settled first
+            double p21 = (iUp == 1) ? (double) comp[MAX_POINTS] / iTotal : 0.0;
+            vals[V_SURRENDER] = -p21 + (1.0 - p21) * sur;
+        }
+
+        if ((actions & TO_Engine.A_INSURANCE) != 0) {
+            double[] after = new double[V_COUNT];
+            double ins = (double) engine.getInsuranceCost() / engine.getBet();
+
+            // after insurance, the down card is known not to be a ten (or
+            // the bet comes back and only the insurance is lost)
+            iExclude = 10;
+            double best = fillValues(ph, sp, actions & ~TO_Engine.A_INSURANCE, after);
+            if ((actions & TO_Engine.A_SURRENDER) != 0)
+                best = Math.max(best, sur * mass());
+            vals[V_INSURANCE] = -ins + best;
+        }
+        lLastTime = System.nanoTime() - start;
+
+        return vals;
+    }
+
+    /** Method to return the number of dealer results found in the cache. */
+    public synchronized long getCacheHits()
+    {
+        return lHits;
+    }
+
+    /** Method to return the number of dealer results worked out. */
+    public synchronized long getCacheMisses()
+    {
+        return lMisses;
+    }
+
+    /** Method to return the time (nanoseconds) the last question took. */
+    public synchronized long getLastTime()
+    {
+        return lLastTime;
+    }
+
+    // ---------------------- Inner Classes -------------------------
+
+    /**
+     * Class used as the cache key, the packed unseen cards plus the up card,
+     * excluded down card and the dealer rules (soft 17, charlie size).
+    */
+    private static final class Key
+    {
+        private final long lComp;
+        private final int iCtx;
+
+        /** Constructor. */
+        Key(long comp, int ctx)
+        {
+            lComp = comp;
+            iCtx = ctx;
+        }
+
+        /** Method to return the hash code of the key. */
+        public int hashCode()
+        {
+            long h = (lComp * 31) + iCtx;
+            return (int) (h ^ (h >>> 32));
+        }
+
+        /** Method to return true if the keys are the same. */
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof Key)) return false;
+
+            Key k = (Key) o;
+            return (k.lComp == lComp) && (k.iCtx == iCtx);
+        }
+    }
+}
@@ -13,6 +13,7 @@ import com.slackandassociates.Utilities;
  * <li> 2002-06-16 - Modified constructors.  Added tweaks for applet running.
  * <li> 2005-01-18 - Modified to use 'createTestFrame' in Utilities (for dialog
  * test via 'main' method.
+ * <li> 2026-10-18 - Can show the Hi-Lo card count ('showCount').
  * </ul>
  * @author Michael G. Slack
  * @author slack@attglobal.net
@@ -27,6 +28,8 @@ public class TO_BetDlg extends JDialog
     private static final String S_MINBET = "Minimum Bet: ";
     private static final String S_MAXBET = "   Maximum Bet: ";
     private static final String S_AMTBNK = "Amount in Bank: ";
+    private static final String S_RCOUNT = "Running Count: ";
+    private static final String S_TCOUNT = "   True Count: ";
     private static final String S_INVALID = "Invalid number entered for bet.";
     private static final String S_BADBET1 = "Bet must be between ";
     private static final String S_BADBET2 = " and ";
@@ -36,6 +39,7 @@ public class TO_BetDlg extends JDialog
     // window size constants
     private static final int D_DLG_WIDTH = 266;
     private static final int D_DLG_HEIGHT = 166;
+    private static final int D_ROW_HEIGHT = 24;
 
     // components used by dialog
     private JPanel dPnl1 = new JPanel();
@@ -46,6 +50,7 @@ public class TO_BetDlg extends JDialog
     private Spinner spinEdit = new Spinner(textFld);
     private JLabel dL2 = new JLabel(S_MINBET, SwingConstants.CENTER);
     private JLabel dL3 = new JLabel(S_AMTBNK, SwingConstants.CENTER);
+    private JLabel dL4 = new JLabel(S_RCOUNT, SwingConstants.CENTER);
     private JButton dB1 = new JButton("OK");
 
     // references
@@ -230,6 +235,17 @@ public class TO_BetDlg extends JDialog
 
     // ------------------------- Public Methods --------------------------
 
+    /** Method used to show the card count (Hi-Lo running and true count)
+     * in the dialog, call before the dialog is shown.
+    */
+    public void showCount(int running, double trueCount)
+    {
+        dPnl1.setLayout(new GridLayout(5, 1));
+        dL4.setText(S_RCOUNT + running + S_TCOUNT + String.format("%.1f", trueCount));
+        dPnl1.add(dL4);
+        setSize(getWidth(), getHeight() + D_ROW_HEIGHT);
+    }
+
     /** Method used to return the bet entered into the dialog. */
     public int getBet()
     {
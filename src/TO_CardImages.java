@@ -0,0 +1,181 @@
+import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import javax.imageio.ImageIO;
+import com.slackandassociates.cards.CardEnum;
+import com.slackandassociates.cards.playingcards.PlayingCard;
+import com.slackandassociates.cards.playingcards.PlayingCardImageCache;
+
+/** Class used to hand out the card images used by the game window.  Images
+ * come from a single packed image file (the card atlas, one decode) when
+ * there is one, cut out (sharing the atlas image data) the first time each
+ * card is asked for.  Otherwise the images come from the card library image
+ * cache, which loads them in the background as they are first drawn. <br>
+ * Once all of the library images have been loaded the atlas file can be
+ * written ('saveAtlas') so the next start up only has the one image to load.
+ * The atlas holds the 52 card faces by card code (row by card code / 13,
+ * column by rank) and the card backs on the last row. <br><br>
+ * <b>Changes:</b>
+ * <ul>
+ * <li> 2026-10-18 - Initial release.
+ * </ul>
+ * @author Michael G. Slack
+ * @author slack@attglobal.net
+ * @version Version 1.00
+*/
+public class TO_CardImages
+{
+    // public statics
+    /** Width of a card image. */
+    public static final int CARD_WIDTH = PlayingCardImageCache.IMAGE_WIDTH;
+
+    /** Height of a card image. */
+    public static final int CARD_HEIGHT = PlayingCardImageCache.IMAGE_HEIGHT;
+
+    /** Default card atlas file (in the users home folder). */
+    public static final String DEF_ATLAS = ".TwentyOne-cards.png";
+
+    // private statics
+    private static final int COLUMNS = TO_Shoe.RANKS;
+    private static final int ROWS = (TO_Shoe.CARDS_PER_DECK / TO_Shoe.RANKS) + 1;
+
+    // private references
+    private PlayingCardImageCache cache = null;
+    private PlayingCard[] faces = null;
+    private CardEnum[] backs = null;
+    private int iBack = 0;
+    private BufferedImage atlas = null;
+    private Image[] faceImgs = new Image[TO_Shoe.CARDS_PER_DECK];
+    private Image backImg = null;
+    private long lLoadTime = 0L;
+
+    // ------------------------ Constructors -------------------------
+
+    /** Constructor to create the card images.
+     * @param cache Card library image cache (used when there is no atlas).
+     * @param faces Card faces by card code.
+     * @param backs Card backs available.
+     * @param back Card back shown.
+    */
+    public TO_CardImages(PlayingCardImageCache cache, PlayingCard[] faces,
+                         CardEnum[] backs, CardEnum back)
+    {
+        this.cache = cache;
+        this.faces = faces;
+        this.backs = backs;
+        for (int i = 0; i < backs.length; i++) {
+            if (backs[i] == back) iBack = i;
+        }
+    }
+
+    // ------------------------ Private Methods --------------------------
+
+    /** Method to return the image at a column and row of the atlas. */
+    private Image slice(int col, int row)
+    {
+        return atlas.getSubimage(col * CARD_WIDTH, row * CARD_HEIGHT, CARD_WIDTH, CARD_HEIGHT);
+    }
+
+    // ------------------------- Public Methods --------------------------
+
+    /** Method to return the default atlas file. */
+    public static File getDefaultAtlas()
+    {
+        return new File(System.getProperty("user.home"), DEF_ATLAS);
+    }
+
+    /** Method used to load the card atlas file.  Returns false if there is
+     * no atlas (or it is not a card atlas), images come from the cache then.
+    */
+    public boolean loadAtlas(File f)
+    {
+        long start = System.nanoTime();
+
+        if (!f.isFile()) return false;
+
+        try {
+            BufferedImage img = ImageIO.read(f);
+            if ((img == null) || (img.getWidth() != COLUMNS * CARD_WIDTH) ||
+                (img.getHeight() != ROWS * CARD_HEIGHT))
+                return false;
+            atlas = img;
+        }
+        catch (IOException e) {
+            System.err.println("Card atlas failed to load: " + e);
+            return false;
+        }
+        lLoadTime = System.nanoTime() - start;
+
+        return true;
+    }
+
+    /** Method used to write the card atlas file from the library images.
+     * Waits for all of the library images to load first (call it from a
+     * background thread).  Returns false if the file could not be written.
+    */
+    public boolean saveAtlas(File f, Component c)
+    {
+        BufferedImage img = new BufferedImage(COLUMNS * CARD_WIDTH, ROWS * CARD_HEIGHT,
+                                              BufferedImage.TYPE_INT_ARGB);
+        Graphics g = img.getGraphics();
+        File tmp = new File(f.getPath() + ".tmp");
+
+        cache.waitForImages(c);
+        for (int i = 0; i < faces.length; i++)
+            g.drawImage(cache.getCardImage(faces[i]), (i % COLUMNS) * CARD_WIDTH,
+                        (i / COLUMNS) * CARD_HEIGHT, null);
+        for (int i = 0; (i < backs.length) && (i < COLUMNS); i++)
+            g.drawImage(cache.getCardImage(backs[i]), i * CARD_WIDTH,
+                        (ROWS - 1) * CARD_HEIGHT, null);
+        g.dispose();
+
+        try {
+            if (!ImageIO.write(img, "png", tmp)) return false;
+            return (tmp.renameTo(f)) || ((f.delete()) && (tmp.renameTo(f)));
+        }
+        catch (IOException e) {
+            System.err.println("Card atlas failed to save: " + e);
+            tmp.delete();
+            return false;
+        }
+    }
+
+    /** Method to return the image of a card code. */
+    public Image getFace(int card)
+    {
+        if (atlas == null) return cache.getCardImage(faces[card]);
+
+        Image img = faceImgs[card];
+        if (img == null) {
+            img = slice(card % COLUMNS, card / COLUMNS);
+            faceImgs[card] = img;
+        }
+
+        return img;
+    }
+
+    /** Method to return the image of the card back shown. */
+    public Image getBack()
+    {
+        if (atlas == null) return cache.getCardImage(backs[iBack]);
+
+        if (backImg == null) backImg = slice(iBack, ROWS - 1);
+
+        return backImg;
+    }
+
+    /** Method to return true if the images come from the card atlas. */
+    public boolean isAtlas()
+    {
+        return (atlas != null);
+    }
+
+    /** Method to return the time taken to load the atlas (nanoseconds). */
+    public long getLoadTime()
+    {
+        return lLoadTime;
+    }
+}
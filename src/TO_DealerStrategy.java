@@ -0,0 +1,22 @@
+/** Class defines the default simulator strategy, the player plays the hand
+ * the same way the dealer has to (hit on 16 or less, stay on 17 or more).
+ * Never doubles, splits or takes insurance. <br><br>
+ * <b>Changes:</b>
+ * <ul>
+ * <li> 2026-10-18 - Initial release.
+ * </ul>
+ * @author Michael G. Slack
+ * @author slack@attglobal.net
+ * @version Version 1.00
+*/
+public class TO_DealerStrategy implements TO_Strategy
+{
+    /** Method used to pick the players next action (hit or stay). */
+    public int getAction(TO_Engine engine)
+    {
+        if (engine.getPlayerScore(0) <= 16)
+            return TO_Engine.A_HIT;
+
+        return TO_Engine.A_STAY;
+    }
+}
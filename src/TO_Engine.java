@@ -0,0 +1,1007 @@
+import java.nio.ByteBuffer;
+
+/** Class defines the rules engine for the game of 21.  The engine holds the
+ * bank, bet and hands for a single table and plays the hand through without
+ * any display (AWT/Swing) support so it can be driven from the game window or
+ * run headless. <br>
+ * Rules played come from a 'TO_Rules' set, by default the original
+ * TwentyOne rules: dealer draws to 16, drawing
+ * 'TwentyOneProps.MAX_DRAW_CARDS' cards without going over 21 wins, a 21 on
+ * the deal pays even money, insurance costs 25% of the bet, one split (one
+ * card to each hand, both stand) and a double on the first two cards only.
+ * The dealer hitting soft 17, the natural payout, late surrender, the
+ * charlie size, insurance cost and playing split hands (with resplits and
+ * doubling after a split) can be changed. <br>
+ * Split hands that are played are played one at a time in hand order (see
+ * 'getCurrentHand'), the dealer plays (if a hand is left standing) and every
+ * hand is scored, in hand order, once the last one is done. <br>
+ * A hand is played by calling 'startHand' then 'checkHands', followed by the
+ * player actions ('hit', 'stay', 'doubleDown', 'split', 'insurance',
+ * 'surrender') allowed
+ * by 'getActions' until the state is 'ST_DONE'. <br><br>
+ * <b>Changes:</b>
+ * <ul>
+ * <li> 2026-10-18 - Initial release, rules moved out of 'TwentyOne'.
+ * <li> 2026-10-18 - Hands scored incrementally from packed 'TO_Hand' state,
+ *                   split hand kept as its own hand.
+ * <li> 2026-10-18 - Writes the hand events to a 'TO_Journal' (if set).
+ * <li> 2026-10-18 - Counts hands, cards, results and actions (and times the
+ *                   player actions) in a 'TO_Metrics' (if set).
+ * <li> 2026-10-18 - Rules come from a 'TO_Rules' set, added surrender.
+ * <li> 2026-10-18 - Added Hi-Lo running and true count (from the shoe).
+ * <li> 2026-10-18 - Finished hands are added to a 'TO_Stats' (if set).
+ * <li> 2026-10-18 - Finished hands are added to a 'TO_HandRing' (if set).
+ * <li> 2026-10-18 - First play action of the hand kept.
+ * <li> 2026-10-18 - Finished hands are counted in a 'TO_SessionStore' (if
+ *                   set).
+ * <li> 2026-10-18 - Split hands can be played out (resplits, double after a
+ *                   split), surrender settles the dealers 21 first.
+ * <li> 2026-10-18 - Hands the dealer played out are flagged (isDealerPlayed).
+ * </ul>
+ * @author Michael G. Slack
+ * @author slack@attglobal.net
+ * @version Version 1.00
+*/
+public class TO_Engine
+{
+    // public statics - hand states
+    /** No hand is being played. */
+    public static final int ST_IDLE   = 0;
+
+    /** Hand has been dealt, waiting on 'checkHands'. */
+    public static final int ST_DEALT  = 1;
+
+    /** Waiting on a player action. */
+    public static final int ST_PLAYER = 2;
+
+    /** Hand has been played out and scored. */
+    public static final int ST_DONE   = 3;
+
+    // public statics - player actions (mask)
+    /** Hit action. */
+    public static final int A_HIT       = 1;
+
+    /** Stay action. */
+    public static final int A_STAY      = 2;
+
+    /** Double down action. */
+    public static final int A_DOUBLE    = 4;
+
+    /** Split action. */
+    public static final int A_SPLIT     = 8;
+
+    /** Insurance action. */
+    public static final int A_INSURANCE = 16;
+
+    /** Surrender (half the bet back), if the rules allow it. */
+    public static final int A_SURRENDER = 32;
+
+    // public statics - hand results
+    /** Hand was a push, nobody wins. */
+    public static final int R_PUSH        = 1;
+
+    /** Player won the hand. */
+    public static final int R_PLAYER      = 2;
+
+    /** Dealer won the hand. */
+    public static final int R_DEALER      = 3;
+
+    /** Player drew five cards without going over 21. */
+    public static final int R_PLAYER_FIVE = 4;
+
+    /** Dealer drew five cards without going over 21. */
+    public static final int R_DEALER_FIVE = 5;
+
+    /** Player surrendered (half the bet back). */
+    public static final int R_SURRENDER   = 6;
+
+    /** Card value used for an empty slot in a hand. */
+    public static final int EMPTY_CARD = -1;
+
+    /** Most player hands in play (split and resplit). */
+    public static final int MAX_HANDS = TO_Rules.MAX_RESPLITS + 2;
+
+    // private statics
+    private static final int MAX_CARDS = TwentyOneProps.MAX_DRAW_CARDS;
+
+    // private references
+    private TO_Shoe shoe = null;
+    private TO_Rules rules = TO_Rules.DEFAULT;
+    private int iCharlie = MAX_CARDS;
+    private int iReserve = 0;
+    private int[] dealerCards = new int[MAX_CARDS];
+    private int[][] playerCards = new int[MAX_HANDS][MAX_CARDS];
+    private int iDealerHand = TO_Hand.EMPTY;
+    private int[] playerHands = new int[MAX_HANDS];
+    private int iState = ST_IDLE;
+    private int iActions = 0;
+    private int iAmountWon = 0;
+    private int iBet = 0;
+    private boolean bShowDown = false;
+    private boolean bSplitHand = false;
+    private boolean[] doubled = new boolean[MAX_HANDS];
+    private int iHandCount = 1;
+    private int iCurHand = 0;
+    private boolean bPlayerBust = false;
+    private boolean bDealerBust = false;
+    private boolean bDealerPlayed = false;
+    private boolean bNatural = false;
+    private boolean bSurrender = false;
+    private int[] results = new int[MAX_HANDS];
+    private int[] resultPts = new int[MAX_HANDS];
+    private int iResultCount = 0;
+    private TO_Journal journal = null;
+    private ByteBuffer jBlock = null;
+    private int iTable = 0;
+    private int iHandBank = 0;
+    private TO_Metrics metrics = null;
+    private TO_Stats stats = null;
+    private TO_HandRing handRing = null;
+    private TO_SessionStore store = null;
+    private int iHandActions = 0;
+    private int iFirstAction = 0;
+    private int iPeakBank = 0;
+    private int iSampleMask = 0;
+    private int iActionCount = 0;
+    private int iCardsDealt = 0;
+
+    // ------------------------ Constructors -------------------------
+
+    /** Constructor to create the engine for a table (original rules).
+     * @param shoe Shoe the cards are dealt from.
+     * @param iBank Players starting bank.
+    */
+    public TO_Engine(TO_Shoe shoe, int iBank)
+    {
+        this(shoe, iBank, TO_Rules.DEFAULT);
+    }
+
+    /** Constructor to create the engine for a table.
+     * @param shoe Shoe the cards are dealt from.
+     * @param iBank Players starting bank.
+     * @param rules Rules played (decks and penetration come from the shoe).
+    */
+    public TO_Engine(TO_Shoe shoe, int iBank, TO_Rules rules)
+    {
+        this.shoe = shoe;
+        this.iAmountWon = iBank;
+        setRules(rules);
+
+        emptyHands();
+    }
+
+    // ------------------------ Private Methods --------------------------
+
+    /** Method used to empty out the dealer and player hands. */
+    private void emptyHands()
+    {
+        for (int i = 0; i < MAX_CARDS; i++) {
+            dealerCards[i] = EMPTY_CARD;
+            for (int h = 0; h < MAX_HANDS; h++) playerCards[h][i] = EMPTY_CARD;
+        }
+        iDealerHand = TO_Hand.EMPTY;
+        for (int h = 0; h < MAX_HANDS; h++) {
+            playerHands[h] = TO_Hand.EMPTY;
+            doubled[h] = false;
+        }
+        bSplitHand = false;
+        iHandCount = 1;
+        iCurHand = 0;
+    }
+
+    /** Method used to add an event record to the hand being journaled. */
+    private void journal(int type, int hand, int card, int pts, int value)
+    {
+        if (journal == null) return;
+
+        TO_Journal.putRecord(jBlock, type, hand, card, pts, iTable, value, iAmountWon);
+    }
+
+    /** Method to return the start time of a player action (0 if the action
+     * is not being timed).
+    */
+    private long startAction()
+    {
+        if ((metrics == null) || ((++iActionCount & iSampleMask) != 0)) return 0L;
+
+        return System.nanoTime();
+    }
+
+    /** Method used to add the time taken by a player action to the metrics. */
+    private void endAction(int act, long start)
+    {
+        if (start != 0L) metrics.action(act, System.nanoTime() - start);
+    }
+
+    /** Method used to note a player action taken in the hand (the first
+     * one other than insurance is the first play action).
+    */
+    private void handAction(int a)
+    {
+        iHandActions |= a;
+        if ((iFirstAction == 0) && (a != A_INSURANCE)) iFirstAction = a;
+    }
+
+    /** Method used to write the records of the hand to the journal. */
+    private void flushJournal()
+    {
+        if ((journal == null) || (jBlock.position() == 0)) return;
+
+        jBlock.flip();
+        journal.write(jBlock);
+        jBlock.clear();
+    }
+
+    /** Method used to deal the next card from the shoe to hand 'h' (or
+     * 'TO_Journal.H_DEALER').
+    */
+    private int dealCard(int h)
+    {
+        int c = shoe.getNextCard();
+
+        journal(TO_Journal.E_CARD, h, c, 0, 0);
+        iCardsDealt++;
+
+        return c;
+    }
+
+    /** Method used to add a card to the dealers hand.  Returns the points of
+     * the hand.
+    */
+    private int addDealerCard(int card)
+    {
+        dealerCards[TO_Hand.getCount(iDealerHand)] = card;
+        iDealerHand = TO_Hand.add(iDealerHand, card);
+
+        return TO_Hand.getScore(iDealerHand);
+    }
+
+    /** Method used to set the actions of the split hand being played. */
+    private void setSplitActions()
+    {
+        int h = iCurHand;
+
+        iActions = A_HIT | A_STAY;
+        if (rules.isDoubleAfterSplit()) iActions |= A_DOUBLE;
+        if ((iHandCount < rules.getMaxHands()) &&
+            (TO_Shoe.getRank(playerCards[h][0]) == TO_Shoe.getRank(playerCards[h][1])))
+            iActions |= A_SPLIT;
+    }
+
+    /** Method used to move on to the next split hand, the dealer plays out
+     * the hand after the last one.
+    */
+    private void nextHand()
+    {
+        if (iCurHand + 1 < iHandCount) {
+            iCurHand++;
+            setSplitActions();
+        }
+        else {
+            finishOffDealer();
+        }
+    }
+
+    /** Method used to add a card to a players hand.  Returns the points of
+     * the hand.
+    */
+    private int addPlayerCard(int h, int card)
+    {
+        int hand = playerHands[h];
+
+        playerCards[h][TO_Hand.getCount(hand)] = card;
+        hand = TO_Hand.add(hand, card);
+        playerHands[h] = hand;
+
+        return TO_Hand.getScore(hand);
+    }
+
+    // ------------------------- Protected Methods -------------------------
+
+    /** Method used to score a hand and pay out the bank (hands are scored
+     * in hand order).  Hand is finished if 'bResetG' is set.
+    */
+    protected void scoreIt(int iPts, boolean bPly, boolean bPush,
+                           boolean bFiveC, boolean bResetG)
+    {
+        int r = R_DEALER;
+        int iBefore = iAmountWon;
+        boolean bDoubleHand = doubled[iResultCount];
+
+        bShowDown = true;
+        if (bSurrender) {
+            r = R_SURRENDER;
+            iAmountWon += rules.getSurrenderRefund(iBet);
+        }
+        else if (bPush) {
+            r = R_PUSH;
+            iAmountWon += iBet;
+            if (bDoubleHand) iAmountWon += iBet; // add back in also
+        }
+        else {
+            if (bPly) { // player won
+                r = (bFiveC) ? R_PLAYER_FIVE : R_PLAYER;
+                iAmountWon += iBet + ((bNatural) ? rules.getNaturalWin(iBet) : iBet);
+                if (bDoubleHand) iAmountWon += iBet + iBet; // and again
+            }
+            else if (bFiveC) {
+                r = R_DEALER_FIVE;
+            }
+        }
+        results[iResultCount] = r;
+        resultPts[iResultCount] = iPts;
+        journal(TO_Journal.E_RESULT, iResultCount, r, iPts, iAmountWon - iBefore);
+        iResultCount++;
+        if (metrics != null) metrics.result(r);
+
+        if (bResetG) {
+            iActions = 0;
+            iState = ST_DONE;
+            journal(TO_Journal.E_DONE, 0, EMPTY_CARD, 0, iAmountWon - iHandBank);
+            flushJournal();
+            if (metrics != null) {
+                metrics.cardsDealt(iCardsDealt);
+                if (iAmountWon > iPeakBank) {
+                    iPeakBank = iAmountWon;
+                    metrics.bankHigh(iAmountWon);
+                }
+            }
+            iCardsDealt = 0;
+            if (stats != null) stats.handDone(this);
+            if (handRing != null) handRing.add(this);
+            if (store != null) store.handDone(this);
+        }
+    }
+
+    /** Method used to add a card to a hand (dealer or the player hand being
+     * played).  Returns the points of the hand.
+    */
+    protected int giveCard(boolean bPly)
+    {
+        if (bPly) return addPlayerCard(iCurHand, dealCard(iCurHand));
+
+        return addDealerCard(dealCard(TO_Journal.H_DEALER));
+    }
+
+    /** Method used to finish off the dealers hand and score the player
+     * hands.  The dealer only draws if a player hand is left standing (not
+     * over 21 or a charlie).
+    */
+    protected void finishOffDealer()
+    {
+        int d;
+        boolean bStanding = false, bAllBust = true, bDealerFive;
+
+        iActions = 0;
+        bShowDown = true;
+        for (int h = 0; h < iHandCount; h++) {
+            int p = TO_Hand.getScore(playerHands[h]);
+            if (p <= 21) bAllBust = false;
+            if ((p <= 21) && (TO_Hand.getCount(playerHands[h]) < iCharlie)) bStanding = true;
+        }
+        bPlayerBust = bAllBust;
+        bDealerPlayed = bStanding;
+
+        // score hands
+        d = TO_Hand.getScore(iDealerHand);
+        while ((bStanding) && (rules.dealerHits(iDealerHand)) &&
+               (TO_Hand.getCount(iDealerHand) < iCharlie)) {
+            d = giveCard(false);
+        }
+        bDealerFive = (d <= 21) && (TO_Hand.getCount(iDealerHand) == iCharlie);
+        bDealerBust = (d > 21);
+        // now do it
+        for (int h = 0; h < iHandCount; h++) {
+            int p = TO_Hand.getScore(playerHands[h]);
+            boolean bLast = (h == iHandCount - 1);
+
+            if (p > 21) // player over 21
+                scoreIt(d, false, false, false, bLast);
+            else if (TO_Hand.getCount(playerHands[h]) == iCharlie) // player charlie
+                scoreIt(0, true, false, true, bLast);
+            else if (bDealerFive)
+                scoreIt(d, false, false, true, bLast);
+            else if ((d > 21) || (d < p)) // player won...
+                scoreIt(p, true, false, false, bLast);
+            else if (d == p)
+                scoreIt(p, false, true, false, bLast); // push
+            else
+                scoreIt(d, false, false, false, bLast);
+        }
+    }
+
+    // --------------------------- Public Methods --------------------------
+
+    /** Method used to take the bet and start off the hand - initial deal.
+     * Returns false if a hand is already in play or the bet can't be covered
+     * by the bank.
+    */
+    public boolean startHand(int bet)
+    {
+        if ((iState == ST_DEALT) || (iState == ST_PLAYER)) return false;
+        if ((bet <= 0) || (bet > iAmountWon)) return false;
+
+        long start = startAction();
+        if (needsShuffle()) {
+            shoe.shuffle();
+            journal(TO_Journal.E_SHUFFLE, 0, EMPTY_CARD, 0, shoe.getCardCount());
+            if (metrics != null) metrics.reshuffled();
+        }
+
+        // reset variables
+        iHandBank = iAmountWon;
+        iAmountWon -= bet;
+        iBet = bet;
+        bShowDown = false;
+        bPlayerBust = false;
+        bDealerBust = false;
+        bDealerPlayed = false;
+        bNatural = false;
+        bSurrender = false;
+        iResultCount = 0;
+        iActions = 0;
+        iHandActions = 0;
+        iFirstAction = 0;
+        emptyHands();
+        journal(TO_Journal.E_DEAL, 0, EMPTY_CARD, 0, bet);
+
+        // deal the cards
+        for (int i = 0; i < 2; i++) {
+            addDealerCard(dealCard(TO_Journal.H_DEALER));
+            addPlayerCard(0, dealCard(0));
+        }
+        iState = ST_DEALT;
+        if (metrics != null) metrics.handDealt();
+        endAction(TO_Metrics.ACT_DEAL, start);
+
+        return true;
+    }
+
+    /** Method used to check hands at start for 21.  Either scores the hand
+     * or sets up the actions available to the player.
+    */
+    public void checkHands()
+    {
+        if (iState != ST_DEALT) return;
+
+        int d = TO_Hand.getScore(iDealerHand);
+        int p = TO_Hand.getScore(playerHands[0]);
+
+        if ((d == 21) && (p == 21)) { // push - both have 21
+            scoreIt(p, false, true, false, true);
+        }
+        else if (p == 21) { // player wins...
+            bNatural = true;
+            scoreIt(p, true, false, false, true);
+        }
+        else {
+            int c = TO_Shoe.getRank(dealerCards[1]);
+            if ((d == 21) && (c != 1)) { // dealer won
+                scoreIt(d, false, false, false, true);
+            }
+            else { // finish setup
+                iActions = A_HIT | A_STAY | A_DOUBLE;
+                if (c == 1) iActions |= A_INSURANCE;
+                if (rules.isSurrender()) iActions |= A_SURRENDER;
+                if (TO_Shoe.getRank(playerCards[0][0]) == TO_Shoe.getRank(playerCards[0][1]))
+                    iActions |= A_SPLIT;
+                iState = ST_PLAYER;
+            }
+        }
+    }
+
+    /** Method used to run the 'hit' action.  Returns false if not allowed. */
+    public boolean hit()
+    {
+        if ((iActions & A_HIT) == 0) return false;
+
+        long start = startAction();
+        // no longer available
+        iActions &= ~(A_DOUBLE | A_INSURANCE | A_SPLIT | A_SURRENDER);
+        journal(TO_Journal.E_HIT, iCurHand, EMPTY_CARD, 0, 0);
+        handAction(A_HIT);
+
+        int p = giveCard(true);
+        if (bSplitHand) { // split hand done if over 21 or a charlie
+            if ((p > 21) || (TO_Hand.getCount(playerHands[iCurHand]) == iCharlie)) nextHand();
+        }
+        else if ((TO_Hand.getCount(playerHands[0]) == iCharlie) && (p <= 21)) {
+            scoreIt(0, true, false, true, true);
+        }
+        else if (p > 21) {
+            bPlayerBust = true;
+            scoreIt(TO_Hand.getScore(iDealerHand), false, false, false, true);
+        }
+        endAction(TO_Metrics.ACT_HIT, start);
+
+        return true;
+    }
+
+    /** Method used to run the 'stay' action.  Returns false if not allowed. */
+    public boolean stay()
+    {
+        if ((iActions & A_STAY) == 0) return false;
+
+        long start = startAction();
+        journal(TO_Journal.E_STAY, iCurHand, EMPTY_CARD, 0, 0);
+        handAction(A_STAY);
+        if (bSplitHand)
+            nextHand();
+        else
+            finishOffDealer();
+        endAction(TO_Metrics.ACT_STAY, start);
+
+        return true;
+    }
+
+    /** Method used to run the 'double' action.  Returns false if not allowed
+     * or if the bank does not cover the extra bet (double is no longer
+     * available then).
+    */
+    public boolean doubleDown()
+    {
+        if ((iActions & A_DOUBLE) == 0) return false;
+
+        iActions &= ~A_DOUBLE; // double or not, this is done...
+        if (iAmountWon < iBet) return false;
+
+        long start = startAction();
+        iAmountWon -= iBet; // subtract it out...
+        journal(TO_Journal.E_DOUBLE, iCurHand, EMPTY_CARD, 0, iBet);
+        handAction(A_DOUBLE);
+        if (metrics != null) metrics.doubled();
+        doubled[iCurHand] = true;
+        int p = giveCard(true);
+        if (bSplitHand) { // one card, on to the next hand
+            nextHand();
+        }
+        else if (p > 21) { // whoops!
+            bPlayerBust = true;
+            scoreIt(TO_Hand.getScore(iDealerHand), false, false, false, true);
+        }
+        else { // finish off dealer...
+            finishOffDealer();
+        }
+        endAction(TO_Metrics.ACT_DOUBLE, start);
+
+        return true;
+    }
+
+    /** Method used to run the 'split' action, the second card of the hand
+     * being played starts a new hand (after the others) and each gets one
+     * more card.  Returns false if not allowed or if the bank does not cover
+     * the extra bet (split is no longer available then).
+    */
+    public boolean split()
+    {
+        if ((iActions & A_SPLIT) == 0) return false;
+
+        iActions &= ~A_SPLIT; // either way, no more splitting...
+        if (iAmountWon < iBet) return false;
+
+        long start = startAction();
+        iAmountWon -= iBet;
+        journal(TO_Journal.E_SPLIT, iCurHand, EMPTY_CARD, 0, iBet);
+        handAction(A_SPLIT);
+        if (metrics != null) metrics.split();
+        // move card 1 to the new hand, get one more for each...
+        int h = iCurHand, n = iHandCount++;
+        int c = playerCards[h][1];
+        playerCards[h][1] = EMPTY_CARD;
+        playerHands[h] = TO_Hand.add(TO_Hand.EMPTY, playerCards[h][0]);
+        addPlayerCard(n, c);
+        addPlayerCard(h, dealCard(h));
+        addPlayerCard(n, dealCard(n));
+        bSplitHand = true;
+        if ((!rules.isSplitPlay()) || (TO_Shoe.getRank(c) == 1)) // hands stand
+            finishOffDealer();
+        else
+            setSplitActions();
+        endAction(TO_Metrics.ACT_SPLIT, start);
+
+        return true;
+    }
+
+    /** Method used to run the 'insurance' action.  Returns false if not
+     * allowed or if the bank does not cover the insurance cost (insurance is
+     * no longer available then).
+    */
+    public boolean insurance()
+    {
+        if ((iActions & A_INSURANCE) == 0) return false;
+
+        int insCost = getInsuranceCost();
+
+        iActions &= ~A_INSURANCE; // either get it or not now...
+        if (insCost > iAmountWon) return false;
+
+        long start = startAction();
+        iAmountWon -= insCost;
+        journal(TO_Journal.E_INSURANCE, 0, EMPTY_CARD, 0, insCost);
+        handAction(A_INSURANCE);
+        if (metrics != null) metrics.insured();
+        if (TO_Shoe.getPoints(dealerCards[0]) == 10) {
+            // dealer has 21 - good call!
+            iAmountWon += iBet; // give bet back - just lost ins cost
+            scoreIt(21, false, false, false, true);
+        }
+        endAction(TO_Metrics.ACT_INSURANCE, start);
+
+        return true;
+    }
+
+    /** Method used to run the 'surrender' action (half the bet back, hand
+     * over).  Surrender is late surrender, with an ace up the dealers 21 is
+     * settled first and the whole bet is lost.  Returns false if not allowed.
+    */
+    public boolean surrender()
+    {
+        if ((iActions & A_SURRENDER) == 0) return false;
+
+        long start = startAction();
+        journal(TO_Journal.E_SURRENDER, 0, EMPTY_CARD, 0, 0);
+        handAction(A_SURRENDER);
+        if (metrics != null) metrics.surrendered();
+        if (TO_Hand.getScore(iDealerHand) == 21) { // dealer 21 comes first
+            scoreIt(21, false, false, false, true);
+        }
+        else {
+            bSurrender = true;
+            scoreIt(TO_Hand.getScore(playerHands[0]), false, false, false, true);
+        }
+        endAction(TO_Metrics.ACT_SURRENDER, start);
+
+        return true;
+    }
+
+    /** Method used to empty the hands once a hand is finished (or before
+     * one is dealt).
+    */
+    public void clearHands()
+    {
+        if ((iState == ST_DEALT) || (iState == ST_PLAYER)) return;
+
+        emptyHands();
+        iResultCount = 0;
+        iState = ST_IDLE;
+    }
+
+    /** Method used to add money to the players bank (game reset). */
+    public void addToBank(int amt)
+    {
+        iAmountWon += amt;
+        journal(TO_Journal.E_BANK, 0, EMPTY_CARD, 0, amt);
+        if ((iState != ST_DEALT) && (iState != ST_PLAYER)) flushJournal();
+    }
+
+    /** Method used to set the journal the hand events are written to (null
+     * to stop journaling).  Each hand is written when it is done, a table
+     * opened event (with the bank) is written first.
+     * @param j Journal to write to.
+     * @param table Table number written with each event.
+    */
+    public void setJournal(TO_Journal j, int table)
+    {
+        flushJournal();
+        journal = j;
+        iTable = table;
+        if (j == null) return;
+
+        if (jBlock == null)
+            jBlock = ByteBuffer.allocate(TO_Journal.MAX_HAND_RECORDS * TO_Journal.RECORD_SIZE);
+        journal(TO_Journal.E_OPEN, 0, EMPTY_CARD, 0, rules.getCode());
+        if ((iState != ST_DEALT) && (iState != ST_PLAYER)) flushJournal();
+    }
+
+    /** Method used to set the metrics the hands and actions are counted in
+     * (null to stop counting).  Metrics can be shared by many engines.
+    */
+    public void setMetrics(TO_Metrics m)
+    {
+        metrics = m;
+        iPeakBank = iAmountWon;
+        if (m == null) return;
+
+        iSampleMask = m.getSampleMask();
+        m.bankHigh(iAmountWon);
+    }
+
+    /** Method to return the metrics the hands and actions are counted in. */
+    public TO_Metrics getMetrics()
+    {
+        return metrics;
+    }
+
+    /** Method used to set the statistics finished hands are added to (null
+     * to stop adding them).
+    */
+    public void setStats(TO_Stats s)
+    {
+        stats = s;
+    }
+
+    /** Method to return the statistics finished hands are added to. */
+    public TO_Stats getStats()
+    {
+        return stats;
+    }
+
+    /** Method used to set the ring finished hands are added to (null to
+     * stop adding them).  A ring can be shared by many engines.
+    */
+    public void setHandRing(TO_HandRing r)
+    {
+        handRing = r;
+    }
+
+    /** Method to return the ring finished hands are added to. */
+    public TO_HandRing getHandRing()
+    {
+        return handRing;
+    }
+
+    /** Method used to set the session store finished hands are counted in
+     * (null to stop counting them).
+    */
+    public void setStore(TO_SessionStore s)
+    {
+        store = s;
+    }
+
+    /** Method to return the session store finished hands are counted in. */
+    public TO_SessionStore getStore()
+    {
+        return store;
+    }
+
+    /** Method used to set the rules played (between hands).  Decks and
+     * penetration are not changed, they come from the shoe.
+    */
+    public void setRules(TO_Rules r)
+    {
+        if (r.equals(rules)) return;
+
+        rules = r;
+        iCharlie = r.getCharlie();
+        // played split hands can take more cards than the shoe holds back
+        iReserve = (r.isSplitPlay()) ? (r.getMaxHands() + 1) * iCharlie : 0;
+        journal(TO_Journal.E_RULES, 0, EMPTY_CARD, 0, r.getCode());
+        if ((iState != ST_DEALT) && (iState != ST_PLAYER)) flushJournal();
+    }
+
+    /** Method to return the rules played. */
+    public TO_Rules getRules()
+    {
+        return rules;
+    }
+
+    /** Method to return the journal the hand events are written to. */
+    public TO_Journal getJournal()
+    {
+        return journal;
+    }
+
+    /** Method to return the players current bank. */
+    public int getBank()
+    {
+        return iAmountWon;
+    }
+
+    /** Method to return the net won by the hand (bank less the bank before
+     * the deal).
+    */
+    public int getHandNet()
+    {
+        return iAmountWon - iHandBank;
+    }
+
+    /** Method to return the player actions (A_xxx bits) taken in the hand. */
+    public int getHandActions()
+    {
+        return iHandActions;
+    }
+
+    /** Method to return the first play action (A_xxx, not insurance) taken
+     * in the hand, 0 if none.
+    */
+    public int getFirstAction()
+    {
+        return iFirstAction;
+    }
+
+    /** Method to return the current bet (per hand). */
+    public int getBet()
+    {
+        return iBet;
+    }
+
+    /** Method to return the cost of insurance for the current bet. */
+    public int getInsuranceCost()
+    {
+        return rules.getInsuranceCost(iBet);
+    }
+
+    /** Method to return the current hand state (ST_xxx). */
+    public int getState()
+    {
+        return iState;
+    }
+
+    /** Method to return the mask of actions (A_xxx) the player can take. */
+    public int getActions()
+    {
+        return iActions;
+    }
+
+    /** Method to return the shoe used by the engine. */
+    public TO_Shoe getShoe()
+    {
+        return shoe;
+    }
+
+    /** Method to return the Hi-Lo running count the next hand is dealt at
+     * (0 if the shoe is due for a reshuffle).  All of the cards dealt have
+     * been seen once a hand is done.
+    */
+    public int getRunningCount()
+    {
+        return (needsShuffle()) ? 0 : shoe.getRunningCount();
+    }
+
+    /** Method to return the Hi-Lo true count the next hand is dealt at (0 if
+     * the shoe is due for a reshuffle).
+    */
+    public double getTrueCount()
+    {
+        return (needsShuffle()) ? 0.0 : shoe.getTrueCount();
+    }
+
+    /** Method to return true if the shoe will be reshuffled before the next
+     * hand is dealt (the cut card is reached or, with split hands played,
+     * too few cards are left for the most a hand can take).
+    */
+    public boolean needsShuffle()
+    {
+        return shoe.needsShuffle(iReserve);
+    }
+
+    /** Method to return the number of cards left in the shoe. */
+    public int getCardsLeft()
+    {
+        return shoe.getCardsLeft();
+    }
+
+    /** Method to return the dealer card (code) at slot 'i'.  Slot 0 is the
+     * down card.
+    */
+    public int getDealerCard(int i)
+    {
+        return dealerCards[i];
+    }
+
+    /** Method to return the number of cards in the dealers hand. */
+    public int getDealerCardCount()
+    {
+        return TO_Hand.getCount(iDealerHand);
+    }
+
+    /** Method to return the number of player hands in play (2 or more if
+     * split).
+    */
+    public int getHandCount()
+    {
+        return iHandCount;
+    }
+
+    /** Method to return the player hand being played (0 unless split hands
+     * are played).
+    */
+    public int getCurrentHand()
+    {
+        return iCurHand;
+    }
+
+    /** Method to return the card (code) at slot 'i' of player hand 'h'. */
+    public int getPlayerCard(int h, int i)
+    {
+        return playerCards[h][i];
+    }
+
+    /** Method to return the number of cards in player hand 'h'. */
+    public int getPlayerCardCount(int h)
+    {
+        return TO_Hand.getCount(playerHands[h]);
+    }
+
+    /** Method to return the packed state (see 'TO_Hand') of the dealers hand. */
+    public int getDealerHand()
+    {
+        return iDealerHand;
+    }
+
+    /** Method to return the packed state (see 'TO_Hand') of player hand 'h'. */
+    public int getPlayerHand(int h)
+    {
+        return playerHands[h];
+    }
+
+    /** Method to return the dealers points. */
+    public int getDealerScore()
+    {
+        return TO_Hand.getScore(iDealerHand);
+    }
+
+    /** Method to return the points of player hand 'h'. */
+    public int getPlayerScore(int h)
+    {
+        return TO_Hand.getScore(playerHands[h]);
+    }
+
+    /** Method to return true if the dealer down card is showing. */
+    public boolean isShowDown()
+    {
+        return bShowDown;
+    }
+
+    /** Method to return true if the hand was split. */
+    public boolean isSplitHand()
+    {
+        return bSplitHand;
+    }
+
+    /** Method to return true if the hand (any split hand) was doubled. */
+    public boolean isDoubleHand()
+    {
+        for (int h = 0; h < iHandCount; h++)
+            if (doubled[h]) return true;
+
+        return false;
+    }
+
+    /** Method to return true if player hand 'h' was doubled. */
+    public boolean isDoubleHand(int h)
+    {
+        return doubled[h];
+    }
+
+    /** Method to return true if the player went over 21 (every hand if
+     * split).
+    */
+    public boolean isPlayerBust()
+    {
+        return bPlayerBust;
+    }
+
+    /** Method to return true if the dealer went over 21. */
+    public boolean isDealerBust()
+    {
+        return bDealerBust;
+    }
+
+    /** Method to return true if the dealer played out the hand (a player
+     * hand was left standing), false if the hand ended before the dealers
+     * turn (bust, surrender, natural or charlie).
+    */
+    public boolean isDealerPlayed()
+    {
+        return bDealerPlayed;
+    }
+
+    /** Method to return the number of results scored (one for each hand). */
+    public int getResultCount()
+    {
+        return iResultCount;
+    }
+
+    /** Method to return the result (R_xxx) of scored hand 'i'. */
+    public int getResult(int i)
+    {
+        return results[i];
+    }
+
+    /** Method to return the winning (or pushed) points of scored hand 'i'. */
+    public int getResultPoints(int i)
+    {
+        return resultPts[i];
+    }
+}
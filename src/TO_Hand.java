@@ -0,0 +1,81 @@
+/** Class defines the packed (primitive int) state of a 21 hand used by the
+ * rules engine.  The int holds the running hard total (aces counted as 1),
+ * a flag if the hand holds an ace and the number of cards in the hand, so
+ * adding a card and scoring the hand are done in constant time without any
+ * allocation or scanning of the cards. <br>
+ * Layout: bits 0 - 7 hard total, bit 8 ace held, bits 9 and up card count.
+ * <br><br>
+ * <b>Changes:</b>
+ * <ul>
+ * <li> 2026-10-18 - Initial release.
+ * </ul>
+ * @author Michael G. Slack
+ * @author slack@attglobal.net
+ * @version Version 1.00
+*/
+public final class TO_Hand
+{
+    // public statics
+    /** Packed state of a hand with no cards. */
+    public static final int EMPTY = 0;
+
+    // private statics
+    private static final int TOTAL_MASK  = 0xFF;
+    private static final int ACE_BIT     = 0x100;
+    private static final int COUNT_SHIFT = 9;
+    private static final int COUNT_ONE   = 1 << COUNT_SHIFT;
+
+    /** Not created, static methods only. */
+    private TO_Hand() { }
+
+    // ------------------------- Public Methods -----------------------------
+
+    /** Method used to add a card (code) to a hand.  Returns the new packed
+     * state of the hand.
+    */
+    public static int add(int hand, int card)
+    {
+        int p = TO_Shoe.getPoints(card);
+
+        hand += p + COUNT_ONE;
+        if (p == 1) hand |= ACE_BIT;
+
+        return hand;
+    }
+
+    /** Method to return the points of the hand, one ace is counted as 11 if
+     * it does not take the hand over 21.
+    */
+    public static int getScore(int hand)
+    {
+        int t = hand & TOTAL_MASK;
+
+        if (((hand & ACE_BIT) != 0) && (t <= 11)) t += 10;
+
+        return t;
+    }
+
+    /** Method to return the hard total (all aces counted as 1) of the hand. */
+    public static int getHardTotal(int hand)
+    {
+        return hand & TOTAL_MASK;
+    }
+
+    /** Method to return true if an ace is counted as 11 in the hand score. */
+    public static boolean isSoft(int hand)
+    {
+        return ((hand & ACE_BIT) != 0) && ((hand & TOTAL_MASK) <= 11);
+    }
+
+    /** Method to return true if the hand holds an ace. */
+    public static boolean hasAce(int hand)
+    {
+        return (hand & ACE_BIT) != 0;
+    }
+
+    /** Method to return the number of cards in the hand. */
+    public static int getCount(int hand)
+    {
+        return hand >>> COUNT_SHIFT;
+    }
+}
@@ -0,0 +1,591 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+
+/** Class defines the secondary indexes kept over the hands held in a
+ * 'TO_HandRing', so questions about the hands played ("16 vs 10 where the
+ * player stayed") are answered without reading the hand records. <br>
+ * There is one bitmap (a bit per ring slot) of the slots held and one for
+ * each value of the player starting total (4 - 21), soft start, pair, dealer
+ * up card (ace - 10), action taken, first play action and outcome (won, lost
+ * or pushed by the net of the hand).  A query ANDs the bitmaps of its
+ * items (and ANDs out the ones it excludes) 64 hands at a time; counts come
+ * from bit counts and the mean net won per bet from a column of the net of
+ * each hand in bet units. <br>
+ * Every hand also falls in one of 'CELLS' cells (starting total, soft, pair,
+ * up card, first action and outcome) that keep the count, sum and sum of
+ * squares of the net in bet units of their hands.  Cells are updated as
+ * hands are added (and taken out when a hand is overwritten), so a query
+ * without 'took=' or 'no=' items is answered from the cells in the same time
+ * whatever the number of hands held, the bitmaps are only scanned for the
+ * other queries and to find the latest hands matching. <br>
+ * Bitmaps, the net column and the cell of each slot are held off the heap
+ * (direct buffers, about 12 bytes a hand), the cells on it.  The index is
+ * kept up to date by the ring as hands are added (a slot reused is cleared
+ * first) and queries run under the ring lock. <br>
+ * Query text is a list of items, for example '16 vs 10 stay' or
+ * 'total=12,soft,up=a,took=double,won':
+ * <ul>
+ * <li> 'N' or 'total=N' - player starting total (4 - 21).
+ * <li> 'soft' / 'hard' - starting hand is (isn't) soft, 'pair' / 'nopair' -
+ *      starting cards are (aren't) a pair.
+ * <li> 'vs N' or 'up=N' - dealer up card (2 - 10, 'a' for an ace).
+ * <li> 'hit', 'stay', 'double', 'split', 'surrender' - first play action.
+ * <li> 'took=action' / 'no=action' - action was (wasn't) taken in the hand
+ *      (also 'insurance').
+ * <li> 'won', 'lost', 'pushed' - outcome of the hand.
+ * </ul>
+ * <b>Changes:</b>
+ * <ul>
+ * <li> 2026-10-18 - Initial release.
+ * <li> 2026-10-18 - Constructor no longer sets itself in the ring.
+ * </ul>
+ * @author Michael G. Slack
+ * @author slack@attglobal.net
+ * @version Version 1.00
+*/
+public class TO_HandIndex
+{
+    // public statics
+    /** Lowest player starting total. */
+    public static final int MIN_TOTAL = 4;
+
+    /** Highest player starting total. */
+    public static final int MAX_TOTAL = 21;
+
+    // private statics - bitmaps
+    private static final int B_HELD = 0;
+    private static final int B_TOTAL = 1;
+    private static final int B_SOFT = B_TOTAL + MAX_TOTAL - MIN_TOTAL + 1;
+    private static final int B_PAIR = B_SOFT + 1;
+    private static final int B_UP = B_PAIR + 1;
+    private static final int B_TOOK = B_UP + TO_Shoe.MAX_POINTS;
+    private static final int B_FIRST = B_TOOK + 6;
+    private static final int B_WON = B_FIRST + 6;
+    private static final int B_LOST = B_WON + 1;
+    private static final int B_PUSHED = B_LOST + 1;
+    private static final int BITMAPS = B_PUSHED + 1;
+
+    // private statics - cells (total, soft, pair, up card, first action,
+    // outcome), first action 0 is none
+    private static final int TOTALS = MAX_TOTAL - MIN_TOTAL + 1;
+    private static final int FIRSTS = 7;
+    private static final int OUTCOMES = 3;
+    private static final int CELLS = TOTALS * 2 * 2 * TO_Shoe.MAX_POINTS * FIRSTS * OUTCOMES;
+
+    private static final String[] ACTION_NAMES = {"hit", "stay", "double", "split",
+                                                  "insurance", "surrender"};
+
+    // private references
+    private final TO_HandRing ring;
+    private final int iCapacity;
+    private final int iWords;
+    private final LongBuffer bits;
+    private final FloatBuffer units;
+    private final ShortBuffer keys;
+    private final long[] cellCounts = new long[CELLS];
+    private final double[] cellSums = new double[CELLS];
+    private final double[] cellSumSqs = new double[CELLS];
+
+    // ------------------------ Constructors -------------------------
+
+    /** Constructor to create an (empty) index over a ring.  The index is
+     * filled and kept up to date once it is set in the ring (see
+     * 'TO_HandRing.createIndex').
+    */
+    public TO_HandIndex(TO_HandRing r)
+    {
+        ring = r;
+        iCapacity = r.getCapacity();
+        iWords = (iCapacity + 63) >>> 6;
+        bits = ByteBuffer.allocateDirect(BITMAPS * iWords * 8).order(ByteOrder.nativeOrder())
+                         .asLongBuffer();
+        units = ByteBuffer.allocateDirect(iCapacity * 4).order(ByteOrder.nativeOrder())
+                          .asFloatBuffer();
+        keys = ByteBuffer.allocateDirect(iCapacity * 2).order(ByteOrder.nativeOrder())
+                         .asShortBuffer();
+    }
+
+    // ------------------------ Private Methods --------------------------
+
+    /** Method to return the bitmap number (0 - 5) of an action (A_xxx). */
+    private static int getActionBit(int a)
+    {
+        return Integer.numberOfTrailingZeros(a);
+    }
+
+    /** Method to return the action (A_xxx) named 's'. */
+    private static int parseAction(String s)
+    {
+        for (int i = 0; i < ACTION_NAMES.length; i++)
+            if (ACTION_NAMES[i].equals(s)) return 1 << i;
+
+        throw new IllegalArgumentException("unknown action '" + s + "'");
+    }
+
+    /** Method to return the up card (1 - 10, 1 is an ace) of a text (2 -
+     * 10, a).
+    */
+    private static int parseUpCard(String s)
+    {
+        int up;
+
+        if (("a".equals(s)) || ("ace".equals(s)) || ("11".equals(s))) return 1;
+        try {
+            up = Integer.parseInt(s);
+        }
+        catch (NumberFormatException e) {
+            up = 0;
+        }
+        if ((up < 1) || (up > TO_Shoe.MAX_POINTS))
+            throw new IllegalArgumentException("bad up card '" + s + "'");
+
+        return up;
+    }
+
+    /** Method to return the total of a text (4 - 21). */
+    private static int parseTotal(String s)
+    {
+        int t;
+
+        try {
+            t = Integer.parseInt(s);
+        }
+        catch (NumberFormatException e) {
+            t = 0;
+        }
+        if ((t < MIN_TOTAL) || (t > MAX_TOTAL))
+            throw new IllegalArgumentException("bad total '" + s + "'");
+
+        return t;
+    }
+
+    /** Method to return the cell of a hand. */
+    private static int getCell(int total, boolean soft, boolean pair, int up, int first,
+                               int outcome)
+    {
+        int k = (total - MIN_TOTAL) * 2 + ((soft) ? 1 : 0);
+
+        k = k * 2 + ((pair) ? 1 : 0);
+        k = k * TO_Shoe.MAX_POINTS + up - 1;
+        k = k * FIRSTS + ((first == 0) ? 0 : getActionBit(first) + 1);
+
+        return k * OUTCOMES + outcome;
+    }
+
+    /** Method used to set (or clear) the bit of 'slot' in bitmap 'b'. */
+    private void setBit(int b, int slot, boolean on)
+    {
+        int i = b * iWords + (slot >>> 6);
+        long m = 1L << (slot & 63);
+
+        bits.put(i, (on) ? bits.get(i) | m : bits.get(i) & ~m);
+    }
+
+    /** Method to return if the bit of 'slot' in bitmap 'b' is set. */
+    private boolean isBit(int b, int slot)
+    {
+        return (bits.get(b * iWords + (slot >>> 6)) & (1L << (slot & 63))) != 0L;
+    }
+
+    /** Method used to add (or take out, 'sign' -1) a hand of 'u' bet units
+     * to cell 'k'.
+    */
+    private void addCell(int k, double u, int sign)
+    {
+        cellCounts[k] += sign;
+        if (cellCounts[k] == 0L) { // no rounding left behind
+            cellSums[k] = 0.0;
+            cellSumSqs[k] = 0.0;
+        }
+        else {
+            cellSums[k] += sign * u;
+            cellSumSqs[k] += sign * u * u;
+        }
+    }
+
+    /** Method to return the word 'w' of the hands matching the bitmaps
+     * 'inc' (all) less the bitmaps 'exc' (any).
+    */
+    private long match(int w, int[] inc, int[] exc)
+    {
+        long x = bits.get(inc[0] * iWords + w);
+
+        for (int k = 1; (k < inc.length) && (x != 0L); k++) x &= bits.get(inc[k] * iWords + w);
+        for (int k = 0; (k < exc.length) && (x != 0L); k++) x &= ~bits.get(exc[k] * iWords + w);
+
+        return x;
+    }
+
+    /** Method used to add the hands matching bitmaps 'inc' less 'exc' to a
+     * match (under the ring lock).
+    */
+    private void run(int[] inc, int[] exc, Match res)
+    {
+        int won = B_WON * iWords;
+        int lost = B_LOST * iWords;
+
+        for (int w = 0; w < iWords; w++) {
+            long x = match(w, inc, exc);
+
+            if (x == 0L) continue;
+            res.lCount += Long.bitCount(x);
+            res.lWon += Long.bitCount(x & bits.get(won + w));
+            res.lLost += Long.bitCount(x & bits.get(lost + w));
+            while (x != 0L) {
+                double u = units.get((w << 6) + Long.numberOfTrailingZeros(x));
+                res.dSum += u;
+                res.dSumSq += u * u;
+                x &= x - 1;
+            }
+        }
+    }
+
+    /** Method used to add the cells matching a query to a match (under the
+     * ring lock).
+    */
+    private void runCells(Query q, Match res)
+    {
+        int k = 0;
+
+        for (int t = 0; t < TOTALS * 2 * 2; t++) { // total, soft, pair
+            if (((q.iTotals & (1 << (t >> 2))) == 0) || ((q.iSoft & (1 << ((t >> 1) & 1))) == 0) ||
+                ((q.iPair & (1 << (t & 1))) == 0)) {
+                k += TO_Shoe.MAX_POINTS * FIRSTS * OUTCOMES;
+                continue;
+            }
+            for (int u = 0; u < TO_Shoe.MAX_POINTS; u++) {
+                if ((q.iUps & (1 << u)) == 0) {
+                    k += FIRSTS * OUTCOMES;
+                    continue;
+                }
+                for (int f = 0; f < FIRSTS; f++) {
+                    for (int o = 0; o < OUTCOMES; o++, k++) {
+                        if (((q.iFirsts & (1 << f)) == 0) || ((q.iOutcomes & (1 << o)) == 0) ||
+                            (cellCounts[k] == 0L)) continue;
+                        res.lCount += cellCounts[k];
+                        if (o == 0) res.lWon += cellCounts[k];
+                        if (o == 1) res.lLost += cellCounts[k];
+                        res.dSum += cellSums[k];
+                        res.dSumSq += cellSumSqs[k];
+                    }
+                }
+            }
+        }
+    }
+
+    /** Method to return a query parsed (see class notes).
+     * @throws IllegalArgumentException If an item is unknown or bad.
+    */
+    private static Query parse(String text)
+    {
+        Query q = new Query();
+        int[] inc = new int[BITMAPS];
+        int[] exc = new int[BITMAPS];
+        int ni = 0;
+        int ne = 0;
+        boolean bVs = false;
+        String[] items = text.trim().toLowerCase().split("[,\\s]+");
+
+        for (int i = 0; i < items.length; i++) {
+            String it = items[i];
+            String val = it.substring(it.indexOf('=') + 1);
+            int v;
+
+            if (it.length() == 0) continue;
+            if ((bVs) || (it.startsWith("up="))) {
+                v = parseUpCard((bVs) ? it : val);
+                inc[ni++] = B_UP + v - 1;
+                q.iUps &= 1 << (v - 1);
+                bVs = false;
+            }
+            else if ("vs".equals(it))
+                bVs = true;
+            else if ((Character.isDigit(it.charAt(0))) || (it.startsWith("total="))) {
+                v = parseTotal((it.startsWith("total=")) ? val : it);
+                inc[ni++] = B_TOTAL + v - MIN_TOTAL;
+                q.iTotals &= 1 << (v - MIN_TOTAL);
+            }
+            else if (it.startsWith("took=")) {
+                inc[ni++] = B_TOOK + getActionBit(parseAction(val));
+                q.bCells = false;
+            }
+            else if (it.startsWith("no=")) {
+                exc[ne++] = B_TOOK + getActionBit(parseAction(val));
+                q.bCells = false;
+            }
+            else if ("soft".equals(it)) {
+                inc[ni++] = B_SOFT;
+                q.iSoft &= 2;
+            }
+            else if ("hard".equals(it)) {
+                exc[ne++] = B_SOFT;
+                q.iSoft &= 1;
+            }
+            else if ("pair".equals(it)) {
+                inc[ni++] = B_PAIR;
+                q.iPair &= 2;
+            }
+            else if ("nopair".equals(it)) {
+                exc[ne++] = B_PAIR;
+                q.iPair &= 1;
+            }
+            else if ("won".equals(it)) {
+                inc[ni++] = B_WON;
+                q.iOutcomes &= 1;
+            }
+            else if ("lost".equals(it)) {
+                inc[ni++] = B_LOST;
+                q.iOutcomes &= 2;
+            }
+            else if ("pushed".equals(it)) {
+                inc[ni++] = B_PUSHED;
+                q.iOutcomes &= 4;
+            }
+            else {
+                v = getActionBit(parseAction(it));
+                inc[ni++] = B_FIRST + v;
+                q.iFirsts &= 1 << (v + 1);
+            }
+            if ((ni >= BITMAPS) || (ne >= BITMAPS))
+                throw new IllegalArgumentException("too many query items");
+        }
+        if (bVs) throw new IllegalArgumentException("no up card after 'vs'");
+        if (ni == 0) inc[ni++] = B_HELD; // all hands held
+
+        q.inc = java.util.Arrays.copyOf(inc, ni);
+        q.exc = java.util.Arrays.copyOf(exc, ne);
+
+        return q;
+    }
+
+    // ------------------------- Public Methods --------------------------
+
+    /** Method used to index hand 'n' of the ring (called by the ring as it
+     * is added, the slot it takes is cleared first).
+    */
+    void add(long n)
+    {
+        int slot = (int) (n % iCapacity);
+        int w = slot >>> 6;
+        long m = ~(1L << (slot & 63));
+        int c0, c1, start, net, bet, first, outcome;
+        float u;
+
+        if (isBit(B_HELD, slot)) addCell(keys.get(slot), units.get(slot), -1); // overwritten
+        for (int b = 0; b < BITMAPS; b++) bits.put(b * iWords + w, bits.get(b * iWords + w) & m);
+        setBit(B_HELD, slot, true);
+
+        if (ring.getHandCount(n) > 1) { // split, first card of each hand
+            c0 = ring.getPlayerCard(n, 0, 0);
+            c1 = ring.getPlayerCard(n, 1, 0);
+        }
+        else {
+            c0 = ring.getPlayerCard(n, 0, 0);
+            c1 = ring.getPlayerCard(n, 0, 1);
+        }
+        start = TO_Hand.add(TO_Hand.add(TO_Hand.EMPTY, c0), c1);
+        setBit(B_TOTAL + TO_Hand.getScore(start) - MIN_TOTAL, slot, true);
+        if (TO_Hand.isSoft(start)) setBit(B_SOFT, slot, true);
+        if (TO_Shoe.getRank(c0) == TO_Shoe.getRank(c1)) setBit(B_PAIR, slot, true);
+        setBit(B_UP + TO_Shoe.getPoints(ring.getDealerCard(n, 1)) - 1, slot, true);
+
+        int a = ring.getActions(n);
+        for (int i = 0; i < ACTION_NAMES.length; i++)
+            if ((a & (1 << i)) != 0) setBit(B_TOOK + i, slot, true);
+        first = ring.getFirstAction(n);
+        if (first != 0) setBit(B_FIRST + getActionBit(first), slot, true);
+
+        net = ring.getNet(n);
+        bet = ring.getBet(n);
+        outcome = (net > 0) ? 0 : ((net < 0) ? 1 : 2);
+        setBit(B_WON + outcome, slot, true);
+        u = (bet > 0) ? (float) net / bet : 0.0f;
+        units.put(slot, u);
+
+        int k = getCell(TO_Hand.getScore(start), TO_Hand.isSoft(start),
+                        TO_Shoe.getRank(c0) == TO_Shoe.getRank(c1),
+                        TO_Shoe.getPoints(ring.getDealerCard(n, 1)), first, outcome);
+        keys.put(slot, (short) k);
+        addCell(k, u, 1);
+    }
+
+    /** Method used to empty the index (the ring was cleared). */
+    void clear()
+    {
+        for (int i = 0; i < BITMAPS * iWords; i++) bits.put(i, 0L);
+        java.util.Arrays.fill(cellCounts, 0L);
+        java.util.Arrays.fill(cellSums, 0.0);
+        java.util.Arrays.fill(cellSumSqs, 0.0);
+    }
+
+    /** Method to return the size (bytes, off the heap) of the index. */
+    public long getBytes()
+    {
+        return (long) BITMAPS * iWords * 8 + (long) iCapacity * 6;
+    }
+
+    /** Method to return the hands matching a query (see class notes).
+     * @throws IllegalArgumentException If the query has an unknown or bad
+     * item.
+    */
+    public Match query(String q)
+    {
+        Query pq = parse(q);
+        Match res = new Match(q);
+        long start = System.nanoTime();
+
+        synchronized (ring) {
+            if (pq.bCells)
+                runCells(pq, res);
+            else
+                run(pq.inc, pq.exc, res);
+        }
+        res.lNanos = System.nanoTime() - start;
+
+        return res;
+    }
+
+    /** Method to return the numbers of the latest hands matching a query
+     * (latest first, 'max' at most).
+     * @throws IllegalArgumentException If the query has an unknown or bad
+     * item.
+    */
+    public long[] getLatest(String q, int max)
+    {
+        Query pq = parse(q);
+        long[] found = new long[max];
+        int n = 0;
+
+        synchronized (ring) {
+            long hands = ring.getHands();
+            int head = (int) (hands % iCapacity); // slots below are the latest lap
+            long base = hands - head;
+
+            for (int pass = 0; (pass < 2) && (n < max); pass++) {
+                int lo = (pass == 0) ? 0 : head;
+                int hi = (pass == 0) ? head : iCapacity; // slots lo to hi - 1
+                long first = (pass == 0) ? base : base - iCapacity;
+
+                for (int w = (hi - 1) >>> 6; (hi > lo) && (w >= (lo >>> 6)) && (n < max); w--) {
+                    long x = match(w, pq.inc, pq.exc);
+
+                    while ((x != 0L) && (n < max)) {
+                        int slot = (w << 6) + 63 - Long.numberOfLeadingZeros(x);
+                        x &= ~(1L << (slot & 63));
+                        if ((slot >= lo) && (slot < hi) && (first + slot >= ring.getFirst()))
+                            found[n++] = first + slot;
+                    }
+                }
+            }
+        }
+
+        return java.util.Arrays.copyOf(found, n);
+    }
+
+    /** Method to return the answer to a query as text, with the latest
+     * 'show' hands matching (from the ring).
+    */
+    public String getReport(String q, int show)
+    {
+        Match m = query(q);
+        long[] latest = getLatest(q, show);
+        StringBuffer sb = new StringBuffer(200 + latest.length * 80);
+
+        sb.append(m.toString());
+        sb.append(String.format("%n"));
+        for (int i = 0; i < latest.length; i++) {
+            try {
+                sb.append(ring.toString(latest[i]));
+                sb.append(String.format("%n"));
+            }
+            catch (IndexOutOfBoundsException e) { } // overwritten since
+        }
+
+        return sb.toString();
+    }
+
+    // ---------------------- Inner Classes -------------------------
+
+    /**
+     * Class holding a query parsed, the bitmaps it ANDs (and ANDs out) and
+     * the cells it sums (a bit for each value of each part of the cell key
+     * allowed).
+    */
+    private static final class Query
+    {
+        int[] inc;
+        int[] exc;
+        int iTotals = (1 << TOTALS) - 1;
+        int iSoft = 3; // 1 hard, 2 soft
+        int iPair = 3; // 1 not a pair, 2 pair
+        int iUps = (1 << TO_Shoe.MAX_POINTS) - 1;
+        int iFirsts = (1 << FIRSTS) - 1;
+        int iOutcomes = (1 << OUTCOMES) - 1; // 1 won, 2 lost, 4 pushed
+        boolean bCells = true; // cells can answer it
+    }
+
+    /**
+     * Class holding the answer to a query (see 'query').
+    */
+    public static final class Match
+    {
+        private String sQuery;
+        private long lCount = 0L;
+        private long lWon = 0L;
+        private long lLost = 0L;
+        private double dSum = 0.0;
+        private double dSumSq = 0.0;
+        private long lNanos = 0L;
+
+        /** Constructor - empty answer to query 'q'. */
+        Match(String q)
+        {
+            sQuery = q;
+        }
+
+        /** Method to return the number of hands matching. */
+        public long getCount() { return lCount; }
+
+        /** Method to return the number of hands matching that were won. */
+        public long getWon() { return lWon; }
+
+        /** Method to return the number of hands matching that were lost. */
+        public long getLost() { return lLost; }
+
+        /** Method to return the number of hands matching that were pushed. */
+        public long getPushed() { return lCount - lWon - lLost; }
+
+        /** Method to return the mean net won per bet (EV) of the hands. */
+        public double getMean()
+        {
+            return (lCount == 0L) ? 0.0 : dSum / lCount;
+        }
+
+        /** Method to return the standard error of the mean net won per bet. */
+        public double getStdError()
+        {
+            if (lCount < 2L) return 0.0;
+
+            double m = getMean();
+            double v = (dSumSq - lCount * m * m) / (lCount - 1);
+            return Math.sqrt(Math.max(v, 0.0) / lCount);
+        }
+
+        /** Method to return the time (nanoseconds) the query took. */
+        public long getNanos() { return lNanos; }
+
+        /** Method to return the answer as text. */
+        public String toString()
+        {
+            double n = Math.max(lCount, 1L);
+
+            return String.format("'%s': %d hands, won %.1f%% lost %.1f%% pushed %.1f%%, " +
+                                 "EV %+.4f +/- %.4f per bet (%.3f ms)", sQuery, lCount,
+                                 lWon * 100.0 / n, lLost * 100.0 / n, getPushed() * 100.0 / n,
+                                 getMean(), 1.96 * getStdError(), lNanos / 1e6);
+        }
+    }
+}
@@ -0,0 +1,318 @@
+import java.nio.ByteBuffer;
+
+/** Class used to keep the most recent hands played (see
+ * 'TO_Engine.setHandRing') in a fixed size ring of records held off the
+ * heap in a direct buffer, so millions of hands can be kept in the running
+ * program without adding to the heap or the garbage collector's work.  When
+ * the ring is full each hand added takes the place of the oldest. <br>
+ * Hands are numbered from 0 in the order added, hands 'getFirst()' to
+ * 'getHands() - 1' are held.  Each hand is a 'RECORD_SIZE' byte record:
+ * <ul>
+ * <li> byte  - dealer card count (high nibble), player card count of the
+ *              first hand (low nibble).
+ * <li> byte  - number of player hands (high nibble, 0 if not split) and the
+ *              player card count of the second (split) hand (low nibble).
+ * <li> byte  - player actions taken (A_xxx bits of 'TO_Engine').
+ * <li> byte  - result (R_xxx) of the first hand (low nibble) and of the
+ *              second hand (high nibble, 0 if none).
+ * <li> int   - bet.
+ * <li> int   - net won by the hand (bank change).
+ * <li> bytes - card codes (0 - 51), dealer cards then the player cards of
+ *              the first and second hands ('MAX_CARDS' at most).
+ * <li> byte  - first play action (A_xxx, 0 if none).
+ * <li> byte  - spare.
+ * </ul>
+ * Only the first two hands of a resplit hand are kept (cards and results),
+ * the hand count, actions and net cover all of them. <br>
+ * Records are written whole under the ring lock, so engines on several
+ * threads can share a ring.  A 'TO_HandIndex' over the ring is kept up to
+ * date as hands are added (under the same lock). <br><br>
+ * <b>Changes:</b>
+ * <ul>
+ * <li> 2026-10-18 - Initial release.
+ * <li> 2026-10-18 - Added first play action, ring can be indexed.
+ * <li> 2026-10-18 - Split hands can hold more cards, hand count kept.
+ * <li> 2026-10-18 - Index created and set by the ring ('createIndex').
+ * </ul>
+ * @author Michael G. Slack
+ * @author slack@attglobal.net
+ * @version Version 1.00
+*/
+public class TO_HandRing
+{
+    // public statics
+    /** Most cards kept with a hand (dealer and player hands). */
+    public static final int MAX_CARDS = TwentyOneProps.MAX_DRAW_CARDS * 3;
+
+    /** Size of a hand record. */
+    public static final int RECORD_SIZE = 12 + MAX_CARDS + 2; // 1 byte spare
+
+    /** Most hands a ring can hold. */
+    public static final int MAX_HANDS = Integer.MAX_VALUE / RECORD_SIZE;
+
+    // private statics - record layout
+    private static final int O_COUNTS = 0;
+    private static final int O_SPLIT = 1;
+    private static final int O_ACTIONS = 2;
+    private static final int O_RESULTS = 3;
+    private static final int O_BET = 4;
+    private static final int O_NET = 8;
+    private static final int O_CARDS = 12;
+    private static final int O_FIRST = O_CARDS + MAX_CARDS;
+    private static final String RANKS = "A23456789TJQK";
+    private static final String SUITS = "CDHS";
+
+    // private references
+    private final ByteBuffer ring;
+    private final int iCapacity;
+    private long lHands = 0L;
+    private TO_HandIndex index = null;
+
+    // ------------------------ Constructors -------------------------
+
+    /** Constructor to create a ring holding the last 'hands' hands (the
+     * direct buffer is allocated here, 'hands' * 'RECORD_SIZE' bytes).
+     * @throws IllegalArgumentException If 'hands' is less than 1 or more than
+     * 'MAX_HANDS'.
+    */
+    public TO_HandRing(int hands)
+    {
+        if ((hands < 1) || (hands > MAX_HANDS))
+            throw new IllegalArgumentException("hands must be 1 to " + MAX_HANDS);
+
+        iCapacity = hands;
+        ring = ByteBuffer.allocateDirect(hands * RECORD_SIZE);
+    }
+
+    // ------------------------ Private Methods --------------------------
+
+    /** Method to return the offset of the record of hand 'n' (held).
+     * @throws IndexOutOfBoundsException If hand 'n' is not held.
+    */
+    private int offset(long n)
+    {
+        if ((n < getFirst()) || (n >= lHands))
+            throw new IndexOutOfBoundsException("hand " + n + " not held");
+
+        return (int) (n % iCapacity) * RECORD_SIZE;
+    }
+
+    /** Method used to add a card code (as text) to a buffer. */
+    private static void appendCard(StringBuffer sb, int card)
+    {
+        sb.append(RANKS.charAt(card % TO_Shoe.RANKS));
+        sb.append(SUITS.charAt((card / TO_Shoe.RANKS) % SUITS.length()));
+    }
+
+    // ------------------------- Public Methods --------------------------
+
+    /** Method used to add the hand just finished by an engine. */
+    public synchronized void add(TO_Engine eng)
+    {
+        int off = (int) (lHands % iCapacity) * RECORD_SIZE;
+        int nd = eng.getDealerCardCount();
+        int n0 = eng.getPlayerCardCount(0);
+        int nh = eng.getHandCount();
+        int n1 = (nh > 1) ? eng.getPlayerCardCount(1) : 0;
+        int nr = eng.getResultCount();
+        int c = off + O_CARDS;
+
+        ring.put(off + O_COUNTS, (byte) ((nd << 4) | n0));
+        ring.put(off + O_SPLIT, (byte) (((nh > 1) ? nh << 4 : 0) | n1));
+        ring.put(off + O_ACTIONS, (byte) eng.getHandActions());
+        ring.put(off + O_RESULTS, (byte) (((nr > 0) ? eng.getResult(0) : 0) |
+                                          (((nr > 1) ? eng.getResult(1) : 0) << 4)));
+        ring.putInt(off + O_BET, eng.getBet());
+        ring.putInt(off + O_NET, eng.getHandNet());
+        for (int i = 0; i < nd; i++) ring.put(c++, (byte) eng.getDealerCard(i));
+        for (int i = 0; i < n0; i++) ring.put(c++, (byte) eng.getPlayerCard(0, i));
+        for (int i = 0; i < n1; i++) ring.put(c++, (byte) eng.getPlayerCard(1, i));
+        ring.put(off + O_FIRST, (byte) eng.getFirstAction());
+        lHands++;
+        if (index != null) index.add(lHands - 1);
+    }
+
+    /** Method used to empty the ring (hand numbers start over). */
+    public synchronized void clear()
+    {
+        lHands = 0L;
+        if (index != null) index.clear();
+    }
+
+    /** Method used to set the index kept up to date as hands are added
+     * (the hands held are indexed now).
+    */
+    public synchronized void setIndex(TO_HandIndex idx)
+    {
+        index = idx;
+        for (long n = getFirst(); n < lHands; n++) idx.add(n);
+    }
+
+    /** Method used to create an index over the ring and set it (see
+     * 'setIndex').  Returns the index.
+    */
+    public synchronized TO_HandIndex createIndex()
+    {
+        TO_HandIndex idx = new TO_HandIndex(this);
+
+        setIndex(idx);
+
+        return idx;
+    }
+
+    /** Method to return the index kept over the ring (null if none). */
+    public synchronized TO_HandIndex getIndex()
+    {
+        return index;
+    }
+
+    /** Method to return the number of hands the ring holds when full. */
+    public int getCapacity()
+    {
+        return iCapacity;
+    }
+
+    /** Method to return the size (bytes) of the ring buffer. */
+    public long getBytes()
+    {
+        return (long) iCapacity * RECORD_SIZE;
+    }
+
+    /** Method to return the number of hands added (the number of the next
+     * hand added).
+    */
+    public synchronized long getHands()
+    {
+        return lHands;
+    }
+
+    /** Method to return the number of the oldest hand held. */
+    public synchronized long getFirst()
+    {
+        return Math.max(0L, lHands - iCapacity);
+    }
+
+    /** Method to return the number of dealer cards of hand 'n'. */
+    public synchronized int getDealerCardCount(long n)
+    {
+        return (ring.get(offset(n) + O_COUNTS) >> 4) & 0xF;
+    }
+
+    /** Method to return dealer card 'i' (card code) of hand 'n'. */
+    public synchronized int getDealerCard(long n, int i)
+    {
+        return ring.get(offset(n) + O_CARDS + i);
+    }
+
+    /** Method to return the number of player hands (2 or more if split) of
+     * hand 'n'.
+    */
+    public synchronized int getHandCount(long n)
+    {
+        return Math.max(1, (ring.get(offset(n) + O_SPLIT) >> 4) & 0xF);
+    }
+
+    /** Method to return the number of cards in player hand 'h' of hand 'n'. */
+    public synchronized int getPlayerCardCount(long n, int h)
+    {
+        int off = offset(n);
+
+        return ((h == 0) ? ring.get(off + O_COUNTS) : ring.get(off + O_SPLIT)) & 0xF;
+    }
+
+    /** Method to return card 'i' (card code) of player hand 'h' of hand 'n'. */
+    public synchronized int getPlayerCard(long n, int h, int i)
+    {
+        int off = offset(n);
+        int counts = ring.get(off + O_COUNTS);
+        int c = ((counts >> 4) & 0xF) + ((h == 0) ? 0 : counts & 0xF);
+
+        return ring.get(off + O_CARDS + c + i);
+    }
+
+    /** Method to return the first play action (A_xxx, 0 if none) of hand
+     * 'n'.
+    */
+    public synchronized int getFirstAction(long n)
+    {
+        return ring.get(offset(n) + O_FIRST) & 0xFF;
+    }
+
+    /** Method to return the player actions (A_xxx bits) taken in hand 'n'. */
+    public synchronized int getActions(long n)
+    {
+        return ring.get(offset(n) + O_ACTIONS) & 0xFF;
+    }
+
+    /** Method to return the result (R_xxx, 0 if none) of player hand 'h' of
+     * hand 'n'.
+    */
+    public synchronized int getResult(long n, int h)
+    {
+        int r = ring.get(offset(n) + O_RESULTS);
+
+        return (h == 0) ? r & 0xF : (r >> 4) & 0xF;
+    }
+
+    /** Method to return the bet of hand 'n'. */
+    public synchronized int getBet(long n)
+    {
+        return ring.getInt(offset(n) + O_BET);
+    }
+
+    /** Method to return the net won by hand 'n'. */
+    public synchronized int getNet(long n)
+    {
+        return ring.getInt(offset(n) + O_NET);
+    }
+
+    /** Method to return hand 'n' as a line of text (dealer and player cards,
+     * actions, bet and net won).
+    */
+    public synchronized String toString(long n)
+    {
+        StringBuffer sb = new StringBuffer(80);
+        int a = getActions(n);
+
+        sb.append(String.format("%10d  D:", n));
+        for (int i = 0; i < getDealerCardCount(n); i++) {
+            sb.append(' ');
+            appendCard(sb, getDealerCard(n, i));
+        }
+        for (int h = 0; h < Math.min(2, getHandCount(n)); h++) {
+            sb.append((h == 0) ? "  P:" : " |");
+            for (int i = 0; i < getPlayerCardCount(n, h); i++) {
+                sb.append(' ');
+                appendCard(sb, getPlayerCard(n, h, i));
+            }
+        }
+        if (getHandCount(n) > 2) sb.append(" | +" + (getHandCount(n) - 2));
+        sb.append("  ");
+        if ((a & TO_Engine.A_INSURANCE) != 0) sb.append("I");
+        if ((a & TO_Engine.A_SPLIT) != 0) sb.append("P");
+        if ((a & TO_Engine.A_DOUBLE) != 0) sb.append("D");
+        if ((a & TO_Engine.A_SURRENDER) != 0) sb.append("R");
+        if ((a & TO_Engine.A_HIT) != 0) sb.append("H");
+        if ((a & TO_Engine.A_STAY) != 0) sb.append("S");
+        sb.append(String.format("  bet %d net %+d", getBet(n), getNet(n)));
+
+        return sb.toString();
+    }
+
+    /** Method to return the last 'count' hands held as text, one a line. */
+    public synchronized String getRecent(int count)
+    {
+        StringBuffer sb = new StringBuffer(count * 60 + 100);
+        long first = Math.max(getFirst(), lHands - count);
+
+        sb.append(String.format("%d hands held of %d played (ring of %d, %.1f MB off heap)%n",
+                                lHands - getFirst(), lHands, iCapacity,
+                                getBytes() / (1024.0 * 1024.0)));
+        for (long n = first; n < lHands; n++) {
+            sb.append(toString(n));
+            sb.append(String.format("%n"));
+        }
+
+        return sb.toString();
+    }
+}
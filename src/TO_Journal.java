@@ -0,0 +1,270 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/** Class used to write the append-only binary hand journal.  Every deal,
+ * player action, card drawn, hand result and bank change made by an engine
+ * (see 'TO_Engine.setJournal') is written as a fixed width record. <br>
+ * The journal file starts with a header ('HEADER_SIZE' bytes: magic number,
+ * version and the number of records at the last force) followed by the
+ * records, 'RECORD_SIZE' bytes each:
+ * <ul>
+ * <li> byte  - event type (E_xxx), 0 marks the end of the records.
+ * <li> byte  - hand (0 - 3 for player hands, 'H_DEALER' for the dealer).
+ * <li> byte  - card code (0 - 51) for cards, result (R_xxx) for results,
+ *              -1 otherwise.
+ * <li> byte  - points (results only).
+ * <li> int   - table (engine) the event came from.
+ * <li> int   - value, bet (deal, double, split), insurance cost, amount paid
+ *              (result), amount added (bank), net won (done), the number
+ *              of cards in the shoe (shuffle) or the rules code (table
+ *              opened, rules changed, 0 for the original rules).
+ * <li> int   - players bank after the event.
+ * </ul>
+ * An engine builds up the records of a hand in its own buffer and writes
+ * them in one block when the hand is done, so the hands of several tables
+ * never overlap in the journal. <br>
+ * Records are written through a memory mapped window of the file
+ * ('MAP_SIZE' bytes, moved along as it fills).  The window is forced to disk
+ * when it is moved, at least every 'FORCE_MILLIS' and on close. <br><br>
+ * <b>Changes:</b>
+ * <ul>
+ * <li> 2026-10-18 - Initial release.
+ * <li> 2026-10-18 - Added table opened event (new session for a table).
+ * <li> 2026-10-18 - Added surrender and rules changed events.
+ * <li> 2026-10-18 - Dealer hand value moved past the split hands.
+ * </ul>
+ * @author Michael G. Slack
+ * @author slack@attglobal.net
+ * @version Version 1.00
+*/
+public class TO_Journal
+{
+    // public statics - event types
+    /** Shoe was shuffled before the deal. */
+    public static final int E_SHUFFLE   = 1;
+
+    /** Hand dealt, bet taken. */
+    public static final int E_DEAL      = 2;
+
+    /** Card dealt to a hand. */
+    public static final int E_CARD      = 3;
+
+    /** Player hit. */
+    public static final int E_HIT       = 4;
+
+    /** Player stayed. */
+    public static final int E_STAY      = 5;
+
+    /** Player doubled down. */
+    public static final int E_DOUBLE    = 6;
+
+    /** Player split. */
+    public static final int E_SPLIT     = 7;
+
+    /** Player bought insurance. */
+    public static final int E_INSURANCE = 8;
+
+    /** Hand scored. */
+    public static final int E_RESULT    = 9;
+
+    /** Hand finished. */
+    public static final int E_DONE      = 10;
+
+    /** Money added to the bank. */
+    public static final int E_BANK      = 11;
+
+    /** Table opened (engine started writing to the journal). */
+    public static final int E_OPEN      = 12;
+
+    /** Player surrendered. */
+    public static final int E_SURRENDER = 13;
+
+    /** Table rules changed (between hands). */
+    public static final int E_RULES     = 14;
+
+    // public statics - layout
+    /** Hand value used for the dealers hand. */
+    public static final int H_DEALER = 15;
+
+    /** Journal file magic number ("TO21"). */
+    public static final int MAGIC = 0x544F3231;
+
+    /** Journal file version. */
+    public static final int VERSION = 1;
+
+    /** Size of the journal file header. */
+    public static final int HEADER_SIZE = 16;
+
+    /** Size of a record. */
+    public static final int RECORD_SIZE = 16;
+
+    /** Most records a single hand can write. */
+    public static final int MAX_HAND_RECORDS = 64;
+
+    /** Size of the memory mapped window of the file. */
+    public static final int MAP_SIZE = 16 * 1024 * 1024;
+
+    /** Longest time between forcing the records to disk. */
+    public static final long FORCE_MILLIS = 1000L;
+
+    // private references
+    private RandomAccessFile raf = null;
+    private FileChannel fc = null;
+    private MappedByteBuffer map = null;
+    private long lMapStart = 0L;
+    private long lRecords = 0L;
+    private long lForced = 0L;
+    private long lLastForce = 0L;
+    private boolean bFailed = false;
+
+    // ------------------------ Constructors -------------------------
+
+    /** Constructor to open (or create) a journal, new records are added
+     * after the ones already in it.
+     * @param f Journal file.
+     * @throws IOException If the file can't be opened or is not a journal.
+    */
+    public TO_Journal(File f) throws IOException
+    {
+        raf = new RandomAccessFile(f, "rw");
+        fc = raf.getChannel();
+
+        try {
+            if (raf.length() >= HEADER_SIZE) {
+                if ((raf.readInt() != MAGIC) || (raf.readInt() != VERSION))
+                    throw new IOException("Not a TwentyOne journal: " + f);
+                lRecords = raf.readLong();
+            }
+            else {
+                writeHeader();
+            }
+            mapAt(HEADER_SIZE + lRecords * RECORD_SIZE);
+
+            // pick up any records written after the last force
+            while (map.get(map.position()) != 0) {
+                map.position(map.position() + RECORD_SIZE);
+                lRecords++;
+                if (map.remaining() < RECORD_SIZE) mapAt(lMapStart + map.position());
+            }
+        }
+        catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+        lForced = lRecords;
+        lLastForce = System.currentTimeMillis();
+    }
+
+    // ------------------------ Private Methods --------------------------
+
+    /** Method used to write the header (with the record count). */
+    private void writeHeader() throws IOException
+    {
+        ByteBuffer b = ByteBuffer.allocate(HEADER_SIZE);
+
+        b.putInt(MAGIC).putInt(VERSION).putLong(lRecords).flip();
+        while (b.hasRemaining()) fc.write(b, b.position());
+    }
+
+    /** Method used to map the window of the file starting at 'pos'. */
+    private void mapAt(long pos) throws IOException
+    {
+        if (map != null) map.force();
+        lMapStart = pos;
+        map = fc.map(FileChannel.MapMode.READ_WRITE, pos, MAP_SIZE);
+    }
+
+    // ------------------------- Public Methods --------------------------
+
+    /** Method used to put a record into a (hand) buffer.
+     * @param b Buffer to put the record into.
+     * @param type Event type (E_xxx).
+     * @param hand Hand (or 'H_DEALER').
+     * @param card Card code or result, -1 if none.
+     * @param pts Points.
+     * @param table Table (engine) number.
+     * @param value Event value (see class notes).
+     * @param bank Players bank after the event.
+    */
+    public static void putRecord(ByteBuffer b, int type, int hand, int card, int pts,
+                                 int table, int value, int bank)
+    {
+        b.put((byte) type).put((byte) hand).put((byte) card).put((byte) pts);
+        b.putInt(table).putInt(value).putInt(bank);
+    }
+
+    /** Method used to append a block of records (buffer position up to its
+     * limit) to the journal.  Write errors are reported once, the journal
+     * stops writing after an error (see 'isFailed').
+    */
+    public synchronized void write(ByteBuffer block)
+    {
+        if ((bFailed) || (map == null)) return; // closed
+
+        try {
+            int n = block.remaining();
+
+            if (map.remaining() < n) mapAt(lMapStart + map.position());
+            map.put(block);
+            lRecords += n / RECORD_SIZE;
+
+            long now = System.currentTimeMillis();
+            if (now - lLastForce >= FORCE_MILLIS) force();
+        }
+        catch (IOException e) {
+            System.err.println("Journal write failed: " + e);
+            bFailed = true;
+        }
+    }
+
+    /** Method used to force the records written to disk (and update the
+     * record count in the header).
+    */
+    public synchronized void force() throws IOException
+    {
+        lLastForce = System.currentTimeMillis();
+        if (lForced == lRecords) return;
+
+        map.force();
+        writeHeader();
+        lForced = lRecords;
+    }
+
+    /** Method used to force the records to disk and close the journal.  The
+     * file is cut back to the records written.
+    */
+    public synchronized void close() throws IOException
+    {
+        if (!fc.isOpen()) return;
+
+        try {
+            force();
+            map = null;
+            try {
+                fc.truncate(HEADER_SIZE + lRecords * RECORD_SIZE);
+            }
+            catch (IOException e) {
+                // can't cut the file while mapped on some systems, zeros end it
+            }
+        }
+        finally {
+            raf.close();
+        }
+    }
+
+    /** Method to return the number of records in the journal. */
+    public synchronized long getRecords()
+    {
+        return lRecords;
+    }
+
+    /** Method to return true if a write to the journal failed. */
+    public synchronized boolean isFailed()
+    {
+        return bFailed;
+    }
+}
@@ -0,0 +1,147 @@
+import java.awt.*;
+import java.awt.event.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.swing.*;
+
+/** Class defines the message feed shown in the game window in place of the
+ * message dialogs.  Messages are shown in a toast line (cleared after a few
+ * seconds) and kept in a scrolling log of the last so many lines.  Nothing
+ * waits on the player to read them. <br>
+ * Messages can be posted from any thread, they are queued and the queue is
+ * drained on the event dispatch thread in one pass (one pending drain at a
+ * time), so a burst of messages costs one screen update.  A message that is
+ * the same as the last one logged is counted on that line instead of adding
+ * another. <br><br>
+ * <b>Changes:</b>
+ * <ul>
+ * <li> 2026-10-18 - Initial release.
+ * </ul>
+ * @author Michael G. Slack
+ * @author slack@attglobal.net
+ * @version Version 1.00
+*/
+public class TO_MessageFeed extends JPanel
+{
+    // public statics
+    /** Default most lines kept in the log. */
+    public static final int DEF_MAX_LINES = 200;
+
+    /** Time (milliseconds) the toast line is shown. */
+    public static final int TOAST_MILLIS = 4000;
+
+    // private statics
+    private static final int LOG_ROWS = 3;
+
+    // components used by the feed
+    private JLabel lblToast = new JLabel(" ");
+    private JTextArea taLog = new JTextArea(LOG_ROWS, 40);
+
+    // references
+    private ConcurrentLinkedQueue<String> queue = new ConcurrentLinkedQueue<String>();
+    private AtomicBoolean drainPosted = new AtomicBoolean();
+    private javax.swing.Timer toastTimer = null;
+    private int iMaxLines = DEF_MAX_LINES;
+    private String sLast = null;
+    private int iRepeats = 0;
+
+    // ------------------------ Constructors -------------------------
+
+    /** Constructor to create the feed keeping the default number of lines. */
+    public TO_MessageFeed()
+    {
+        this(DEF_MAX_LINES);
+    }
+
+    /** Constructor to create the feed.
+     * @param maxLines Most lines kept in the log.
+    */
+    public TO_MessageFeed(int maxLines)
+    {
+        super(new BorderLayout());
+        iMaxLines = maxLines;
+
+        lblToast.setFont(new Font("Helvetica", Font.BOLD, 12));
+        lblToast.setHorizontalAlignment(SwingConstants.CENTER);
+        taLog.setFont(new Font("Helvetica", Font.PLAIN, 11));
+        taLog.setEditable(false);
+        taLog.setLineWrap(true);
+        taLog.setWrapStyleWord(true);
+        add(lblToast, BorderLayout.NORTH);
+        add(new JScrollPane(taLog, JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED,
+                            JScrollPane.HORIZONTAL_SCROLLBAR_NEVER), BorderLayout.CENTER);
+
+        toastTimer = new javax.swing.Timer(TOAST_MILLIS, new ActionListener() {
+                                               public void actionPerformed(ActionEvent e) {
+                                                   lblToast.setText(" ");
+                                               }
+                                           });
+        toastTimer.setRepeats(false);
+    }
+
+    // ------------------------ Private Methods --------------------------
+
+    /** Method used to add a line to the log (on the event dispatch thread),
+     * counts it on the last line if it is the same message.
+    */
+    private void logLine(String msg)
+    {
+        try {
+            if (msg.equals(sLast)) {
+                int n = taLog.getLineCount() - 1;
+                int start = taLog.getLineStartOffset(n - 1);
+                iRepeats++;
+                taLog.replaceRange(msg + " (x" + iRepeats + ")\n", start,
+                                   taLog.getLineEndOffset(n - 1));
+                return;
+            }
+
+            sLast = msg;
+            iRepeats = 1;
+            taLog.append(msg + "\n");
+            int extra = taLog.getLineCount() - 1 - iMaxLines;
+            if (extra > 0) taLog.replaceRange("", 0, taLog.getLineStartOffset(extra));
+        }
+        catch (javax.swing.text.BadLocationException e) { } // can't happen, line known
+    }
+
+    /** Method used to show the messages queued (on the event dispatch
+     * thread).
+    */
+    private void drain()
+    {
+        String msg;
+        String sToast = null;
+
+        drainPosted.set(false);
+        while ((msg = queue.poll()) != null) {
+            String[] lines = msg.split("\n");
+            for (int i = 0; i < lines.length; i++) {
+                if (lines[i].trim().length() > 0) logLine(lines[i].trim());
+            }
+            sToast = msg.trim().replaceAll("\\s*\n\\s*", " ");
+        }
+        if (sToast == null) return;
+
+        lblToast.setText(sToast);
+        taLog.setCaretPosition(taLog.getDocument().getLength());
+        toastTimer.restart();
+    }
+
+    // ------------------------- Public Methods --------------------------
+
+    /** Method used to post a message to the feed, does not wait (can be
+     * called from any thread).  Lines of a message are logged separately.
+    */
+    public void post(String msg)
+    {
+        queue.add(msg);
+        if (drainPosted.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(new Runnable() {
+                                           public void run() {
+                                               drain();
+                                           }
+                                       });
+        }
+    }
+}
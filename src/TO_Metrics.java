@@ -0,0 +1,492 @@
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongBinaryOperator;
+import javax.management.ObjectName;
+
+/** Class used to keep the game and engine telemetry: hands, reshuffles,
+ * results, player actions, bank and a latency histogram for each player
+ * action.  An engine counts into the metrics set on it ('setMetrics'), any
+ * number of engines (tables, simulator workers) can share one. <br>
+ * Counts are striped adders ('LongAdder') so engines on many threads can
+ * count at once without a lock or a shared cache line.  Latencies go in
+ * power of two nanosecond buckets, percentiles are reported as the top of
+ * the bucket they fall in.  Reading the clock costs more than counting, so
+ * a busy run (simulator) can time one action in so many per engine. <br>
+ * The metrics can be registered as an MBean ('register', seen with
+ * jconsole/VisualVM) and dumped as plain text on a timer ('startDump').
+ * <br><br>
+ * <b>Changes:</b>
+ * <ul>
+ * <li> 2026-10-18 - Initial release.
+ * <li> 2026-10-18 - Added surrender action and count.
+ * </ul>
+ * @author Michael G. Slack
+ * @author slack@attglobal.net
+ * @version Version 1.00
+*/
+public class TO_Metrics implements TO_MetricsMBean
+{
+    // public statics - player actions timed
+    /** Hand dealt (bet taken, 'startHand'). */
+    public static final int ACT_DEAL      = 0;
+
+    /** Hit action. */
+    public static final int ACT_HIT       = 1;
+
+    /** Stay action. */
+    public static final int ACT_STAY      = 2;
+
+    /** Double action. */
+    public static final int ACT_DOUBLE    = 3;
+
+    /** Split action. */
+    public static final int ACT_SPLIT     = 4;
+
+    /** Insurance action. */
+    public static final int ACT_INSURANCE = 5;
+
+    /** Surrender action. */
+    public static final int ACT_SURRENDER = 6;
+
+    /** Number of actions timed. */
+    public static final int ACT_COUNT     = 7;
+
+    /** MBean domain (the name is added to it). */
+    public static final String MBEAN_DOMAIN = "TwentyOne";
+
+    // private statics
+    private static final String[] ACT_NAMES = {"Deal", "Hit", "Stay", "Double", "Split",
+                                               "Insurance", "Surrender"};
+    private static final int BUCKETS = 40; // up to about 9 minutes
+    private static final LongBinaryOperator MAX = new LongBinaryOperator() {
+                                                      public long applyAsLong(long a, long b) {
+                                                          return Math.max(a, b);
+                                                      }
+                                                  };
+
+    // private references
+    private LongAdder hands = new LongAdder();
+    private LongAdder reshuffles = new LongAdder();
+    private LongAdder cards = new LongAdder();
+    private LongAdder wins = new LongAdder();
+    private LongAdder losses = new LongAdder();
+    private LongAdder pushes = new LongAdder();
+    private LongAdder playerFives = new LongAdder();
+    private LongAdder dealerFives = new LongAdder();
+    private LongAdder splits = new LongAdder();
+    private LongAdder doubles = new LongAdder();
+    private LongAdder insurance = new LongAdder();
+    private LongAdder surrenders = new LongAdder();
+    private LongAccumulator peakBank = new LongAccumulator(MAX, 0L);
+    private Histogram[] latencies = new Histogram[ACT_COUNT];
+    private int iSampleMask = 0;
+    private volatile TO_Engine table = null;
+    private volatile long lStart = System.nanoTime();
+    private Timer dumpTimer = null;
+
+    // ------------------------ Constructors -------------------------
+
+    /** Constructor to create the (empty) metrics, every action is timed. */
+    public TO_Metrics()
+    {
+        this(1);
+    }
+
+    /** Constructor to create the (empty) metrics.
+     * @param timeEvery Time one action in this many (rounded up to a power
+     * of two) per engine.
+    */
+    public TO_Metrics(int timeEvery)
+    {
+        int n = 1;
+
+        for (int i = 0; i < ACT_COUNT; i++) latencies[i] = new Histogram();
+        while (n < timeEvery) n <<= 1;
+        iSampleMask = n - 1;
+    }
+
+    // ------------------------- Public Methods --------------------------
+
+    /** Method to return the mask an engine action count is checked with,
+     * actions where the masked count is zero are timed.
+    */
+    public int getSampleMask()
+    {
+        return iSampleMask;
+    }
+
+    /** Method used to count a hand dealt. */
+    public void handDealt()
+    {
+        hands.increment();
+    }
+
+    /** Method used to count a shoe reshuffle. */
+    public void reshuffled()
+    {
+        reshuffles.increment();
+    }
+
+    /** Method used to count the cards dealt (in a hand). */
+    public void cardsDealt(int n)
+    {
+        cards.add(n);
+    }
+
+    /** Method used to count a hand result (a TO_Engine.R_xxx value). */
+    public void result(int r)
+    {
+        switch (r) {
+            case TO_Engine.R_PUSH:
+                pushes.increment();
+                break;
+            case TO_Engine.R_PLAYER_FIVE:
+                playerFives.increment();
+                wins.increment();
+                break;
+            case TO_Engine.R_PLAYER:
+                wins.increment();
+                break;
+            case TO_Engine.R_DEALER_FIVE:
+                dealerFives.increment();
+                losses.increment();
+                break;
+            default:
+                losses.increment();
+        }
+    }
+
+    /** Method used to count a split. */
+    public void split()
+    {
+        splits.increment();
+    }
+
+    /** Method used to count a double. */
+    public void doubled()
+    {
+        doubles.increment();
+    }
+
+    /** Method used to count insurance taken. */
+    public void insured()
+    {
+        insurance.increment();
+    }
+
+    /** Method used to count a surrender. */
+    public void surrendered()
+    {
+        surrenders.increment();
+    }
+
+    /** Method used to pass on a new high bank of a table. */
+    public void bankHigh(int bank)
+    {
+        peakBank.accumulate(bank);
+    }
+
+    /** Method used to add the time taken by a player action.
+     * @param act Action (one of the ACT_xxx values).
+     * @param nanos Time taken (nanoseconds).
+    */
+    public void action(int act, long nanos)
+    {
+        latencies[act].add(nanos);
+    }
+
+    /** Method used to set the table (engine) the bank and cards left come
+     * from (null for none).
+    */
+    public void setTable(TO_Engine engine)
+    {
+        table = engine;
+    }
+
+    /** Method used to register the metrics as an MBean (named
+     * 'TwentyOne:type=Metrics,name=<name>').  Returns false if it could not
+     * be registered.
+    */
+    public boolean register(String name)
+    {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+                    new ObjectName(MBEAN_DOMAIN + ":type=Metrics,name=" + name));
+        }
+        catch (Exception e) {
+            System.err.println("Metrics MBean not registered: " + e);
+            return false;
+        }
+
+        return true;
+    }
+
+    /** Method used to print the report every so many seconds (on a
+     * background thread) until 'stopDump' is called.  The hands per second
+     * since the last report are added to each one.
+    */
+    public synchronized void startDump(final PrintStream out, long seconds)
+    {
+        stopDump();
+        dumpTimer = new Timer("metrics-dump", true);
+        dumpTimer.scheduleAtFixedRate(new TimerTask() {
+                                          private long lHands = getHandsDealt();
+                                          private long lLast = System.nanoTime();
+                                          public void run() {
+                                              long h = getHandsDealt();
+                                              long now = System.nanoTime();
+                                              double rate = (h - lHands) * 1e9 /
+                                                            Math.max(1L, now - lLast);
+                                              lHands = h;
+                                              lLast = now;
+                                              out.print(String.format("-- metrics (%.0f hands/s)%n",
+                                                                      rate) + getReport());
+                                              out.flush();
+                                          }
+                                      }, seconds * 1000L, seconds * 1000L);
+    }
+
+    /** Method used to stop the timed reports. */
+    public synchronized void stopDump()
+    {
+        if (dumpTimer != null) dumpTimer.cancel();
+        dumpTimer = null;
+    }
+
+    /** Method to return the number of hands dealt. */
+    public long getHandsDealt()
+    {
+        return hands.sum();
+    }
+
+    /** Method to return the hands dealt per second (since created). */
+    public double getHandsPerSecond()
+    {
+        return hands.sum() * 1e9 / Math.max(1L, System.nanoTime() - lStart);
+    }
+
+    /** Method to return the number of shoe reshuffles. */
+    public long getReshuffles()
+    {
+        return reshuffles.sum();
+    }
+
+    /** Method to return the number of cards dealt. */
+    public long getCardsDealt()
+    {
+        return cards.sum();
+    }
+
+    /** Method to return the number of hands (split hands count) won. */
+    public long getWins()
+    {
+        return wins.sum();
+    }
+
+    /** Method to return the number of hands (split hands count) lost. */
+    public long getLosses()
+    {
+        return losses.sum();
+    }
+
+    /** Method to return the number of hands (split hands count) pushed. */
+    public long getPushes()
+    {
+        return pushes.sum();
+    }
+
+    /** Method to return the number of five card wins by the player. */
+    public long getPlayerFiveCards()
+    {
+        return playerFives.sum();
+    }
+
+    /** Method to return the number of five card wins by the dealer. */
+    public long getDealerFiveCards()
+    {
+        return dealerFives.sum();
+    }
+
+    /** Method to return the number of hands split. */
+    public long getSplits()
+    {
+        return splits.sum();
+    }
+
+    /** Method to return the number of hands doubled. */
+    public long getDoubles()
+    {
+        return doubles.sum();
+    }
+
+    /** Method to return the number of times insurance was taken. */
+    public long getInsuranceTaken()
+    {
+        return insurance.sum();
+    }
+
+    /** Method to return the number of hands surrendered. */
+    public long getSurrenders()
+    {
+        return surrenders.sum();
+    }
+
+    /** Method to return the bank of the table watched (0 if none). */
+    public int getBank()
+    {
+        TO_Engine e = table;
+
+        return (e == null) ? 0 : e.getBank();
+    }
+
+    /** Method to return the highest bank seen at the end of a hand. */
+    public long getPeakBank()
+    {
+        return peakBank.get();
+    }
+
+    /** Method to return the cards left in the shoe of the table watched
+     * (0 if none).
+    */
+    public int getCardsLeft()
+    {
+        TO_Engine e = table;
+
+        return (e == null) ? 0 : e.getCardsLeft();
+    }
+
+    /** Method to return the player action latencies as a report string. */
+    public String getActionLatencies()
+    {
+        StringBuffer sb = new StringBuffer(500);
+
+        sb.append(String.format("%-10s %10s %10s %10s %10s %10s%n", "Action", "Timed",
+                                "Avg", "P50", "P99", "Max"));
+        for (int i = 0; i < ACT_COUNT; i++) {
+            sb.append(String.format("%-10s ", ACT_NAMES[i]));
+            sb.append(latencies[i].toString());
+            sb.append(String.format("%n"));
+        }
+
+        return sb.toString();
+    }
+
+    /** Method to return all of the metrics as a report string. */
+    public String getReport()
+    {
+        StringBuffer sb = new StringBuffer(1000);
+
+        sb.append(String.format("Hands %d (%.0f/s), reshuffles %d, cards %d%n", getHandsDealt(),
+                                getHandsPerSecond(), getReshuffles(), getCardsDealt()));
+        sb.append(String.format("Wins %d, losses %d, pushes %d, five cards %d player / " +
+                                "%d dealer%n", getWins(), getLosses(), getPushes(),
+                                getPlayerFiveCards(), getDealerFiveCards()));
+        sb.append(String.format("Splits %d, doubles %d, insurance %d, surrenders %d%n",
+                                getSplits(), getDoubles(), getInsuranceTaken(),
+                                getSurrenders()));
+        sb.append(String.format("Bank %d (peak %d), cards left %d%n", getBank(), getPeakBank(),
+                                getCardsLeft()));
+        sb.append(getActionLatencies());
+
+        return sb.toString();
+    }
+
+    /** Method used to zero all of the counts and latencies. */
+    public void reset()
+    {
+        hands.reset();
+        reshuffles.reset();
+        cards.reset();
+        wins.reset();
+        losses.reset();
+        pushes.reset();
+        playerFives.reset();
+        dealerFives.reset();
+        splits.reset();
+        doubles.reset();
+        insurance.reset();
+        surrenders.reset();
+        peakBank.reset();
+        for (int i = 0; i < ACT_COUNT; i++) latencies[i].reset();
+        lStart = System.nanoTime();
+    }
+
+    /** Method to return the metrics as a report string. */
+    public String toString()
+    {
+        return getReport();
+    }
+
+    // ---------------------- Inner Classes -------------------------
+
+    /**
+     * Class used to hold a latency histogram, power of two nanosecond
+     * buckets (bucket 'b' holds times below 2^b).
+    */
+    private static final class Histogram
+    {
+        private LongAdder[] buckets = new LongAdder[BUCKETS];
+        private LongAdder total = new LongAdder();
+        private LongAccumulator max = new LongAccumulator(MAX, 0L);
+
+        /** Constructor - empty histogram. */
+        Histogram()
+        {
+            for (int i = 0; i < BUCKETS; i++) buckets[i] = new LongAdder();
+        }
+
+        /** Method used to add a time (nanoseconds). */
+        void add(long nanos)
+        {
+            if (nanos < 0L) nanos = 0L;
+            buckets[Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos))].increment();
+            total.add(nanos);
+            max.accumulate(nanos);
+        }
+
+        /** Method used to empty the histogram. */
+        void reset()
+        {
+            for (int i = 0; i < BUCKETS; i++) buckets[i].reset();
+            total.reset();
+            max.reset();
+        }
+
+        /** Method to return the top of the bucket a percentile falls in. */
+        private long percentile(long[] counts, long n, double pct)
+        {
+            long want = (long) Math.ceil(n * pct);
+            long seen = 0L;
+
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= want) return 1L << i;
+            }
+
+            return max.get();
+        }
+
+        /** Method to return the count and times (microseconds) as a string. */
+        public String toString()
+        {
+            long[] counts = new long[BUCKETS];
+            long n = 0L;
+
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets[i].sum();
+                n += counts[i];
+            }
+            if (n == 0L) return String.format("%10d %10s %10s %10s %10s", 0, "-", "-", "-", "-");
+
+            return String.format("%10d %8.2fus %8.2fus %8.2fus %8.2fus", n,
+                                 total.sum() / (double) n / 1e3,
+                                 Math.min(percentile(counts, n, 0.50), max.get()) / 1e3,
+                                 Math.min(percentile(counts, n, 0.99), max.get()) / 1e3,
+                                 max.get() / 1e3);
+        }
+    }
+}
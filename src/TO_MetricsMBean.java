@@ -0,0 +1,73 @@
+/** Interface defines the management (JMX) view of the game and engine
+ * telemetry kept by 'TO_Metrics'.  Counts are totals since the metrics were
+ * created (or last reset). <br><br>
+ * <b>Changes:</b>
+ * <ul>
+ * <li> 2026-10-18 - Initial release.
+ * <li> 2026-10-18 - Added surrenders.
+ * </ul>
+ * @author Michael G. Slack
+ * @author slack@attglobal.net
+ * @version Version 1.00
+*/
+public interface TO_MetricsMBean
+{
+    /** Method to return the number of hands dealt. */
+    public long getHandsDealt();
+
+    /** Method to return the hands dealt per second (since created). */
+    public double getHandsPerSecond();
+
+    /** Method to return the number of shoe reshuffles. */
+    public long getReshuffles();
+
+    /** Method to return the number of cards dealt. */
+    public long getCardsDealt();
+
+    /** Method to return the number of hands (split hands count) won. */
+    public long getWins();
+
+    /** Method to return the number of hands (split hands count) lost. */
+    public long getLosses();
+
+    /** Method to return the number of hands (split hands count) pushed. */
+    public long getPushes();
+
+    /** Method to return the number of five card wins by the player. */
+    public long getPlayerFiveCards();
+
+    /** Method to return the number of five card wins by the dealer. */
+    public long getDealerFiveCards();
+
+    /** Method to return the number of hands split. */
+    public long getSplits();
+
+    /** Method to return the number of hands doubled. */
+    public long getDoubles();
+
+    /** Method to return the number of times insurance was taken. */
+    public long getInsuranceTaken();
+
+    /** Method to return the number of hands surrendered. */
+    public long getSurrenders();
+
+    /** Method to return the bank of the table watched (0 if none). */
+    public int getBank();
+
+    /** Method to return the highest bank seen at the end of a hand. */
+    public long getPeakBank();
+
+    /** Method to return the cards left in the shoe of the table watched
+     * (0 if none).
+    */
+    public int getCardsLeft();
+
+    /** Method to return the player action latencies as a report string. */
+    public String getActionLatencies();
+
+    /** Method to return all of the metrics as a report string. */
+    public String getReport();
+
+    /** Method used to zero all of the counts and latencies. */
+    public void reset();
+}
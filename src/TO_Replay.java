@@ -0,0 +1,487 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/** Class used to replay the hands in a hand journal ('TO_Journal') through
+ * the rules engine and check the outcomes.  Each recorded hand is dealt from
+ * its recorded cards ('startHand', 'checkHands', the player actions, the
+ * dealer finishing off and scoring all done by 'TO_Engine') and the results,
+ * points and bank are compared with the ones recorded.  The bank before each
+ * hand is also checked against the bank the table had after its last hand.
+ * Each hand is played under the rules its table had when it was dealt
+ * (from the table opened and rules changed records). <br>
+ * The journal is read in order through a fixed size buffer (files bigger
+ * than memory can be replayed) and records are parsed into fields, nothing
+ * is created per record or hand.  A step listener can be set to watch (and
+ * pace) the hand as it is replayed, the game window uses this to show a
+ * replay in its playing areas. <br>
+ * Usage: java TO_Replay journal file <br><br>
+ * <b>Changes:</b>
+ * <ul>
+ * <li> 2026-10-18 - Initial release.
+ * <li> 2026-10-18 - Hands replayed under the table rules, added surrender.
+ * <li> 2026-10-18 - Replay shoe never reshuffles for cards held back.
+ * </ul>
+ * @author Michael G. Slack
+ * @author slack@attglobal.net
+ * @version Version 1.00
+*/
+public class TO_Replay
+{
+    // public statics
+    /** Size of the read buffer. */
+    public static final int READ_SIZE = 1024 * 1024;
+
+    /** Most mismatches described in the report (all are counted). */
+    public static final int MAX_REPORTED = 20;
+
+    // private references
+    private RandomAccessFile raf = null;
+    private FileChannel fc = null;
+    private ByteBuffer buf = ByteBuffer.allocateDirect(READ_SIZE);
+    private ReplayShoe shoe = new ReplayShoe();
+    private TO_Engine engine = new TO_Engine(shoe, 0);
+    private Runnable stepListener = null;
+    private boolean bEOF = false;
+
+    // current record
+    private int rType = 0;
+    private int rHand = 0;
+    private int rCard = 0;
+    private int rPts = 0;
+    private int rTable = 0;
+    private int rValue = 0;
+    private int rBank = 0;
+
+    // current hand
+    private int iTable = 0;
+    private int iBet = 0;
+    private int iStartBank = 0;
+    private int iEndBank = 0;
+    private int[] hCards = new int[TO_Journal.MAX_HAND_RECORDS];
+    private int iCardCount = 0;
+    private int[] hActions = new int[TO_Journal.MAX_HAND_RECORDS];
+    private int iActionCount = 0;
+    private int[] hResults = new int[TO_Engine.MAX_HANDS];
+    private int[] hResultPts = new int[TO_Engine.MAX_HANDS];
+    private int iResultCount = 0;
+
+    // table banks (bank after the last hand or bank change)
+    private int[] tableBanks = new int[16];
+    private boolean[] tableSeen = new boolean[16];
+    private TO_Rules[] tableRules = new TO_Rules[16];
+
+    // totals
+    private long lRecords = 0L;
+    private long lHands = 0L;
+    private long lShuffles = 0L;
+    private long lMismatches = 0L;
+    private boolean bIncomplete = false;
+    private StringBuffer sbReport = new StringBuffer(200);
+
+    // ------------------------ Constructors -------------------------
+
+    /** Constructor to open a journal for replay.
+     * @param f Journal file.
+     * @throws IOException If the file can't be opened or is not a journal.
+    */
+    public TO_Replay(File f) throws IOException
+    {
+        raf = new RandomAccessFile(f, "r");
+        fc = raf.getChannel();
+
+        try {
+            if ((raf.length() < TO_Journal.HEADER_SIZE) || (raf.readInt() != TO_Journal.MAGIC) ||
+                (raf.readInt() != TO_Journal.VERSION))
+                throw new IOException("Not a TwentyOne journal: " + f);
+        }
+        catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+        fc.position(TO_Journal.HEADER_SIZE);
+        buf.limit(0);
+    }
+
+    // ------------------------ Private Methods --------------------------
+
+    /** Method used to read the next record into the record fields.  Returns
+     * false at the end of the journal.
+    */
+    private boolean readRecord() throws IOException
+    {
+        if (bEOF) return false;
+
+        if (buf.remaining() < TO_Journal.RECORD_SIZE) { // read in more
+            buf.compact();
+            while ((buf.hasRemaining()) && (fc.read(buf) > 0)) { }
+            buf.flip();
+            if (buf.remaining() < TO_Journal.RECORD_SIZE) {
+                bEOF = true;
+                return false;
+            }
+        }
+
+        rType = buf.get();
+        rHand = buf.get();
+        rCard = buf.get();
+        rPts = buf.get();
+        rTable = buf.getInt();
+        rValue = buf.getInt();
+        rBank = buf.getInt();
+        if (rType == 0) { // end of records
+            bEOF = true;
+            return false;
+        }
+        lRecords++;
+
+        return true;
+    }
+
+    /** Method used to make sure the table banks hold table 't'. */
+    private void ensureTable(int t)
+    {
+        if (t < tableBanks.length) return;
+
+        int n = Math.max(t + 1, tableBanks.length * 2);
+        tableBanks = java.util.Arrays.copyOf(tableBanks, n);
+        tableSeen = java.util.Arrays.copyOf(tableSeen, n);
+        tableRules = java.util.Arrays.copyOf(tableRules, n);
+    }
+
+    /** Method used to count (and describe) a mismatch in the current hand. */
+    private void mismatch(String sWhat, int expected, int actual)
+    {
+        lMismatches++;
+        if (lMismatches > MAX_REPORTED) return;
+
+        sbReport.append("Hand ");
+        sbReport.append(lHands);
+        sbReport.append(" (table ");
+        sbReport.append(iTable);
+        sbReport.append("): ");
+        sbReport.append(sWhat);
+        sbReport.append(" recorded ");
+        sbReport.append(expected);
+        sbReport.append(", replayed ");
+        sbReport.append(actual);
+        sbReport.append("\n");
+    }
+
+    /** Method used to set the rules of table 't' from a rules code (0 for
+     * the original rules).  A bad code is counted as a mismatch and the
+     * original rules are used.
+    */
+    private void setTableRules(int t, int code)
+    {
+        try {
+            tableRules[t] = (code == 0) ? TO_Rules.DEFAULT : TO_Rules.fromCode(code);
+        }
+        catch (IllegalArgumentException e) {
+            iTable = t;
+            mismatch("rules code", code, 0);
+            tableRules[t] = TO_Rules.DEFAULT;
+        }
+    }
+
+    /** Method used to tell the step listener (if any) the engine changed. */
+    private void step()
+    {
+        if (stepListener != null) stepListener.run();
+    }
+
+    /** Method used to run a recorded player action, returns false if the
+     * engine would not allow it.
+    */
+    private boolean runAction(int type)
+    {
+        switch (type) {
+            case TO_Journal.E_HIT:       return engine.hit();
+            case TO_Journal.E_STAY:      return engine.stay();
+            case TO_Journal.E_DOUBLE:    return engine.doubleDown();
+            case TO_Journal.E_SPLIT:     return engine.split();
+            case TO_Journal.E_INSURANCE: return engine.insurance();
+            case TO_Journal.E_SURRENDER: return engine.surrender();
+            default:                     return false;
+        }
+    }
+
+    /** Method used to replay the hand read in and check the outcome. */
+    private void replayHand()
+    {
+        if ((engine.getState() == TO_Engine.ST_DEALT) ||
+            (engine.getState() == TO_Engine.ST_PLAYER)) // left mid hand by a mismatch
+            engine = new TO_Engine(shoe, 0);
+        ensureTable(iTable);
+        engine.setRules((tableRules[iTable] == null) ? TO_Rules.DEFAULT : tableRules[iTable]);
+        engine.clearHands();
+        engine.addToBank(iStartBank - engine.getBank());
+        shoe.load(hCards, iCardCount);
+
+        if ((tableSeen[iTable]) && (tableBanks[iTable] != iStartBank))
+            mismatch("starting bank", tableBanks[iTable], iStartBank);
+
+        if (!engine.startHand(iBet)) {
+            mismatch("deal (bet)", iBet, engine.getBank());
+            return;
+        }
+        step();
+        engine.checkHands();
+        step();
+        for (int i = 0; i < iActionCount; i++) {
+            if (!runAction(hActions[i])) mismatch("action not allowed", hActions[i], 0);
+            step();
+        }
+
+        if (engine.getState() != TO_Engine.ST_DONE)
+            mismatch("hand state", TO_Engine.ST_DONE, engine.getState());
+        if (engine.getResultCount() != iResultCount)
+            mismatch("results", iResultCount, engine.getResultCount());
+        for (int i = 0; i < Math.min(iResultCount, engine.getResultCount()); i++) {
+            if (engine.getResult(i) != hResults[i])
+                mismatch("result", hResults[i], engine.getResult(i));
+            if (engine.getResultPoints(i) != hResultPts[i])
+                mismatch("result points", hResultPts[i], engine.getResultPoints(i));
+        }
+        if (engine.getBank() != iEndBank) mismatch("bank", iEndBank, engine.getBank());
+        if (shoe.getCardsLeft() != 0) mismatch("cards used", iCardCount, iCardCount - shoe.getCardsLeft());
+
+        tableBanks[iTable] = iEndBank;
+        tableSeen[iTable] = true;
+    }
+
+    // ------------------------- Public Methods --------------------------
+
+    /** Method used to set the listener told each time the replay changes
+     * the engine (deal, check, each action).  The listener is run on the
+     * replay thread.
+    */
+    public void setStepListener(Runnable r)
+    {
+        stepListener = r;
+    }
+
+    /** Method used to read and replay the next hand in the journal.  Bank
+     * changes between hands are applied to the tables as they are read.
+     * Returns false at the end of the journal.
+    */
+    public boolean next() throws IOException
+    {
+        boolean bInHand = false;
+
+        while (readRecord()) {
+            ensureTable(rTable);
+            if (!bInHand) {
+                if ((rType == TO_Journal.E_BANK) || (rType == TO_Journal.E_OPEN)) {
+                    tableBanks[rTable] = rBank;
+                    tableSeen[rTable] = true;
+                    if (rType == TO_Journal.E_OPEN) setTableRules(rTable, rValue);
+                }
+                else if (rType == TO_Journal.E_RULES) {
+                    setTableRules(rTable, rValue);
+                }
+                else if (rType == TO_Journal.E_SHUFFLE) {
+                    lShuffles++;
+                }
+                else if (rType == TO_Journal.E_DEAL) {
+                    bInHand = true;
+                    iTable = rTable;
+                    iBet = rValue;
+                    iStartBank = rBank + rValue;
+                    iCardCount = 0;
+                    iActionCount = 0;
+                    iResultCount = 0;
+                }
+                continue;
+            }
+
+            switch (rType) {
+                case TO_Journal.E_CARD:
+                    if (iCardCount < hCards.length) hCards[iCardCount++] = rCard;
+                    break;
+                case TO_Journal.E_HIT:
+                case TO_Journal.E_STAY:
+                case TO_Journal.E_DOUBLE:
+                case TO_Journal.E_SPLIT:
+                case TO_Journal.E_INSURANCE:
+                case TO_Journal.E_SURRENDER:
+                    if (iActionCount < hActions.length) hActions[iActionCount++] = rType;
+                    break;
+                case TO_Journal.E_RESULT:
+                    if (iResultCount < hResults.length) {
+                        hResults[iResultCount] = rCard;
+                        hResultPts[iResultCount] = rPts;
+                        iResultCount++;
+                    }
+                    break;
+                case TO_Journal.E_DONE:
+                    iEndBank = rBank;
+                    lHands++;
+                    replayHand();
+                    return true;
+                default:
+                    break;
+            }
+        }
+        bIncomplete = bInHand;
+
+        return false;
+    }
+
+    /** Method used to replay the rest of the hands in the journal.  Returns
+     * the number of hands replayed.
+    */
+    public long replay() throws IOException
+    {
+        long n = lHands;
+
+        while (next()) { }
+
+        return lHands - n;
+    }
+
+    /** Method used to close the journal. */
+    public void close() throws IOException
+    {
+        raf.close();
+    }
+
+    /** Method to return the engine used to replay the hands. */
+    public TO_Engine getEngine()
+    {
+        return engine;
+    }
+
+    /** Method to return the number of records read. */
+    public long getRecords()
+    {
+        return lRecords;
+    }
+
+    /** Method to return the number of hands replayed. */
+    public long getHands()
+    {
+        return lHands;
+    }
+
+    /** Method to return the number of shuffles read. */
+    public long getShuffles()
+    {
+        return lShuffles;
+    }
+
+    /** Method to return the number of mismatches found. */
+    public long getMismatches()
+    {
+        return lMismatches;
+    }
+
+    /** Method to return true if the journal ended part way through a hand. */
+    public boolean isIncomplete()
+    {
+        return bIncomplete;
+    }
+
+    /** Method to return the replay results as a report string. */
+    public String toString()
+    {
+        StringBuffer sb = new StringBuffer(300);
+
+        sb.append(String.format("  Records:        %d%n", lRecords));
+        sb.append(String.format("  Hands:          %d%n", lHands));
+        sb.append(String.format("  Shuffles:       %d%n", lShuffles));
+        sb.append(String.format("  Mismatches:     %d", lMismatches));
+        if (bIncomplete) sb.append(String.format("%n  Last hand is incomplete (not replayed)"));
+        if (sbReport.length() > 0) {
+            sb.append(String.format("%n"));
+            sb.append(sbReport.toString().trim());
+        }
+
+        return sb.toString();
+    }
+
+    /** Method used to replay a journal from the command line (as fast as it
+     * can be read).
+    */
+    public static void main(String[] args)
+    {
+        if (args.length != 1) {
+            System.err.println("Usage: java TO_Replay journal file");
+            return;
+        }
+
+        try {
+            TO_Replay rp = new TO_Replay(new File(args[0]));
+            long start = System.nanoTime();
+
+            rp.replay();
+            rp.close();
+
+            double secs = (System.nanoTime() - start) / 1e9;
+            System.out.println("TwentyOne replay of " + args[0]);
+            System.out.println(rp.toString());
+            System.out.println("  Time:           " + String.format("%.2f", secs) + " secs, " +
+                               String.format("%.0f", rp.getHands() / secs) + " hands/sec");
+            if (rp.getMismatches() > 0) System.exit(1);
+        }
+        catch (IOException e) {
+            System.err.println("Replay failed: " + e);
+            System.exit(2);
+        }
+    }
+
+    // ---------------------- Inner Classes -------------------------
+
+    /**
+     * Class used to deal the recorded cards of a hand (in order) to the
+     * engine.  Never needs a shuffle.
+    */
+    static class ReplayShoe extends TO_Shoe
+    {
+        private int[] hand = new int[TO_Journal.MAX_HAND_RECORDS];
+        private int iPos = 0;
+        private int iLen = 0;
+
+        /** Constructor. */
+        ReplayShoe()
+        {
+            super(1, 0L);
+        }
+
+        /** Method used to load the recorded cards of a hand. */
+        void load(int[] cs, int n)
+        {
+            System.arraycopy(cs, 0, hand, 0, n);
+            iPos = 0;
+            iLen = n;
+        }
+
+        /** Method used to deal the next recorded card (an ace of the first
+         * suit if the recorded cards have run out).
+        */
+        public int getNextCard()
+        {
+            return (iPos < iLen) ? hand[iPos++] : 0;
+        }
+
+        /** Method to return the number of recorded cards not dealt. */
+        public int getCardsLeft()
+        {
+            return iLen - iPos;
+        }
+
+        /** Method to return false, recorded cards are never shuffled. */
+        public boolean needsShuffle()
+        {
+            return false;
+        }
+
+        /** Method to return false, recorded cards are never shuffled. */
+        public boolean needsShuffle(int cards)
+        {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,603 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/** Class used to run the house edge simulation (see 'TO_Simulator') over many
+ * rule sets ('TO_Rules') at once from the command line, to compare table
+ * rules.  Rule sets come from a grid of setting values (every combination)
+ * or from a file (one rules text per line, '#' starts a comment). <br>
+ * Hands are played in chunks of 'TO_Simulator.CHUNK_HANDS' per rule set.
+ * For each chunk every rule set is played on a fork/join pool, the rule sets
+ * with the same number of decks deal from the same shuffled shoe orders
+ * (shuffled once, when first needed, and shared).  This saves shuffling the
+ * same shoe for each rule set and plays every rule set against the same
+ * cards (common random numbers), so the differences between rule sets are
+ * measured with less noise than separate runs would give. <br>
+ * Results are reported sorted by house edge (lowest first), with the 95%
+ * confidence interval.  With '-o' they are also written as a CSV file. <br>
+ * Usage: java TO_RuleSweep [-n hands per rule set] [-t threads]
+ * [-s strategy class] [-r seed] [-b bet] [-f rules file] [-o csv file]
+ * [-decks list] [-pen list] [-h17 list] [-bj list] [-surrender list]
+ * [-charlie list] [-ins list] [-splitplay list] [-resplit list] [-das list]
+ * <br>
+ * Lists are comma separated values, for example '-decks 1,6,8',
+ * '-h17 s17,h17', '-bj 1:1,3:2,6:5', '-surrender no,yes', '-splitplay yes',
+ * '-resplit 0,2', '-das no,yes'.  Resplits and doubling after a split only
+ * count with split hands played (the same rule set otherwise) and the
+ * strategy has to split to see them, for example '-s TO_StrategyTable'.
+ * <br><br>
+ * <b>Changes:</b>
+ * <ul>
+ * <li> 2026-10-18 - Initial release.
+ * <li> 2026-10-18 - Added split hands played, resplit and double after a
+ *                   split lists.
+ * </ul>
+ * @author Michael G. Slack
+ * @author slack@attglobal.net
+ * @version Version 1.00
+*/
+public class TO_RuleSweep
+{
+    // public statics
+    /** Default number of hands played for each rule set. */
+    public static final long DEF_HANDS = 1000000L;
+
+    // private statics
+    /** Bank given to the engines, topped up so the player never runs out. */
+    private static final int SWEEP_BANK = 1000000000;
+
+    /** Z value for a 95% confidence interval. */
+    private static final double Z_95 = 1.96;
+
+    // default grid
+    private static final String DEF_DECKS = "1,2,6,8";
+    private static final String DEF_PEN = "75,100";
+    private static final String DEF_H17 = "s17,h17";
+    private static final String DEF_BJ = "1:1,3:2,6:5";
+    private static final String DEF_SURRENDER = "no,yes";
+    private static final String DEF_CHARLIE = "4,5";
+    private static final String DEF_INS = "25";
+    private static final String DEF_SPLIT_PLAY = "no";
+    private static final String DEF_RESPLIT = "0";
+    private static final String DEF_DAS = "no";
+
+    // private references
+    private TO_Rules[] rules = null;
+    private TO_Simulator.Result[] results = null;
+    private int iBet = TwentyOneProps.MIN_BET_AMT;
+    private long lHands = DEF_HANDS;
+    private int iThreads = Runtime.getRuntime().availableProcessors();
+    private long lSeed = System.nanoTime();
+    private Class<?> strategyClass = null;
+    private long lOrders = 0L;
+    private long lShuffles = 0L;
+
+    // ------------------------ Constructors -------------------------
+
+    /** Constructor to create the sweep.
+     * @param rules Rule sets played.
+     * @param bet Bet made on each hand.
+     * @param hands Number of hands played for each rule set.
+     * @param threads Number of worker threads to use.
+     * @param seed Seed used to shuffle the shared shoe orders.
+     * @param strategyClass Class (implementing TO_Strategy) used to play the hands.
+    */
+    public TO_RuleSweep(TO_Rules[] rules, int bet, long hands, int threads, long seed,
+                        Class<?> strategyClass)
+    {
+        this.rules = rules;
+        this.iBet = bet;
+        this.lHands = hands;
+        this.iThreads = threads;
+        this.lSeed = seed;
+        this.strategyClass = strategyClass;
+        this.results = new TO_Simulator.Result[rules.length];
+        for (int i = 0; i < rules.length; i++) results[i] = new TO_Simulator.Result();
+    }
+
+    // ------------------------ Private Methods --------------------------
+
+    /** Method used to return the seed of the shared orders of a deck count
+     * and chunk (spreads out the bits).
+    */
+    private long getOrderSeed(int decks, long chunk)
+    {
+        long z = lSeed + (chunk + 1) * 0x9E3779B97F4A7C15L + decks * 0xD1B54A32D192ED03L;
+
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /** Method used to create a new strategy instance (one per rule set chunk). */
+    private TO_Strategy createStrategy()
+    {
+        try {
+            return (TO_Strategy) strategyClass.getDeclaredConstructor().newInstance();
+        }
+        catch (Exception e) {
+            throw new IllegalStateException("Strategy could not be created: " + e);
+        }
+    }
+
+    /** Method used to play 'count' hands of rule set 'r' dealing from the
+     * shared orders given.  Returns the results.
+    */
+    private TO_Simulator.Result playRules(int r, ShoeOrders orders, long count)
+    {
+        SweepShoe shoe = new SweepShoe(rules[r].getDecks(), rules[r].getPenetration(), orders);
+        TO_Engine engine = new TO_Engine(shoe, SWEEP_BANK, rules[r]);
+        TO_Strategy strategy = createStrategy();
+        TO_Simulator.Result res = new TO_Simulator.Result();
+
+        for (long i = 0; i < count; i++) {
+            if (engine.getBank() < SWEEP_BANK / 2) engine.addToBank(SWEEP_BANK / 2);
+            res.add((double) (TO_Simulator.playHand(engine, strategy, iBet)) / iBet);
+        }
+        orders.addShuffles(shoe.getShuffles());
+
+        return res;
+    }
+
+    /** Method used to split a (comma separated) list. */
+    private static String[] split(String s)
+    {
+        return s.trim().split("\\s*,\\s*");
+    }
+
+    /** Method used to add 'name=value' (or just the value when 'name' is
+     * empty) for each value in a list to each of the rule texts.
+    */
+    private static List<String> cross(List<String> texts, String name, String list)
+    {
+        List<String> out = new ArrayList<String>();
+        String[] vals = split(list);
+
+        for (String t : texts) {
+            for (int i = 0; i < vals.length; i++) {
+                String v = ("".equals(name)) ? vals[i] : name + "=" + vals[i];
+                out.add(("".equals(t)) ? v : t + "," + v);
+            }
+        }
+
+        return out;
+    }
+
+    /** Method to return a yes/no list as a list of rule flags ('flag' or
+     * 'noflag', the flag names are also taken).
+     * @throws IllegalArgumentException If a value is not yes or no.
+    */
+    private static String flags(String list, String flag)
+    {
+        String[] sv = split(list);
+        StringBuffer sb = new StringBuffer(40);
+
+        for (int i = 0; i < sv.length; i++) {
+            if (i > 0) sb.append(',');
+            if (("yes".equalsIgnoreCase(sv[i])) || (flag.equalsIgnoreCase(sv[i])))
+                sb.append(flag);
+            else if (("no".equalsIgnoreCase(sv[i])) || (("no" + flag).equalsIgnoreCase(sv[i])))
+                sb.append("no" + flag);
+            else
+                throw new IllegalArgumentException(flag + " must be yes or no");
+        }
+
+        return sb.toString();
+    }
+
+    // ------------------------- Public Methods --------------------------
+
+    /** Method to return the rule sets of every combination of the setting
+     * values given (comma separated lists).
+     * @throws IllegalArgumentException If a setting is unknown or out of range.
+    */
+    public static TO_Rules[] getGrid(String decks, String pen, String h17, String bj,
+                                     String surrender, String charlie, String ins,
+                                     String splitPlay, String resplit, String das)
+    {
+        List<String> texts = new ArrayList<String>();
+        LinkedHashSet<TO_Rules> set = new LinkedHashSet<TO_Rules>();
+
+        texts.add("");
+        texts = cross(texts, "decks", decks);
+        texts = cross(texts, "pen", pen);
+        texts = cross(texts, "", h17);
+        texts = cross(texts, "bj", bj);
+        texts = cross(texts, "", flags(surrender, "surrender"));
+        texts = cross(texts, "charlie", charlie);
+        texts = cross(texts, "ins", ins);
+        texts = cross(texts, "", flags(splitPlay, "splitplay"));
+        texts = cross(texts, "resplit", resplit);
+        texts = cross(texts, "", flags(das, "das"));
+        for (String t : texts) set.add(TO_Rules.parse(t, TO_Rules.DEFAULT));
+
+        return set.toArray(new TO_Rules[set.size()]);
+    }
+
+    /** Method to return the rule sets in a file (one rules text per line,
+     * '#' starts a comment, blank lines are skipped).
+     * @throws IOException If the file can't be read.
+     * @throws IllegalArgumentException If a setting is unknown or out of range.
+    */
+    public static TO_Rules[] readRules(String fileName) throws IOException
+    {
+        LinkedHashSet<TO_Rules> set = new LinkedHashSet<TO_Rules>();
+        BufferedReader in = new BufferedReader(new FileReader(fileName));
+
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                int c = line.indexOf('#');
+                if (c >= 0) line = line.substring(0, c);
+                if (line.trim().length() > 0) set.add(TO_Rules.parse(line, TO_Rules.DEFAULT));
+            }
+        }
+        finally {
+            in.close();
+        }
+
+        return set.toArray(new TO_Rules[set.size()]);
+    }
+
+    /** Method used to run the sweep.  Returns the results, in the same order
+     * as the rule sets.
+    */
+    public TO_Simulator.Result[] run()
+    {
+        long chunks = (lHands + TO_Simulator.CHUNK_HANDS - 1) / TO_Simulator.CHUNK_HANDS;
+        ForkJoinPool pool = new ForkJoinPool(iThreads);
+
+        try {
+            for (long c = 0; c < chunks; c++) {
+                long count = Math.min(TO_Simulator.CHUNK_HANDS,
+                                      lHands - c * TO_Simulator.CHUNK_HANDS);
+                ShoeOrders[] orders = new ShoeOrders[TO_Rules.MAX_DECKS + 1];
+
+                // one set of shared orders per deck count for the chunk
+                for (int i = 0; i < rules.length; i++) {
+                    int d = rules[i].getDecks();
+                    if (orders[d] == null) orders[d] = new ShoeOrders(d, getOrderSeed(d, c));
+                }
+                pool.invoke(new SweepTask(0, rules.length, orders, count));
+                for (int d = 0; d < orders.length; d++) {
+                    if (orders[d] != null) {
+                        lOrders += orders[d].getOrders();
+                        lShuffles += orders[d].getShuffles();
+                    }
+                }
+            }
+        }
+        finally {
+            pool.shutdown();
+        }
+
+        return results;
+    }
+
+    /** Method to return the number of shoe orders shuffled. */
+    public long getOrders()
+    {
+        return lOrders;
+    }
+
+    /** Method to return the number of shuffles dealt (from shared orders). */
+    public long getShuffles()
+    {
+        return lShuffles;
+    }
+
+    /** Method to return the indexes of the rule sets sorted by house edge
+     * (lowest first).
+    */
+    public Integer[] getRanking()
+    {
+        Integer[] idx = new Integer[rules.length];
+
+        for (int i = 0; i < idx.length; i++) idx[i] = Integer.valueOf(i);
+        Arrays.sort(idx, new Comparator<Integer>() {
+                             public int compare(Integer a, Integer b) {
+                                 return Double.compare(results[a.intValue()].getHouseEdge(),
+                                                       results[b.intValue()].getHouseEdge());
+                             }
+                         });
+
+        return idx;
+    }
+
+    /** Method to return the results as a report string (sorted by house
+     * edge).
+    */
+    public String toString()
+    {
+        Integer[] idx = getRanking();
+        StringBuffer sb = new StringBuffer(100 * (idx.length + 1));
+
+        sb.append(String.format("  %4s  %9s  %8s  %8s  %s%n", "Rank", "Edge", "+/-", "Std dev",
+                                "Rules"));
+        for (int i = 0; i < idx.length; i++) {
+            TO_Simulator.Result r = results[idx[i].intValue()];
+            sb.append(String.format("  %4d  %8.3f%%  %7.3f%%  %8.5f  %s%n", i + 1,
+                                    r.getHouseEdge(), Z_95 * r.getStdError() * 100.0,
+                                    Math.sqrt(r.getVariance()), rules[idx[i].intValue()]));
+        }
+
+        return sb.toString();
+    }
+
+    /** Method used to write the results (sorted by house edge) as CSV. */
+    public void writeCSV(PrintWriter out)
+    {
+        Integer[] idx = getRanking();
+
+        out.println("rank,rules,decks,penetration,h17,natural,surrender,charlie,insurance," +
+                    "splitplay,resplits,das,hands,edge,ci95,stddev");
+        for (int i = 0; i < idx.length; i++) {
+            TO_Rules ru = rules[idx[i].intValue()];
+            TO_Simulator.Result r = results[idx[i].intValue()];
+
+            out.println((i + 1) + ",\"" + ru + "\"," + ru.getDecks() + "," +
+                        ru.getPenetration() + "," + ru.isH17() + "," +
+                        ru.getNaturalName() + "," + ru.isSurrender() + "," +
+                        ru.getCharlie() + "," + ru.getInsurance() + "," + ru.isSplitPlay() + "," +
+                        ru.getResplits() + "," + ru.isDoubleAfterSplit() + "," + r.getHands() + "," +
+                        String.format("%.5f,%.5f,%.5f", r.getHouseEdge(),
+                                      Z_95 * r.getStdError() * 100.0,
+                                      Math.sqrt(r.getVariance())));
+        }
+    }
+
+    /** Method used to print out the usage to the caller. */
+    public static void usage()
+    {
+        System.err.println("Usage: java TO_RuleSweep [-n hands per rule set] [-t threads] " +
+                           "[-s strategy class] [-r seed] [-b bet] [-f rules file] " +
+                           "[-o csv file] [-decks list] [-pen list] [-h17 list] [-bj list] " +
+                           "[-surrender list] [-charlie list] [-ins list] [-splitplay list] " +
+                           "[-resplit list] [-das list]");
+    }
+
+    /** Method used to run the sweep from the command line. */
+    public static void main(String[] args)
+    {
+        int bet = new TwentyOneProps(new TO_DealerStrategy()).getConfig().getMinimumBet();
+        long hands = DEF_HANDS;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = System.nanoTime();
+        String sStrategy = TO_Simulator.DEF_STRATEGY;
+        String sFile = null;
+        String sCSV = null;
+        String decks = DEF_DECKS;
+        String pen = DEF_PEN;
+        String h17 = DEF_H17;
+        String bj = DEF_BJ;
+        String surrender = DEF_SURRENDER;
+        String charlie = DEF_CHARLIE;
+        String ins = DEF_INS;
+        String splitPlay = DEF_SPLIT_PLAY;
+        String resplit = DEF_RESPLIT;
+        String das = DEF_DAS;
+        TO_Rules[] rules = null;
+        Class<?> sc = null;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String a = args[i];
+
+                if (i + 1 >= args.length) throw new IllegalArgumentException(a);
+                if ("-n".equals(a))
+                    hands = Long.parseLong(args[++i]);
+                else if ("-t".equals(a))
+                    threads = Integer.parseInt(args[++i]);
+                else if ("-s".equals(a))
+                    sStrategy = args[++i];
+                else if ("-r".equals(a))
+                    seed = Long.parseLong(args[++i]);
+                else if ("-b".equals(a))
+                    bet = Integer.parseInt(args[++i]);
+                else if ("-f".equals(a))
+                    sFile = args[++i];
+                else if ("-o".equals(a))
+                    sCSV = args[++i];
+                else if ("-decks".equals(a))
+                    decks = args[++i];
+                else if ("-pen".equals(a))
+                    pen = args[++i];
+                else if ("-h17".equals(a))
+                    h17 = args[++i];
+                else if ("-bj".equals(a))
+                    bj = args[++i];
+                else if ("-surrender".equals(a))
+                    surrender = args[++i];
+                else if ("-charlie".equals(a))
+                    charlie = args[++i];
+                else if ("-ins".equals(a))
+                    ins = args[++i];
+                else if ("-splitplay".equals(a))
+                    splitPlay = args[++i];
+                else if ("-resplit".equals(a))
+                    resplit = args[++i];
+                else if ("-das".equals(a))
+                    das = args[++i];
+                else
+                    throw new IllegalArgumentException(a);
+            }
+            if ((hands < 1) || (bet < 1) || (threads < 1))
+                throw new IllegalArgumentException("values must be 1 or more");
+            sc = Class.forName(sStrategy);
+            if (!TO_Strategy.class.isAssignableFrom(sc))
+                throw new IllegalArgumentException(sStrategy + " is not a TO_Strategy");
+            if (sFile != null)
+                rules = readRules(sFile);
+            else
+                rules = getGrid(decks, pen, h17, bj, surrender, charlie, ins, splitPlay, resplit,
+                                das);
+            if (rules.length == 0) throw new IllegalArgumentException("no rule sets");
+        }
+        catch (Exception e) {
+            System.err.println("Invalid argument: " + e.getMessage());
+            usage();
+            return;
+        }
+
+        TO_RuleSweep sweep = new TO_RuleSweep(rules, bet, hands, threads, seed, sc);
+        long start = System.nanoTime();
+        sweep.run();
+        double secs = (System.nanoTime() - start) / 1e9;
+
+        System.out.println("TwentyOne rule sweep");
+        System.out.println("  Rule sets:      " + rules.length);
+        System.out.println("  Hands per set:  " + hands);
+        System.out.println("  Bet:            " + bet);
+        System.out.println("  Strategy:       " + sStrategy);
+        System.out.println("  Threads:        " + threads);
+        System.out.println("  Seed:           " + seed);
+        System.out.println("  Shuffles:       " + sweep.getShuffles() + " dealt from " +
+                           sweep.getOrders() + " shared orders");
+        System.out.print(sweep.toString());
+        System.out.println("  Time:           " + String.format("%.2f", secs) + " secs, " +
+                           String.format("%.0f", rules.length * hands / secs) + " hands/sec");
+
+        if (sCSV != null) {
+            try {
+                PrintWriter out = new PrintWriter(sCSV);
+                sweep.writeCSV(out);
+                out.close();
+                if (out.checkError()) throw new IOException("write failed");
+            }
+            catch (IOException e) {
+                System.err.println("CSV write failed: " + e);
+            }
+        }
+    }
+
+    // ---------------------- Inner Classes -------------------------
+
+    /**
+     * Class used to hold the shoe orders shared by the rule sets with the
+     * same number of decks (for one chunk).  Orders are shuffled when first
+     * asked for and kept until the chunk is done.
+    */
+    static class ShoeOrders
+    {
+        private TO_Shoe gen = null;
+        private ArrayList<byte[]> orders = new ArrayList<byte[]>();
+        private long lShuffles = 0L;
+
+        /** Constructor - orders for shoes of 'decks' decks. */
+        ShoeOrders(int decks, long seed)
+        {
+            gen = new TO_Shoe(decks, TwentyOneProps.MAX_PENETRATION, seed);
+        }
+
+        /** Method to return order 'k' (shuffling up to it if needed). */
+        synchronized byte[] get(int k)
+        {
+            while (orders.size() <= k) {
+                byte[] o = new byte[gen.getCardCount()];
+                gen.copyOrder(o);
+                orders.add(o);
+                gen.shuffle();
+            }
+
+            return orders.get(k);
+        }
+
+        /** Method used to add the number of shuffles a shoe dealt. */
+        synchronized void addShuffles(int n)
+        {
+            lShuffles += n;
+        }
+
+        /** Method to return the number of orders shuffled. */
+        synchronized int getOrders()
+        {
+            return orders.size();
+        }
+
+        /** Method to return the number of shuffles dealt from the orders. */
+        synchronized long getShuffles()
+        {
+            return lShuffles;
+        }
+    }
+
+    /**
+     * Class used to deal from the shared shoe orders, each shuffle loads the
+     * next shared order.
+    */
+    static class SweepShoe extends TO_Shoe
+    {
+        private ShoeOrders orders = null;
+        private int iOrder = 0;
+
+        /** Constructor. */
+        SweepShoe(int decks, int penetration, ShoeOrders orders)
+        {
+            super(decks, penetration, 0L);
+            this.orders = orders;
+            shuffle();
+        }
+
+        /** Method used to load the next shared order (a normal shuffle while
+         * being created).
+        */
+        public void shuffle()
+        {
+            if (orders == null) {
+                super.shuffle();
+                return;
+            }
+
+            load(orders.get(iOrder++));
+        }
+
+        /** Method to return the number of shared orders dealt. */
+        int getShuffles()
+        {
+            return iOrder;
+        }
+    }
+
+    /**
+     * Class used to split the rule sets of a chunk over the fork/join pool.
+    */
+    class SweepTask extends RecursiveAction
+    {
+        private int iFirst;
+        private int iLast;
+        private ShoeOrders[] orders;
+        private long lCount;
+
+        /** Constructor - task for rule sets 'first' up to (not including) 'last'. */
+        public SweepTask(int first, int last, ShoeOrders[] orders, long count)
+        {
+            iFirst = first;
+            iLast = last;
+            this.orders = orders;
+            lCount = count;
+        }
+
+        /** Method used to play the rule sets (or split them up). */
+        protected void compute()
+        {
+            if (iLast - iFirst == 1) {
+                TO_Simulator.Result res = playRules(iFirst, orders[rules[iFirst].getDecks()],
+                                                    lCount);
+                results[iFirst].merge(res);
+                return;
+            }
+
+            int mid = (iFirst + iLast) >>> 1;
+            invokeAll(new SweepTask(iFirst, mid, orders, lCount),
+                      new SweepTask(mid, iLast, orders, lCount));
+        }
+    }
+}
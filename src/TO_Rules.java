@@ -0,0 +1,377 @@
+/** Class defines a set of table rules for the rules engine, held as one
+ * packed int (the rules code) so a rule set can be stored, compared, written
+ * to the journal and swept over cheaply.  Rule sets can't be changed once
+ * created. <br>
+ * Layout: bits 0 - 3 decks, bits 4 - 10 penetration, bit 11 dealer hits
+ * soft 17, bits 12 - 13 natural (21 on the deal) payout, bit 14 late
+ * surrender, bits 15 - 17 charlie size (cards drawn without going over that
+ * win), bits 18 - 24 insurance cost (percent of the bet), bit 25 split hands
+ * played, bits 26 - 27 resplits allowed, bit 28 double after a split. <br>
+ * The text form is a list of 'name=value' settings and flags, for example
+ * 'decks=6,pen=75,h17,bj=3:2,surrender,charlie=5,ins=25,splitplay,resplit=2,das'.
+ * Settings left out of the text are taken from a base rule set. <br>
+ * 'DEFAULT' holds the original TwentyOne rules, split hands get one card
+ * each and stand.  With split hands played each split hand is played out in
+ * turn (split aces still get one card each), a pair can be split again up to
+ * the resplits allowed and a split hand can be doubled if the rules allow
+ * it.  Resplits and doubling after a split are only kept when split hands
+ * are played.  Surrender is late surrender, with an ace up the dealers 21 is
+ * settled first (the whole bet is lost).  Payouts are worked out in whole
+ * bank units (rounded down). <br><br>
+ * <b>Changes:</b>
+ * <ul>
+ * <li> 2026-10-18 - Initial release.
+ * <li> 2026-10-18 - Added split hands played, resplits and double after a
+ *                   split.
+ * </ul>
+ * @author Michael G. Slack
+ * @author slack@attglobal.net
+ * @version Version 1.00
+*/
+public final class TO_Rules
+{
+    // public statics - natural payouts
+    /** Natural pays even money (original rule). */
+    public static final int NAT_1_1 = 0;
+
+    /** Natural pays 3 to 2. */
+    public static final int NAT_3_2 = 1;
+
+    /** Natural pays 6 to 5. */
+    public static final int NAT_6_5 = 2;
+
+    /** Natural pays 2 to 1. */
+    public static final int NAT_2_1 = 3;
+
+    /** Most decks in the shoe. */
+    public static final int MAX_DECKS = 15;
+
+    /** Smallest charlie size (cards drawn without going over that win). */
+    public static final int MIN_CHARLIE = 3;
+
+    /** Largest charlie size (most cards a hand can hold). */
+    public static final int MAX_CHARLIE = TwentyOneProps.MAX_DRAW_CARDS;
+
+    /** Most resplits (a hand can be split into 'MAX_RESPLITS' + 2 hands). */
+    public static final int MAX_RESPLITS = 2;
+
+    /** Original TwentyOne rules: one deck dealt out, dealer stands on all
+     * 17s, natural pays even money, no surrender, five card charlie,
+     * insurance costs 25% of the bet.
+    */
+    public static final TO_Rules DEFAULT = new TO_Rules(1, TwentyOneProps.MAX_PENETRATION,
+                                                        false, NAT_1_1, false, MAX_CHARLIE, 25);
+
+    // private statics
+    private static final String[] NAT_NAMES = {"1:1", "3:2", "6:5", "2:1"};
+    private static final int[] NAT_NUM = {1, 3, 6, 2};
+    private static final int[] NAT_DEN = {1, 2, 5, 1};
+
+    private static final int DECKS_MASK = 0xF;
+    private static final int PEN_SHIFT = 4;
+    private static final int PEN_MASK = 0x7F;
+    private static final int H17_BIT = 1 << 11;
+    private static final int NAT_SHIFT = 12;
+    private static final int NAT_MASK = 0x3;
+    private static final int SURRENDER_BIT = 1 << 14;
+    private static final int CHARLIE_SHIFT = 15;
+    private static final int CHARLIE_MASK = 0x7;
+    private static final int INS_SHIFT = 18;
+    private static final int INS_MASK = 0x7F;
+    private static final int SPLIT_PLAY_BIT = 1 << 25;
+    private static final int RESPLIT_SHIFT = 26;
+    private static final int RESPLIT_MASK = 0x3;
+    private static final int DAS_BIT = 1 << 28;
+
+    // private references
+    private final int iCode;
+
+    // ------------------------ Constructors -------------------------
+
+    /** Constructor to create a rule set (split hands get one card each and
+     * stand).
+     * @param decks Decks in the shoe (1 - MAX_DECKS).
+     * @param penetration Percent of the shoe dealt before a reshuffle.
+     * @param h17 True if the dealer hits a soft 17.
+     * @param natural Natural payout (one of the NAT_xxx values).
+     * @param surrender True if late surrender (half the bet back) is allowed.
+     * @param charlie Charlie size (MIN_CHARLIE - MAX_CHARLIE).
+     * @param insurance Insurance cost (percent of the bet, 0 - 100).
+     * @throws IllegalArgumentException If a setting is out of range.
+    */
+    public TO_Rules(int decks, int penetration, boolean h17, int natural, boolean surrender,
+                    int charlie, int insurance)
+    {
+        this(decks, penetration, h17, natural, surrender, charlie, insurance, false, 0, false);
+    }
+
+    /** Constructor to create a rule set.
+     * @param decks Decks in the shoe (1 - MAX_DECKS).
+     * @param penetration Percent of the shoe dealt before a reshuffle.
+     * @param h17 True if the dealer hits a soft 17.
+     * @param natural Natural payout (one of the NAT_xxx values).
+     * @param surrender True if late surrender (half the bet back) is allowed.
+     * @param charlie Charlie size (MIN_CHARLIE - MAX_CHARLIE).
+     * @param insurance Insurance cost (percent of the bet, 0 - 100).
+     * @param splitPlay True if split hands are played out (false, one card
+     * each and stand).
+     * @param resplits Resplits allowed (0 - MAX_RESPLITS, split hands played).
+     * @param das True if a split hand can be doubled (split hands played).
+     * @throws IllegalArgumentException If a setting is out of range.
+    */
+    public TO_Rules(int decks, int penetration, boolean h17, int natural, boolean surrender,
+                    int charlie, int insurance, boolean splitPlay, int resplits, boolean das)
+    {
+        if ((decks < 1) || (decks > MAX_DECKS))
+            throw new IllegalArgumentException("decks must be 1 to " + MAX_DECKS);
+        if ((penetration < TwentyOneProps.MIN_PENETRATION) ||
+            (penetration > TwentyOneProps.MAX_PENETRATION))
+            throw new IllegalArgumentException("penetration must be " +
+                                               TwentyOneProps.MIN_PENETRATION + " to " +
+                                               TwentyOneProps.MAX_PENETRATION);
+        if ((natural < NAT_1_1) || (natural > NAT_2_1))
+            throw new IllegalArgumentException("unknown natural payout " + natural);
+        if ((charlie < MIN_CHARLIE) || (charlie > MAX_CHARLIE))
+            throw new IllegalArgumentException("charlie must be " + MIN_CHARLIE + " to " +
+                                               MAX_CHARLIE);
+        if ((insurance < 0) || (insurance > 100))
+            throw new IllegalArgumentException("insurance must be 0 to 100 percent");
+        if ((resplits < 0) || (resplits > MAX_RESPLITS))
+            throw new IllegalArgumentException("resplit must be 0 to " + MAX_RESPLITS);
+
+        if (!splitPlay) { // only one split, hands stand
+            resplits = 0;
+            das = false;
+        }
+        iCode = decks | (penetration << PEN_SHIFT) | ((h17) ? H17_BIT : 0) |
+                (natural << NAT_SHIFT) | ((surrender) ? SURRENDER_BIT : 0) |
+                (charlie << CHARLIE_SHIFT) | (insurance << INS_SHIFT) |
+                ((splitPlay) ? SPLIT_PLAY_BIT : 0) | (resplits << RESPLIT_SHIFT) |
+                ((das) ? DAS_BIT : 0);
+    }
+
+    // ------------------------- Public Methods --------------------------
+
+    /** Method to return the rule set of a rules code.
+     * @throws IllegalArgumentException If the code is not a valid rule set.
+    */
+    public static TO_Rules fromCode(int code)
+    {
+        return new TO_Rules(code & DECKS_MASK, (code >>> PEN_SHIFT) & PEN_MASK,
+                            (code & H17_BIT) != 0, (code >>> NAT_SHIFT) & NAT_MASK,
+                            (code & SURRENDER_BIT) != 0, (code >>> CHARLIE_SHIFT) & CHARLIE_MASK,
+                            (code >>> INS_SHIFT) & INS_MASK, (code & SPLIT_PLAY_BIT) != 0,
+                            (code >>> RESPLIT_SHIFT) & RESPLIT_MASK, (code & DAS_BIT) != 0);
+    }
+
+    /** Method to return the rule set of a rules text (see class notes),
+     * settings not in the text come from 'base'.
+     * @throws IllegalArgumentException If a setting is unknown or out of range.
+    */
+    public static TO_Rules parse(String s, TO_Rules base)
+    {
+        int decks = base.getDecks();
+        int pen = base.getPenetration();
+        boolean h17 = base.isH17();
+        int natural = base.getNatural();
+        boolean surrender = base.isSurrender();
+        int charlie = base.getCharlie();
+        int ins = base.getInsurance();
+        boolean splitPlay = base.isSplitPlay();
+        int resplits = base.getResplits();
+        boolean das = base.isDoubleAfterSplit();
+        String[] items = s.trim().toLowerCase().split("[,\\s]+");
+
+        for (int i = 0; i < items.length; i++) {
+            String it = items[i];
+            int eq = it.indexOf('=');
+            String val = (eq < 0) ? "" : it.substring(eq + 1);
+
+            if (it.length() == 0) continue;
+            try {
+                if (it.startsWith("decks="))
+                    decks = Integer.parseInt(val);
+                else if (it.startsWith("pen="))
+                    pen = Integer.parseInt(val);
+                else if (it.startsWith("charlie="))
+                    charlie = Integer.parseInt(val);
+                else if (it.startsWith("ins="))
+                    ins = Integer.parseInt(val);
+                else if (it.startsWith("resplit="))
+                    resplits = Integer.parseInt(val);
+                else if (it.startsWith("bj=")) {
+                    natural = -1;
+                    for (int n = 0; n < NAT_NAMES.length; n++)
+                        if (NAT_NAMES[n].equals(val)) natural = n;
+                }
+                else if ("h17".equals(it))
+                    h17 = true;
+                else if ("s17".equals(it))
+                    h17 = false;
+                else if ("surrender".equals(it))
+                    surrender = true;
+                else if ("nosurrender".equals(it))
+                    surrender = false;
+                else if ("splitplay".equals(it))
+                    splitPlay = true;
+                else if ("nosplitplay".equals(it))
+                    splitPlay = false;
+                else if ("das".equals(it))
+                    das = true;
+                else if ("nodas".equals(it))
+                    das = false;
+                else
+                    throw new IllegalArgumentException("unknown rule '" + it + "'");
+            }
+            catch (NumberFormatException e) {
+                throw new IllegalArgumentException("bad number in rule '" + it + "'");
+            }
+        }
+
+        return new TO_Rules(decks, pen, h17, natural, surrender, charlie, ins, splitPlay,
+                            resplits, das);
+    }
+
+    /** Method to return a copy of the rules with a different shoe.
+     * @throws IllegalArgumentException If a setting is out of range.
+    */
+    public TO_Rules withShoe(int decks, int penetration)
+    {
+        return new TO_Rules(decks, penetration, isH17(), getNatural(), isSurrender(),
+                            getCharlie(), getInsurance(), isSplitPlay(), getResplits(),
+                            isDoubleAfterSplit());
+    }
+
+    /** Method to return the packed rules code. */
+    public int getCode()
+    {
+        return iCode;
+    }
+
+    /** Method to return the number of decks in the shoe. */
+    public int getDecks()
+    {
+        return iCode & DECKS_MASK;
+    }
+
+    /** Method to return the shoe penetration (percent dealt). */
+    public int getPenetration()
+    {
+        return (iCode >>> PEN_SHIFT) & PEN_MASK;
+    }
+
+    /** Method to return true if the dealer hits a soft 17. */
+    public boolean isH17()
+    {
+        return (iCode & H17_BIT) != 0;
+    }
+
+    /** Method to return the natural payout (one of the NAT_xxx values). */
+    public int getNatural()
+    {
+        return (iCode >>> NAT_SHIFT) & NAT_MASK;
+    }
+
+    /** Method to return the natural payout as text ('3:2'). */
+    public String getNaturalName()
+    {
+        return NAT_NAMES[getNatural()];
+    }
+
+    /** Method to return true if late surrender is allowed. */
+    public boolean isSurrender()
+    {
+        return (iCode & SURRENDER_BIT) != 0;
+    }
+
+    /** Method to return the charlie size (cards drawn without going over
+     * that win, also the most cards a hand can hold).
+    */
+    public int getCharlie()
+    {
+        return (iCode >>> CHARLIE_SHIFT) & CHARLIE_MASK;
+    }
+
+    /** Method to return the insurance cost (percent of the bet). */
+    public int getInsurance()
+    {
+        return (iCode >>> INS_SHIFT) & INS_MASK;
+    }
+
+    /** Method to return true if split hands are played out (false if they get
+     * one card each and stand).
+    */
+    public boolean isSplitPlay()
+    {
+        return (iCode & SPLIT_PLAY_BIT) != 0;
+    }
+
+    /** Method to return the number of resplits allowed. */
+    public int getResplits()
+    {
+        return (iCode >>> RESPLIT_SHIFT) & RESPLIT_MASK;
+    }
+
+    /** Method to return the most player hands a split can make. */
+    public int getMaxHands()
+    {
+        return getResplits() + 2;
+    }
+
+    /** Method to return true if a split hand can be doubled. */
+    public boolean isDoubleAfterSplit()
+    {
+        return (iCode & DAS_BIT) != 0;
+    }
+
+    /** Method to return true if the dealer draws to (packed) hand 'hand'. */
+    public boolean dealerHits(int hand)
+    {
+        int d = TO_Hand.getScore(hand);
+
+        return (d <= 16) || ((d == 17) && ((iCode & H17_BIT) != 0) && (TO_Hand.isSoft(hand)));
+    }
+
+    /** Method to return the amount won (not counting the bet) by a natural. */
+    public int getNaturalWin(int bet)
+    {
+        int n = getNatural();
+
+        return (int) (((long) bet * NAT_NUM[n]) / NAT_DEN[n]);
+    }
+
+    /** Method to return the cost of insurance for a bet. */
+    public int getInsuranceCost(int bet)
+    {
+        return (int) (((long) bet * getInsurance()) / 100);
+    }
+
+    /** Method to return the part of the bet given back on a surrender. */
+    public int getSurrenderRefund(int bet)
+    {
+        return bet / 2;
+    }
+
+    /** Method to return true if the rules are the same as another set. */
+    public boolean equals(Object o)
+    {
+        return (o instanceof TO_Rules) && (((TO_Rules) o).iCode == iCode);
+    }
+
+    /** Method to return the hash code of the rules. */
+    public int hashCode()
+    {
+        return iCode;
+    }
+
+    /** Method to return the rules as text (see class notes). */
+    public String toString()
+    {
+        return "decks=" + getDecks() + ",pen=" + getPenetration() +
+               ((isH17()) ? ",h17" : ",s17") + ",bj=" + getNaturalName() +
+               ((isSurrender()) ? ",surrender" : ",nosurrender") +
+               ",charlie=" + getCharlie() + ",ins=" + getInsurance() +
+               ((isSplitPlay()) ? ",splitplay,resplit=" + getResplits() +
+                                  ((isDoubleAfterSplit()) ? ",das" : ",nodas") : "");
+    }
+}
@@ -0,0 +1,451 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Class used to run TwentyOne as a (local) TCP game server.  Every
+ * connection is its own table, with its own shoe, engine ('TO_Engine') and
+ * bank, set up from the settings in 'TwentyOne.properties'.  Each connection
+ * is served by its own thread (a virtual thread when the JVM has them, Java
+ * 21 and later, otherwise a pooled platform thread). <br>
+ * The protocol is line based, one command per line, one reply line per
+ * command:
+ * <ul>
+ * <li> BET amount - deal a hand with the bet given.
+ * <li> HIT, STAY, DOUBLE, SPLIT, INSURANCE, SURRENDER - player actions.
+ * <li> STATE - show the table state.
+ * <li> RESET - add the initial bank back if the bank is below the minimum bet.
+ * <li> QUIT - close the connection.
+ * </ul>
+ * The server sends 'TWENTYONE 1 bank=n min=n max=n rules=text' when the
+ * connection is made (rules as in 'TO_Rules').  Replies are 'OK' followed
+ * by the table state or 'ERR' followed by a message.  The state is made up
+ * of 'name=value' fields: state (IDLE, PLAYER, DONE), bank, bet, dealer and
+ * hand (cards/points, the dealer down card shows as '??' until the hand is
+ * done), hand2 - hand4 (split hands), playing (split hand being played),
+ * actions and results.  Cards are the rank (A, 2 - 9, T, J, Q, K) followed
+ * by the suit (C, D, H, S). <br>
+ * The table settings come from the current properties snapshot, with
+ * '-c' a properties file is watched and changes (bet limits, and the shoe,
+ * rules and bank of tables opened after) take effect without a restart. <br>
+ * Each table counts into one 'TO_Metrics', registered as the MBean
+ * 'TwentyOne:type=Metrics,name=server' and printed every so many seconds with
+ * '-i'. <br>
+ * Usage: java TO_Server [-p port] [-m max tables] [-j journal file]
+ * [-c properties file] [-i metrics report seconds] <br><br>
+ * <b>Changes:</b>
+ * <ul>
+ * <li> 2026-10-18 - Initial release.
+ * <li> 2026-10-18 - Settings read from the properties snapshot (can be
+ *                   reloaded) instead of copied at start.
+ * <li> 2026-10-18 - Tables counted in a 'TO_Metrics' (MBean).
+ * <li> 2026-10-18 - Tables play the rules in the properties, added surrender.
+ * <li> 2026-10-18 - State shows every split hand and the one being played.
+ * <li> 2026-10-18 - Table limit checked on the count taken (no false "full"),
+ *                   table numbers only given to tables let in.
+ * </ul>
+ * @author Michael G. Slack
+ * @author slack@attglobal.net
+ * @version Version 1.00
+*/
+public class TO_Server
+{
+    // public statics
+    /** Default port served. */
+    public static final int DEF_PORT = 2121;
+
+    /** Default most tables (connections) open at once. */
+    public static final int DEF_MAX_TABLES = 10000;
+
+    /** Protocol version sent when a connection is made. */
+    public static final int PROTOCOL_VERSION = 1;
+
+    // private statics
+    private static final String RANKS = "A23456789TJQK";
+    private static final String SUITS = "CDHS";
+    private static final String[] STATES = {"IDLE", "PLAYER", "PLAYER", "DONE"};
+    private static final String[] RESULTS = {"", "PUSH", "PLAYER", "DEALER",
+                                             "PLAYER_FIVE", "DEALER_FIVE", "SURRENDER"};
+
+    // private references
+    private TwentyOneProps props = null;
+    private int iMaxTables = DEF_MAX_TABLES;
+    private TO_Journal journal = null;
+    private TO_Metrics metrics = new TO_Metrics();
+    private ServerSocket server = null;
+    private ExecutorService exec = null;
+    private AtomicInteger tablesOpen = new AtomicInteger();
+    private AtomicInteger tableCount = new AtomicInteger();
+
+    // ------------------------ Constructors -------------------------
+
+    /** Constructor to create the server with the table settings from the
+     * properties (read as each command is run).
+     * @param props Properties the table settings come from.
+     * @param maxTables Most tables (connections) open at once.
+    */
+    public TO_Server(TwentyOneProps props, int maxTables)
+    {
+        this.props = props;
+        this.iMaxTables = maxTables;
+    }
+
+    // ------------------------ Private Methods --------------------------
+
+    /** Method used to create the executor the connections are served by,
+     * a virtual thread per task if the JVM has them (looked up so this still
+     * builds and runs on Java 17).
+    */
+    private static ExecutorService createExecutor()
+    {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+                                                    .invoke(null);
+        }
+        catch (Exception e) {
+            return Executors.newCachedThreadPool(new ThreadFactory() {
+                                                     private AtomicInteger n = new AtomicInteger();
+                                                     public Thread newThread(Runnable r) {
+                                                         Thread t = new Thread(null, r,
+                                                                 "table-" + n.incrementAndGet(),
+                                                                 256 * 1024);
+                                                         t.setDaemon(true);
+                                                         return t;
+                                                     }
+                                                 });
+        }
+    }
+
+    /** Method used to add a card code (as text) to a buffer. */
+    private static void appendCard(StringBuffer sb, int card)
+    {
+        sb.append(RANKS.charAt(card % TO_Shoe.RANKS));
+        sb.append(SUITS.charAt((card / TO_Shoe.RANKS) % SUITS.length()));
+    }
+
+    // ------------------------- Public Methods --------------------------
+
+    /** Method used to return the table state (see class notes) of an engine. */
+    public static String getState(TO_Engine engine)
+    {
+        StringBuffer sb = new StringBuffer(120);
+        int st = engine.getState();
+        boolean bShow = (st == TO_Engine.ST_DONE) || (engine.isShowDown());
+
+        sb.append("state=");
+        sb.append(STATES[st]);
+        sb.append(" bank=");
+        sb.append(engine.getBank());
+        sb.append(" bet=");
+        sb.append(engine.getBet());
+        if (st == TO_Engine.ST_IDLE) return sb.toString();
+
+        sb.append(" dealer=");
+        for (int i = 0; i < engine.getDealerCardCount(); i++) {
+            if (i > 0) sb.append(',');
+            if ((i == 0) && (!bShow))
+                sb.append("??");
+            else
+                appendCard(sb, engine.getDealerCard(i));
+        }
+        if (bShow) {
+            sb.append('/');
+            sb.append(engine.getDealerScore());
+        }
+        for (int h = 0; h < engine.getHandCount(); h++) {
+            sb.append((h == 0) ? " hand=" : " hand" + (h + 1) + "=");
+            for (int i = 0; i < engine.getPlayerCardCount(h); i++) {
+                if (i > 0) sb.append(',');
+                appendCard(sb, engine.getPlayerCard(h, i));
+            }
+            sb.append('/');
+            sb.append(engine.getPlayerScore(h));
+        }
+        if (st == TO_Engine.ST_PLAYER) {
+            int a = engine.getActions();
+            if (engine.getHandCount() > 1) {
+                sb.append(" playing=");
+                sb.append(engine.getCurrentHand() + 1);
+            }
+            sb.append(" actions=");
+            sb.append("HIT,STAY");
+            if ((a & TO_Engine.A_DOUBLE) != 0) sb.append(",DOUBLE");
+            if ((a & TO_Engine.A_SPLIT) != 0) sb.append(",SPLIT");
+            if ((a & TO_Engine.A_INSURANCE) != 0) sb.append(",INSURANCE");
+            if ((a & TO_Engine.A_SURRENDER) != 0) sb.append(",SURRENDER");
+        }
+        if (st == TO_Engine.ST_DONE) {
+            sb.append(" results=");
+            for (int i = 0; i < engine.getResultCount(); i++) {
+                if (i > 0) sb.append(',');
+                sb.append(RESULTS[engine.getResult(i)]);
+                sb.append('/');
+                sb.append(engine.getResultPoints(i));
+            }
+        }
+
+        return sb.toString();
+    }
+
+    /** Method used to run a command line against a table engine.  Returns
+     * the reply line (null to close the connection).
+    */
+    public String runCommand(TO_Engine engine, String line)
+    {
+        String[] cmd = line.trim().toUpperCase().split("\\s+");
+        TwentyOneProps.Config cfg = props.getConfig();
+        boolean bOK = true;
+        String sErr = null;
+
+        if ((("BET".equals(cmd[0])) || ("RESET".equals(cmd[0]))) &&
+            (engine.getState() == TO_Engine.ST_DONE))
+            engine.clearHands(); // last hand is over, start again
+        if ("BET".equals(cmd[0])) {
+            int bet = 0;
+            try {
+                bet = Integer.parseInt(cmd[1]);
+            }
+            catch (Exception e) {
+                return "ERR bet amount needed";
+            }
+            if (engine.getState() != TO_Engine.ST_IDLE) return "ERR hand in play";
+            if ((bet < cfg.getMinimumBet()) || (bet > cfg.getMaximumBet()))
+                return "ERR bet must be " + cfg.getMinimumBet() + " to " + cfg.getMaximumBet();
+            if (!engine.startHand(bet)) return "ERR not enough in bank";
+            engine.checkHands();
+        }
+        else if ("HIT".equals(cmd[0])) {
+            bOK = engine.hit();
+        }
+        else if ("STAY".equals(cmd[0])) {
+            bOK = engine.stay();
+        }
+        else if ("DOUBLE".equals(cmd[0])) {
+            if ((engine.getActions() & TO_Engine.A_DOUBLE) != 0) sErr = "not enough in bank";
+            bOK = engine.doubleDown();
+        }
+        else if ("SPLIT".equals(cmd[0])) {
+            if ((engine.getActions() & TO_Engine.A_SPLIT) != 0) sErr = "not enough in bank";
+            bOK = engine.split();
+        }
+        else if ("INSURANCE".equals(cmd[0])) {
+            if ((engine.getActions() & TO_Engine.A_INSURANCE) != 0) sErr = "not enough in bank";
+            bOK = engine.insurance();
+        }
+        else if ("SURRENDER".equals(cmd[0])) {
+            bOK = engine.surrender();
+        }
+        else if ("RESET".equals(cmd[0])) {
+            if (engine.getState() != TO_Engine.ST_IDLE) return "ERR hand in play";
+            if (engine.getBank() >= cfg.getMinimumBet())
+                return "ERR bank is not below minimum bet";
+            engine.addToBank(cfg.getInitialBank());
+        }
+        else if ("QUIT".equals(cmd[0])) {
+            return null;
+        }
+        else if (!"STATE".equals(cmd[0])) {
+            return "ERR unknown command " + cmd[0];
+        }
+
+        if (!bOK) return "ERR " + ((sErr == null) ? "action not allowed" : sErr);
+
+        return "OK " + getState(engine);
+    }
+
+    /** Method to return the metrics the tables are counted in. */
+    public TO_Metrics getMetrics()
+    {
+        return metrics;
+    }
+
+    /** Method used to set the journal the table hands are written to. */
+    public void setJournal(TO_Journal j)
+    {
+        journal = j;
+    }
+
+    /** Method used to serve connections on the (loopback) port given until
+     * the server is stopped.
+    */
+    public void serve(int port) throws IOException
+    {
+        server = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress());
+        exec = createExecutor();
+
+        try {
+            while (!server.isClosed()) {
+                Socket s;
+                try {
+                    s = server.accept();
+                }
+                catch (IOException e) {
+                    if (server.isClosed()) break;
+                    throw e;
+                }
+                exec.execute(new Session(s));
+            }
+        }
+        finally {
+            exec.shutdownNow();
+        }
+    }
+
+    /** Method used to stop the server (open tables are closed). */
+    public void stop() throws IOException
+    {
+        if (server != null) server.close();
+    }
+
+    /** Method to return the number of tables open. */
+    public int getTablesOpen()
+    {
+        return tablesOpen.get();
+    }
+
+    /** Method used to print out the usage to the caller. */
+    public static void usage()
+    {
+        System.err.println("Usage: java TO_Server [-p port] [-m max tables] [-j journal file] " +
+                           "[-c properties file] [-i metrics report seconds]");
+    }
+
+    /** Method used to run the server from the command line. */
+    public static void main(String[] args)
+    {
+        TwentyOneProps props = new TwentyOneProps(new TO_DealerStrategy()); // need for class ref
+        int port = DEF_PORT;
+        int maxTables = DEF_MAX_TABLES;
+        String sJournal = null;
+        String sConfig = null;
+        int metricSecs = 0;
+        final TO_Journal journal;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String a = args[i];
+
+                if (i + 1 >= args.length) throw new IllegalArgumentException(a);
+                if ("-p".equals(a))
+                    port = Integer.parseInt(args[++i]);
+                else if ("-m".equals(a))
+                    maxTables = Integer.parseInt(args[++i]);
+                else if ("-j".equals(a))
+                    sJournal = args[++i];
+                else if ("-c".equals(a))
+                    sConfig = args[++i];
+                else if ("-i".equals(a))
+                    metricSecs = Integer.parseInt(args[++i]);
+                else
+                    throw new IllegalArgumentException(a);
+            }
+            if (maxTables < 1) throw new IllegalArgumentException("max tables must be 1 or more");
+            if (sConfig != null) props.watch(new File(sConfig));
+            journal = (sJournal == null) ? null : new TO_Journal(new File(sJournal));
+        }
+        catch (Exception e) {
+            System.err.println("Invalid argument: " + e.getMessage());
+            usage();
+            return;
+        }
+
+        TO_Server srv = new TO_Server(props, maxTables);
+        srv.setJournal(journal);
+        srv.getMetrics().register("server");
+        if (metricSecs > 0) srv.getMetrics().startDump(System.out, metricSecs);
+        if (journal != null) {
+            Runtime.getRuntime().addShutdownHook(new Thread() {
+                                                     public void run() {
+                                                         try {
+                                                             journal.close();
+                                                         }
+                                                         catch (IOException e) { }
+                                                     }
+                                                 });
+        }
+
+        try {
+            System.out.println("TwentyOne server on port " + port);
+            srv.serve(port);
+        }
+        catch (IOException e) {
+            System.err.println("Server failed: " + e);
+        }
+    }
+
+    // ---------------------- Inner Classes -------------------------
+
+    /**
+     * Class used to serve a connection (one table) until it is closed.
+    */
+    class Session implements Runnable
+    {
+        private Socket sock;
+
+        /** Constructor - session for the socket given. */
+        public Session(Socket s)
+        {
+            sock = s;
+        }
+
+        /** Method used to read and run the commands from the connection. */
+        public void run()
+        {
+            int open = tablesOpen.incrementAndGet(); // count this one when checking
+
+            try (Socket s = sock) {
+                BufferedReader in = new BufferedReader(
+                        new InputStreamReader(s.getInputStream(), StandardCharsets.US_ASCII));
+                PrintWriter out = new PrintWriter(
+                        new OutputStreamWriter(s.getOutputStream(), StandardCharsets.US_ASCII));
+
+                s.setTcpNoDelay(true);
+                if (open > iMaxTables) {
+                    out.print("ERR server full\r\n");
+                    out.flush();
+                    return;
+                }
+
+                int table = tableCount.incrementAndGet(); // tables let in only
+                TwentyOneProps.Config cfg = props.getConfig();
+                TO_Engine engine = new TO_Engine(new TO_Shoe(cfg.getNumDecks(),
+                                                             cfg.getPenetration(),
+                                                             System.nanoTime() ^ table),
+                                                 cfg.getInitialBank(), cfg.getRules());
+                if (journal != null) engine.setJournal(journal, table);
+                engine.setMetrics(metrics);
+
+                out.print("TWENTYONE " + PROTOCOL_VERSION + " bank=" + engine.getBank() +
+                          " min=" + cfg.getMinimumBet() + " max=" + cfg.getMaximumBet() +
+                          " rules=" + engine.getRules() + "\r\n");
+                out.flush();
+
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (line.trim().length() == 0) continue;
+                    String reply = runCommand(engine, line);
+                    if (reply == null) break;
+                    out.print(reply);
+                    out.print("\r\n");
+                    out.flush();
+                }
+            }
+            catch (IOException e) {
+                // connection dropped, table is closed
+            }
+            finally {
+                tablesOpen.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,423 @@
+import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/** Class used to keep the players bank, lifetime statistics and a summary of
+ * each playing session in a local file, so they carry over from one run of
+ * the game to the next. <br>
+ * Hands are only counted in memory ('handDone', 'bankAdded'), nothing waits
+ * on the disk.  A background (daemon) writer checks every 'FLUSH_MILLIS' and
+ * writes the store if anything changed since the last write: the store is
+ * written to a temporary file, synced to disk and moved over the old one, so
+ * the file is always a whole store.  A crash loses at most the hands of one
+ * flush window.  The store is also written on close (and when the program
+ * exits). <br>
+ * The file is a properties file: 'Bank', lifetime counts ('Hands', 'Wins',
+ * 'Losses', 'Pushes', 'Surrenders', 'Net', 'PeakBank', 'Sessions') and the
+ * last 'MAX_SESSIONS' sessions as 'Session.n=start,end,hands,wins,losses,
+ * pushes,start bank,end bank' (times in milliseconds, oldest first). <br><br>
+ * <b>Changes:</b>
+ * <ul>
+ * <li> 2026-10-18 - Initial release.
+ * <li> 2026-10-18 - Hands are counted by the engine ('TO_Engine.setStore').
+ * </ul>
+ * @author Michael G. Slack
+ * @author slack@attglobal.net
+ * @version Version 1.00
+*/
+public class TO_SessionStore
+{
+    // public statics
+    /** Time (milliseconds) between checks for changes to write. */
+    public static final long FLUSH_MILLIS = 2000L;
+
+    /** Most session summaries kept in the store. */
+    public static final int MAX_SESSIONS = 20;
+
+    // private statics
+    private static final String S_HEADER = "TwentyOne session store";
+
+    // private statics - stored values copied out to write (or report)
+    private static final int V_BANK = 0;
+    private static final int V_HANDS = 1;
+    private static final int V_WINS = 2;
+    private static final int V_LOSSES = 3;
+    private static final int V_PUSHES = 4;
+    private static final int V_SURRENDERS = 5;
+    private static final int V_NET = 6;
+    private static final int V_PEAK_BANK = 7;
+    private static final int V_SESSIONS = 8;
+    private static final int V_START = 9;
+    private static final int V_SES_HANDS = 10;
+    private static final int V_SES_WINS = 11;
+    private static final int V_SES_LOSSES = 12;
+    private static final int V_SES_PUSHES = 13;
+    private static final int V_START_BANK = 14;
+    private static final int V_COUNT = 15;
+
+    // private references
+    private File file;
+    private File tmpFile;
+    private final Object writeLock = new Object();
+    private ScheduledExecutorService writer = null;
+    private Thread hook = null;
+    private boolean bDirty = false;
+    private boolean bFailed = false;
+    private boolean bClosed = false;
+
+    // stored values (guarded by 'this')
+    private int iBank = -1;
+    private long lHands = 0L;
+    private long lWins = 0L;
+    private long lLosses = 0L;
+    private long lPushes = 0L;
+    private long lSurrenders = 0L;
+    private long lNet = 0L;
+    private long lPeakBank = 0L;
+    private long lSessions = 0L;
+    private ArrayList<String> sessions = new ArrayList<String>();
+
+    // current session
+    private long lStart = 0L;
+    private long lSesHands = 0L;
+    private long lSesWins = 0L;
+    private long lSesLosses = 0L;
+    private long lSesPushes = 0L;
+    private int iStartBank = 0;
+
+    // ------------------------ Constructors -------------------------
+
+    /** Constructor to open (or create) a store and start a new session
+     * (started when the bank is first known, see 'getBank').  The background
+     * writer is started here.
+     * @param f Store file.
+     * @throws IOException If the store can't be read.
+    */
+    public TO_SessionStore(File f) throws IOException
+    {
+        file = f;
+        tmpFile = new File(f.getPath() + ".tmp");
+        if (f.isFile()) load();
+
+        writer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                     public Thread newThread(Runnable r) {
+                         Thread t = new Thread(r, "TwentyOne-store");
+                         t.setDaemon(true);
+                         return t;
+                     }
+                 });
+        writer.scheduleWithFixedDelay(new Runnable() {
+                                          public void run() {
+                                              flush();
+                                          }
+                                      }, FLUSH_MILLIS, FLUSH_MILLIS, TimeUnit.MILLISECONDS);
+        hook = new Thread("TwentyOne-store-exit") {
+                   public void run() {
+                       flush();
+                   }
+               };
+        Runtime.getRuntime().addShutdownHook(hook);
+    }
+
+    // ------------------------ Private Methods --------------------------
+
+    /** Method to return a long stored value (0 if not there or bad). */
+    private static long getLong(Properties p, String key)
+    {
+        try {
+            return Long.parseLong(p.getProperty(key, "0").trim());
+        }
+        catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+
+    /** Method used to read the stored values from the file. */
+    private void load() throws IOException
+    {
+        Properties p = new Properties();
+        InputStream in = new FileInputStream(file);
+
+        try {
+            p.load(in);
+        }
+        finally {
+            in.close();
+        }
+
+        long bank = getLong(p, "Bank");
+        iBank = ((bank > 0) && (bank <= Integer.MAX_VALUE)) ? (int) bank : -1;
+        lHands = getLong(p, "Hands");
+        lWins = getLong(p, "Wins");
+        lLosses = getLong(p, "Losses");
+        lPushes = getLong(p, "Pushes");
+        lSurrenders = getLong(p, "Surrenders");
+        lNet = getLong(p, "Net");
+        lPeakBank = getLong(p, "PeakBank");
+        lSessions = getLong(p, "Sessions");
+        for (int i = 0; i < MAX_SESSIONS; i++) {
+            String s = p.getProperty("Session." + i);
+            if ((s != null) && (s.split(",").length == 8)) sessions.add(s.trim());
+        }
+    }
+
+    /** Method to return a session summary line from its values. */
+    private static String getSessionLine(long[] v, long end)
+    {
+        return v[V_START] + "," + end + "," + v[V_SES_HANDS] + "," + v[V_SES_WINS] + "," +
+               v[V_SES_LOSSES] + "," + v[V_SES_PUSHES] + "," + v[V_START_BANK] + "," +
+               v[V_BANK];
+    }
+
+    /** Method to return a copy of the stored values (V_xxx), null if
+     * nothing changed since the last copy.  Only the values are copied while
+     * holding the lock, they are formatted and written without it.
+    */
+    private synchronized long[] takeValues()
+    {
+        if (!bDirty) return null;
+
+        bDirty = false;
+        return getValues();
+    }
+
+    /** Method to return a copy of the stored values (V_xxx). */
+    private synchronized long[] getValues()
+    {
+        long[] v = new long[V_COUNT];
+
+        v[V_BANK] = iBank;
+        v[V_HANDS] = lHands;
+        v[V_WINS] = lWins;
+        v[V_LOSSES] = lLosses;
+        v[V_PUSHES] = lPushes;
+        v[V_SURRENDERS] = lSurrenders;
+        v[V_NET] = lNet;
+        v[V_PEAK_BANK] = lPeakBank;
+        v[V_SESSIONS] = lSessions;
+        v[V_START] = lStart;
+        v[V_SES_HANDS] = lSesHands;
+        v[V_SES_WINS] = lSesWins;
+        v[V_SES_LOSSES] = lSesLosses;
+        v[V_SES_PUSHES] = lSesPushes;
+        v[V_START_BANK] = iStartBank;
+
+        return v;
+    }
+
+    /** Method to return the session summary lines (earlier sessions kept,
+     * then the current one), most 'MAX_SESSIONS'.
+    */
+    private ArrayList<String> getSessionLines(long[] v)
+    {
+        ArrayList<String> all = new ArrayList<String>(MAX_SESSIONS);
+        int n = sessions.size(); // not changed after load
+
+        for (int i = Math.max(0, n - MAX_SESSIONS + ((v[V_START] == 0L) ? 0 : 1)); i < n; i++)
+            all.add(sessions.get(i));
+        if (v[V_START] != 0L) all.add(getSessionLine(v, System.currentTimeMillis()));
+
+        return all;
+    }
+
+    /** Method to return the stored values as properties. */
+    private Properties toProperties(long[] v)
+    {
+        Properties p = new Properties();
+        ArrayList<String> all = getSessionLines(v);
+
+        if (v[V_BANK] > 0) p.setProperty("Bank", "" + v[V_BANK]);
+        p.setProperty("Hands", "" + v[V_HANDS]);
+        p.setProperty("Wins", "" + v[V_WINS]);
+        p.setProperty("Losses", "" + v[V_LOSSES]);
+        p.setProperty("Pushes", "" + v[V_PUSHES]);
+        p.setProperty("Surrenders", "" + v[V_SURRENDERS]);
+        p.setProperty("Net", "" + v[V_NET]);
+        p.setProperty("PeakBank", "" + v[V_PEAK_BANK]);
+        p.setProperty("Sessions", "" + v[V_SESSIONS]);
+        for (int i = 0; i < all.size(); i++) p.setProperty("Session." + i, all.get(i));
+
+        return p;
+    }
+
+    /** Method used to write the properties to the store file (temporary
+     * file synced, then moved over the store).
+    */
+    private void write(Properties p) throws IOException
+    {
+        FileOutputStream out = new FileOutputStream(tmpFile);
+
+        try {
+            p.store(out, S_HEADER);
+            out.flush();
+            out.getFD().sync();
+        }
+        finally {
+            out.close();
+        }
+
+        try {
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // ------------------------- Public Methods --------------------------
+
+    /** Method to return the stored bank, or 'initial' if none is stored
+     * (first run, or the bank was lost).  Starts the session with the bank
+     * returned.
+    */
+    public synchronized int getBank(int initial)
+    {
+        if (iBank <= 0) iBank = initial;
+        if (lStart == 0L) {
+            lStart = System.currentTimeMillis();
+            iStartBank = iBank;
+            lSessions++;
+            if (iBank > lPeakBank) lPeakBank = iBank;
+            bDirty = true;
+        }
+
+        return iBank;
+    }
+
+    /** Method used to count the hand just finished by an engine (its
+     * results and bank), memory only.  Called by the engine the store is set
+     * in ('TO_Engine.setStore') as the hand is scored.
+    */
+    public synchronized void handDone(TO_Engine eng)
+    {
+        int n = eng.getResultCount();
+        int bank = eng.getBank();
+
+        lHands++;
+        lSesHands++;
+        for (int i = 0; i < n; i++) {
+            int r = eng.getResult(i);
+
+            if ((r == TO_Engine.R_PLAYER) || (r == TO_Engine.R_PLAYER_FIVE)) {
+                lWins++;
+                lSesWins++;
+            }
+            else if ((r == TO_Engine.R_DEALER) || (r == TO_Engine.R_DEALER_FIVE)) {
+                lLosses++;
+                lSesLosses++;
+            }
+            else if (r == TO_Engine.R_PUSH) {
+                lPushes++;
+                lSesPushes++;
+            }
+            else if (r == TO_Engine.R_SURRENDER) {
+                lSurrenders++;
+                lSesLosses++;
+            }
+        }
+        if (iBank > 0) lNet += bank - iBank;
+        iBank = bank;
+        if (bank > lPeakBank) lPeakBank = bank;
+        bDirty = true;
+    }
+
+    /** Method used to note money added to the bank (game reset, not counted
+     * as won), memory only.
+    */
+    public synchronized void bankAdded(int bank)
+    {
+        iBank = bank;
+        if (bank > lPeakBank) lPeakBank = bank;
+        bDirty = true;
+    }
+
+    /** Method used to write the store now if anything changed (called by
+     * the background writer, can be called from any thread).  Write errors
+     * are reported once, the changes are kept for the next try.
+    */
+    public void flush()
+    {
+        synchronized (writeLock) { // one write at a time
+            long[] v = takeValues();
+
+            if (v == null) return;
+            try {
+                write(toProperties(v));
+                bFailed = false;
+            }
+            catch (IOException e) {
+                synchronized (this) {
+                    bDirty = true;
+                }
+                if (!bFailed) System.err.println("Session store failed to write: " + e);
+                bFailed = true;
+            }
+        }
+    }
+
+    /** Method used to stop the background writer and write the store. */
+    public void close()
+    {
+        if (bClosed) return;
+
+        bClosed = true;
+        writer.shutdown();
+        try {
+            writer.awaitTermination(FLUSH_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        try {
+            Runtime.getRuntime().removeShutdownHook(hook);
+        }
+        catch (IllegalStateException e) { } // already exiting, hook flushes
+    }
+
+    /** Method to return the lifetime statistics and session summaries as a
+     * report string.
+    */
+    public String getReport()
+    {
+        StringBuffer sb = new StringBuffer(1000);
+        long[] v = getValues();
+        long decided = v[V_WINS] + v[V_LOSSES] + v[V_PUSHES] + v[V_SURRENDERS];
+        ArrayList<String> all = getSessionLines(v);
+        java.text.SimpleDateFormat df = new java.text.SimpleDateFormat("yyyy-MM-dd HH:mm");
+
+        sb.append(String.format("Lifetime (%d sessions):%n", v[V_SESSIONS]));
+        sb.append(String.format("  Hands:       %d%n", v[V_HANDS]));
+        if (decided > 0)
+            sb.append(String.format("  Won/Lost:    %.1f%% / %.1f%% (%.1f%% pushed, " +
+                                    "%d surrendered)%n", v[V_WINS] * 100.0 / decided,
+                                    v[V_LOSSES] * 100.0 / decided, v[V_PUSHES] * 100.0 / decided,
+                                    v[V_SURRENDERS]));
+        sb.append(String.format("  Net won:     %d%n", v[V_NET]));
+        sb.append(String.format("  Peak bank:   %d%n", v[V_PEAK_BANK]));
+        sb.append(String.format("%nSessions (latest last):%n"));
+        sb.append(String.format("  %-16s %7s %7s %7s  %s%n", "Started", "Minutes", "Hands",
+                                "Won", "Bank"));
+        for (int i = 0; i < all.size(); i++) {
+            String[] f = all.get(i).split(",");
+            try {
+                long start = Long.parseLong(f[0]);
+                long mins = (Long.parseLong(f[1]) - start) / 60000L;
+                sb.append(String.format("  %-16s %7d %7s %7s  %s to %s%n",
+                                        df.format(new java.util.Date(start)), mins, f[2], f[3],
+                                        f[6], f[7]));
+            }
+            catch (NumberFormatException e) { } // skip bad summary
+        }
+
+        return sb.toString();
+    }
+}
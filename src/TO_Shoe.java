@@ -0,0 +1,363 @@
+/** Class defines the card shoe used by the TwentyOne rules engine.  Cards are
+ * held as card codes (0 - 51 per deck) in a byte array instead of card
+ * objects so the shoe can be dealt from without any display (AWT) support.
+ * <br>
+ * A card code is made up of the suit (code / 13) and the rank (code % 13),
+ * rank 0 being an ace and rank 12 a king. <br>
+ * Dealing a card just moves the deal index, nothing is allocated.  The shoe
+ * is shuffled in place (Fisher-Yates, one pass over the cards) using its own
+ * 64 bit random number generator (xorshift64*) and is due for a reshuffle
+ * once the deal index reaches the cut card (penetration percent of the
+ * shoe, never later than 'RESHUFFLE_AT' cards left). <br>
+ * A Hi-Lo running count (2 - 6 count +1, 7 - 9 count 0, tens and aces count
+ * -1) is kept as each card is dealt (one table look up per card) and zeroed
+ * on a shuffle, the true count is the running count per deck left. <br>
+ * For simulations a hand can be dealt again from the same place in the
+ * shoe ('markHand', 'replayHand') with the first four cards swapped round
+ * (the dealer gets the players cards and the player the dealers), the two
+ * hands are antithetic: one tends to win when the other loses. <br><br>
+ * <b>Changes:</b>
+ * <ul>
+ * <li> 2026-10-18 - Initial release.
+ * <li> 2026-10-18 - Changed to byte card codes, own random number generator,
+ *                   one pass shuffle and a settable cut card (penetration).
+ * <li> 2026-10-18 - Keeps count of the cards left by point value.
+ * <li> 2026-10-18 - Shoe order can be copied out and loaded (shared shuffles).
+ * <li> 2026-10-18 - Keeps the Hi-Lo running count of the cards dealt.
+ * <li> 2026-10-18 - Added antithetic and stratified shuffles (simulations).
+ * <li> 2026-10-18 - Reshuffle can be asked for with cards held back.
+ * <li> 2026-10-18 - Antithetic hands replayed with the deal swapped in place
+ *                   of mirrored and stratified shoes.
+ * </ul>
+ * @author Michael G. Slack
+ * @author slack@attglobal.net
+ * @version Version 1.01
+*/
+public class TO_Shoe
+{
+    // public statics
+    /** Highest card point value (10 through king). */
+    public static final int MAX_POINTS = 10;
+
+    /** Number of cards in a single deck. */
+    public static final int CARDS_PER_DECK = 52;
+
+    /** Number of cards of each suit (ranks). */
+    public static final int RANKS = 13;
+
+    /** Reshuffle the shoe when this many cards (or less) are left, no matter
+     * what the penetration is set to.
+    */
+    public static final int RESHUFFLE_AT = 9;
+
+    /** Number of cards in the first deal of a hand (dealer and player
+     * cards in turn).
+    */
+    public static final int DEAL_CARDS = 4;
+
+    // private statics
+    /** Card points by card code (within a deck). */
+    private static final byte[] POINTS = new byte[CARDS_PER_DECK];
+
+    /** Hi-Lo count value by card code (within a deck). */
+    private static final byte[] HILO = new byte[CARDS_PER_DECK];
+
+    /** Seed spreader used for unseeded shoes (so two shoes created in the
+     * same tick do not deal the same).
+    */
+    private static long seedSpread = 0x2545F4914F6CDD1DL;
+
+    static {
+        for (int i = 0; i < CARDS_PER_DECK; i++) {
+            int r = (i % RANKS) + 1;
+            POINTS[i] = (byte) ((r > 10) ? 10 : r);
+            HILO[i] = (byte) (((r >= 2) && (r <= 6)) ? 1 : (((r == 1) || (r >= 10)) ? -1 : 0));
+        }
+    }
+
+    // private references
+    private byte[] cards = null;
+    private int[] pointsFull = new int[MAX_POINTS + 1];
+    private int[] pointsLeft = new int[MAX_POINTS + 1];
+    private int iNext = 0;
+    private int iRunning = 0;
+    private int iCutCard = 0;
+    private int iPenetration = TwentyOneProps.MAX_PENETRATION;
+    private int iNumOfDecks = 1;
+    private long lRandom = 0L;
+    private int[] pointsMark = new int[MAX_POINTS + 1];
+    private int iMarkNext = 0;
+    private int iMarkRunning = 0;
+
+    // ------------------------ Constructors -------------------------
+
+    /** Constructor to create a shuffled shoe (dealt to 'RESHUFFLE_AT').
+     * @param numDecks Number of decks in the shoe.
+    */
+    public TO_Shoe(int numDecks)
+    {
+        this(numDecks, TwentyOneProps.MAX_PENETRATION, System.nanoTime() ^ nextSeed());
+    }
+
+    /** Constructor to create a shuffled shoe using a seed for the random
+     * number generator (repeatable deals).
+     * @param numDecks Number of decks in the shoe.
+     * @param seed Seed used to shuffle the shoe.
+    */
+    public TO_Shoe(int numDecks, long seed)
+    {
+        this(numDecks, TwentyOneProps.MAX_PENETRATION, seed);
+    }
+
+    /** Constructor to create a shuffled shoe with a cut card.
+     * @param numDecks Number of decks in the shoe.
+     * @param penetration Percent of the shoe dealt before it is reshuffled.
+     * @param seed Seed used to shuffle the shoe.
+    */
+    public TO_Shoe(int numDecks, int penetration, long seed)
+    {
+        if (numDecks < 1) numDecks = 1;
+        this.iNumOfDecks = numDecks;
+        this.cards = new byte[CARDS_PER_DECK * numDecks];
+        for (int i = 0; i < cards.length; i++) {
+            cards[i] = (byte) (i % CARDS_PER_DECK);
+            pointsFull[POINTS[cards[i]]]++;
+        }
+        setSeed(seed);
+        setPenetration(penetration);
+
+        shuffle();
+    }
+
+    // ------------------------ Private Methods --------------------------
+
+    /** Method used to return the next unseeded shoe seed. */
+    private static synchronized long nextSeed()
+    {
+        seedSpread += 0x9E3779B97F4A7C15L;
+        return seedSpread;
+    }
+
+    /** Method used to return the next random number (xorshift64*). */
+    private long nextLong()
+    {
+        long x = lRandom;
+
+        x ^= x >>> 12;
+        x ^= x << 25;
+        x ^= x >>> 27;
+        lRandom = x;
+
+        return x * 0x2545F4914F6CDD1DL;
+    }
+
+    /** Method to return a random index 0 through n - 1 (multiply/shift, no
+     * divide).
+    */
+    private int nextIndex(int n)
+    {
+        return (int) (((nextLong() >>> 32) * n) >>> 32);
+    }
+
+    // ------------------------- Public Methods --------------------------
+
+    /** Method to return the rank (1 - ace, through 13 - king) of a card code. */
+    public static int getRank(int card)
+    {
+        return (card % RANKS) + 1;
+    }
+
+    /** Method to return the point value of a card code (face cards are worth
+     * 10, aces are worth 1).
+    */
+    public static int getPoints(int card)
+    {
+        return POINTS[card];
+    }
+
+    /** Method used to set the seed of the shoes random number generator. */
+    public void setSeed(long seed)
+    {
+        // mix the seed (splitmix64), generator state can't be zero
+        seed = (seed ^ (seed >>> 30)) * 0xBF58476D1CE4E5B9L;
+        seed = (seed ^ (seed >>> 27)) * 0x94D049BB133111EBL;
+        seed ^= seed >>> 31;
+        lRandom = (seed == 0L) ? 0x9E3779B97F4A7C15L : seed;
+    }
+
+    /** Method used to set the cut card by the percent of the shoe dealt
+     * before a reshuffle ('TwentyOneProps.MIN_PENETRATION' through
+     * 'TwentyOneProps.MAX_PENETRATION').
+    */
+    public void setPenetration(int penetration)
+    {
+        int n = cards.length;
+
+        if (penetration < TwentyOneProps.MIN_PENETRATION)
+            penetration = TwentyOneProps.MIN_PENETRATION;
+        if (penetration > TwentyOneProps.MAX_PENETRATION)
+            penetration = TwentyOneProps.MAX_PENETRATION;
+        iPenetration = penetration;
+        iCutCard = (int) (((long) n * penetration) / 100);
+        if (iCutCard > n - RESHUFFLE_AT) iCutCard = n - RESHUFFLE_AT;
+        if (iCutCard < 1) iCutCard = 1;
+    }
+
+    /** Method used to gather all of the cards back into the shoe and shuffle
+     * them (in place, in one pass).
+    */
+    public void shuffle()
+    {
+        byte[] cs = cards;
+
+        for (int i = cs.length - 1; i > 0; i--) {
+            int j = nextIndex(i + 1);
+            byte t = cs[i];
+            cs[i] = cs[j];
+            cs[j] = t;
+        }
+        System.arraycopy(pointsFull, 0, pointsLeft, 0, pointsFull.length);
+        iNext = 0;
+        iRunning = 0;
+        markHand();
+    }
+
+    /** Method used to mark the place in the shoe the next hand is dealt
+     * from (see 'replayHand', a shuffle moves the mark to the top of the
+     * shoe).
+    */
+    public void markHand()
+    {
+        iMarkNext = iNext;
+        iMarkRunning = iRunning;
+        System.arraycopy(pointsLeft, 0, pointsMark, 0, pointsLeft.length);
+    }
+
+    /** Method used to put the cards dealt since 'markHand' back into the
+     * shoe and swap the dealer and player cards of the first deal (first
+     * and second, third and fourth card), so the next hand is dealt the
+     * antithetic of the one before.  The shoe carries on from the end of
+     * the replayed hand.
+    */
+    public void replayHand()
+    {
+        byte[] cs = cards;
+        int m = iMarkNext;
+
+        if (iNext - m < DEAL_CARDS) return;
+
+        for (int i = 0; i < DEAL_CARDS; i += 2) {
+            byte t = cs[m + i];
+            cs[m + i] = cs[m + i + 1];
+            cs[m + i + 1] = t;
+        }
+        System.arraycopy(pointsMark, 0, pointsLeft, 0, pointsLeft.length);
+        iNext = m;
+        iRunning = iMarkRunning;
+    }
+
+    /** Method used to copy the order of the cards in the shoe (all of them,
+     * dealt or not) into 'dst' ('getCardCount()' long).
+    */
+    public void copyOrder(byte[] dst)
+    {
+        System.arraycopy(cards, 0, dst, 0, cards.length);
+    }
+
+    /** Method used to put the cards back into the shoe in the order given
+     * (from 'copyOrder' of a shoe the same size) in place of a shuffle.
+    */
+    protected void load(byte[] order)
+    {
+        System.arraycopy(order, 0, cards, 0, cards.length);
+        System.arraycopy(pointsFull, 0, pointsLeft, 0, pointsFull.length);
+        iNext = 0;
+        iRunning = 0;
+        markHand();
+    }
+
+    /** Method used to deal the next card (code) from the shoe. */
+    public int getNextCard()
+    {
+        int c = cards[iNext++];
+
+        pointsLeft[POINTS[c]]--;
+        iRunning += HILO[c];
+
+        return c;
+    }
+
+    /** Method to return the Hi-Lo count value of a card code (+1, 0 or -1). */
+    public static int getHiLo(int card)
+    {
+        return HILO[card];
+    }
+
+    /** Method to return the Hi-Lo running count of the cards dealt since
+     * the last shuffle.
+    */
+    public int getRunningCount()
+    {
+        return iRunning;
+    }
+
+    /** Method to return the Hi-Lo true count (running count per deck left
+     * to deal, 0 if the shoe is empty).
+    */
+    public double getTrueCount()
+    {
+        int left = cards.length - iNext;
+
+        return (left == 0) ? 0.0 : (iRunning * (double) CARDS_PER_DECK) / left;
+    }
+
+    /** Method to return the number of cards left in the shoe worth the
+     * points given (1 - aces through 10 - tens and face cards).
+    */
+    public int getCardsLeft(int points)
+    {
+        return pointsLeft[points];
+    }
+
+    /** Method to return the number of cards left to deal in the shoe. */
+    public int getCardsLeft()
+    {
+        return cards.length - iNext;
+    }
+
+    /** Method to return the number of cards in the full shoe. */
+    public int getCardCount()
+    {
+        return cards.length;
+    }
+
+    /** Method to return true if the shoe should be reshuffled before the
+     * next hand is dealt (the cut card has been reached).
+    */
+    public boolean needsShuffle()
+    {
+        return iNext >= iCutCard;
+    }
+
+    /** Method to return true if the shoe should be reshuffled before the
+     * next hand is dealt, the cut card has been reached or fewer than
+     * 'cards' cards are left (a hand that can take more cards than
+     * 'RESHUFFLE_AT').
+    */
+    public boolean needsShuffle(int cards)
+    {
+        return (needsShuffle()) || (getCardsLeft() < cards);
+    }
+
+    /** Method to return the penetration (percent) the shoe is dealt to. */
+    public int getPenetration()
+    {
+        return iPenetration;
+    }
+
+    /** Method to return the number of decks in the shoe. */
+    public int getNumDecks()
+    {
+        return iNumOfDecks;
+    }
+}
@@ -0,0 +1,990 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/** Class used to run a Monte Carlo simulation of the TwentyOne rules (via
+ * 'TO_Engine') from the command line.  Hands are played by a pluggable
+ * player strategy ('TO_Strategy') and the results are reported as the house
+ * edge, variance and confidence interval per hand (in bet units). <br>
+ * Hands are split up into fixed size chunks, each chunk is played with its
+ * own shoe (seeded from the run seed and chunk number) and engine on a
+ * fork/join pool, then the chunk results are merged.  Same seed and number of
+ * hands gives the same results no matter how many threads are used. <br>
+ * Usage: java TO_Simulator [-n hands] [-d decks] [-p penetration] [-b bet]
+ * [-t threads] [-s strategy] [-r seed] [-j journal file]
+ * [-i metrics report seconds] [-u rules] [-c count ramp] [-m max bet]
+ * [-v variance mode] [-x compared strategy] [-w compared rules]
+ * [-k hands kept] [-q hand query] <br>
+ * A strategy ('-s', '-x') is a 'TO_Strategy' class or a strategy chart file
+ * (compiled once into a 'TO_StrategyTable' shared by all of the workers).
+ * <br>
+ * Decks, penetration, rules and bet default to the settings in
+ * 'TwentyOne.properties', rules given with '-u' (see 'TO_Rules') are laid
+ * over them. <br>
+ * With '-c' the bet follows the Hi-Lo true count of the shoe: the bet is
+ * raised by 'ramp' bets for each whole true count point above 0, up to the
+ * maximum bet ('-m', default from the properties).  Results are then in
+ * units of the (minimum) bet, the edge on the amount bet is also shown. <br>
+ * Variance reduction: with '-v anti' hands are played in antithetic pairs,
+ * each hand is dealt again from the same place in the shoe with the dealer
+ * and player cards of the deal swapped ('TO_Shoe.replayHand').  Hands are
+ * then played in whole shoes and the standard error is worked out from the
+ * shoe (batch) results.  '-x' and/or '-w' play a second strategy and/or
+ * rule set against the same shoes (common random numbers, same seeds and
+ * same shoes batch by batch) and report the difference with its paired
+ * standard error (not with '-v anti', the swapped deals undo most of the
+ * pairing).  The report shows the CPU time used, the standard
+ * error for the CPU time (SE x sqrt(CPU secs), lower is better) and the
+ * speedup over independent hands (or separate runs) for the same CPU time.
+ * <br>
+ * With '-k' the last so many hands played are kept in a 'TO_HandRing' (off
+ * the heap) and the last few are shown, '-q' (with '-k', can be given more
+ * than once) answers a query about the hands kept from a 'TO_HandIndex'.
+ * <br><br>
+ * <b>Changes:</b>
+ * <ul>
+ * <li> 2026-10-18 - Initial release.
+ * <li> 2026-10-18 - Added shoe penetration.
+ * <li> 2026-10-18 - Hands can be written to a journal ('TO_Journal', the
+ *                   chunk number is used as the table number).
+ * <li> 2026-10-18 - Defaults read from one properties snapshot.
+ * <li> 2026-10-18 - Hands can be counted in a 'TO_Metrics' (MBean and
+ *                   timed report with '-i').
+ * <li> 2026-10-18 - Hands played under a 'TO_Rules' set ('-u').
+ * <li> 2026-10-18 - Added betting by the Hi-Lo true count ('-c', '-m').
+ * <li> 2026-10-18 - Added variance reduction (antithetic and stratified
+ *                   shoes, common random numbers compare) and CPU time.
+ * <li> 2026-10-18 - Last hands played can be kept in a 'TO_HandRing' ('-k').
+ * <li> 2026-10-18 - Added hand queries over the hands kept ('-q').
+ * <li> 2026-10-18 - Strategies can be chart files ('TO_StrategyTable').
+ * <li> 2026-10-18 - Shoes counted by the engine reshuffle (split hands played).
+ * <li> 2026-10-18 - Antithetic hands (deal swapped) in place of antithetic
+ *                   and stratified shoes.
+ * </ul>
+ * @author Michael G. Slack
+ * @author slack@attglobal.net
+ * @version Version 1.00
+*/
+public class TO_Simulator
+{
+    // public statics
+    /** Default number of hands to play. */
+    public static final long DEF_HANDS = 10000000L;
+
+    /** Number of hands played in a chunk (by one worker, with one shoe). */
+    public static final int CHUNK_HANDS = 250000;
+
+    /** Default strategy class used to play the hands. */
+    public static final String DEF_STRATEGY = "TO_DealerStrategy";
+
+    /** Variance mode - independent hands. */
+    public static final int VR_NONE = 0;
+
+    /** Variance mode - antithetic pairs of hands (deal swapped). */
+    public static final int VR_ANTITHETIC = 1;
+
+    // private statics
+    /** Bank given to the engine, topped up so the player never runs out. */
+    private static final int SIM_BANK = 1000000000;
+
+    /** Time one player action in this many when counting metrics. */
+    private static final int METRICS_TIME_EVERY = 64;
+
+    /** Number of kept hands shown (with '-k'). */
+    private static final int RING_SHOWN = 5;
+
+    /** Z value for a 95% confidence interval. */
+    private static final double Z_95 = 1.96;
+
+    // private references
+    private int iNumOfDecks = 1;
+    private int iPenetration = TwentyOneProps.MAX_PENETRATION;
+    private TO_Rules rules = TO_Rules.DEFAULT;
+    private int iBet = TwentyOneProps.MIN_BET_AMT;
+    private int iMaxBet = TwentyOneProps.MIN_BET_AMT;
+    private int iRamp = 0;
+    private long lHands = DEF_HANDS;
+    private int iThreads = Runtime.getRuntime().availableProcessors();
+    private long lSeed = System.nanoTime();
+    private Class<?> strategyClass = null;
+    private TO_Journal journal = null;
+    private TO_Metrics metrics = null;
+    private TO_HandRing handRing = null;
+    private int iVarMode = VR_NONE;
+    private Class<?> compareClass = null;
+    private TO_Rules compareRules = null;
+    private TO_StrategyTable strategyTable = null;
+    private TO_StrategyTable compareTable = null;
+
+    // ------------------------ Constructors -------------------------
+
+    /** Constructor to create the simulator.
+     * @param numDecks Number of decks in each shoe.
+     * @param penetration Percent of each shoe dealt before reshuffling.
+     * @param bet Bet made on each hand.
+     * @param hands Number of hands to play.
+     * @param threads Number of worker threads to use.
+     * @param seed Seed used to seed the shoes.
+     * @param strategyClass Class (implementing TO_Strategy) used to play the hands.
+    */
+    public TO_Simulator(int numDecks, int penetration, int bet, long hands, int threads,
+                        long seed, Class<?> strategyClass)
+    {
+        this.iNumOfDecks = numDecks;
+        this.iPenetration = penetration;
+        this.rules = TO_Rules.DEFAULT.withShoe(numDecks, penetration);
+        this.iBet = bet;
+        this.lHands = hands;
+        this.iThreads = threads;
+        this.lSeed = seed;
+        this.strategyClass = strategyClass;
+    }
+
+    // ------------------------ Private Methods --------------------------
+
+    /** Method used to return the seed for a chunk (spreads out the bits). */
+    private long getChunkSeed(long chunk)
+    {
+        long z = lSeed + (chunk + 1) * 0x9E3779B97F4A7C15L;
+
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /** Method to return the bet for the next hand when betting by the true
+     * count.
+    */
+    private int getCountBet(TO_Engine engine)
+    {
+        int tc = (int) engine.getTrueCount(); // whole points
+
+        if (tc <= 0) return iBet;
+
+        return (int) Math.min((long) iBet * (1 + (long) tc * iRamp), iMaxBet);
+    }
+
+    /** Method to return the CPU time (nanoseconds) used by the current
+     * thread (0 if not supported).
+    */
+    private static long getCpuTime()
+    {
+        ThreadMXBean tb = ManagementFactory.getThreadMXBean();
+
+        return (tb.isCurrentThreadCpuTimeSupported()) ? tb.getCurrentThreadCpuTime() : 0L;
+    }
+
+    /** Method to return true if a second strategy or rule set is compared. */
+    private boolean isCompare()
+    {
+        return (compareClass != null) || (compareRules != null) || (compareTable != null);
+    }
+
+    /** Method used to create a new strategy instance (one per chunk), the
+     * table is used instead if not null (shared, tables don't change).
+    */
+    private TO_Strategy createStrategy(Class<?> sc, TO_StrategyTable table)
+    {
+        if (table != null) return table;
+        try {
+            return (TO_Strategy) sc.getDeclaredConstructor().newInstance();
+        }
+        catch (Exception e) {
+            throw new IllegalStateException("Strategy could not be created: " + e);
+        }
+    }
+
+    // ------------------------- Protected Methods -------------------------
+
+    /** Method used to play the hands of one side of a chunk with its own
+     * shoe, engine and strategy.  Without variance reduction or a compare
+     * 'count' hands are played, otherwise play stops at the end of a batch
+     * (shoe) once 'count' hands are played (or 'batches' batches if not
+     * -1).  The batch results are put in 'batchNet' and 'batchHands' (if not
+     * null) or paired in 'pair' with the ones in 'pairNet' and 'pairHands'
+     * (if 'pair' is not null).
+    */
+    private void playSide(long chunk, boolean bMain, long count, int batches, Result res,
+                          double[][] batchNet, long[][] batchHands,
+                          Result pair, double[] pairNet, long[] pairHands)
+    {
+        TO_Rules r = (bMain) ? rules : ((compareRules == null) ? rules : compareRules);
+        TO_Shoe shoe = new TO_Shoe(r.getDecks(), r.getPenetration(), getChunkSeed(chunk));
+        TO_Engine engine = new TO_Engine(shoe, SIM_BANK, r);
+        boolean bSame = (bMain) || ((compareClass == null) && (compareTable == null));
+        TO_Strategy strategy = (bSame) ? createStrategy(strategyClass, strategyTable)
+                                       : createStrategy(compareClass, compareTable);
+        boolean bExact = (iVarMode == VR_NONE) && (!isCompare());
+        boolean bAnti = (iVarMode == VR_ANTITHETIC);
+        int done = 0;
+        long i = 0;
+
+        if (bMain) {
+            if (journal != null) engine.setJournal(journal, (int) chunk);
+            if (metrics != null) engine.setMetrics(metrics);
+            if (handRing != null) engine.setHandRing(handRing);
+        }
+
+        while (true) {
+            if ((bExact) && (i >= count)) break;
+            if (engine.needsShuffle()) { // batch (shoe) done
+                if (pair != null)
+                    pair.addPair(pairNet[done], pairHands[done], res.getBatchNet(),
+                                 res.getBatchHands());
+                else if (batchNet != null) {
+                    if (done == batchNet[0].length) {
+                        batchNet[0] = Arrays.copyOf(batchNet[0], done * 2);
+                        batchHands[0] = Arrays.copyOf(batchHands[0], done * 2);
+                    }
+                    batchNet[0][done] = res.getBatchNet();
+                    batchHands[0][done] = res.getBatchHands();
+                }
+                res.endBatch();
+                done++;
+                if ((batches < 0) ? (i >= count) : (done >= batches)) break;
+            }
+            if (engine.getBank() < SIM_BANK / 2) engine.addToBank(SIM_BANK / 2);
+            int bet = (iRamp > 0) ? getCountBet(engine) : iBet;
+            if (bAnti) {
+                shoe.markHand();
+                res.add((double) (playHand(engine, strategy, bet)) / iBet, (double) bet / iBet);
+                shoe.replayHand();
+                i++;
+            }
+            res.add((double) (playHand(engine, strategy, bet)) / iBet, (double) bet / iBet);
+            i++;
+        }
+        res.endBatch();
+    }
+
+    /** Method used to play a chunk of hands (and the compared hands, if
+     * comparing).
+    */
+    protected Result playChunk(long chunk)
+    {
+        long first = chunk * CHUNK_HANDS;
+        long count = Math.min(CHUNK_HANDS, lHands - first);
+        long start = getCpuTime();
+        Result res = new Result();
+
+        if (!isCompare()) {
+            playSide(chunk, true, count, -1, res, null, null, null, null, null);
+        }
+        else {
+            double[][] bn = new double[][] {new double[1024]};
+            long[][] bh = new long[][] {new long[1024]};
+            Result vs = new Result();
+
+            playSide(chunk, true, count, -1, res, bn, bh, null, null, null);
+            playSide(chunk, false, count, (int) res.getBatches(), vs, null, null,
+                     res, bn[0], bh[0]);
+            res.setCompared(vs);
+        }
+        res.addCpuSecs((getCpuTime() - start) / 1e9);
+
+        return res;
+    }
+
+    // --------------------------- Public Methods --------------------------
+
+    /** Method used to play a single hand in the engine using the strategy
+     * given.  Returns the amount the bank changed by (net won or lost).
+    */
+    public static int playHand(TO_Engine engine, TO_Strategy strategy, int bet)
+    {
+        int iBank = engine.getBank();
+
+        engine.startHand(bet);
+        engine.checkHands();
+        playOut(engine, strategy);
+        engine.clearHands();
+
+        return engine.getBank() - iBank;
+    }
+
+    /** Method used to play the player actions of a hand dealt in the engine
+     * using the strategy given, until the hand is done.  Actions not allowed
+     * are played as a 'stay'.
+    */
+    public static void playOut(TO_Engine engine, TO_Strategy strategy)
+    {
+        while (engine.getState() == TO_Engine.ST_PLAYER) {
+            int a = strategy.getAction(engine);
+
+            if ((engine.getActions() & a) == 0) a = TO_Engine.A_STAY;
+            switch (a) {
+                case TO_Engine.A_HIT:       engine.hit();        break;
+                case TO_Engine.A_DOUBLE:    engine.doubleDown(); break;
+                case TO_Engine.A_SPLIT:     engine.split();      break;
+                case TO_Engine.A_INSURANCE: engine.insurance();  break;
+                case TO_Engine.A_SURRENDER: engine.surrender();  break;
+                default:                    engine.stay();       break;
+            }
+        }
+    }
+
+    /** Method used to set the rules the hands are played under (decks and
+     * penetration of the shoes are taken from the rules).
+    */
+    public void setRules(TO_Rules r)
+    {
+        rules = r;
+        iNumOfDecks = r.getDecks();
+        iPenetration = r.getPenetration();
+    }
+
+    /** Method used to turn on betting by the Hi-Lo true count, the bet is
+     * raised by 'ramp' bets for each whole true count point above 0, up to
+     * 'maxBet' (ramp of 0 turns it off).
+    */
+    public void setCountBetting(int ramp, int maxBet)
+    {
+        iRamp = ramp;
+        iMaxBet = Math.max(maxBet, iBet);
+    }
+
+    /** Method used to set the variance mode of the hands (VR_xxx value). */
+    public void setVarianceMode(int mode)
+    {
+        iVarMode = mode;
+    }
+
+    /** Method used to set a second strategy class and/or rule set (null
+     * for the same as the main one) played against the same shoes and
+     * compared.  Compared rules must have the same number of decks.
+    */
+    public void setCompare(Class<?> sc, TO_Rules r)
+    {
+        if ((r != null) && (r.getDecks() != rules.getDecks()))
+            throw new IllegalArgumentException("compared rules must have the same decks");
+        compareClass = sc;
+        compareRules = r;
+    }
+
+    /** Method used to set the strategy table the hands are played with
+     * (instead of the strategy class, null for the class).
+    */
+    public void setStrategyTable(TO_StrategyTable t)
+    {
+        strategyTable = t;
+    }
+
+    /** Method used to set a second strategy table played against the same
+     * shoes and compared (instead of a compared strategy class).
+    */
+    public void setCompareTable(TO_StrategyTable t)
+    {
+        compareTable = t;
+    }
+
+    /** Method to return the strategy table in chart file 's', null if 's'
+     * is not a file (a strategy class name).
+     * @throws IOException If the file can't be read.
+     * @throws IllegalArgumentException If a chart row is bad.
+    */
+    public static TO_StrategyTable loadTable(String s) throws java.io.IOException
+    {
+        java.io.File f = new java.io.File(s);
+
+        return (f.isFile()) ? TO_StrategyTable.load(f) : null;
+    }
+
+    /** Method to return the variance mode value of a name ('none' or
+     * 'anti').
+     * @throws IllegalArgumentException If the name is not known.
+    */
+    public static int parseVarianceMode(String s)
+    {
+        String m = s.trim().toLowerCase();
+
+        if (m.startsWith("anti")) return VR_ANTITHETIC;
+        if (!"none".equals(m))
+            throw new IllegalArgumentException("unknown variance mode " + s);
+
+        return VR_NONE;
+    }
+
+    /** Method to return the name of a variance mode value. */
+    public static String getVarianceName(int mode)
+    {
+        return (mode == VR_ANTITHETIC) ? "anti" : "none";
+    }
+
+    /** Method used to set the journal the hands played are written to. */
+    public void setJournal(TO_Journal j)
+    {
+        journal = j;
+    }
+
+    /** Method used to set the metrics the hands played are counted in. */
+    public void setMetrics(TO_Metrics m)
+    {
+        metrics = m;
+    }
+
+    /** Method used to set the ring the last hands played are kept in. */
+    public void setHandRing(TO_HandRing r)
+    {
+        handRing = r;
+    }
+
+    /** Method used to run the simulation, returns the merged results. */
+    public Result run()
+    {
+        long chunks = (lHands + CHUNK_HANDS - 1) / CHUNK_HANDS;
+        ForkJoinPool pool = new ForkJoinPool(iThreads);
+
+        try {
+            return pool.invoke(new PlayTask(0, chunks));
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    /** Method used to print out the usage to the caller. */
+    public static void usage()
+    {
+        System.err.println("Usage: java TO_Simulator [-n hands] [-d decks] [-p penetration] " +
+                           "[-b bet] [-t threads] [-s strategy] [-r seed] " +
+                           "[-j journal file] [-i metrics report seconds] [-u rules] " +
+                           "[-c count ramp] [-m max bet] [-v variance mode] " +
+                           "[-x compared strategy] [-w compared rules] " +
+                           "[-k hands kept] [-q hand query]");
+    }
+
+    /** Method used to run the simulator from the command line. */
+    public static void main(String[] args)
+    {
+        TwentyOneProps.Config cfg = new TwentyOneProps(new TO_DealerStrategy()).getConfig();
+        int numDecks = cfg.getNumDecks();
+        int penetration = cfg.getPenetration();
+        int bet = cfg.getMinimumBet();
+        int maxBet = cfg.getMaximumBet();
+        int ramp = 0;
+        long hands = DEF_HANDS;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = System.nanoTime();
+        String sStrategy = DEF_STRATEGY;
+        String sJournal = null;
+        String sRules = "";
+        int metricSecs = 0;
+        int varMode = VR_NONE;
+        boolean bVar = false;
+        String sCompare = null;
+        String sCompareRules = null;
+        Class<?> csc = null;
+        TO_Rules crules = null;
+        TO_Rules rules = null;
+        Class<?> sc = null;
+        TO_StrategyTable table = null;
+        TO_StrategyTable ctable = null;
+        TO_Journal journal = null;
+        TO_Metrics metrics = null;
+        int ringHands = 0;
+        TO_HandRing ring = null;
+        java.util.ArrayList<String> queries = new java.util.ArrayList<String>();
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String a = args[i];
+
+                if (i + 1 >= args.length) throw new IllegalArgumentException(a);
+                if ("-n".equals(a))
+                    hands = Long.parseLong(args[++i]);
+                else if ("-d".equals(a))
+                    numDecks = Integer.parseInt(args[++i]);
+                else if ("-p".equals(a))
+                    penetration = Integer.parseInt(args[++i]);
+                else if ("-b".equals(a))
+                    bet = Integer.parseInt(args[++i]);
+                else if ("-t".equals(a))
+                    threads = Integer.parseInt(args[++i]);
+                else if ("-s".equals(a))
+                    sStrategy = args[++i];
+                else if ("-r".equals(a))
+                    seed = Long.parseLong(args[++i]);
+                else if ("-j".equals(a))
+                    sJournal = args[++i];
+                else if ("-i".equals(a))
+                    metricSecs = Integer.parseInt(args[++i]);
+                else if ("-u".equals(a))
+                    sRules = args[++i];
+                else if ("-c".equals(a))
+                    ramp = Integer.parseInt(args[++i]);
+                else if ("-m".equals(a))
+                    maxBet = Integer.parseInt(args[++i]);
+                else if ("-v".equals(a)) {
+                    varMode = parseVarianceMode(args[++i]);
+                    bVar = true;
+                }
+                else if ("-x".equals(a))
+                    sCompare = args[++i];
+                else if ("-w".equals(a))
+                    sCompareRules = args[++i];
+                else if ("-k".equals(a))
+                    ringHands = Integer.parseInt(args[++i]);
+                else if ("-q".equals(a))
+                    queries.add(args[++i]);
+                else
+                    throw new IllegalArgumentException(a);
+            }
+            if ((hands < 1) || (numDecks < 1) || (bet < 1) || (threads < 1))
+                throw new IllegalArgumentException("values must be 1 or more");
+            if ((ramp < 0) || ((ramp > 0) && (maxBet < bet)))
+                throw new IllegalArgumentException("ramp must be 0 or more, max bet at least bet");
+            rules = TO_Rules.parse(sRules, cfg.getRules().withShoe(numDecks, penetration));
+            table = loadTable(sStrategy);
+            sc = (table != null) ? TO_StrategyTable.class : Class.forName(sStrategy);
+            if (!TO_Strategy.class.isAssignableFrom(sc))
+                throw new IllegalArgumentException(sStrategy + " is not a TO_Strategy");
+            if (sCompare != null) {
+                ctable = loadTable(sCompare);
+                if (ctable == null) {
+                    csc = Class.forName(sCompare);
+                    if (!TO_Strategy.class.isAssignableFrom(csc))
+                        throw new IllegalArgumentException(sCompare + " is not a TO_Strategy");
+                }
+            }
+            if ((varMode != VR_NONE) && ((sCompare != null) || (sCompareRules != null)))
+                throw new IllegalArgumentException("variance mode can't be used with a compare");
+            if (sCompareRules != null) {
+                crules = TO_Rules.parse(sCompareRules, rules);
+                if (crules.getDecks() != rules.getDecks())
+                    throw new IllegalArgumentException("compared rules must have the same decks");
+            }
+            if (sJournal != null) journal = new TO_Journal(new java.io.File(sJournal));
+            if ((queries.size() > 0) && (ringHands < 1))
+                throw new IllegalArgumentException("queries need hands kept (-k)");
+            if (ringHands > 0) ring = new TO_HandRing(ringHands);
+            if (queries.size() > 0) ring.createIndex();
+        }
+        catch (Exception e) {
+            System.err.println("Invalid argument: " + e.getMessage());
+            usage();
+            return;
+        }
+
+        TO_Simulator sim = new TO_Simulator(numDecks, penetration, bet, hands, threads,
+                                            seed, sc);
+        sim.setRules(rules);
+        sim.setCountBetting(ramp, maxBet);
+        sim.setVarianceMode(varMode);
+        sim.setStrategyTable(table);
+        sim.setCompare(csc, crules);
+        sim.setCompareTable(ctable);
+        sim.setJournal(journal);
+        sim.setHandRing(ring);
+        if (metricSecs > 0) {
+            metrics = new TO_Metrics(METRICS_TIME_EVERY);
+            metrics.register("simulator");
+            metrics.startDump(System.out, metricSecs);
+            sim.setMetrics(metrics);
+        }
+        long start = System.nanoTime();
+        Result res = sim.run();
+        double secs = (System.nanoTime() - start) / 1e9;
+        if (metrics != null) metrics.stopDump();
+
+        if (journal != null) {
+            try {
+                journal.close();
+            }
+            catch (java.io.IOException e) {
+                System.err.println("Journal close failed: " + e);
+            }
+        }
+
+        System.out.println("TwentyOne simulation");
+        System.out.println("  Hands:          " + res.getHands());
+        System.out.println("  Rules:          " + rules);
+        System.out.println("  Bet:            " + bet + ((ramp > 0) ? " to " + maxBet +
+                           " (+" + ramp + " per true count)" : ""));
+        System.out.println("  Strategy:       " +
+                           ((table != null) ? table.toString() : sStrategy));
+        System.out.println("  Threads:        " + threads);
+        System.out.println("  Seed:           " + seed);
+        if (journal != null)
+            System.out.println("  Journal:        " + sJournal + " (" + journal.getRecords() +
+                               " records" + ((journal.isFailed()) ? ", write failed" : "") + ")");
+        System.out.println(res.toString());
+        if ((bVar) || (sCompare != null) || (crules != null)) {
+            System.out.println("  Variance mode:  " + getVarianceName(varMode) +
+                               " (batches of 1 shoe)");
+            if ((sCompare != null) || (crules != null))
+                System.out.println("  Compared:       " + ((ctable != null) ? ctable.toString() :
+                                   ((sCompare == null) ? sStrategy : sCompare)) + ", " +
+                                   ((crules == null) ? rules : crules));
+            System.out.println(res.getVarianceReport());
+        }
+        if (ring != null) {
+            Runtime rt = Runtime.getRuntime();
+            System.out.println(String.format("  Hands kept:     %d (%.1f MB off heap, heap " +
+                                             "used %.1f MB), last %d:", ring.getHands() -
+                                             ring.getFirst(), ring.getBytes() / 1048576.0,
+                                             (rt.totalMemory() - rt.freeMemory()) / 1048576.0,
+                                             RING_SHOWN));
+            for (long n = Math.max(ring.getFirst(), ring.getHands() - RING_SHOWN);
+                 n < ring.getHands(); n++) System.out.println("  " + ring.toString(n));
+            for (int i = 0; i < queries.size(); i++) {
+                try {
+                    System.out.println("  Query " + ring.getIndex().query(queries.get(i)));
+                }
+                catch (IllegalArgumentException e) {
+                    System.out.println("  Query '" + queries.get(i) + "' failed: " +
+                                       e.getMessage());
+                }
+            }
+        }
+        if (metrics != null) System.out.print(metrics.getReport());
+        System.out.println("  Time:           " + String.format("%.2f", secs) + " secs, " +
+                           String.format("%.0f", res.getHands() / secs) + " hands/sec");
+    }
+
+    // ---------------------- Inner Classes -------------------------
+
+    /**
+     * Class used to hold (and merge) the results of the hands played.  Results
+     * are kept as the net won per hand in bet units (sum and sum of squares).
+     * Hands are also grouped in batches (sums of the batch net and hands, for
+     * the ratio estimate of the standard error) and can be paired batch by
+     * batch with the results of a compared run.
+    */
+    public static class Result
+    {
+        private long lHands = 0;
+        private long lWins = 0;
+        private long lLosses = 0;
+        private long lPushes = 0;
+        private double dSum = 0.0;
+        private double dSumSq = 0.0;
+        private double dBets = 0.0;
+        private double dCpuSecs = 0.0;
+
+        // batches (y - batch net, n - batch hands)
+        private long lBatches = 0;
+        private double dBatchNet = 0.0;
+        private long lBatchHands = 0;
+        private double dYY = 0.0;
+        private double dNN = 0.0;
+        private double dYN = 0.0;
+
+        // compared results, paired batch sums (a - this run, b - compared)
+        private Result vs = null;
+        private double dAyBy = 0.0;
+        private double dAyBn = 0.0;
+        private double dAnBy = 0.0;
+        private double dAnBn = 0.0;
+
+        /** Method to return the sum of the squared batch deviations from the
+         * ratio estimate 'r' (y - r * n).
+        */
+        private double getBatchSq(double r)
+        {
+            return dYY - 2.0 * r * dYN + r * r * dNN;
+        }
+
+        /** Method used to add the net result (in bet units) of a hand. */
+        public void add(double net)
+        {
+            add(net, 1.0);
+        }
+
+        /** Method used to add the net result and amount bet (in bet units)
+         * of a hand.
+        */
+        public void add(double net, double bet)
+        {
+            lHands++;
+            dBets += bet;
+            dBatchNet += net;
+            lBatchHands++;
+            if (net > 0.0)
+                lWins++;
+            else if (net < 0.0)
+                lLosses++;
+            else
+                lPushes++;
+            dSum += net;
+            dSumSq += net * net;
+        }
+
+        /** Method used to merge in the results of another set of hands. */
+        public void merge(Result r)
+        {
+            lHands += r.lHands;
+            lWins += r.lWins;
+            lLosses += r.lLosses;
+            lPushes += r.lPushes;
+            dSum += r.dSum;
+            dSumSq += r.dSumSq;
+            dBets += r.dBets;
+            dCpuSecs += r.dCpuSecs;
+            lBatches += r.lBatches;
+            dYY += r.dYY;
+            dNN += r.dNN;
+            dYN += r.dYN;
+            if (r.vs != null) {
+                if (vs == null) vs = new Result();
+                vs.merge(r.vs);
+            }
+            dAyBy += r.dAyBy;
+            dAyBn += r.dAyBn;
+            dAnBy += r.dAnBy;
+            dAnBn += r.dAnBn;
+        }
+
+        /** Method used to end the current batch of hands (if any). */
+        public void endBatch()
+        {
+            if (lBatchHands == 0) return;
+
+            lBatches++;
+            dYY += dBatchNet * dBatchNet;
+            dNN += (double) lBatchHands * lBatchHands;
+            dYN += dBatchNet * lBatchHands;
+            dBatchNet = 0.0;
+            lBatchHands = 0;
+        }
+
+        /** Method to return the net result of the current batch. */
+        public double getBatchNet()
+        {
+            return dBatchNet;
+        }
+
+        /** Method to return the number of hands in the current batch. */
+        public long getBatchHands()
+        {
+            return lBatchHands;
+        }
+
+        /** Method to return the number of (ended) batches. */
+        public long getBatches()
+        {
+            return lBatches;
+        }
+
+        /** Method used to add a pair of batches, one of this run ('ay' net,
+         * 'an' hands) and the same batch of the compared run.
+        */
+        public void addPair(double ay, long an, double by, long bn)
+        {
+            dAyBy += ay * by;
+            dAyBn += ay * bn;
+            dAnBy += an * by;
+            dAnBn += (double) an * bn;
+        }
+
+        /** Method used to set the results of the compared run (pairs added
+         * with 'addPair').
+        */
+        public void setCompared(Result r)
+        {
+            vs = r;
+        }
+
+        /** Method to return the results of the compared run (null if none). */
+        public Result getCompared()
+        {
+            return vs;
+        }
+
+        /** Method used to add CPU time (seconds) used playing the hands. */
+        public void addCpuSecs(double secs)
+        {
+            dCpuSecs += secs;
+        }
+
+        /** Method to return the CPU time (seconds) used playing the hands. */
+        public double getCpuSecs()
+        {
+            return dCpuSecs;
+        }
+
+        /** Method to return the standard error of the mean worked out from
+         * the batch results (ratio estimate), 0 if less than 2 batches.
+        */
+        public double getBatchStdError()
+        {
+            if ((lBatches < 2) || (lHands == 0)) return 0.0;
+
+            double nb = (double) lHands / lBatches;
+            double v = getBatchSq(getMean()) / (lBatches * (lBatches - 1.0) * nb * nb);
+            return Math.sqrt(Math.max(v, 0.0));
+        }
+
+        /** Method to return the difference of the mean of the compared run
+         * from this one (bet units per hand).
+        */
+        public double getDifference()
+        {
+            return (vs == null) ? 0.0 : vs.getMean() - getMean();
+        }
+
+        /** Method to return the (paired batch) standard error of the
+         * difference, 0 if not compared.
+        */
+        public double getDifferenceStdError()
+        {
+            if ((vs == null) || (lBatches < 2) || (lHands == 0) || (vs.lHands == 0)) return 0.0;
+
+            double ra = getMean();
+            double rb = vs.getMean();
+            double na = (double) lHands / lBatches;
+            double nb = (double) vs.lHands / lBatches;
+            double cross = dAyBy - rb * dAyBn - ra * dAnBy + ra * rb * dAnBn;
+            double sq = getBatchSq(ra) / (na * na) + vs.getBatchSq(rb) / (nb * nb) -
+                        2.0 * cross / (na * nb);
+            return Math.sqrt(Math.max(sq, 0.0) / (lBatches * (lBatches - 1.0)));
+        }
+
+        /** Method to return the variance reduction results (batch standard
+         * error, CPU time, speedups) as a report string.
+        */
+        public String getVarianceReport()
+        {
+            StringBuffer sb = new StringBuffer(400);
+            double se = getBatchStdError();
+            double iid = getStdError();
+
+            sb.append(String.format("  Batches:        %d, std error %.6f bets (%.6f if the " +
+                                    "hands were independent)%n", lBatches, se, iid));
+            sb.append(String.format("  CPU time:       %.2f secs, SE x sqrt(CPU secs) %.6f%n",
+                                    dCpuSecs, se * Math.sqrt(dCpuSecs)));
+            sb.append(String.format("  Speedup:        %.2fx (same CPU time, over independent " +
+                                    "hands)", (se == 0.0) ? 0.0 : (iid * iid) / (se * se)));
+            if (vs != null) {
+                double vse = vs.getBatchStdError();
+                double dse = getDifferenceStdError();
+                double sep = Math.sqrt(se * se + vse * vse);
+
+                sb.append(String.format("%n  Compared edge:  %.3f%% +/- %.3f%%%n",
+                                        vs.getHouseEdge(), Z_95 * vse * 100.0));
+                sb.append(String.format("  Difference:     %.3f%% +/- %.3f%% (compared edge - " +
+                                        "edge, paired)%n", -getDifference() * 100.0,
+                                        Z_95 * dse * 100.0));
+                sb.append(String.format("  CRN speedup:    %.2fx (same CPU time, over separate " +
+                                        "runs +/- %.3f%%)", (dse == 0.0) ? 0.0 :
+                                        (sep * sep) / (dse * dse), Z_95 * sep * 100.0));
+            }
+
+            return sb.toString();
+        }
+
+        /** Method to return the number of hands played. */
+        public long getHands()
+        {
+            return lHands;
+        }
+
+        /** Method to return the number of hands won (net). */
+        public long getWins()
+        {
+            return lWins;
+        }
+
+        /** Method to return the number of hands lost (net). */
+        public long getLosses()
+        {
+            return lLosses;
+        }
+
+        /** Method to return the number of hands pushed (net). */
+        public long getPushes()
+        {
+            return lPushes;
+        }
+
+        /** Method to return the mean net result per hand (bet units). */
+        public double getMean()
+        {
+            return (lHands == 0) ? 0.0 : dSum / lHands;
+        }
+
+        /** Method to return the (sample) variance per hand (bet units). */
+        public double getVariance()
+        {
+            if (lHands < 2) return 0.0;
+
+            double m = getMean();
+            return (dSumSq - (m * dSum)) / (lHands - 1);
+        }
+
+        /** Method to return the standard error of the mean. */
+        public double getStdError()
+        {
+            return (lHands == 0) ? 0.0 : Math.sqrt(getVariance() / lHands);
+        }
+
+        /** Method to return the average amount bet per hand (bet units). */
+        public double getAverageBet()
+        {
+            return (lHands == 0) ? 0.0 : dBets / lHands;
+        }
+
+        /** Method to return the house edge (percent of the bet). */
+        public double getHouseEdge()
+        {
+            return -getMean() * 100.0;
+        }
+
+        /** Method to return the results as a report string. */
+        public String toString()
+        {
+            double h = (lHands == 0) ? 1.0 : lHands;
+            double ci = Z_95 * getStdError() * 100.0;
+            double edge = getHouseEdge();
+            StringBuffer sb = new StringBuffer(400);
+
+            sb.append(String.format("  Wins:           %.3f%%%n", lWins * 100.0 / h));
+            sb.append(String.format("  Losses:         %.3f%%%n", lLosses * 100.0 / h));
+            sb.append(String.format("  Pushes:         %.3f%%%n", lPushes * 100.0 / h));
+            sb.append(String.format("  Mean per hand:  %.5f bets%n", getMean()));
+            sb.append(String.format("  Variance:       %.5f (std dev %.5f)%n",
+                                    getVariance(), Math.sqrt(getVariance())));
+            sb.append(String.format("  House edge:     %.3f%% +/- %.3f%%%n", edge, ci));
+            sb.append(String.format("  95%% interval:   %.3f%% to %.3f%%", edge - ci, edge + ci));
+            if (dBets != lHands)
+                sb.append(String.format("%n  Average bet:    %.3f bets (edge on amount bet %.3f%%)",
+                                        getAverageBet(), -dSum * 100.0 / dBets));
+
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Class used to split the chunks of hands over the fork/join pool and
+     * merge the results back together.
+    */
+    class PlayTask extends RecursiveTask<Result>
+    {
+        private long lFirst;
+        private long lLast;
+
+        /** Constructor - task for chunks 'first' up to (not including) 'last'. */
+        public PlayTask(long first, long last)
+        {
+            lFirst = first;
+            lLast = last;
+        }
+
+        /** Method used to play the chunks (or split them up). */
+        protected Result compute()
+        {
+            if (lLast - lFirst == 1) return playChunk(lFirst);
+
+            long mid = (lFirst + lLast) >>> 1;
+            PlayTask left = new PlayTask(lFirst, mid);
+            PlayTask right = new PlayTask(mid, lLast);
+
+            left.fork();
+            Result res = right.compute();
+            res.merge(left.join());
+
+            return res;
+        }
+    }
+}
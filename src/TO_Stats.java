@@ -0,0 +1,284 @@
+/** Class used to keep running statistics of the hands finished by an engine
+ * (see 'TO_Engine.setStats') in constant memory, so millions of hands can be
+ * tracked: <br>
+ * <ul>
+ * <li> Hand counts by result (wins, losses, pushes, surrenders).
+ * <li> Mean and variance of the net won per bet unit (Welford's running
+ *      update, no per hand values kept).
+ * <li> Win and loss streak lengths (longest, current and a fixed bucket
+ *      histogram of the streaks ended), pushes don't end a streak.
+ * <li> Dealer and player final totals (fixed buckets: 16 or less, 17 - 21,
+ *      bust), the dealer only when the dealer played the hand out.
+ * <li> Bank trajectory, 'MAX_POINTS' banks at most: when full every other
+ *      point is dropped and points are taken half as often.
+ * </ul>
+ * Hands are added on the thread playing them and copied out ('getSnapshot')
+ * on any other, each under the stats lock (no allocation when adding). <br><br>
+ * <b>Changes:</b>
+ * <ul>
+ * <li> 2026-10-18 - Initial release.
+ * <li> 2026-10-18 - Dealer totals only counted when the dealer played out.
+ * </ul>
+ * @author Michael G. Slack
+ * @author slack@attglobal.net
+ * @version Version 1.00
+*/
+public class TO_Stats
+{
+    // public statics
+    /** Number of final total buckets (16 or less, 17 - 21, bust). */
+    public static final int TOTAL_BUCKETS = 7;
+
+    /** Final total bucket of a bust hand. */
+    public static final int T_BUST = TOTAL_BUCKETS - 1;
+
+    /** Number of streak length buckets (1 - 9, 10 or more). */
+    public static final int STREAK_BUCKETS = 10;
+
+    /** Most bank trajectory points kept. */
+    public static final int MAX_POINTS = 512;
+
+    // private references (guarded by 'this')
+    private long lHands = 0L;
+    private long lWins = 0L;
+    private long lLosses = 0L;
+    private long lPushes = 0L;
+    private long lSurrenders = 0L;
+    private double dMean = 0.0;
+    private double dM2 = 0.0;
+    private long lNet = 0L;
+    private int iStreak = 0; // > 0 wins, < 0 losses
+    private int iLongestWin = 0;
+    private int iLongestLoss = 0;
+    private long[] winStreaks = new long[STREAK_BUCKETS];
+    private long[] lossStreaks = new long[STREAK_BUCKETS];
+    private long[] dealerTotals = new long[TOTAL_BUCKETS];
+    private long[] playerTotals = new long[TOTAL_BUCKETS];
+    private int[] bankPoints = new int[MAX_POINTS];
+    private int iPoints = 0;
+    private long lStride = 1L;
+    private long lVersion = 0L;
+
+    // ------------------------ Private Methods --------------------------
+
+    /** Method to return the final total bucket of points 'pts'. */
+    private static int getTotalBucket(int pts)
+    {
+        if (pts > 21) return T_BUST;
+
+        return (pts <= 16) ? 0 : pts - 16;
+    }
+
+    /** Method used to count a streak that ended. */
+    private void endStreak()
+    {
+        if (iStreak > 0)
+            winStreaks[Math.min(iStreak, STREAK_BUCKETS) - 1]++;
+        else if (iStreak < 0)
+            lossStreaks[Math.min(-iStreak, STREAK_BUCKETS) - 1]++;
+        iStreak = 0;
+    }
+
+    /** Method used to add a bank to the trajectory (every 'lStride' hands,
+     * halves the points kept when full).
+    */
+    private void addBank(int bank)
+    {
+        if ((lHands - 1) % lStride != 0) {
+            if (iPoints > 0) bankPoints[iPoints - 1] = bank; // latest bank shown
+            return;
+        }
+
+        if (iPoints == MAX_POINTS) {
+            for (int i = 0; i < MAX_POINTS / 2; i++) bankPoints[i] = bankPoints[i * 2];
+            iPoints = MAX_POINTS / 2;
+            lStride *= 2;
+        }
+        bankPoints[iPoints++] = bank;
+    }
+
+    // ------------------------- Public Methods --------------------------
+
+    /** Method used to add the hand just finished by an engine. */
+    public synchronized void handDone(TO_Engine eng)
+    {
+        int net = eng.getHandNet();
+        int bet = eng.getBet();
+        int n = eng.getResultCount();
+        double x = (bet > 0) ? (double) net / bet : 0.0;
+
+        lHands++;
+        lNet += net;
+
+        // Welford running mean and variance (per bet unit)
+        double d = x - dMean;
+        dMean += d / lHands;
+        dM2 += d * (x - dMean);
+
+        for (int i = 0; i < n; i++) {
+            int r = eng.getResult(i);
+
+            if ((r == TO_Engine.R_PLAYER) || (r == TO_Engine.R_PLAYER_FIVE))
+                lWins++;
+            else if ((r == TO_Engine.R_DEALER) || (r == TO_Engine.R_DEALER_FIVE))
+                lLosses++;
+            else if (r == TO_Engine.R_PUSH)
+                lPushes++;
+            else if (r == TO_Engine.R_SURRENDER)
+                lSurrenders++;
+        }
+
+        // streaks, by the net of the whole hand
+        if (net > 0) {
+            if (iStreak < 0) endStreak();
+            iStreak++;
+            if (iStreak > iLongestWin) iLongestWin = iStreak;
+        }
+        else if (net < 0) {
+            if (iStreak > 0) endStreak();
+            iStreak--;
+            if (-iStreak > iLongestLoss) iLongestLoss = -iStreak;
+        }
+
+        if (eng.isDealerPlayed()) dealerTotals[getTotalBucket(eng.getDealerScore())]++;
+        for (int h = 0; h < eng.getHandCount(); h++)
+            playerTotals[getTotalBucket(eng.getPlayerScore(h))]++;
+
+        addBank(eng.getBank());
+        lVersion++;
+    }
+
+    /** Method used to empty the statistics. */
+    public synchronized void reset()
+    {
+        lHands = lWins = lLosses = lPushes = lSurrenders = lNet = 0L;
+        dMean = dM2 = 0.0;
+        iStreak = iLongestWin = iLongestLoss = 0;
+        java.util.Arrays.fill(winStreaks, 0L);
+        java.util.Arrays.fill(lossStreaks, 0L);
+        java.util.Arrays.fill(dealerTotals, 0L);
+        java.util.Arrays.fill(playerTotals, 0L);
+        iPoints = 0;
+        lStride = 1L;
+        lVersion++;
+    }
+
+    /** Method to return the change count (changes with every hand added or
+     * reset, so a display can skip redraws when nothing changed).
+    */
+    public synchronized long getVersion()
+    {
+        return lVersion;
+    }
+
+    /** Method to return a copy of the statistics, 's' is filled in if not
+     * null (so a display can reuse one).
+    */
+    public synchronized Snapshot getSnapshot(Snapshot s)
+    {
+        if (s == null) s = new Snapshot();
+
+        s.lHands = lHands;
+        s.lWins = lWins;
+        s.lLosses = lLosses;
+        s.lPushes = lPushes;
+        s.lSurrenders = lSurrenders;
+        s.lNet = lNet;
+        s.dMean = dMean;
+        s.dVariance = (lHands > 1) ? dM2 / (lHands - 1) : 0.0;
+        s.iStreak = iStreak;
+        s.iLongestWin = iLongestWin;
+        s.iLongestLoss = iLongestLoss;
+        System.arraycopy(winStreaks, 0, s.winStreaks, 0, STREAK_BUCKETS);
+        System.arraycopy(lossStreaks, 0, s.lossStreaks, 0, STREAK_BUCKETS);
+        System.arraycopy(dealerTotals, 0, s.dealerTotals, 0, TOTAL_BUCKETS);
+        System.arraycopy(playerTotals, 0, s.playerTotals, 0, TOTAL_BUCKETS);
+        System.arraycopy(bankPoints, 0, s.bankPoints, 0, iPoints);
+        s.iPoints = iPoints;
+        s.lStride = lStride;
+        s.lVersion = lVersion;
+
+        return s;
+    }
+
+    // ---------------------- Inner Classes -------------------------
+
+    /**
+     * Class holding a copy of the statistics (see 'getSnapshot').
+    */
+    public static final class Snapshot
+    {
+        /** Hands finished. */
+        public long lHands;
+
+        /** Split hands won (split hands count separately). */
+        public long lWins;
+
+        /** Split hands lost (not counting surrenders). */
+        public long lLosses;
+
+        /** Split hands pushed. */
+        public long lPushes;
+
+        /** Hands surrendered. */
+        public long lSurrenders;
+
+        /** Net won (bank units). */
+        public long lNet;
+
+        /** Mean net won per hand (bet units). */
+        public double dMean;
+
+        /** Variance of the net won per hand (bet units). */
+        public double dVariance;
+
+        /** Current streak (wins if more than 0, losses if less). */
+        public int iStreak;
+
+        /** Longest win streak. */
+        public int iLongestWin;
+
+        /** Longest loss streak. */
+        public int iLongestLoss;
+
+        /** Win streaks ended, by length (1 - 9, 10 or more). */
+        public long[] winStreaks = new long[STREAK_BUCKETS];
+
+        /** Loss streaks ended, by length (1 - 9, 10 or more). */
+        public long[] lossStreaks = new long[STREAK_BUCKETS];
+
+        /** Dealer final totals, hands the dealer played out (16 or less,
+         * 17 - 21, bust).
+        */
+        public long[] dealerTotals = new long[TOTAL_BUCKETS];
+
+        /** Player final totals, each split hand counted (16 or less, 17 - 21,
+         * bust).
+        */
+        public long[] playerTotals = new long[TOTAL_BUCKETS];
+
+        /** Bank trajectory, 'iPoints' banks taken every 'lStride' hands. */
+        public int[] bankPoints = new int[MAX_POINTS];
+
+        /** Number of bank trajectory points. */
+        public int iPoints;
+
+        /** Hands between bank trajectory points. */
+        public long lStride;
+
+        /** Change count the copy was taken at. */
+        public long lVersion;
+
+        /** Method to return the number of split hands scored. */
+        public long getResults()
+        {
+            return lWins + lLosses + lPushes + lSurrenders;
+        }
+
+        /** Method to return the standard error of the mean (bet units). */
+        public double getStdError()
+        {
+            return (lHands > 0) ? Math.sqrt(dVariance / lHands) : 0.0;
+        }
+    }
+}
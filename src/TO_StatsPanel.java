@@ -0,0 +1,222 @@
+import java.awt.*;
+import java.awt.event.*;
+import javax.swing.*;
+
+/** Class defines the panel showing the running statistics of a 'TO_Stats':
+ * result rates, net won per bet unit, streaks, the bank trajectory and
+ * histograms of the dealer and player final totals and streak lengths. <br>
+ * The panel is redrawn from a timer at most every 'REFRESH_MILLIS' (and only
+ * if a hand was added since the last redraw), whatever the rate hands are
+ * played at.  The timer only runs while the panel is in a window (and skips
+ * redraws while it is hidden) and each redraw copies the statistics into the
+ * same snapshot, so nothing grows with the number of hands. <br><br>
+ * <b>Changes:</b>
+ * <ul>
+ * <li> 2026-10-18 - Initial release.
+ * </ul>
+ * @author Michael G. Slack
+ * @author slack@attglobal.net
+ * @version Version 1.00
+*/
+public class TO_StatsPanel extends JPanel
+{
+    // public statics
+    /** Shortest time (milliseconds) between redraws. */
+    public static final int REFRESH_MILLIS = 250;
+
+    // private statics
+    private static final int P_WIDTH = 460;
+    private static final int P_HEIGHT = 430;
+    private static final int GAP = 10;
+    private static final String[] TOTAL_NAMES = {"<17", "17", "18", "19", "20", "21", "Bust"};
+    private static final Color WIN_COLOR = new Color(0, 128, 0);
+    private static final Color LOSS_COLOR = new Color(176, 0, 0);
+    private static final Font TEXT_FONT = new Font("Monospaced", Font.PLAIN, 11);
+    private static final Font TITLE_FONT = new Font("Helvetica", Font.BOLD, 11);
+
+    // private references
+    private TO_Stats stats;
+    private TO_Stats.Snapshot snap = new TO_Stats.Snapshot();
+    private long lShown = -1L;
+    private javax.swing.Timer timer = null;
+
+    // ------------------------ Constructors -------------------------
+
+    /** Constructor to create the panel showing statistics 'st'. */
+    public TO_StatsPanel(TO_Stats st)
+    {
+        stats = st;
+        setPreferredSize(new Dimension(P_WIDTH, P_HEIGHT));
+        setBackground(Color.white);
+        setOpaque(true);
+
+        timer = new javax.swing.Timer(REFRESH_MILLIS, new ActionListener() {
+                                          public void actionPerformed(ActionEvent e) {
+                                              if ((isShowing()) &&
+                                                  (stats.getVersion() != lShown)) repaint();
+                                          }
+                                      });
+        timer.setCoalesce(true);
+    }
+
+    // ------------------------ Private Methods --------------------------
+
+    /** Method to return 'n' as a percent of 'of' (0 if none). */
+    private static double pct(long n, long of)
+    {
+        return (of == 0L) ? 0.0 : n * 100.0 / of;
+    }
+
+    /** Method used to draw a section title. */
+    private void drawTitle(Graphics g, String s, int x, int y)
+    {
+        g.setColor(Color.black);
+        g.setFont(TITLE_FONT);
+        g.drawString(s, x, y);
+    }
+
+    /** Method used to draw the text lines of the statistics. */
+    private int drawText(Graphics g, int y)
+    {
+        FontMetrics fm;
+        TO_Stats.Snapshot s = snap;
+        long res = s.getResults();
+        String[] lines = {
+            String.format("Hands: %-12d Net won: %d", s.lHands, s.lNet),
+            String.format("Won %.2f%%  Lost %.2f%%  Pushed %.2f%%  Surrendered %.2f%%",
+                          pct(s.lWins, res), pct(s.lLosses, res), pct(s.lPushes, res),
+                          pct(s.lSurrenders, res)),
+            String.format("Per bet: %+.4f +/- %.4f (std dev %.3f)", s.dMean,
+                          1.96 * s.getStdError(), Math.sqrt(s.dVariance)),
+            String.format("Streak: %s  Longest won %d, lost %d",
+                          (s.iStreak == 0) ? "-" : ((s.iStreak > 0) ? "won " + s.iStreak
+                                                                    : "lost " + -s.iStreak),
+                          s.iLongestWin, s.iLongestLoss)
+        };
+
+        g.setFont(TEXT_FONT);
+        g.setColor(Color.black);
+        fm = g.getFontMetrics();
+        for (int i = 0; i < lines.length; i++) {
+            y += fm.getHeight();
+            g.drawString(lines[i], GAP, y);
+        }
+
+        return y;
+    }
+
+    /** Method used to draw the bank trajectory in box x, y, w, h. */
+    private void drawBank(Graphics g, int x, int y, int w, int h)
+    {
+        TO_Stats.Snapshot s = snap;
+        int lo = Integer.MAX_VALUE;
+        int hi = Integer.MIN_VALUE;
+
+        drawTitle(g, "Bank (every " + s.lStride + ((s.lStride == 1) ? " hand)" : " hands)"),
+                  x, y - 3);
+        g.setColor(Color.lightGray);
+        g.drawRect(x, y, w, h);
+        if (s.iPoints < 2) return;
+
+        for (int i = 0; i < s.iPoints; i++) {
+            lo = Math.min(lo, s.bankPoints[i]);
+            hi = Math.max(hi, s.bankPoints[i]);
+        }
+        if (hi == lo) hi = lo + 1;
+
+        g.setColor(Color.black);
+        g.setFont(TEXT_FONT);
+        g.drawString("" + hi, x + 2, y + 11);
+        g.drawString("" + lo, x + 2, y + h - 2);
+        g.setColor(Color.blue);
+        int px = x;
+        int py = y + h - (int) ((long) (s.bankPoints[0] - lo) * h / (hi - lo));
+        for (int i = 1; i < s.iPoints; i++) {
+            int nx = x + (int) ((long) i * w / (s.iPoints - 1));
+            int ny = y + h - (int) ((long) (s.bankPoints[i] - lo) * h / (hi - lo));
+            g.drawLine(px, py, nx, ny);
+            px = nx;
+            py = ny;
+        }
+    }
+
+    /** Method used to draw a histogram (percent of the counts) in box x,
+     * y, w, h, with a label under each bar.
+    */
+    private void drawBars(Graphics g, String title, long[] counts, String[] names, Color c,
+                          int x, int y, int w, int h)
+    {
+        long n = 0L;
+        long most = 1L;
+        int bw = w / counts.length;
+        FontMetrics fm;
+
+        for (int i = 0; i < counts.length; i++) {
+            n += counts[i];
+            most = Math.max(most, counts[i]);
+        }
+        drawTitle(g, title, x, y - 3);
+        g.setFont(TEXT_FONT);
+        fm = g.getFontMetrics();
+        for (int i = 0; i < counts.length; i++) {
+            int bh = (int) (counts[i] * (h - fm.getHeight()) / most);
+            int bx = x + i * bw;
+            String p = String.format("%.0f", pct(counts[i], n));
+
+            g.setColor(c);
+            g.fillRect(bx + 2, y + h - bh, bw - 4, bh);
+            g.setColor(Color.black);
+            g.drawString(p, bx + (bw - fm.stringWidth(p)) / 2, y + h - bh - 2);
+            g.drawString(names[i], bx + (bw - fm.stringWidth(names[i])) / 2,
+                         y + h + fm.getAscent());
+        }
+        g.setColor(Color.lightGray);
+        g.drawLine(x, y + h, x + w, y + h);
+    }
+
+    // ------------------------- Public Methods --------------------------
+
+    /** Method used to start the redraw timer when the panel is shown. */
+    public void addNotify()
+    {
+        super.addNotify();
+        timer.start();
+    }
+
+    /** Method used to stop the redraw timer when the panel is removed. */
+    public void removeNotify()
+    {
+        timer.stop();
+        super.removeNotify();
+    }
+
+    /** Method used to draw the statistics (copied out at the time). */
+    protected void paintComponent(Graphics g)
+    {
+        super.paintComponent(g);
+        stats.getSnapshot(snap);
+        lShown = snap.lVersion;
+        if (g instanceof Graphics2D)
+            ((Graphics2D) g).setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                                              RenderingHints.VALUE_ANTIALIAS_ON);
+
+        int w = getWidth() - GAP * 2;
+        int half = (w - GAP) / 2;
+        int y = drawText(g, 0) + GAP + 12;
+        String[] streakNames = new String[TO_Stats.STREAK_BUCKETS];
+
+        drawBank(g, GAP, y, w, 90);
+        y += 90 + GAP + 12 + 12;
+        drawBars(g, "Dealer totals (%)", snap.dealerTotals, TOTAL_NAMES, LOSS_COLOR,
+                 GAP, y, half, 80);
+        drawBars(g, "Player totals (%)", snap.playerTotals, TOTAL_NAMES, WIN_COLOR,
+                 GAP * 2 + half, y, half, 80);
+        y += 80 + GAP + 12 + 12;
+        for (int i = 0; i < streakNames.length; i++)
+            streakNames[i] = (i == streakNames.length - 1) ? (i + 1) + "+" : "" + (i + 1);
+        drawBars(g, "Win streaks (%)", snap.winStreaks, streakNames, WIN_COLOR,
+                 GAP, y, half, 70);
+        drawBars(g, "Loss streaks (%)", snap.lossStreaks, streakNames, LOSS_COLOR,
+                 GAP * 2 + half, y, half, 70);
+    }
+}
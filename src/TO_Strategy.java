@@ -0,0 +1,25 @@
+/** Interface defines a player strategy used to play hands in the TwentyOne
+ * rules engine without a person at the table (simulator).  A strategy object
+ * is only used by one thread at a time, each simulator worker gets its own
+ * instance (created with the no-arg constructor).  A chart file strategy
+ * ('TO_StrategyTable') can't change once compiled and is shared by all of
+ * the workers. <br><br>
+ * <b>Changes:</b>
+ * <ul>
+ * <li> 2026-10-18 - Initial release.
+ * <li> 2026-10-18 - Noted shared strategy tables.
+ * </ul>
+ * @author Michael G. Slack
+ * @author slack@attglobal.net
+ * @version Version 1.00
+*/
+public interface TO_Strategy
+{
+    /** Method used to pick the players next action for the hand being played
+     * in the engine.
+     * @param engine Engine with the hand waiting on a player action.
+     * @return The action to take (one of the TO_Engine.A_xxx values allowed by
+     * 'engine.getActions()').
+    */
+    public int getAction(TO_Engine engine);
+}
@@ -0,0 +1,387 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/** Class defines a player strategy compiled from a strategy chart (basic
+ * strategy, count deviations or a house policy) into one dense table of
+ * actions, so picking an action is one array read whatever the chart holds.
+ * <br>
+ * The table is indexed by the Hi-Lo true count band (only if the chart has
+ * count rows), the player total (0 - 21), soft or not, the dealer up card
+ * and the optional actions the engine allows ('getActions' bits A_DOUBLE,
+ * A_SPLIT, A_INSURANCE and A_SURRENDER, 16 masks).  The split bit is the
+ * pair flag: the engine only allows a split for two cards of the same
+ * rank and it is gone once a card is drawn or a split is turned down.  The
+ * hand looked up is the one being played (split hands played in turn).
+ * Hit and stay are always allowed while a hand is waiting on the player.
+ * Every cell holds the action to take with the actions allowed (a double
+ * that isn't allowed falls back to the hit or stay the chart gives), worked
+ * out once when the chart is compiled.  The table can't be changed once
+ * compiled, so one table can be shared by any number of engines and
+ * threads. <br>
+ * Chart text is one row a line ('#' starts a comment), fields split by
+ * commas (or spaces if a line has no comma):
+ * <ul>
+ * <li> 'hard,T,c2,...,c10,cA[,count]' - hard total T (4 - 21), an action
+ *      code for each up card 2 - 10 then ace.
+ * <li> 'soft,T,...' - soft total T (12 - 21), same codes.
+ * <li> 'pair,C,...' - pair of C (2 - 10, A), 'P' to split, 'N' to play the
+ *      total.
+ * <li> 'insurance,Y[,count]' - take insurance ('N' not to).
+ * </ul>
+ * Codes: 'H' hit, 'S' stay, 'D' double else hit, 'Ds' double else stay,
+ * 'R' surrender else hit, 'Rs' surrender else stay, '-' (or empty) keeps the
+ * code set by an earlier row.  A row with a count ('tc>=N', 'tc<=N',
+ * 'tc>N', 'tc<N' or 'tc=N', true count rounded down, 'COUNT_BANDS' bands
+ * from -MAX_COUNT or less to MAX_COUNT or more) only sets the bands it
+ * covers, so deviations follow the basic rows.  Cells not set by any row
+ * hit 16 or less and stay on 17 or more, never split and never insure.
+ * <br><br>
+ * <b>Changes:</b>
+ * <ul>
+ * <li> 2026-10-18 - Initial release.
+ * <li> 2026-10-18 - Looks up the split hand being played.
+ * </ul>
+ * @author Michael G. Slack
+ * @author slack@attglobal.net
+ * @version Version 1.00
+*/
+public class TO_StrategyTable implements TO_Strategy
+{
+    // public statics
+    /** Highest true count band (and -lowest). */
+    public static final int MAX_COUNT = 5;
+
+    /** Number of true count bands of a chart with count rows. */
+    public static final int COUNT_BANDS = MAX_COUNT * 2 + 1;
+
+    /** Built in chart, basic strategy with late surrender rows (a surrender
+     * not allowed falls back to the hit or stay).
+    */
+    public static final String BASIC =
+        "# kind, total (pair card), up card 2 3 4 5 6 7 8 9 10 A\n" +
+        "hard, 8, H, H, H, H, H, H, H, H, H, H\n" +
+        "hard, 9, H, D, D, D, D, H, H, H, H, H\n" +
+        "hard,10, D, D, D, D, D, D, D, D, H, H\n" +
+        "hard,11, D, D, D, D, D, D, D, D, D, H\n" +
+        "hard,12, H, H, S, S, S, H, H, H, H, H\n" +
+        "hard,13, S, S, S, S, S, H, H, H, H, H\n" +
+        "hard,14, S, S, S, S, S, H, H, H, H, H\n" +
+        "hard,15, S, S, S, S, S, H, H, H, R, H\n" +
+        "hard,16, S, S, S, S, S, H, H, R, R, R\n" +
+        "soft,13, H, H, H, D, D, H, H, H, H, H\n" +
+        "soft,14, H, H, H, D, D, H, H, H, H, H\n" +
+        "soft,15, H, H, D, D, D, H, H, H, H, H\n" +
+        "soft,16, H, H, D, D, D, H, H, H, H, H\n" +
+        "soft,17, H, D, D, D, D, H, H, H, H, H\n" +
+        "soft,18, S,Ds,Ds,Ds,Ds, S, S, H, H, H\n" +
+        "pair, A, P, P, P, P, P, P, P, P, P, P\n" +
+        "pair, 2, N, N, P, P, P, P, N, N, N, N\n" +
+        "pair, 3, N, N, P, P, P, P, N, N, N, N\n" +
+        "pair, 6, N, P, P, P, P, N, N, N, N, N\n" +
+        "pair, 7, P, P, P, P, P, P, N, N, N, N\n" +
+        "pair, 8, P, P, P, P, P, P, P, P, P, P\n" +
+        "pair, 9, P, P, P, P, P, N, P, P, N, N\n" +
+        "insurance, N\n";
+
+    // private statics - table index parts
+    private static final int TOTALS = 22;
+    private static final int UPS = TO_Shoe.MAX_POINTS;
+    private static final int MASKS = 16;
+    private static final int MASK_SHIFT = 2; // A_DOUBLE is the lowest option bit
+    private static final int O_DOUBLE = TO_Engine.A_DOUBLE >>> MASK_SHIFT;
+    private static final int O_SPLIT = TO_Engine.A_SPLIT >>> MASK_SHIFT;
+    private static final int O_INSURANCE = TO_Engine.A_INSURANCE >>> MASK_SHIFT;
+    private static final int O_SURRENDER = TO_Engine.A_SURRENDER >>> MASK_SHIFT;
+
+    // chart codes, action (A_xxx) and the fall back if it isn't allowed
+    private static final int F_STAY = 0x40;
+    private static final int ACTION_MASK = F_STAY - 1;
+
+    private static final Pattern COUNT_PATTERN =
+        Pattern.compile("tc\\s*(>=|<=|>|<|==?)\\s*([-+]?\\d{1,3})");
+
+    // private references
+    private final String sName;
+    private final int iBands;
+    private final byte[] table;
+
+    // ------------------------ Constructors -------------------------
+
+    /** Constructor to create the table of the built in chart ('BASIC'). */
+    public TO_StrategyTable()
+    {
+        this(BASIC, "basic strategy");
+    }
+
+    /** Constructor to create the table of a chart (see class notes).
+     * @param text Chart text.
+     * @param name Name of the chart (shown by 'toString').
+     * @throws IllegalArgumentException If a row is bad (message has the line).
+    */
+    public TO_StrategyTable(String text, String name)
+    {
+        ArrayList<String[]> rows = new ArrayList<String[]>();
+        ArrayList<Integer> lines = new ArrayList<Integer>();
+        String[] ls = text.split("\r?\n");
+        boolean bCounted = false;
+
+        for (int i = 0; i < ls.length; i++) {
+            String l = ls[i];
+            int c = l.indexOf('#');
+
+            if (c >= 0) l = l.substring(0, c);
+            l = l.trim();
+            if (l.length() == 0) continue;
+
+            String[] f = (l.indexOf(',') >= 0) ? l.split("\\s*,\\s*", -1) : l.split("\\s+");
+            rows.add(f);
+            lines.add(Integer.valueOf(i + 1));
+            if ((f.length > 2) && (f[f.length - 1].toLowerCase().startsWith("tc")))
+                bCounted = true;
+        }
+
+        sName = name;
+        iBands = (bCounted) ? COUNT_BANDS : 1;
+        table = compile(rows, lines, iBands);
+    }
+
+    // ------------------------ Private Methods --------------------------
+
+    /** Method to return the table of the chart rows given (see class notes).
+     * @throws IllegalArgumentException If a row is bad.
+    */
+    private static byte[] compile(ArrayList<String[]> rows, ArrayList<Integer> lines, int bands)
+    {
+        byte[][] chart = new byte[bands][2 * TOTALS * UPS];
+        boolean[][] pairs = new boolean[bands][(TO_Shoe.MAX_POINTS + 1) * UPS];
+        boolean[] insure = new boolean[bands];
+        byte[] tbl = new byte[bands * TOTALS * 2 * UPS * MASKS];
+
+        for (int b = 0; b < bands; b++) { // cells not set play like the dealer
+            for (int t = 0; t < TOTALS; t++) {
+                for (int u = 0; u < UPS; u++) {
+                    byte code = (byte) ((t <= 16) ? TO_Engine.A_HIT : TO_Engine.A_STAY);
+                    chart[b][t * UPS + u] = code;
+                    chart[b][(TOTALS + t) * UPS + u] = code;
+                }
+            }
+        }
+
+        for (int r = 0; r < rows.size(); r++) {
+            try {
+                setRow(rows.get(r), bands, chart, pairs, insure);
+            }
+            catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("line " + lines.get(r) + ": " +
+                                                   e.getMessage());
+            }
+        }
+
+        for (int b = 0, i = 0; b < bands; b++) {
+            for (int t = 0; t < TOTALS; t++) {
+                for (int s = 0; s < 2; s++) {
+                    int card = (s == 1) ? 1 : t / 2; // card of a pair of total t
+                    for (int u = 0; u < UPS; u++) {
+                        int code = chart[b][(s * TOTALS + t) * UPS + u];
+                        int act = code & ACTION_MASK;
+                        int fall = ((code & F_STAY) != 0) ? TO_Engine.A_STAY : TO_Engine.A_HIT;
+                        boolean bSplit = (card <= TO_Shoe.MAX_POINTS) &&
+                                         (pairs[b][card * UPS + u]);
+
+                        for (int m = 0; m < MASKS; m++, i++) {
+                            if (((m & O_INSURANCE) != 0) && (insure[b]))
+                                tbl[i] = (byte) TO_Engine.A_INSURANCE;
+                            else if (((m & O_SPLIT) != 0) && (bSplit))
+                                tbl[i] = (byte) TO_Engine.A_SPLIT;
+                            else if (((act == TO_Engine.A_DOUBLE) && ((m & O_DOUBLE) == 0)) ||
+                                     ((act == TO_Engine.A_SURRENDER) && ((m & O_SURRENDER) == 0)))
+                                tbl[i] = (byte) fall;
+                            else
+                                tbl[i] = (byte) act;
+                        }
+                    }
+                }
+            }
+        }
+
+        return tbl;
+    }
+
+    /** Method used to set the chart cells of a row in the count bands it
+     * covers.
+     * @throws IllegalArgumentException If the row is bad.
+    */
+    private static void setRow(String[] f, int bands, byte[][] chart, boolean[][] pairs,
+                               boolean[] insure)
+    {
+        String kind = f[0].toLowerCase();
+        boolean bIns = "insurance".equals(kind);
+        int fields = (bIns) ? 2 : UPS + 2; // without a count
+        String cond = null;
+        int key;
+
+        if (f.length == fields + 1)
+            cond = f[f.length - 1].toLowerCase();
+        else if (f.length != fields)
+            throw new IllegalArgumentException("expected " + fields + " fields, found " +
+                                               f.length);
+
+        if (bIns) {
+            boolean bYes = parseYesNo(f[1], "Y", "N");
+            for (int b = 0; b < bands; b++)
+                if (isCovered(cond, b)) insure[b] = bYes;
+            return;
+        }
+
+        key = parseKey(kind, f[1]);
+        for (int b = 0; b < bands; b++) {
+            if (!isCovered(cond, b)) continue;
+            for (int u = 0; u < UPS; u++) {
+                String c = f[2 + u];
+                int slot = (u + 1) % UPS; // chart runs 2 - 10 then ace, table ace first
+
+                if ((c.length() == 0) || ("-".equals(c))) continue;
+                if ("pair".equals(kind))
+                    pairs[b][key * UPS + slot] = parseYesNo(c, "P", "N");
+                else
+                    chart[b][(("soft".equals(kind)) ? TOTALS + key : key) * UPS + slot] =
+                        (byte) parseCode(c);
+            }
+        }
+    }
+
+    /** Method to return the total (hard, soft) or card (pair) of a row. */
+    private static int parseKey(String kind, String s)
+    {
+        int k;
+
+        if (("pair".equals(kind)) && (("a".equalsIgnoreCase(s)) || ("11".equals(s)))) return 1;
+        try {
+            k = Integer.parseInt(s);
+        }
+        catch (NumberFormatException e) {
+            k = -1;
+        }
+
+        if ("hard".equals(kind)) {
+            if ((k >= 4) && (k <= 21)) return k;
+        }
+        else if ("soft".equals(kind)) {
+            if ((k >= 12) && (k <= 21)) return k;
+        }
+        else if ("pair".equals(kind)) {
+            if ((k >= 2) && (k <= TO_Shoe.MAX_POINTS)) return k;
+        }
+        else
+            throw new IllegalArgumentException("unknown row '" + kind + "'");
+
+        throw new IllegalArgumentException("bad " + kind + " '" + s + "'");
+    }
+
+    /** Method to return the chart code of an action code text. */
+    private static int parseCode(String s)
+    {
+        String c = s.toUpperCase();
+
+        if ("H".equals(c)) return TO_Engine.A_HIT;
+        if ("S".equals(c)) return TO_Engine.A_STAY;
+        if (("D".equals(c)) || ("DH".equals(c))) return TO_Engine.A_DOUBLE;
+        if ("DS".equals(c)) return TO_Engine.A_DOUBLE | F_STAY;
+        if (("R".equals(c)) || ("RH".equals(c))) return TO_Engine.A_SURRENDER;
+        if ("RS".equals(c)) return TO_Engine.A_SURRENDER | F_STAY;
+
+        throw new IllegalArgumentException("unknown action code '" + s + "'");
+    }
+
+    /** Method to return true for the 'yes' text, false for the 'no' text. */
+    private static boolean parseYesNo(String s, String yes, String no)
+    {
+        if (yes.equalsIgnoreCase(s)) return true;
+        if (no.equalsIgnoreCase(s)) return false;
+
+        throw new IllegalArgumentException("expected " + yes + " or " + no + ", found '" +
+                                           s + "'");
+    }
+
+    /** Method to return true if count band 'b' is covered by a count ('tc'
+     * compare and number, null covers all).
+    */
+    private static boolean isCovered(String cond, int b)
+    {
+        Matcher m;
+        String op;
+        int n;
+        int tc = b - MAX_COUNT;
+
+        if (cond == null) return true;
+        m = COUNT_PATTERN.matcher(cond);
+        if (!m.matches()) throw new IllegalArgumentException("bad count '" + cond + "'");
+        op = m.group(1);
+        n = Integer.parseInt(m.group(2).replace("+", ""));
+
+        if (">=".equals(op)) return tc >= n;
+        if ("<=".equals(op)) return tc <= n;
+        if (">".equals(op)) return tc > n;
+        if ("<".equals(op)) return tc < n;
+
+        return tc == n;
+    }
+
+    // ------------------------- Public Methods --------------------------
+
+    /** Method to return the table of a chart file (see class notes).
+     * @throws IOException If the file can't be read.
+     * @throws IllegalArgumentException If a row is bad.
+    */
+    public static TO_StrategyTable load(File f) throws IOException
+    {
+        String text = new String(java.nio.file.Files.readAllBytes(f.toPath()), "UTF-8");
+
+        try {
+            return new TO_StrategyTable(text, f.getName());
+        }
+        catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(f.getName() + " " + e.getMessage());
+        }
+    }
+
+    /** Method used to pick the players next action, read from the table. */
+    public int getAction(TO_Engine engine)
+    {
+        int h = engine.getPlayerHand(engine.getCurrentHand());
+        int i = 0;
+
+        if (iBands > 1) {
+            int tc = (int) Math.floor(engine.getTrueCount());
+            i = Math.max(-MAX_COUNT, Math.min(MAX_COUNT, tc)) + MAX_COUNT;
+        }
+        i = (i * TOTALS + TO_Hand.getScore(h)) * 2 + ((TO_Hand.isSoft(h)) ? 1 : 0);
+        i = i * UPS + TO_Shoe.getPoints(engine.getDealerCard(1)) - 1;
+
+        return table[i * MASKS + ((engine.getActions() >>> MASK_SHIFT) & (MASKS - 1))];
+    }
+
+    /** Method to return the number of true count bands of the table (1 if
+     * the chart has no count rows).
+    */
+    public int getBands()
+    {
+        return iBands;
+    }
+
+    /** Method to return the size (bytes) of the table. */
+    public int getBytes()
+    {
+        return table.length;
+    }
+
+    /** Method to return the name of the chart and the size of the table. */
+    public String toString()
+    {
+        return sName + " (" + table.length + " byte table" +
+               ((iBands > 1) ? ", " + iBands + " count bands)" : ")");
+    }
+}
@@ -1,6 +1,7 @@
 import java.awt.*;
 import javax.swing.*;
 import java.awt.event.*;
+import java.awt.image.BufferedImage;
 import com.slackandassociates.*;
 import com.slackandassociates.cards.*;
 import com.slackandassociates.cards.playingcards.*;
@@ -27,6 +28,59 @@ import com.slackandassociates.dialogs.AboutDlg;
  * <li> 2007-10-14 - Removed un-needed cast.
  * <li> 2021-12-09 - Removed applet references and slightly increased window height
  *                   (408 to 410).
+ * <li> 2026-10-18 - Moved the game rules out to 'TO_Engine', window is now just
+ *                   a client of the engine.
+ * <li> 2026-10-18 - Added 'Show Hints' option (action values from 'TO_Advisor').
+ * <li> 2026-10-18 - Button events run one at a time on 'TO_ActionExecutor'
+ *                   (was a thread per click), window updates are made on the
+ *                   event dispatch thread.  Added 'Action Timings' to help.
+ * <li> 2026-10-18 - Hands are written to the journal file set in the
+ *                   properties (if any).
+ * <li> 2026-10-18 - Added 'Replay Journal' option, replays the hands of a
+ *                   journal (paced) in the playing areas.
+ * <li> 2026-10-18 - Playing areas only redraw (and repaint) the card slots
+ *                   that changed, back buffer is kept between paints.
+ * <li> 2026-10-18 - Card images come from a single card atlas image (saved
+ *                   once the library images have loaded), play is enabled
+ *                   without waiting on the images.  Start up times are shown
+ *                   in 'Action Timings'.
+ * <li> 2026-10-18 - Cards dealt slide from the deck to their slot (timer
+ *                   driven animation on the glass pane) instead of sleeping
+ *                   between deal steps.  Added 'Animate Deals' option (off
+ *                   lands cards at once), frame times shown in 'Action
+ *                   Timings'.
+ * <li> 2026-10-18 - Settings come from one properties snapshot.  A
+ *                   'TwentyOne.properties' in the working folder is laid
+ *                   over the defaults and watched, bet limits changed there
+ *                   are used from the next hand.
+ * <li> 2026-10-18 - Hands and actions counted in a 'TO_Metrics' (MBean
+ *                   'TwentyOne:type=Metrics,name=game'), shown in 'Action
+ *                   Timings'.
+ * <li> 2026-10-18 - Added 'Autoplay' option, plays a number of hands with a
+ *                   player strategy (no dialogs), redrawing every so many
+ *                   hands or times a second.
+ * <li> 2026-10-18 - Messages go to an in-window feed ('TO_MessageFeed')
+ *                   instead of dialogs, the outcome of a hand is one
+ *                   message.  The finished hand stays shown until the next
+ *                   one is played.
+ * <li> 2026-10-18 - Table rules come from the properties ('TO_Rules'), added
+ *                   the 'Surrender' button (enabled when the rules allow it).
+ * <li> 2026-10-18 - Added 'Show Count' option (Hi-Lo count in the bet dialog).
+ * <li> 2026-10-18 - Bank and statistics kept in the session store set in the
+ *                   properties (if any), added 'Session Statistics' to help.
+ * <li> 2026-10-18 - Added 'Show Statistics' option (running statistics of the
+ *                   hands played, 'TO_StatsPanel', in its own window).
+ * <li> 2026-10-18 - Recent hands kept in a 'TO_HandRing' (size set in the
+ *                   properties), added 'Recent Hands' to help.
+ * <li> 2026-10-18 - Added 'Query Hands' to help (counts and EV of the recent
+ *                   hands matching a query, from a 'TO_HandIndex').
+ * <li> 2026-10-18 - Autoplay strategy can be a chart file ('TO_StrategyTable').
+ * <li> 2026-10-18 - Hand is dropped if the engine won't deal it.
+ * <li> 2026-10-18 - Action buttons turned off as one is pressed, actions the
+ *                   engine turns down don't finish the hand again.
+ * <li> 2026-10-18 - Session store counts hands from the engine (once each).
+ * <li> 2026-10-18 - Split hands played in turn (the one being played is
+ *                   shown), results of every split hand shown.
  * </ul>
  * @author Michael G. Slack
  * @author slack@attglobal.net
@@ -36,18 +90,38 @@ public class TwentyOne
 {
     // window size constants
     private static final int W_WIDTH = 500;
-    private static final int W_HEIGHT = 410;
+    private static final int W_HEIGHT = 490;
+
+    // deal animation, time to slide a card to its slot and frame time (milliseconds)
+    private static final int DEAL_MILLIS = 250;
+    private static final int FRAME_MILLIS = 16;
+
+    // replay pauses (milliseconds) after each step and each hand
+    private static final long REPLAY_STEP_PAUSE = 600L;
+    private static final long REPLAY_HAND_PAUSE = 1500L;
+
+    // most recent hands shown (from the hand ring)
+    private static final int RECENT_HANDS = 200;
+
+    // most hands matching a query shown (latest first)
+    private static final int QUERY_HANDS = 50;
+
+    // autoplay defaults, redraw time (milliseconds) if not every so many hands
+    private static final int DEF_AUTO_HANDS = 10000;
+    private static final long AUTO_REDRAW_MILLIS = 100L;
 
     // string statics
     private static final String S_CL_LBL  = "Cards Left: ";
     private static final String S_AIB_LBL = "Amount in Bank: ";
     private static final String S_BET_LBL = "Bet: ";
+    private static final String S_LOCAL_PROPS = "TwentyOne.properties";
 
-    // card deck, images and hands
-    private CardDeck cards = null; // setup later with correct number of decks
+    // rules engine (setup later with correct number of decks), card faces and images
+    private volatile TO_Engine engine = null;
+    private PlayingCard[] cardFaces = new PlayingCard[TO_Shoe.CARDS_PER_DECK];
     private PlayingCardImageCache cImgs = new PlayingCardImageCache();
-    private CardHand dealerCards = new CardHand(5, false);
-    private CardHand playerCards = new CardHand(5, false);
+    private TO_CardImages cardImgs = null;
+    private DealAnimator animator = null;
 
     // window components
     private JFrame frame = null;
@@ -55,8 +129,18 @@ public class TwentyOne
     private JMenuBar mb = new JMenuBar();
     private JMenu m1 = new JMenu("File");
     private JMenuItem mi1 = new JMenuItem("Exit");
+    private JCheckBoxMenuItem mi3 = new JCheckBoxMenuItem("Show Hints");
+    private JCheckBoxMenuItem mi8 = new JCheckBoxMenuItem("Show Count");
+    private JMenuItem mi5 = new JMenuItem("Replay Journal...");
+    private JMenuItem mi7 = new JMenuItem("Autoplay...");
+    private JCheckBoxMenuItem mi6 = new JCheckBoxMenuItem("Animate Deals", true);
+    private JCheckBoxMenuItem mi10 = new JCheckBoxMenuItem("Show Statistics");
     private JMenu m2 = new JMenu("Help");
     private JMenuItem mi2 = new JMenuItem("About");
+    private JMenuItem mi4 = new JMenuItem("Action Timings");
+    private JMenuItem mi9 = new JMenuItem("Session Statistics");
+    private JMenuItem mi11 = new JMenuItem("Recent Hands");
+    private JMenuItem mi12 = new JMenuItem("Query Hands...");
 
     // other components
     private ImageIcon mbOKImg = null;
@@ -69,30 +153,54 @@ public class TwentyOne
     private JButton btnDouble = new JButton("Double");
     private JButton btnSplit = new JButton("Split");
     private JButton btnInsurance = new JButton("Insurance");
+    private JButton btnSurrender = new JButton("Surrender");
     private JLabel lblDTitle = new JLabel("Dealers Cards:");
     private PlayArea paDealer = new PlayArea(true);
     private JLabel lblPTitle = new JLabel("Players Cards:");
     private PlayArea paPlayer = new PlayArea(false);
     private JLabel lblMsg = new JLabel(" ");
+    private TO_MessageFeed feed = new TO_MessageFeed();
     private JLabel lblAIB = new JLabel(S_AIB_LBL);
     private JLabel lblBet = new JLabel(S_BET_LBL);
 
+    // game actions (button events) run one at a time
+    private TO_ActionExecutor actions = new TO_ActionExecutor();
+
+    // game and engine telemetry
+    private TO_Metrics metrics = new TO_Metrics();
+
+    // hint advisor and values
+    private TO_Advisor advisor = new TO_Advisor();
+    private double[] hintVals = new double[TO_Advisor.V_COUNT];
+
     // property instance
     private TwentyOneProps props = new TwentyOneProps(this);
 
     // other instances
-    private boolean bShowDown = false;
-    private boolean bSplitHand = false;
-    private boolean bDoubleHand = false;
-    private int iCardsLeft = 0;
-    private int iAmountWon = 0;
     private int iBet = 0;
     private PlayingCardEnum ceCardBackPic = (PlayingCardEnum) PlayingCardEnum.JC_CARDBACK_VAL1;
     private int iNumOfDecks = CardDeck.JC_ONE_DECK;
+    private int iPenetration = TwentyOneProps.MAX_PENETRATION;
+    private TO_Rules rules = TO_Rules.DEFAULT;
+    private String sJournal = "";
+    private TO_Journal journal = null;
+    private String sSession = "";
+    private TO_SessionStore store = null;
+    private TO_Stats stats = new TO_Stats();
+    private JDialog statsDlg = null;
+    private int iHandRing = 0;
+    private TO_HandRing handRing = null;
+    private String sQuery = "16 vs 10 stay";
+    private volatile boolean bReplaying = false;
+    private volatile boolean bStopReplay = false;
+    private volatile boolean bAutoplaying = false;
+    private volatile boolean bStopAuto = false;
     private int iMinimumBet = TwentyOneProps.MIN_BET_AMT;
     private int iMaximumBet = TwentyOneProps.START_MAX;
     private int iInitialBank = TwentyOneProps.START_IBANK;
     private boolean bBet_Max = false;
+    private long lInitStart = 0L;
+    private volatile String sStartup = "";
 
     // ------------------------ Private Methods --------------------------
 
@@ -113,12 +221,45 @@ public class TwentyOne
     */
     private void loadProps()
     {
-        ceCardBackPic = (PlayingCardEnum) props.getCardBackImage();
-        iNumOfDecks = props.getNumDecks();
-        iMinimumBet = props.getMinimumBet();
-        iMaximumBet = props.getMaximumBet(iMinimumBet);
-        iInitialBank = props.getInitialBank(iMinimumBet);
-        bBet_Max = props.getBetMax();
+        TwentyOneProps.Config cfg = props.getConfig();
+
+        ceCardBackPic = (PlayingCardEnum) props.cardBacks[cfg.getCardBack()];
+        iNumOfDecks = cfg.getNumDecks();
+        iPenetration = cfg.getPenetration();
+        rules = cfg.getRules();
+        sJournal = cfg.getJournal();
+        sSession = cfg.getSession();
+        iHandRing = cfg.getHandRing();
+        loadBetProps(cfg);
+    }
+
+    /** Method used to load the bet settings from a props snapshot (all
+     * from the same one so they go together).
+    */
+    private void loadBetProps(TwentyOneProps.Config cfg)
+    {
+        iMinimumBet = cfg.getMinimumBet();
+        iMaximumBet = cfg.getMaximumBet();
+        iInitialBank = cfg.getInitialBank();
+        bBet_Max = cfg.isBetMax();
+    }
+
+    /** Method used to load the card faces used to display the engine card
+     * codes.  Faces are taken from a single deck and indexed by the rank
+     * (and order found) so they match the codes dealt by 'TO_Shoe'.
+    */
+    private void loadCardFaces()
+    {
+        CardDeck deck = new CardDeck(CardDeck.JC_ONE_DECK, PlayingCardDeck.PC_DECK, PlayingCard.class);
+        int[] found = new int[TO_Shoe.RANKS];
+
+        deck.shuffle();
+        for (int i = 0; i < TO_Shoe.CARDS_PER_DECK; i++) {
+            Card c = deck.getNextCard();
+            int r = c.getCardPointValue() - 1;
+
+            cardFaces[(found[r]++ * TO_Shoe.RANKS) + r] = (PlayingCard) c;
+        }
     }
 
     /** Method used to setup the application menu bar. */
@@ -127,10 +268,46 @@ public class TwentyOne
         mi1.addActionListener(new ActionListener() { // exit
                                       public void actionPerformed(ActionEvent evt) {
                                           // was: System.exit(0);
+                                          actions.shutdown();
+                                          closeJournal();
+                                          closeStore();
                                           frame.setVisible(false);
                                           frame.dispose();
                                       }
                                   });
+        mi3.addActionListener(new ActionListener() { // hints
+                                      public void actionPerformed(ActionEvent evt) {
+                                          runAction("hint", new HintT());
+                                      }
+                                  });
+        mi5.addActionListener(new ActionListener() { // replay (or stop it)
+                                      public void actionPerformed(ActionEvent evt) {
+                                          selectReplay();
+                                      }
+                                  });
+        mi7.addActionListener(new ActionListener() { // autoplay (or stop it)
+                                      public void actionPerformed(ActionEvent evt) {
+                                          selectAutoplay();
+                                      }
+                                  });
+        mi6.addActionListener(new ActionListener() { // deal animation on/off
+                                      public void actionPerformed(ActionEvent evt) {
+                                          if ((animator != null) && (!bAutoplaying))
+                                              animator.setDealMillis((mi6.getState()) ? DEAL_MILLIS : 0);
+                                      }
+                                  });
+        mi10.addActionListener(new ActionListener() { // statistics window on/off
+                                       public void actionPerformed(ActionEvent evt) {
+                                           showStats(mi10.getState());
+                                       }
+                                   });
+        m1.add(mi3);
+        m1.add(mi8);
+        m1.add(mi10);
+        m1.add(mi6);
+        m1.add(mi5);
+        m1.add(mi7);
+        m1.addSeparator();
         m1.add(mi1);
         mb.add(m1);
         mi2.addActionListener(new ActionListener() { // about
@@ -145,6 +322,53 @@ public class TwentyOne
                                                        iImg).show();
                                       }
                                   });
+        mi4.addActionListener(new ActionListener() { // action timings
+                                      public void actionPerformed(ActionEvent evt) {
+                                          JTextArea ta = new JTextArea(actions.getTimings() +
+                                                  sStartup + ((animator == null) ? "" :
+                                                              animator.getMetrics()) +
+                                                  String.format("%n") + metrics.getReport());
+                                          ta.setFont(new Font("Monospaced", Font.PLAIN, 12));
+                                          ta.setEditable(false);
+                                          JOptionPane.showMessageDialog(frame, ta, "Action Timings",
+                                                  JOptionPane.INFORMATION_MESSAGE, mbOKImg);
+                                      }
+                                  });
+        mi9.addActionListener(new ActionListener() { // session statistics
+                                      public void actionPerformed(ActionEvent evt) {
+                                          JTextArea ta = new JTextArea((store == null)
+                                                  ? "No session store (see TwentyOne.Session)."
+                                                  : store.getReport());
+                                          ta.setFont(new Font("Monospaced", Font.PLAIN, 12));
+                                          ta.setEditable(false);
+                                          JOptionPane.showMessageDialog(frame, ta,
+                                                  "Session Statistics",
+                                                  JOptionPane.INFORMATION_MESSAGE, mbOKImg);
+                                      }
+                                  });
+        mi11.addActionListener(new ActionListener() { // recent hands
+                                       public void actionPerformed(ActionEvent evt) {
+                                           JTextArea ta = new JTextArea((handRing == null)
+                                                   ? "No recent hands kept (see " +
+                                                     "TwentyOne.HandRing)."
+                                                   : handRing.getRecent(RECENT_HANDS), 20, 64);
+                                           ta.setFont(new Font("Monospaced", Font.PLAIN, 12));
+                                           ta.setEditable(false);
+                                           JOptionPane.showMessageDialog(frame, new JScrollPane(ta),
+                                                   "Recent Hands",
+                                                   JOptionPane.INFORMATION_MESSAGE, mbOKImg);
+                                       }
+                                   });
+        m2.add(mi4);
+        m2.add(mi9);
+        mi12.addActionListener(new ActionListener() { // query hands
+                                       public void actionPerformed(ActionEvent evt) {
+                                           queryHands();
+                                       }
+                                   });
+        m2.add(mi11);
+        m2.add(mi12);
+        m2.addSeparator();
         m2.add(mi2);
         mb.add(m2);
         frame.setJMenuBar(mb);
@@ -159,12 +383,11 @@ public class TwentyOne
         int h = PlayingCardImageCache.IMAGE_HEIGHT;
         JPanel imgPnl = new JPanel();
         
-        cardImg = new ImageCanvas(cImgs.getCardImage(ceCardBackPic));
+        cardImg = new ImageCanvas(cardImgs.getBack());
         imgPnl.add(cardImg);
 
         lblCTitle.setFont(new Font("Helvetica", Font.PLAIN, 12));
-        iCardsLeft = 52 * iNumOfDecks;
-        lblCTitle.setText(S_CL_LBL + iCardsLeft);
+        lblCTitle.setText(S_CL_LBL + engine.getCardsLeft());
         d.setSize(w+22, h+24);
 
         pnlRet.setPreferredSize(d);
@@ -189,16 +412,226 @@ public class TwentyOne
         b.setMinimumSize(d);
     }
 
+    /** Method used to run a window update on the event dispatch thread
+     * (later, if not on it now).
+    */
+    private void invokeUI(Runnable r)
+    {
+        if (SwingUtilities.isEventDispatchThread())
+            r.run();
+        else
+            SwingUtilities.invokeLater(r);
+    }
+
+    /** Method used to run a window update on the event dispatch thread and
+     * wait for it to finish (dialogs).
+    */
+    private void invokeUIAndWait(Runnable r)
+    {
+        if (SwingUtilities.isEventDispatchThread()) {
+            r.run();
+            return;
+        }
+
+        try {
+            SwingUtilities.invokeAndWait(r);
+        }
+        catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+        catch (java.lang.reflect.InvocationTargetException ite) {
+            System.err.println("Window update failed: " + ite.getCause());
+        }
+    }
+
+    /** Method used to set the text of a label (on the event dispatch thread). */
+    private void setText(final JLabel lbl, final String s)
+    {
+        invokeUI(new Runnable() {
+                     public void run() {
+                         lbl.setText(s);
+                     }
+                 });
+    }
+
+    /** Method used to enable/disable a button (on the event dispatch thread). */
+    private void setEnabled(final JButton btn, final boolean b)
+    {
+        invokeUI(new Runnable() {
+                     public void run() {
+                         btn.setEnabled(b);
+                     }
+                 });
+    }
+
+    /** Method used to give a button focus (on the event dispatch thread). */
+    private void requestFocus(final JButton btn)
+    {
+        invokeUI(new Runnable() {
+                     public void run() {
+                         btn.requestFocus();
+                     }
+                 });
+    }
+
     /** Method to set the enabled state of all of the buttons. */
-    private void setEnab(boolean b1, boolean b2, boolean b3, boolean b4,
-                         boolean b5, boolean b6)
+    private void setEnab(final boolean b1, final boolean b2, final boolean b3,
+                         final boolean b4, final boolean b5, final boolean b6)
     {
-        btnPlay.setEnabled(b1);
-        btnHit.setEnabled(b2);
-        btnStay.setEnabled(b3);
-        btnDouble.setEnabled(b4);
-        btnSplit.setEnabled(b5);
-        btnInsurance.setEnabled(b6);
+        // surrender goes with the first action, if the rules have it
+        final boolean b7 = (b2) && (engine != null) &&
+                           ((engine.getActions() & TO_Engine.A_SURRENDER) != 0);
+
+        invokeUI(new Runnable() {
+                     public void run() {
+                         btnPlay.setEnabled(b1);
+                         btnHit.setEnabled(b2);
+                         btnStay.setEnabled(b3);
+                         btnDouble.setEnabled(b4);
+                         btnSplit.setEnabled(b5);
+                         btnInsurance.setEnabled(b6);
+                         btnSurrender.setEnabled(b7);
+                     }
+                 });
+    }
+
+    /** Method used to enable the buttons of the actions the player can take
+     * now (left as they are if the hand isn't waiting on the player).
+    */
+    private void setActionButtons()
+    {
+        if (engine.getState() != TO_Engine.ST_PLAYER) return;
+
+        int a = engine.getActions();
+
+        setEnab(false, (a & TO_Engine.A_HIT) != 0, (a & TO_Engine.A_STAY) != 0,
+                (a & TO_Engine.A_DOUBLE) != 0, (a & TO_Engine.A_SPLIT) != 0,
+                (a & TO_Engine.A_INSURANCE) != 0);
+    }
+
+    /** Method used to turn off the action buttons as one is pressed (on the
+     * event dispatch thread), so a second press can't queue another action
+     * before this one runs.
+    */
+    private void setActionsOff()
+    {
+        btnHit.setEnabled(false);
+        btnStay.setEnabled(false);
+        btnDouble.setEnabled(false);
+        btnSplit.setEnabled(false);
+        btnInsurance.setEnabled(false);
+        btnSurrender.setEnabled(false);
+    }
+
+    /** Method used to pick a journal to replay (or stop the replay running).
+     * Can't replay while a hand is in play.
+    */
+    private void selectReplay()
+    {
+        if (bReplaying) {
+            bStopReplay = true;
+            return;
+        }
+        if ((bAutoplaying) || (engine.getState() == TO_Engine.ST_DEALT) ||
+            (engine.getState() == TO_Engine.ST_PLAYER)) {
+            frame.getToolkit().beep();
+            return;
+        }
+
+        JFileChooser fc = new JFileChooser();
+        if (!"".equals(sJournal)) fc.setSelectedFile(new java.io.File(sJournal));
+        if (fc.showOpenDialog(frame) == JFileChooser.APPROVE_OPTION)
+            runAction("replay", new ReplayT(fc.getSelectedFile()));
+    }
+
+    /** Method used to ask for the autoplay settings and start it (or stop
+     * the autoplay running).  Can't autoplay while a hand is in play.
+    */
+    private void selectAutoplay()
+    {
+        if (bAutoplaying) {
+            bStopAuto = true;
+            return;
+        }
+        if ((bReplaying) || (engine.getState() == TO_Engine.ST_DEALT) ||
+            (engine.getState() == TO_Engine.ST_PLAYER)) {
+            frame.getToolkit().beep();
+            return;
+        }
+
+        JTextField tfHands = new JTextField("" + DEF_AUTO_HANDS, 10);
+        JTextField tfStrategy = new JTextField(TO_Simulator.DEF_STRATEGY, 10);
+        JTextField tfHigh = new JTextField("0", 10);
+        JTextField tfLow = new JTextField("0", 10);
+        JTextField tfRedraw = new JTextField("0", 10);
+        JPanel pnl = new JPanel(new GridLayout(0, 2, 5, 5));
+
+        pnl.add(new JLabel("Hands to play:"));
+        pnl.add(tfHands);
+        pnl.add(new JLabel("Player strategy (class or chart file):"));
+        pnl.add(tfStrategy);
+        pnl.add(new JLabel("Stop at bank of (0 = no):"));
+        pnl.add(tfHigh);
+        pnl.add(new JLabel("Stop at bank below (0 = no):"));
+        pnl.add(tfLow);
+        pnl.add(new JLabel("Redraw every hands (0 = timed):"));
+        pnl.add(tfRedraw);
+        if (JOptionPane.showConfirmDialog(frame, pnl, "Autoplay", JOptionPane.OK_CANCEL_OPTION,
+                                          JOptionPane.PLAIN_MESSAGE, mbOKImg)
+            != JOptionPane.OK_OPTION)
+            return;
+
+        try {
+            long hands = Long.parseLong(tfHands.getText().trim());
+            int high = Integer.parseInt(tfHigh.getText().trim());
+            int low = Integer.parseInt(tfLow.getText().trim());
+            int redraw = Integer.parseInt(tfRedraw.getText().trim());
+            String sStrategy = tfStrategy.getText().trim();
+            TO_Strategy strategy = TO_Simulator.loadTable(sStrategy);
+
+            if ((hands < 1) || (high < 0) || (low < 0) || (redraw < 0))
+                throw new IllegalArgumentException("values can't be negative (or no hands)");
+            if (strategy == null) { // not a chart file, a strategy class
+                Class<?> sc = Class.forName(sStrategy);
+
+                if (!TO_Strategy.class.isAssignableFrom(sc))
+                    throw new IllegalArgumentException(sc.getName() + " is not a TO_Strategy");
+                strategy = (TO_Strategy) sc.getDeclaredConstructor().newInstance();
+            }
+            runAction("autoplay", new AutoplayT(strategy, hands, high, low, redraw));
+        }
+        catch (Exception e) {
+            displayMessage("Autoplay can't be started: " + e);
+        }
+    }
+
+    /** Method used to set the text of a menu item (on the event dispatch
+     * thread).
+    */
+    private void setMenuText(final JMenuItem mi, final String s)
+    {
+        invokeUI(new Runnable() {
+                     public void run() {
+                         mi.setText(s);
+                     }
+                 });
+    }
+
+    /** Method used to pause the game action thread. */
+    private void pause(long millis)
+    {
+        try {
+            Thread.sleep(millis);
+        }
+        catch (InterruptedException ie) { }
+    }
+
+    /** Method used to queue up a game action to run, beeps if the action
+     * queue is full.
+    */
+    private void runAction(String sName, Runnable r)
+    {
+        if (!actions.submit(sName, r)) frame.getToolkit().beep();
     }
 
     /** Method to setup the button handlers. */
@@ -206,32 +639,44 @@ public class TwentyOne
     {
         btnPlay.addActionListener(new ActionListener() {
                                          public void actionPerformed(ActionEvent evt) {
-                                             new PlayT().start();
+                                             btnPlay.setEnabled(false);
+                                             runAction("play", new PlayT());
                                          }
                                      });
         btnHit.addActionListener(new ActionListener() {
                                          public void actionPerformed(ActionEvent evt) {
-                                             new HitT().start();
+                                             setActionsOff();
+                                             runAction("hit", new HitT());
                                          }
                                      });
         btnStay.addActionListener(new ActionListener() {
                                          public void actionPerformed(ActionEvent evt) {
-                                             new StayT().start();
+                                             setActionsOff();
+                                             runAction("stay", new StayT());
                                          }
                                      });
         btnDouble.addActionListener(new ActionListener() {
                                          public void actionPerformed(ActionEvent evt) {
-                                             new DoubleT().start();
+                                             setActionsOff();
+                                             runAction("double", new DoubleT());
                                          }
                                      });
         btnSplit.addActionListener(new ActionListener() {
                                          public void actionPerformed(ActionEvent evt) {
-                                             new SplitT().start();
+                                             setActionsOff();
+                                             runAction("split", new SplitT());
                                          }
                                      });
         btnInsurance.addActionListener(new ActionListener() {
                                          public void actionPerformed(ActionEvent evt) {
-                                             new InsuranceT().start();
+                                             setActionsOff();
+                                             runAction("insurance", new InsuranceT());
+                                         }
+                                     });
+        btnSurrender.addActionListener(new ActionListener() {
+                                         public void actionPerformed(ActionEvent evt) {
+                                             setActionsOff();
+                                             runAction("surrender", new SurrenderT());
                                          }
                                      });
     }
@@ -253,6 +698,8 @@ public class TwentyOne
         v1.add(btnSplit);
         setButtonSize(btnInsurance);
         v1.add(btnInsurance);
+        setButtonSize(btnSurrender);
+        v1.add(btnSurrender);
 
         setEnab(false, false, false, false, false, false);
         setBtnHandlers();
@@ -280,7 +727,8 @@ public class TwentyOne
         pnlCenter.add(paDealer);
         pnlCenter.add(lblPTitle);
         pnlCenter.add(paPlayer);
-        // pnlCenter.add(lblMsg);
+        lblMsg.setFont(new Font("Helvetica", Font.PLAIN, 12));
+        pnlCenter.add(lblMsg);
 
         frame_cp.add(pnlCenter, BorderLayout.CENTER);
     }
@@ -288,14 +736,16 @@ public class TwentyOne
     /** Method to load and install the south panel of the program. */
     private void loadSouthPanel()
     {
-        JPanel pnlSouth = new JPanel(new FlowLayout());
+        JPanel pnlSouth = new JPanel(new BorderLayout());
+        JPanel pnlBank = new JPanel(new FlowLayout());
 
-        iAmountWon = iInitialBank;
-        lblAIB.setText(S_AIB_LBL + iAmountWon);
-        pnlSouth.add(lblAIB);
-        pnlSouth.add(new JLabel("     "));
+        lblAIB.setText(S_AIB_LBL + engine.getBank());
+        pnlBank.add(lblAIB);
+        pnlBank.add(new JLabel("     "));
         lblBet.setText(S_BET_LBL + "0");
-        pnlSouth.add(lblBet);
+        pnlBank.add(lblBet);
+        pnlSouth.add(pnlBank, BorderLayout.NORTH);
+        pnlSouth.add(feed, BorderLayout.CENTER);
 
         frame_cp.add(pnlSouth, BorderLayout.SOUTH);
     }
@@ -315,33 +765,43 @@ public class TwentyOne
         return getWindowForComponent(parentComponent.getParent());
     }
 
-    /** Method used to display message to user. */
+    /** Method used to display message to user (in the message feed, does
+     * not wait).
+    */
     private void displayMessage(String msg)
     {
-        JOptionPane.showMessageDialog(frame, msg, "Information",
-                                      JOptionPane.INFORMATION_MESSAGE, mbOKImg);
+        feed.post(msg);
     }
 
     // ------------------------- Protected Methods -------------------------
 
-    /** Method used to get the players bet from them. */
+    /** Method used to get the players bet from them (dialogs are shown on
+     * the event dispatch thread, waits for the player).
+    */
     protected boolean getBet()
     {
-        TO_BetDlg dlg = null;
+        final int[] ret = new int[1];
+
+        // pick up bet settings changed since the last hand
+        loadBetProps(props.getConfig());
 
         // do we have enough to play?
-        if (iAmountWon < iMinimumBet) { // not enough to play - reset?
-            int jopRet = JOptionPane.NO_OPTION;
-
-            jopRet = JOptionPane.showConfirmDialog(frame,
-                                           "You don't have enough money, reset game?",
-                                           "Question",
-                                           JOptionPane.YES_NO_OPTION,
-                                           JOptionPane.QUESTION_MESSAGE,
-                                           mbOKImg);
-            if (jopRet == JOptionPane.YES_OPTION) {
-                iAmountWon += iInitialBank;
-                lblAIB.setText(S_AIB_LBL + iAmountWon);
+        if (engine.getBank() < iMinimumBet) { // not enough to play - reset?
+            ret[0] = JOptionPane.NO_OPTION;
+            invokeUIAndWait(new Runnable() {
+                                public void run() {
+                                    ret[0] = JOptionPane.showConfirmDialog(frame,
+                                                   "You don't have enough money, reset game?",
+                                                   "Question",
+                                                   JOptionPane.YES_NO_OPTION,
+                                                   JOptionPane.QUESTION_MESSAGE,
+                                                   mbOKImg);
+                                }
+                            });
+            if (ret[0] == JOptionPane.YES_OPTION) {
+                engine.addToBank(iInitialBank);
+                if (store != null) store.bankAdded(engine.getBank());
+                setText(lblAIB, S_AIB_LBL + engine.getBank());
             }
             else {
                 return false;
@@ -349,106 +809,92 @@ public class TwentyOne
         }
 
         // get bet then from player...
-        dlg = new TO_BetDlg(frame, iMinimumBet, iMaximumBet,
-                            iAmountWon, bBet_Max, mbStopImg);
-        dlg.show();
-        iBet = dlg.getBet();
+        final int iBank = engine.getBank();
+        final int iRunning = engine.getRunningCount();
+        final double dTrue = engine.getTrueCount();
+        ret[0] = 0;
+        invokeUIAndWait(new Runnable() {
+                            public void run() {
+                                TO_BetDlg dlg = new TO_BetDlg(frame, iMinimumBet, iMaximumBet,
+                                                              iBank, bBet_Max, mbStopImg);
+                                if (mi8.getState()) dlg.showCount(iRunning, dTrue);
+                                dlg.show();
+                                ret[0] = dlg.getBet();
+                            }
+                        });
+        iBet = ret[0];
 
         return (iBet != 0);
     }
 
-    /** Method used to start off the hand - initial deal. */
-    protected void startHand()
+    /** Method used to refresh both playing areas (on the event dispatch
+     * thread), in deal order, dealer first.
+    */
+    private void refreshAreas()
     {
-        if (iCardsLeft <= 9) { // reshuffle
-            cards.shuffle();
-            iCardsLeft = 52 * iNumOfDecks;
+        for (int i = 0; i < TwentyOneProps.MAX_DRAW_CARDS; i++) {
+            paDealer.refreshSlot(i);
+            paPlayer.refreshSlot(i);
         }
-
-        // reset variables
-        bSplitHand = false;
-        bDoubleHand = false;
-        bShowDown = false;
-        dealerCards.removeAll();
-        playerCards.removeAll();
-
-        // deal the cards
-        for (int i = 0; i < 2; i++) {
-            dealerCards.add(cards.getNextCard());
-            playerCards.add(cards.getNextCard());
-            iCardsLeft -= 2;
-        }
-
-        // redisplay everything
-        lblCTitle.setText(S_CL_LBL + iCardsLeft);
-        paDealer.repaint();
-        paPlayer.repaint();
     }
 
-    /** Method used to return the points in the hand passed in. */
-    protected int getScoreOfHand(CardHand ch)
+    /** Method used to redisplay the cards left and both playing areas. */
+    protected void redisplay()
     {
-        int iRet = 0;
-        int x = ch.getMaximumCardCount();
+        setText(lblCTitle, S_CL_LBL + engine.getCardsLeft());
+        invokeUI(new Runnable() {
+                     public void run() {
+                         refreshAreas();
+                     }
+                 });
+    }
 
-        for (int i = 0; i < x; i++) {
-            Card c = ch.cardAt(i);
-            if (c != CardHand.EMPTY_CARD)
-                iRet += c.getCardPointValueFace10();
-            else
-                break; // no more...
-        }
+    /** Method used to wait (on the game action thread) for the cards being
+     * dealt to land in their slots.
+    */
+    protected void waitForDeal()
+    {
+        if (animator != null) animator.waitIdle();
+    }
 
-        // check for ace - maybe add 10
-        // note, will only check for one (can't have 22...)
-        for (int i = 0; i < x; i++) {
-            Card c = ch.cardAt(i);
+    /** Method used to start off the hand - initial deal.  Returns false if
+     * the engine would not deal the hand (nothing dealt).
+    */
+    protected boolean startHand()
+    {
+        if (!engine.startHand(iBet)) return false;
 
-            if (c != CardHand.EMPTY_CARD) {
-                int v = c.getCardPointValue();
-                if (v == 1) {
-                    if ((10 + iRet) <= 21) iRet += 10;
-                    break; // checked the one - leave
-                }
-            }
-            else {
-                break; // no more cards to check...
-            }
-        }
+        // redisplay everything
+        setText(lblBet, S_BET_LBL + iBet);
+        setText(lblAIB, S_AIB_LBL + engine.getBank());
+        redisplay();
 
-        return iRet;
+        return true;
     }
 
-    /** Method to score game and display message about it. */
-    protected void scoreIt(int iPts, boolean bPly, boolean bPush,
-                           boolean bFiveC, boolean bResetG)
+    /** Method to return the message about scored hand 'i' (of the engine). */
+    protected String getResultText(int i)
     {
         StringBuffer sMsg = new StringBuffer(100);
         String sWho = "";
-
-        if (!bShowDown) { // show down card...
-            bShowDown = true;
-            paDealer.repaint();
-        }
+        int r = engine.getResult(i);
 
         // create message for display
-        if (bPush) {
+        if (r == TO_Engine.R_PUSH) {
             sMsg.append("Push! Nobody wins this hand...");
-            iAmountWon += iBet;
-            if (bDoubleHand) iAmountWon += iBet; // add back in also
+        }
+        else if (r == TO_Engine.R_SURRENDER) {
+            sMsg.append("Player has surrendered, half of the bet is returned.");
         }
         else {
-            if (bPly) { // player won
+            if ((r == TO_Engine.R_PLAYER) || (r == TO_Engine.R_PLAYER_FIVE))
                 sWho = "Player";
-                iAmountWon += iBet + iBet; // pay back what was bet + won
-                if (bDoubleHand) iAmountWon += iBet + iBet; // and again
-            }
-            else {
+            else
                 sWho = "Dealer";
-            }
-            if (bFiveC) {
+            if ((r == TO_Engine.R_PLAYER_FIVE) || (r == TO_Engine.R_DEALER_FIVE)) {
                 sMsg.append(sWho);
-                sMsg.append(" has drawn 5 cards without going over 21, ");
+                sMsg.append(" has drawn " + engine.getRules().getCharlie() +
+                            " cards without going over 21, ");
                 sMsg.append(sWho);
                 sMsg.append(" wins.");
             }
@@ -456,134 +902,257 @@ public class TwentyOne
                 sMsg.append("The ");
                 sMsg.append(sWho);
                 sMsg.append(" has won with ");
-                sMsg.append(""+iPts);
+                sMsg.append(""+engine.getResultPoints(i));
                 sMsg.append(".");
             }
         }
-        displayMessage(sMsg.toString());
-        lblAIB.setText(S_AIB_LBL + iAmountWon);
 
-        // reset game...
-        if (bResetG) {
-            setEnab(true, false, false, false, false, false);
-            btnPlay.requestFocus();
-            dealerCards.removeAll();
-            playerCards.removeAll();
-            lblBet.setText(S_BET_LBL + "0");
-            paDealer.repaint();
-            paPlayer.repaint();
+        return sMsg.toString();
+    }
+
+    /** Method used to display the outcome of a finished hand (as one
+     * message) and ready the game for the next one.  The hand stays shown
+     * until the next one is played.
+    */
+    protected void finishHand()
+    {
+        int n = engine.getResultCount();
+        StringBuffer sMsg = new StringBuffer(200);
+
+        setEnab(false, false, false, false, false, false); // disable all
+        redisplay(); // shows down card also
+        waitForDeal();
+        setText(lblMsg, " ");
+
+        if (engine.isPlayerBust()) sMsg.append("You've exceeded 21. ");
+        if (engine.isDealerBust()) sMsg.append("Dealer has exceeded 21. ");
+        for (int i = 0; i < n; i++) {
+            if (n > 1)
+                sMsg.append((i == 0) ? "First hand of split: " :
+                            ((i == 1) ? " Second hand: " : " Hand " + (i + 1) + ": "));
+            sMsg.append(getResultText(i));
         }
+        displayMessage(sMsg.toString());
+        setText(lblAIB, S_AIB_LBL + engine.getBank());
+
+        // ready for the next hand...
+        setText(lblBet, S_BET_LBL + "0");
+        setEnab(true, false, false, false, false, false);
+        requestFocus(btnPlay);
     }
 
-    /** Method used to check hands at start for 21. */
-    protected void checkHands()
+    /** Method used to create the rules engine (and card shoe) from the
+     * current settings and load the card faces used to display it.
+    */
+    protected void setupEngine()
     {
-        int d = getScoreOfHand(dealerCards);
-        int p = getScoreOfHand(playerCards);
+        int iBank = iInitialBank;
 
-        if ((d == 21) && (p == 21)) { // push - both have 21
-            scoreIt(p, false, true, false, true);
+        if (!"".equals(sSession)) {
+            try {
+                store = new TO_SessionStore(new java.io.File(sSession));
+                iBank = store.getBank(iInitialBank);
+            }
+            catch (java.io.IOException e) {
+                System.err.println("Session store failed to open: " + e);
+            }
         }
-        else {
-            if (p == 21) { // player wins...
-                scoreIt(p, true, false, false, true);
+        engine = new TO_Engine(new TO_Shoe(iNumOfDecks, iPenetration, System.nanoTime()),
+                               iBank, rules);
+        engine.setMetrics(metrics);
+        engine.setStats(stats);
+        engine.setStore(store);
+        if (iHandRing > 0) {
+            handRing = new TO_HandRing(iHandRing);
+            handRing.createIndex();
+            engine.setHandRing(handRing);
+        }
+        metrics.setTable(engine);
+        if (!"".equals(sJournal)) {
+            try {
+                journal = new TO_Journal(new java.io.File(sJournal));
+                engine.setJournal(journal, 0);
             }
-            else {
-                int c = dealerCards.cardAt(1).getCardPointValue();
-                if ((d == 21) && (c != 1)) { // dealer won
-                    scoreIt(d, false, false, false, true);
-                }
-                else { // finish setup
-                    setEnab(false, true, true, true, false, false);
-                    int p1 = playerCards.cardAt(0).getCardPointValue();
-                    int p2 = playerCards.cardAt(1).getCardPointValue();
-                    if (c == 1) btnInsurance.setEnabled(true);
-                    if (p1 == p2) btnSplit.setEnabled(true);
-                    btnStay.requestFocus();
-                }
+            catch (java.io.IOException e) {
+                System.err.println("Journal failed to open: " + e);
             }
         }
+        loadCardFaces();
+        cardImgs = new TO_CardImages(cImgs, cardFaces, props.cardBacks, ceCardBackPic);
+    }
+
+    /** Method used to set the start up times shown with the action timings. */
+    private void setStartup(long playNanos, long allNanos)
+    {
+        String sFrom = (cardImgs.isAtlas())
+            ? String.format("card atlas, decoded in %.1fms", cardImgs.getLoadTime() / 1e6)
+            : "card library";
+
+        sStartup = String.format("%nStart up: play enabled after %.1fms, all card images " +
+                                 "after %.1fms (%s)", playNanos / 1e6, allNanos / 1e6, sFrom);
+    }
+
+    /** Method used to close the hand journal (if open). */
+    protected void closeJournal()
+    {
+        if (journal == null) return;
+
+        try {
+            journal.close();
+        }
+        catch (java.io.IOException e) {
+            System.err.println("Journal failed to close: " + e);
+        }
+        journal = null;
     }
 
-    /** Method used to add a card to a hand (dealer or player).  Returns
-     * the points of the hand.
+    /** Method used to ask for a query and show the recent hands matching it
+     * (see 'TO_HandIndex').
     */
-    protected int giveCard(CardHand hnd, boolean bPly)
+    private void queryHands()
     {
-        hnd.add(cards.getNextCard());
-        iCardsLeft--;
+        String q;
+        JTextArea ta;
 
-        // redisplay everything
-        lblCTitle.setText(S_CL_LBL + iCardsLeft);
-        if (bPly)
-            paPlayer.repaint();
-        else
-            paDealer.repaint();
+        if (handRing == null) {
+            JOptionPane.showMessageDialog(frame, "No recent hands kept (see TwentyOne.HandRing).",
+                                          "Query Hands", JOptionPane.INFORMATION_MESSAGE, mbOKImg);
+            return;
+        }
+
+        q = (String) JOptionPane.showInputDialog(frame, "Hands matching (for example " +
+                                                 "'16 vs 10 stay' or 'soft 18 up=a won'):",
+                                                 "Query Hands", JOptionPane.QUESTION_MESSAGE,
+                                                 mbOKImg, null, sQuery);
+        if (q == null) return;
+
+        sQuery = q;
+        try {
+            ta = new JTextArea(handRing.getIndex().getReport(q, QUERY_HANDS), 20, 64);
+        }
+        catch (IllegalArgumentException e) {
+            ta = new JTextArea("Bad query '" + q + "': " + e.getMessage(), 2, 64);
+        }
+        ta.setFont(new Font("Monospaced", Font.PLAIN, 12));
+        ta.setEditable(false);
+        JOptionPane.showMessageDialog(frame, new JScrollPane(ta), "Query Hands",
+                                      JOptionPane.INFORMATION_MESSAGE, mbOKImg);
+    }
 
-        return getScoreOfHand(hnd);
+    /** Method used to show (or hide) the statistics window, created the first
+     * time it is shown.
+    */
+    private void showStats(boolean bShow)
+    {
+        if ((statsDlg == null) && (bShow)) {
+            JButton btnReset = new JButton("Reset");
+
+            statsDlg = new JDialog(frame, "Statistics", false);
+            statsDlg.getContentPane().add(new TO_StatsPanel(stats), BorderLayout.CENTER);
+            JPanel pnl = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+            pnl.add(btnReset);
+            statsDlg.getContentPane().add(pnl, BorderLayout.SOUTH);
+            btnReset.addActionListener(new ActionListener() {
+                                           public void actionPerformed(ActionEvent evt) {
+                                               stats.reset();
+                                           }
+                                       });
+            statsDlg.addWindowListener(new WindowAdapter() {
+                                           public void windowClosing(WindowEvent e) {
+                                               mi10.setState(false);
+                                           }
+                                       });
+            statsDlg.pack();
+            statsDlg.setLocation(frame.getX() + frame.getWidth(), frame.getY());
+        }
+        if (statsDlg != null) statsDlg.setVisible(bShow);
     }
 
-    /** Method used to finish off the dealers hand. */
-    protected void finishOffDealer()
+    /** Method used to close the session store (if open), writes it. */
+    protected void closeStore()
     {
-        int d, p, p2 = 0;
+        if (store == null) return;
 
-        setEnab(false, false, false, false, false, false); // disable all
-        // show down card
-        bShowDown = true;
-        paDealer.repaint();
-        // score hands
-        d = getScoreOfHand(dealerCards);
-        p = getScoreOfHand(playerCards);
-        if (bSplitHand) {
-            CardHand ply2 = new CardHand(2, false);
-            
-            ply2.add(playerCards.cardAt(3));
-            ply2.add(playerCards.cardAt(4));
-            p2 = getScoreOfHand(ply2);
-        }
-        while ((d <= 16) && 
-               (dealerCards.getCardCount() < TwentyOneProps.MAX_DRAW_CARDS)) {
-            d = giveCard(dealerCards, false);
-        }
-        // now do it
-        if (d <= 21) { // who won...
-            if (dealerCards.getCardCount() == TwentyOneProps.MAX_DRAW_CARDS) {
-                scoreIt(d, false, false, true, true);
-            }
-            else {
-                if (bSplitHand) displayMessage("Scoring first hand of split.");
-                if (d == p) {
-                    scoreIt(p, false, true, false, !bSplitHand); // push
-                }
-                else {
-                    if (d < p)
-                        scoreIt(p, true, false, false, !bSplitHand);
-                    else
-                        scoreIt(d, false, false, false, !bSplitHand);
-                }
-                if (bSplitHand) {
-                    displayMessage("Scoring second hand of split.");
-                    if (d == p2) {
-                        scoreIt(p2, false, true, false, true); // push
-                    }
-                    else {
-                        if (d < p2)
-                            scoreIt(p2, true, false, false, true);
-                        else
-                            scoreIt(d, false, false, false, true);
-                    }
-                }
-            }
+        if (engine != null) engine.setStore(null);
+        store.close();
+        store = null;
+    }
+
+    /** Method to return the rules engine used by the game. */
+    protected TO_Engine getEngine()
+    {
+        return engine;
+    }
+
+    /** Method used to add a hint value to the hint message. */
+    private void addHint(StringBuffer sb, String sName, double v)
+    {
+        if (Double.isNaN(v)) return;
+
+        sb.append("  ");
+        sb.append(sName);
+        sb.append(String.format(" %+.3f", v));
+    }
+
+    /** Method used to show the split hand being played (if split hands are
+     * played) and the expected value (in bets) of each action available to
+     * the player, if hints are turned on.
+    */
+    protected void showHint()
+    {
+        StringBuffer sb = new StringBuffer(80);
+
+        if (engine.getState() != TO_Engine.ST_PLAYER) {
+            setText(lblMsg, " ");
+            return;
         }
-        else { // player won...
-            displayMessage("Dealer has exceeded 21.");
-            if (bSplitHand) displayMessage("Scoring first hand of split.");
-            scoreIt(p, true, false, false, !bSplitHand);
-            if (bSplitHand) { // score second hand...
-                displayMessage("Scoring second hand of split.");
-                scoreIt(p2, true, false, false, true);
-            }
+
+        if (engine.getHandCount() > 1)
+            sb.append("Hand " + (engine.getCurrentHand() + 1) + " of " +
+                      engine.getHandCount() + ". ");
+        if (mi3.getState()) {
+            advisor.getActionValues(engine, hintVals);
+            sb.append("Value:");
+            addHint(sb, "Hit", hintVals[TO_Advisor.V_HIT]);
+            addHint(sb, "Stay", hintVals[TO_Advisor.V_STAY]);
+            addHint(sb, "Dbl", hintVals[TO_Advisor.V_DOUBLE]);
+            addHint(sb, "Spl", hintVals[TO_Advisor.V_SPLIT]);
+            addHint(sb, "Ins", hintVals[TO_Advisor.V_INSURANCE]);
+            addHint(sb, "Sur", hintVals[TO_Advisor.V_SURRENDER]);
+        }
+        setText(lblMsg, (sb.length() == 0) ? " " : sb.toString());
+    }
+
+    /** Method used to carry on after a player action, the next split hand
+     * is played or the hand is finished.
+    */
+    protected void nextAction()
+    {
+        redisplay();
+        waitForDeal();
+        if (engine.getState() == TO_Engine.ST_DONE) {
+            finishHand();
+        }
+        else {
+            setActionButtons();
+            showHint();
+        }
+    }
+
+    /** Method used to check hands at start for 21. */
+    protected void checkHands()
+    {
+        engine.checkHands();
+        if (engine.getState() == TO_Engine.ST_DONE) {
+            finishHand();
+        }
+        else { // finish setup
+            int a = engine.getActions();
+
+            setEnab(false, true, true, true,
+                    (a & TO_Engine.A_SPLIT) != 0, (a & TO_Engine.A_INSURANCE) != 0);
+            requestFocus(btnStay);
+            showHint();
         }
     }
 
@@ -594,6 +1163,8 @@ public class TwentyOne
     */
     public void init()
     {
+        lInitStart = System.nanoTime();
+
         // get content pane
         if (frame != null) {
             frame_cp = frame.getContentPane();
@@ -601,12 +1172,25 @@ public class TwentyOne
         }
 		/* removed else to get content pane from applet */
 
-        // load changeable references from props
+        // telemetry visible to jconsole/VisualVM
+        metrics.register("game");
+
+        // load changeable references from props (and watch local settings)
+        java.io.File fProps = new java.io.File(S_LOCAL_PROPS);
+        if (fProps.isFile()) {
+            try {
+                props.watch(fProps);
+            }
+            catch (java.io.IOException e) {
+                System.err.println("Settings file can't be watched: " + e);
+            }
+        }
         loadProps();
 
-        // setup intial card deck
-        cards = new CardDeck(iNumOfDecks, PlayingCardDeck.PC_DECK, PlayingCard.class);
-        cards.shuffle();
+        // setup rules engine (and intial card shoe), card images
+        setupEngine();
+        if (!cardImgs.loadAtlas(TO_CardImages.getDefaultAtlas())) // start on the back first
+            frame.getToolkit().prepareImage(cardImgs.getBack(), -1, -1, null);
 
         // load dialog icon images
         Image temp = Utilities.loadImage(this, frame.getToolkit(), "images/", "info.gif");
@@ -621,6 +1205,10 @@ public class TwentyOne
 
         // other stuff (for frame)
         if (frame != null) {
+            // cards are slid into place on the glass pane
+            animator = new DealAnimator();
+            frame.setGlassPane(animator);
+            animator.setVisible(true);
             // prepare to show
             frame.setSize(W_WIDTH, W_HEIGHT);
             Utilities.centerWindowOnScreen(frame, W_WIDTH, W_HEIGHT);
@@ -629,9 +1217,13 @@ public class TwentyOne
             frame.setVisible(true);
         }
 
-        // start up image load...
-        // lblMsg.setText("Loading card images, please wait...");
-        new CardLoader().start();
+        // ready to play, card faces not in the atlas load as they are drawn
+        btnPlay.setEnabled(true);
+        long lPlay = System.nanoTime() - lInitStart;
+        if (cardImgs.isAtlas())
+            setStartup(lPlay, lPlay);
+        else
+            new CardLoader(lPlay).start(); // rest of the images (and save atlas)
     }
 
     /** Method used to emulate the process of 'starting' an applet from
@@ -659,26 +1251,36 @@ public class TwentyOne
     // ---------------------- Inner Classes -------------------------
 
     /**
-     * Class used to initialize the card images during startup.  Runs as
-     * a 'SwingWorker' thread to 'waitfor' the card images until all are
-     * loaded.
+     * Class used to load the rest of the card images in the background
+     * during startup (when there is no card atlas).  Runs as a 'SwingWorker'
+     * thread to 'waitfor' the card images until all are loaded, then saves
+     * the card atlas for the next startup.
     */
     class CardLoader extends com.slackandassociates.SwingWorker
     {
-        /** Run 'waitfor' routine until all cards images fully loaded.
-         * Return a string containing 'success'.
+        private long lPlay;
+
+        /** Constructor - 'play' is the time play was enabled after. */
+        public CardLoader(long play)
+        {
+            super();
+
+            lPlay = play;
+        }
+
+        /** Run 'waitfor' routine until all cards images fully loaded, then
+         * save the atlas.  Return a string containing 'success'.
         */
         public Object construct()
         {
-            cImgs.waitForImages(frame_cp);
+            cardImgs.saveAtlas(TO_CardImages.getDefaultAtlas(), frame_cp);
             return "Success";
         }
 
-        /** Update U/I to indicate load is finished. */
+        /** Record the start up times now load is finished. */
         public void finished()
         {
-            btnPlay.setEnabled(true);
-            // lblMsg.setText("");
+            setStartup(lPlay, System.nanoTime() - lInitStart);
         }
     }
 
@@ -686,19 +1288,38 @@ public class TwentyOne
      * Class (component) used to deal with the card playing area.  Basically
      * component sets up a set size playing area and handles the painting of the
      * playing area for the game.  Created as an inner class so that it can take
-     * advantage of the 'dealt' (hit) cards to paint with.
+     * advantage of the 'dealt' (hit) cards to paint with. <br>
+     * Cards are drawn into a back buffer (compatible with the screen) that is
+     * kept between paints.  'refresh' only redraws the card slots that changed
+     * (new card, down card turned over, hand cleared) and repaints just those
+     * slots, painting copies the clipped part of the back buffer to the screen.
+     * A new card is handed to the deal animator and drawn once it lands.
+     * When split hands are played the player area shows the split hand being
+     * played.
     */
     class PlayArea extends javax.swing.JComponent
     {
         /** Playing area size reference. */
         private Dimension dim = new Dimension(367, 106);
 
+        /** Card slot the second hand of a split is shown at. */
+        private static final int SPLIT_SLOT = 3;
+
+        /** Slot value used for the card back (dealer down card). */
+        private static final int BACK = -2;
+
+        /** Slot value used for a slot that has to be redrawn. */
+        private static final int STALE = -3;
+
         /** Whos cards are these. */
         private boolean dealer;
 
         // other references
         Image offScrn = null;
         Graphics offGrph = null;
+        private int[] shown = new int[TwentyOneProps.MAX_DRAW_CARDS];
+        private boolean[] pending = new boolean[TwentyOneProps.MAX_DRAW_CARDS];
+        private boolean[] flying = new boolean[TwentyOneProps.MAX_DRAW_CARDS];
 
         /** Constructor to create the 21 hand playing area (where the cards are played). */
         public PlayArea(boolean dlr)
@@ -706,9 +1327,173 @@ public class TwentyOne
             super();
 
             dealer = dlr;
+            java.util.Arrays.fill(shown, STALE);
 
             // set size
             setPreferredSize(dim);
+            setOpaque(true);
+        }
+
+        /** Method used to create the back buffer, compatible with the screen
+         * when displayed (plain image if not, headless).
+        */
+        private void createBuffer()
+        {
+            GraphicsConfiguration gc = getGraphicsConfiguration();
+
+            if (gc != null)
+                offScrn = gc.createCompatibleImage(dim.width, dim.height);
+            else
+                offScrn = new BufferedImage(dim.width, dim.height, BufferedImage.TYPE_INT_RGB);
+            offGrph = offScrn.getGraphics();
+
+            // set up background
+            offGrph.setColor(Color.green.darker());
+            offGrph.fillRect(0, 0, dim.width, dim.height);
+            java.util.Arrays.fill(shown, STALE);
+        }
+
+        /** Method to return what should be shown in slot 'i' (card code,
+         * 'BACK' or 'TO_Engine.EMPTY_CARD').
+        */
+        private int getSlot(int i)
+        {
+            int card;
+
+            if (dealer) {
+                if (i >= engine.getDealerCardCount()) return TO_Engine.EMPTY_CARD;
+                card = engine.getDealerCard(i);
+                if ((i == 0) && (card != TO_Engine.EMPTY_CARD) && (!engine.isShowDown()))
+                    return BACK;
+            }
+            else if ((engine.isSplitHand()) && (engine.getRules().isSplitPlay())) {
+                card = engine.getPlayerCard(engine.getCurrentHand(), i);
+            }
+            else if ((engine.isSplitHand()) && (i >= SPLIT_SLOT)) {
+                card = engine.getPlayerCard(1, i - SPLIT_SLOT);
+            }
+            else {
+                card = engine.getPlayerCard(0, i);
+            }
+
+            return card;
+        }
+
+        /** Method to return the left edge of card slot 'i'. */
+        protected int getSlotX(int i)
+        {
+            return 2 + i * (PlayingCardImageCache.IMAGE_WIDTH + 2);
+        }
+
+        /** Method to return the top edge of the card slots. */
+        protected int getSlotY()
+        {
+            return 4;
+        }
+
+        /** Method to return the image of a slot value (card code or 'BACK'). */
+        private Image getSlotImage(int v)
+        {
+            return (v == BACK) ? cardImgs.getBack() : cardImgs.getFace(v);
+        }
+
+        /** Method used to repaint (just) slot 'i'. */
+        private void repaintSlot(int i)
+        {
+            repaint(getSlotX(i), getSlotY(), PlayingCardImageCache.IMAGE_WIDTH,
+                    PlayingCardImageCache.IMAGE_HEIGHT);
+        }
+
+        /** Method used to draw slot 'i' into the back buffer. */
+        private void drawSlot(int i, int v)
+        {
+            int x = getSlotX(i), y = getSlotY();
+            int w = PlayingCardImageCache.IMAGE_WIDTH, h = PlayingCardImageCache.IMAGE_HEIGHT;
+            boolean bDone = true;
+
+            offGrph.setColor(Color.green.darker());
+            offGrph.fillRect(x, y, w, h);
+            if (v != TO_Engine.EMPTY_CARD)
+                bDone = offGrph.drawImage(getSlotImage(v), x, y, this);
+            shown[i] = v;
+            pending[i] = !bDone; // image not all loaded yet, draw again
+        }
+
+        /** Method used to redraw the slots that changed into the back buffer.
+         * Returns the bounds of the slots redrawn (null if none).  Called on
+         * the event dispatch thread (or when painting headless).
+        */
+        protected Rectangle renderChanges()
+        {
+            Rectangle r = null;
+
+            if (offGrph == null) createBuffer();
+            for (int i = 0; i < shown.length; i++) {
+                int v = getSlot(i);
+                if ((flying[i]) || ((v == shown[i]) && (!pending[i]))) continue;
+
+                drawSlot(i, v);
+                Rectangle sr = new Rectangle(getSlotX(i), getSlotY(),
+                                             PlayingCardImageCache.IMAGE_WIDTH,
+                                             PlayingCardImageCache.IMAGE_HEIGHT);
+                if (r == null) r = sr; else r.add(sr);
+            }
+
+            return r;
+        }
+
+        /** Method used to redraw all of the slots into the back buffer. */
+        protected void renderAll()
+        {
+            if (offGrph == null) createBuffer();
+            java.util.Arrays.fill(shown, STALE);
+            renderChanges();
+        }
+
+        /** Method used to update slot 'i' from the engine (on the event
+         * dispatch thread).  A card dealt to an empty slot is slid in by the
+         * deal animator (if animating), any other change is drawn now.
+        */
+        protected void refreshSlot(int i)
+        {
+            if (offGrph == null) createBuffer();
+            if (flying[i]) return; // drawn when it lands
+
+            int v = getSlot(i);
+            if ((v == shown[i]) && (!pending[i])) return;
+
+            if ((shown[i] == TO_Engine.EMPTY_CARD) && (v != TO_Engine.EMPTY_CARD) &&
+                (animator != null) && (animator.isAnimating())) {
+                flying[i] = true;
+                shown[i] = v;
+                animator.add(this, i, getSlotImage(v));
+            }
+            else {
+                drawSlot(i, v);
+                repaintSlot(i);
+            }
+        }
+
+        /** Method used to draw slot 'i' once its card has landed (slot is
+         * drawn from the engine as it is now).
+        */
+        protected void landSlot(int i)
+        {
+            flying[i] = false;
+            drawSlot(i, getSlot(i));
+            repaintSlot(i);
+        }
+
+        /** Method used to update the playing area from the engine, only the
+         * slots that changed are redrawn and repainted.
+        */
+        public void refresh()
+        {
+            invokeUI(new Runnable() {
+                         public void run() {
+                             for (int i = 0; i < shown.length; i++) refreshSlot(i);
+                         }
+                     });
         }
 
         /** Method to return the accessibilty context to the caller.  This class
@@ -722,46 +1507,28 @@ public class TwentyOne
         }
 
         /** Overrode method used to display the playing area on the screen.
+         * Copies the part of the back buffer inside the clip.
          * @param g Graphic instance used to draw with.
         */
         public void paint(Graphics g)
         {
-            CardHand playedCards;
-            int x = 2, y = 4;
+            Rectangle c = g.getClipBounds();
 
-            // create background area
-            if (offGrph == null) {
-                offScrn = createImage(dim.width, dim.height);
-                offGrph = offScrn.getGraphics();
+            if (offGrph == null) { // new buffer, draw it all
+                renderChanges();
             }
-
-            // set up background and border color
-            offGrph.setColor(Color.green.darker());
-            offGrph.fillRect(0, 0, dim.width, dim.height);
-
-            // whose hand are we doing...
-            if (dealer)
-                playedCards = dealerCards;
-            else
-                playedCards = playerCards;
-
-            // paint the played cards now (if any)
-            int count = 5; // need to loop through all of the players cards (split...)
-            // only go through those in dealer hand though
-            if (dealer) count = playedCards.getCardCount();
-            for (int i = 0; i < count; i++) {
-                Card card = playedCards.cardAt(i);
-                if (card != CardHand.EMPTY_CARD) { // paint it
-                    if ((dealer) && (i == 0) && (!bShowDown))
-                        offGrph.drawImage(cImgs.getCardImage(ceCardBackPic), x, y, this);
-                    else
-                        offGrph.drawImage(cImgs.getCardImage((PlayingCard) card), x, y, this);
+            else { // redraw slots with images still loading
+                for (int i = 0; i < pending.length; i++) {
+                    if ((pending[i]) && (!flying[i])) drawSlot(i, shown[i]);
                 }
-                x += PlayingCardImageCache.IMAGE_WIDTH + 2;
             }
 
             // now display drawing...
-            g.drawImage(offScrn, 0, 0, this);
+            if (c == null)
+                g.drawImage(offScrn, 0, 0, this);
+            else
+                g.drawImage(offScrn, c.x, c.y, c.x + c.width, c.y + c.height,
+                            c.x, c.y, c.x + c.width, c.y + c.height, this);
         }
 
         /** Method called during component update.  Overrode to do away with
@@ -774,202 +1541,524 @@ public class TwentyOne
         }
     }
 
-    /** Class used to run the 'play' button event. */
-    class PlayT extends Thread
+    /**
+     * Class (glass pane component) used to slide the cards dealt from the
+     * deck to their playing area slots.  Cards are slid one at a time, in
+     * the order they were added, by a swing timer at a fixed frame rate (eased
+     * positions in between).  Each card is drawn into its slot when it lands.
+     * With a deal time of zero cards land at once. <br>
+     * Frame times (timer ticks while sliding) are kept to check the frame
+     * rate holds.
+    */
+    class DealAnimator extends javax.swing.JComponent implements ActionListener
     {
+        /** Frame time over this (nanoseconds) counts as a late frame (60 fps). */
+        private static final long LATE_NANOS = 1000000000L / 60 * 3 / 2;
+
+        private javax.swing.Timer timer = new javax.swing.Timer(FRAME_MILLIS, this);
+        private java.util.ArrayDeque<Flight> flights = new java.util.ArrayDeque<Flight>();
+        private Flight cur = null;
+        private Rectangle last = null;
+        private long lStart = 0L;
+        private long lLastFrame = 0L;
+        private volatile int iDealMillis = DEAL_MILLIS;
+        private Object idle = new Object();
+        private int iBusy = 0;
+
+        // frame metrics
+        private long lFrames = 0L;
+        private long lFrameTotal = 0L;
+        private long lFrameMax = 0L;
+        private long lFramesLate = 0L;
+
         /** Constructor. */
-        public PlayT()
+        public DealAnimator()
         {
             super();
 
-            setName("play");
+            setOpaque(false);
+            timer.setCoalesce(true);
+        }
+
+        /** Method used to start the next card sliding (if any). */
+        private void nextFlight()
+        {
+            cur = flights.poll();
+            if (cur == null) {
+                timer.stop();
+                return;
+            }
+
+            cur.from = SwingUtilities.convertPoint(cardImg, 0, 0, this);
+            cur.to = SwingUtilities.convertPoint(cur.area, cur.area.getSlotX(cur.slot),
+                                                 cur.area.getSlotY(), this);
+            lStart = System.nanoTime();
+            lLastFrame = lStart;
+            if (iDealMillis <= 0)
+                land();
+            else if (!timer.isRunning())
+                timer.start();
+        }
+
+        /** Method used to land the card sliding in its slot. */
+        private void land()
+        {
+            if (last != null) repaint(last);
+            last = null;
+            cur.area.landSlot(cur.slot);
+            cur = null;
+            synchronized (idle) {
+                iBusy--;
+                idle.notifyAll();
+            }
+            nextFlight();
+        }
+
+        /** Method to return true if cards are slid (deal time not zero and
+         * the window is showing).
+        */
+        public boolean isAnimating()
+        {
+            return (iDealMillis > 0) && (isShowing());
+        }
+
+        /** Method used to add a card to slide to slot 'slot' of a playing
+         * area (on the event dispatch thread).
+        */
+        public void add(PlayArea area, int slot, Image img)
+        {
+            Flight f = new Flight();
+
+            f.area = area;
+            f.slot = slot;
+            f.img = img;
+            synchronized (idle) {
+                iBusy++;
+            }
+            flights.add(f);
+            if (cur == null) nextFlight();
+        }
+
+        /** Method used to set the time (milliseconds) to slide a card, zero
+         * lands the cards at once.
+        */
+        public void setDealMillis(int millis)
+        {
+            iDealMillis = millis;
+        }
+
+        /** Method used to wait (not on the event dispatch thread) until all
+         * of the cards added have landed.
+        */
+        public void waitIdle()
+        {
+            if (SwingUtilities.isEventDispatchThread()) return;
+
+            invokeUIAndWait(new Runnable() { // cards to add are on the queue
+                                public void run() { }
+                            });
+            synchronized (idle) {
+                while (iBusy > 0) {
+                    try {
+                        idle.wait();
+                    }
+                    catch (InterruptedException ie) {
+                        return;
+                    }
+                }
+            }
+        }
+
+        /** Method to return the frame time metrics as a report string. */
+        public String getMetrics()
+        {
+            if (lFrames == 0L) return String.format("%nDeal animation: no frames yet");
+
+            double avg = lFrameTotal / (double) lFrames / 1e6;
+
+            return String.format("%nDeal animation: %d frames, avg %.1fms (%.0f fps), " +
+                                 "max %.1fms, %.1f%% late for 60 fps", lFrames, avg, 1000.0 / avg,
+                                 lFrameMax / 1e6, lFramesLate * 100.0 / lFrames);
+        }
+
+        /** Method called for each frame (timer tick), moves the card. */
+        public void actionPerformed(ActionEvent evt)
+        {
+            if (cur == null) return;
+
+            long now = System.nanoTime();
+            long d = now - lLastFrame;
+
+            lLastFrame = now;
+            lFrames++;
+            lFrameTotal += d;
+            if (d > lFrameMax) lFrameMax = d;
+            if (d > LATE_NANOS) lFramesLate++;
+
+            double t = (now - lStart) / (iDealMillis * 1e6);
+            if (t >= 1.0) {
+                land();
+                return;
+            }
+
+            t = t * t * (3.0 - 2.0 * t); // ease in and out
+            Rectangle r = new Rectangle(cur.from.x + (int) ((cur.to.x - cur.from.x) * t),
+                                        cur.from.y + (int) ((cur.to.y - cur.from.y) * t),
+                                        PlayingCardImageCache.IMAGE_WIDTH,
+                                        PlayingCardImageCache.IMAGE_HEIGHT);
+            if (last != null) repaint(last);
+            repaint(r);
+            last = r;
         }
 
+        /** Method used to paint the card sliding. */
+        protected void paintComponent(Graphics g)
+        {
+            if ((cur != null) && (last != null)) g.drawImage(cur.img, last.x, last.y, this);
+        }
+    }
+
+    /** Class used to hold a card sliding to its slot. */
+    static class Flight
+    {
+        PlayArea area;
+        int slot;
+        Image img;
+        Point from;
+        Point to;
+    }
+
+    /** Class used to run the 'play' button event. */
+    class PlayT implements Runnable
+    {
         /** Method used to run the 'play' event (button pressed). */
         public void run()
         {
-            btnPlay.setEnabled(false);
+            if ((engine.getState() == TO_Engine.ST_DEALT) ||
+                (engine.getState() == TO_Engine.ST_PLAYER)) return; // hand in play
+
+            setEnabled(btnPlay, false);
             if (getBet()) {
-                iAmountWon -= iBet;
-                lblBet.setText(S_BET_LBL + iBet);
-                lblAIB.setText(S_AIB_LBL + iAmountWon);
-                startHand();
-                try { // pause
-                    sleep(250);
+                engine.clearHands(); // last hand off the table
+                paDealer.refresh();
+                paPlayer.refresh();
+                if (!startHand()) { // bet not covered, no hand
+                    displayMessage("The hand can't be dealt, the bank doesn't cover the bet.");
+                    setEnabled(btnPlay, true);
+                    return;
                 }
-                catch (InterruptedException ie) { }
+                waitForDeal();
                 checkHands();
             }
             else {
-                btnPlay.setEnabled(true);
+                setEnabled(btnPlay, true);
             }
         }
     }
 
     /** Class used to run the 'hit' button event. */
-    class HitT extends Thread
+    class HitT implements Runnable
     {
-        /** Constructor. */
-        public HitT()
-        {
-            super();
-
-            setName("hit");
-        }
-
         /** Method used to run the 'hit' event (button pressed). */
         public void run()
         {
-            int p = 0;
-
-            // disable some of the buttons - no longer available
-            btnDouble.setEnabled(false);
-            btnInsurance.setEnabled(false);
-            btnSplit.setEnabled(false);
-
-            p = giveCard(playerCards, true);
-            if ((playerCards.getCardCount() == TwentyOneProps.MAX_DRAW_CARDS) &&
-                (p <= 21)) {
-                scoreIt(0, true, false, true, true);
-            }
-            else {
-                if (p > 21) {
-                    displayMessage("You've exceeded 21.");
-                    scoreIt(getScoreOfHand(dealerCards), false, false, false, true);
-                }
+            if (!engine.hit()) { // stale press, hand moved on
+                setActionButtons();
+                return;
             }
+            nextAction();
         }
     }
     
     /** Class used to run the 'stay' button event. */
-    class StayT extends Thread
+    class StayT implements Runnable
     {
-        /** Constructor. */
-        public StayT()
-        {
-            super();
-
-            setName("stay");
-        }
-
         /** Method used to run the 'stay' event (button pressed). */
         public void run()
         {
-            finishOffDealer();
+            if (!engine.stay()) { // stale press, hand moved on
+                setActionButtons();
+                return;
+            }
+            nextAction();
         }
     }
 
     /** Class used to run the 'double' button event. */
-    class DoubleT extends Thread
+    class DoubleT implements Runnable
     {
-        /** Constructor. */
-        public DoubleT()
-        {
-            super();
-
-            setName("double");
-        }
-
         /** Method used to run the 'double' event (button pressed). */
         public void run()
         {
-            btnDouble.setEnabled(false); // double or not, this is done...
-            if (iAmountWon < iBet) {
+            if ((engine.getActions() & TO_Engine.A_DOUBLE) == 0) { // stale press
+                setActionButtons();
+                return;
+            }
+            if (!engine.doubleDown()) {
                 displayMessage("You don't have enough money to double down with.");
+                setActionButtons();
+                showHint();
             }
             else {
-                int p = 0;
-
-                iAmountWon -= iBet; // subtract it out...
-                lblAIB.setText(S_AIB_LBL + iAmountWon);
-                p = giveCard(playerCards, true);
-                if (p > 21) { // whoops!
-                    displayMessage("You've exceeded 21.");
-                    scoreIt(getScoreOfHand(dealerCards), false, false, false, true);
-                }
-                else { // finish off dealer...
-                    bDoubleHand = true;
-                    finishOffDealer();
-                }
+                setText(lblAIB, S_AIB_LBL + engine.getBank());
+                nextAction();
             }
         }
     }
 
     /** Class used to run the 'split' button event. */
-    class SplitT extends Thread
+    class SplitT implements Runnable
     {
-        /** Constructor. */
-        public SplitT()
-        {
-            super();
-
-            setName("split");
-        }
-
         /** Method used to run the 'split' event (button pressed). */
         public void run()
         {
-            btnSplit.setEnabled(false); // either way, no more splitting...
-            if (iAmountWon < iBet) {
+            if ((engine.getActions() & TO_Engine.A_SPLIT) == 0) { // stale press
+                setActionButtons();
+                return;
+            }
+            if (!engine.split()) {
                 displayMessage("You don't have enough money to split.");
+                setActionButtons();
+                showHint();
             }
             else {
-                iAmountWon -= iBet;
-                lblAIB.setText(S_AIB_LBL + iAmountWon);
-                // move card 1 to pos 3, get two more...
-                playerCards.replace(playerCards.cardAt(1), 3);
-                playerCards.replace(cards.getNextCard(), 1);
-                playerCards.replace(cards.getNextCard(), 4);
-                iCardsLeft -= 2;
-
-                // redisplay everything
-                lblCTitle.setText(S_CL_LBL + iCardsLeft);
-                paPlayer.repaint();
-                try { // pause
-                    sleep(300);
-                }
-                catch (InterruptedException ie) { }
-                bSplitHand = true;
-                finishOffDealer();
+                setText(lblAIB, S_AIB_LBL + engine.getBank());
+                nextAction();
             }
         }
     }
 
-    /** Class used to run the 'stay' button event. */
-    class InsuranceT extends Thread
+    /** Class used to run the 'insurance' button event. */
+    class InsuranceT implements Runnable
     {
-        /** Constructor. */
-        public InsuranceT()
-        {
-            super();
-
-            setName("insurance");
-        }
-
         /** Method used to run the 'insurance' event (button pressed). */
         public void run()
         {
-            int insCost = (int)(iBet * 0.25);
-
-            btnInsurance.setEnabled(false); // turn off - either get it or not now...
-            if (insCost > iAmountWon) {
+            if ((engine.getActions() & TO_Engine.A_INSURANCE) == 0) { // stale press
+                setActionButtons();
+                return;
+            }
+            if (!engine.insurance()) {
                 String s = "You don't have enough money for insurance, need " +
-                           insCost + ".";
+                           engine.getInsuranceCost() + ".";
                 displayMessage(s);
+                setActionButtons();
+                showHint();
             }
             else {
-                iAmountWon -= insCost;
-                lblAIB.setText(S_AIB_LBL + iAmountWon);
-                if (dealerCards.cardAt(0).getCardPointValueFace10() == 10) {
+                setText(lblAIB, S_AIB_LBL + engine.getBank());
+                if (engine.getState() == TO_Engine.ST_DONE) {
                     // dealer has 21 - good call!
-                    iAmountWon += iBet; // give bet back - just lost ins cost
-                    scoreIt(21, false, false, false, true);
+                    finishHand();
                 }
                 else { // dealer does not have 21 - continue...
                     displayMessage("Dealer does not have 21.");
-                    btnStay.requestFocus();
+                    setActionButtons();
+                    requestFocus(btnStay);
+                    showHint();
                 }
             }
         }
     }
-}
\ No newline at end of file
+
+    /** Class used to run the 'surrender' button event. */
+    class SurrenderT implements Runnable
+    {
+        /** Method used to run the 'surrender' event (button pressed). */
+        public void run()
+        {
+            if (!engine.surrender()) { // stale press, hand moved on
+                setActionButtons();
+                return;
+            }
+            finishHand();
+        }
+    }
+
+    /** Class used to run the 'show hints' menu event (turned on or off). */
+    class HintT implements Runnable
+    {
+        /** Method used to run the 'show hints' event (menu selected). */
+        public void run()
+        {
+            showHint();
+        }
+    }
+
+    /** Class used to run the 'autoplay' menu event.  Plays hands with the
+     * strategy (bet as the bet dialog would start it) until the number of
+     * hands is played, a bank target is hit or it is stopped.  The labels and
+     * playing areas are only redrawn every so many hands (or times a second)
+     * with the game action thread waiting so the hand drawn stays put.
+    */
+    class AutoplayT implements Runnable
+    {
+        private TO_Strategy strategy;
+        private long lHands;
+        private int iHigh;
+        private int iLow;
+        private int iRedraw;
+
+        /** Constructor - autoplay settings (0 for no bank targets, redraw
+         * timed).
+        */
+        public AutoplayT(TO_Strategy strategy, long hands, int high, int low, int redraw)
+        {
+            this.strategy = strategy;
+            this.lHands = hands;
+            this.iHigh = high;
+            this.iLow = low;
+            this.iRedraw = redraw;
+        }
+
+        /** Method used to redraw the labels and playing areas (waits). */
+        private void redraw(long played, long start)
+        {
+            final String sCL = S_CL_LBL + engine.getCardsLeft();
+            final String sAIB = S_AIB_LBL + engine.getBank();
+            final String sBet = S_BET_LBL + engine.getBet();
+            final String sMsg = String.format("Autoplay: %d hands, %.0f hands/sec", played,
+                                              played * 1e9 / Math.max(1L,
+                                                                      System.nanoTime() - start));
+
+            invokeUIAndWait(new Runnable() {
+                                public void run() {
+                                    lblCTitle.setText(sCL);
+                                    lblAIB.setText(sAIB);
+                                    lblBet.setText(sBet);
+                                    lblMsg.setText(sMsg);
+                                    refreshAreas();
+                                }
+                            });
+        }
+
+        /** Method used to run the 'autoplay' event (menu selected). */
+        public void run()
+        {
+            int iStartBank = engine.getBank();
+            long start = System.nanoTime();
+            long lastRedraw = 0L;
+            long played = 0L;
+            String sWhy = "All hands played.";
+
+            bStopAuto = false;
+            bAutoplaying = true;
+            setMenuText(mi7, "Stop Autoplay");
+            setEnab(false, false, false, false, false, false); // disable all
+            if (animator != null) animator.setDealMillis(0);
+            loadBetProps(props.getConfig());
+
+            while (played < lHands) {
+                int iBank = engine.getBank();
+
+                if (bStopAuto) {
+                    sWhy = "Stopped.";
+                    break;
+                }
+                if ((iHigh > 0) && (iBank >= iHigh)) {
+                    sWhy = "Bank reached " + iHigh + ".";
+                    break;
+                }
+                if ((iBank < iMinimumBet) || ((iLow > 0) && (iBank < iLow))) {
+                    sWhy = "Bank fell to " + iBank + ".";
+                    break;
+                }
+
+                int bet = (bBet_Max) ? Math.min(iMaximumBet, iBank) : iMinimumBet;
+                engine.startHand(bet);
+                engine.checkHands();
+                TO_Simulator.playOut(engine, strategy);
+                played++;
+
+                // redraw the finished hand now and then
+                long now = System.nanoTime();
+                if ((iRedraw > 0) ? (played % iRedraw == 0)
+                                  : (now - lastRedraw >= AUTO_REDRAW_MILLIS * 1000000L)) {
+                    redraw(played, start);
+                    lastRedraw = now;
+                }
+                engine.clearHands();
+            }
+
+            double secs = (System.nanoTime() - start) / 1e9;
+            bAutoplaying = false;
+            setMenuText(mi7, "Autoplay...");
+            if (animator != null) animator.setDealMillis((mi6.getState()) ? DEAL_MILLIS : 0);
+            setText(lblMsg, " ");
+            setText(lblBet, S_BET_LBL + "0");
+            setText(lblCTitle, S_CL_LBL + engine.getCardsLeft());
+            setText(lblAIB, S_AIB_LBL + engine.getBank());
+            paDealer.refresh();
+            paPlayer.refresh();
+            displayMessage(String.format("%s%nPlayed %d hands in %.2f secs (%.0f hands/sec)," +
+                                         " bank changed by %d.", sWhy, played, secs,
+                                         played / Math.max(secs, 1e-9),
+                                         engine.getBank() - iStartBank));
+            setEnab(true, false, false, false, false, false);
+            requestFocus(btnPlay);
+        }
+    }
+
+    /** Class used to run the 'replay journal' menu event.  Replays the
+     * hands of the journal in the playing areas (using the replay engine)
+     * until done or stopped, then puts the game engine back.
+    */
+    class ReplayT implements Runnable
+    {
+        private java.io.File file;
+
+        /** Constructor - replay of journal 'f'. */
+        public ReplayT(java.io.File f)
+        {
+            file = f;
+        }
+
+        /** Method used to run the 'replay journal' event (menu selected). */
+        public void run()
+        {
+            TO_Engine saved = engine;
+            final TO_Replay rp;
+
+            try {
+                rp = new TO_Replay(file);
+            }
+            catch (java.io.IOException e) {
+                displayMessage("Journal can't be replayed: " + e.getMessage());
+                return;
+            }
+
+            bStopReplay = false;
+            bReplaying = true;
+            setMenuText(mi5, "Stop Replay");
+            setEnab(false, false, false, false, false, false); // disable all
+            rp.setStepListener(new Runnable() {
+                                   public void run() {
+                                       engine = rp.getEngine();
+                                       setText(lblBet, S_BET_LBL + engine.getBet());
+                                       setText(lblAIB, S_AIB_LBL + engine.getBank());
+                                       redisplay();
+                                       waitForDeal();
+                                       pause(REPLAY_STEP_PAUSE);
+                                   }
+                               });
+            try {
+                while ((!bStopReplay) && (rp.next())) pause(REPLAY_HAND_PAUSE);
+                rp.close();
+            }
+            catch (java.io.IOException e) {
+                System.err.println("Replay failed: " + e);
+            }
+
+            // put the game back
+            engine = saved;
+            bReplaying = false;
+            setMenuText(mi5, "Replay Journal...");
+            setText(lblBet, S_BET_LBL + "0");
+            setText(lblAIB, S_AIB_LBL + engine.getBank());
+            redisplay();
+            displayMessage("Replay of " + file.getName() + ":\n" + rp.toString());
+            setEnab(true, false, false, false, false, false);
+            requestFocus(btnPlay);
+        }
+    }
+}
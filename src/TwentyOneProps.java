@@ -1,5 +1,6 @@
 import java.util.*;
 import java.io.*;
+import java.nio.file.*;
 import com.slackandassociates.cards.CardDeck;
 import com.slackandassociates.cards.CardEnum;
 import com.slackandassociates.cards.playingcards.PlayingCardEnum;
@@ -8,13 +9,21 @@ import com.slackandassociates.cards.playingcards.PlayingCardEnum;
  * game along with the defaults.  Properties are stored in a properties file
  * called 'TwentyOne.properties' and should be accessible via the Properties
  * class. <br>
+ * The properties are parsed once into an immutable settings snapshot
+ * ('getConfig').  An external properties file can be laid over the ones
+ * loaded from the classpath and watched ('watch'), a new snapshot is swapped
+ * in when the file changes (and has settled) so readers see either the old or
+ * the new settings, never a mix.  A watched file with a bad setting is not
+ * swapped in, the settings before it are kept. <br>
  * There are a few properties that should not be changed.  These are marked
  * in the property file. <br>
  * The following are the properties available for setting:
  * <ul>
  * <li> TwentyOne.CardBackImage=<0 through 7>.  Indexes into a private array of
  * the card back image enumerations.  Default is '2'.
- * <li> TwentyOne.NumDecks=<1 through 7>.  Number of decks to use.  Default is 1.
+ * <li> TwentyOne.NumDecks=<1 through 8>.  Number of decks to use.  Default is 1.
+ * <li> TwentyOne.Penetration=<50 through 100>.  Percent of the shoe dealt before
+ * it is reshuffled (never past the last 9 cards).  Default is 100.
  * <li> TwentyOne.MinimumBet=<1 through 10000>.  Minimum bet that can be made.
  * Default is 1.
  * <li> TwentyOne.MaximumBet=<minbet through 10000>.  Maximum bet that can be
@@ -23,6 +32,18 @@ import com.slackandassociates.cards.playingcards.PlayingCardEnum;
  * <li> TwentyOne.InitialBank=<minbet through 100000>.  Initial starting bank
  * for a player.  This is also the amount added to the players current bank
  * if game is reset.
+ * <li> TwentyOne.Journal=<file name>.  Binary journal file every hand played
+ * is added to (see 'TO_Journal').  Default is none (not journaled).
+ * <li> TwentyOne.Session=<file name>.  Session store file the players bank,
+ * lifetime statistics and session summaries are kept in between runs (see
+ * 'TO_SessionStore').  Default is none (bank starts at the initial bank).
+ * <li> TwentyOne.HandRing=<0 through TO_HandRing.MAX_HANDS>.  Number of recent
+ * hands kept (off the heap) in a 'TO_HandRing' for inspection.  Default is 0
+ * (none kept).
+ * <li> TwentyOne.Rules=<rules text>.  Table rules (see 'TO_Rules'), for
+ * example 'h17,bj=3:2,surrender'.  Settings left out (or a bad rules text)
+ * keep the original rules, the decks and penetration settings above are used
+ * unless set here (decks up to 8).  Default is the original rules.
  * <li> TwentyOne.BetMax=<anything>.  Default to maximum (highest) bet from
  * player.  Otherwise, use the minimum bet amount.  To turn off (minimum bet),
  * comment the option out.
@@ -32,10 +53,21 @@ import com.slackandassociates.cards.playingcards.PlayingCardEnum;
  * <li> 2002-06-07 - Initial Release.
  * <li> 2005-01-11 - Updated for cards v2.
  * <li> 2007-10-14 - Updated comments and properties.  Added new card backs.
+ * <li> 2026-10-18 - Added penetration setting, number of decks can go to 8
+ *                   (shoe is no longer a 'CardDeck').
+ * <li> 2026-10-18 - Added journal file setting.
+ * <li> 2026-10-18 - Properties are parsed (and checked) once into an
+ *                   immutable 'Config' snapshot.  An external properties
+ *                   file can be watched, changes swap in a new snapshot.
+ * <li> 2026-10-18 - Added table rules setting.
+ * <li> 2026-10-18 - Added session store setting.
+ * <li> 2026-10-18 - Added hand ring setting.
+ * <li> 2026-10-18 - Watched file changes are debounced and checked, a bad or
+ *                   empty file keeps the settings before it.
  * </ul>
  * @author Michael G. Slack
  * @author slack@attglobal.net
- * @version Version 2.01
+ * @version Version 2.02
 */
 public class TwentyOneProps
 {
@@ -58,6 +90,15 @@ public class TwentyOneProps
     /** Draw (hit) this number of cards, automatic win. */
     public final static int MAX_DRAW_CARDS = 5;
 
+    /** Absolute maximum number of decks in the shoe. */
+    public final static int MAX_DECKS      = 8;
+
+    /** Lowest shoe penetration (percent dealt before reshuffle). */
+    public final static int MIN_PENETRATION = 50;
+
+    /** Highest shoe penetration, dealt down to the last few cards. */
+    public final static int MAX_PENETRATION = 100;
+
     /** Card backs (represented as an array). Made public so it can be 
      * used by the main program (normally would be private).
      * Note: I know this is bogus....
@@ -84,13 +125,24 @@ public class TwentyOneProps
     /** Default value for card back image (as index into array). */
     private static final int I_CARDBACK = 2;
 
+    /** Number of card back images (length of 'cardBacks'). */
+    private static final int CARD_BACKS = 8;
+
+    /** Quiet time (milliseconds) after the last change to the watched file
+     * before it is read (editors write files in more than one go).
+    */
+    private static final long SETTLE_MS = 300L;
+
     // private references
-    /** Properties object used. */
+    /** Properties loaded from the classpath. */
     private Properties props = null;
 
+    /** Current settings snapshot. */
+    private volatile Config config = null;
+
     // ------------------------- Constructor -------------------------------
 
-    /** Constructor - readies for property read.
+    /** Constructor - reads and parses the properties.
      * @param parent Parent object creating the properties object.
     */
     public TwentyOneProps(Object parent)
@@ -105,26 +157,171 @@ public class TwentyOneProps
         catch (Exception e) {
             System.err.println("Properties failed to load: " + e);
         }
+        config = new Config(props);
+    }
+
+    // ------------------------- Private Methods ----------------------------
+
+    /** Method used to parse an integer property.
+     * @param p Properties to read.
+     * @param key Property name (without lead).
+     * @param missing Value if the property is not set.
+     * @param bad Value if the property is not a number (then range checked).
+     * @param lo Lowest value allowed.
+     * @param hi Highest value allowed.
+     * @param outside Value if out of range.
+    */
+    private static int getInt(Properties p, String key, int missing, int bad,
+                              int lo, int hi, int outside)
+    {
+        return getInt(p, key, missing, bad, lo, hi, outside, false);
+    }
+
+    /** Method used to parse an integer property, as above.  If 'strict' a
+     * value that is not a number or is out of range is an error instead.
+     * @throws IllegalArgumentException If strict and the value is bad.
+    */
+    private static int getInt(Properties p, String key, int missing, int bad,
+                              int lo, int hi, int outside, boolean strict)
+    {
+        String ss = p.getProperty(S_LEAD + key);
+
+        if ((ss == null) || ("".equals(ss))) return missing;
+
+        int ii = 0;
+        try {
+            ii = Integer.parseInt(ss.trim());
+        }
+        catch (Exception e) {
+            if (strict) throw new IllegalArgumentException(key + "=" + ss + " is not a number");
+            ii = bad;
+        }
+        if ((ii < lo) || (ii > hi)) {
+            if (strict)
+                throw new IllegalArgumentException(key + "=" + ss + " is not " + lo + " to " + hi);
+            ii = outside;
+        }
+
+        return ii;
+    }
+
+    /** Method used to read (and parse) the properties file given, laid over
+     * the classpath properties.  The settings are only swapped in if they
+     * are all good.
+     * @throws IOException If the file can't be read or is empty.
+     * @throws IllegalArgumentException If a setting is bad.
+    */
+    private void load(File f) throws IOException
+    {
+        Properties p = new Properties(props);
+        InputStream in = new FileInputStream(f);
+
+        try {
+            p.load(in);
+        }
+        finally {
+            in.close();
+        }
+        if (p.isEmpty()) throw new IOException(f + " is empty");
+        config = new Config(p, true);
+    }
+
+    /** Method used to load the watched properties file, the settings are
+     * kept as they are if it can't be loaded.
+    */
+    private void reload(File f)
+    {
+        try {
+            load(f);
+        }
+        catch (IOException e) {
+            System.err.println("Properties failed to load (kept): " + e);
+        }
+        catch (IllegalArgumentException e) {
+            System.err.println("Properties not loaded (kept), bad setting " + e.getMessage());
+        }
+    }
+
+    /** Method to return true if any of the events of a watch key are for
+     * the file name given (the events are taken off the key).
+    */
+    private static boolean isChanged(WatchKey key, Path name)
+    {
+        boolean bChanged = false;
+
+        for (WatchEvent<?> ev : key.pollEvents()) {
+            if (name.equals(ev.context())) bChanged = true;
+        }
+
+        return bChanged;
     }
 
     // ------------------------- Public Methods -----------------------------
 
+    /** Method to return the current settings snapshot.  Hold on to the
+     * snapshot returned to read settings that go together.
+    */
+    public Config getConfig()
+    {
+        return config;
+    }
+
+    /** Method used to load an external properties file (laid over the
+     * classpath properties) and watch it for changes on a background thread.
+     * Once the file has stopped changing for 'SETTLE_MS' it is read again
+     * and a new settings snapshot swapped in.  An unreadable or empty file,
+     * or one with a bad setting (not a number, out of range or bad rules),
+     * is not used, the settings before it are kept.
+     * @param f External properties file.
+     * @throws IOException If the folder of the file can't be watched.
+    */
+    public void watch(final File f) throws IOException
+    {
+        final Path dir = f.getAbsoluteFile().getParentFile().toPath();
+        final Path name = f.toPath().getFileName();
+        final WatchService ws = dir.getFileSystem().newWatchService();
+
+        dir.register(ws, StandardWatchEventKinds.ENTRY_CREATE,
+                     StandardWatchEventKinds.ENTRY_MODIFY);
+        if (f.isFile()) reload(f);
+
+        Thread t = new Thread("props-watch") {
+                       public void run() {
+                           while (true) {
+                               try {
+                                   WatchKey key = ws.take();
+                                   boolean bChanged = isChanged(key, name);
+                                   if (!key.reset()) return;
+                                   if (!bChanged) continue;
+
+                                   // wait for the file to settle (debounce)
+                                   while ((key = ws.poll(SETTLE_MS, java.util.concurrent.
+                                                         TimeUnit.MILLISECONDS)) != null) {
+                                       isChanged(key, name);
+                                       if (!key.reset()) return;
+                                   }
+                               }
+                               catch (InterruptedException e) {
+                                   return;
+                               }
+                               reload(f);
+                           }
+                       }
+                   };
+        t.setDaemon(true);
+        t.start();
+    }
+
     /** Method to return the version information string to the caller. */
     public String getVersionInfo()
     {
-        if (props != null)
-            return props.getProperty(S_LEAD + "Version");
-        else
-            return "";
+        return config.getVersionInfo();
     }
 
     /** Method used to return the author email string to the caller. */
     public String getAuthorEmail()
     {
-        if (props != null)
-            return props.getProperty(S_LEAD + "eMail");
-        else
-            return "";
+        return config.getAuthorEmail();
     }
 
     /** Method to return the card back image to use (as a card image enumeration)
@@ -132,76 +329,29 @@ public class TwentyOneProps
     */
     public CardEnum getCardBackImage()
     {
-        CardEnum ceRet = cardBacks[I_CARDBACK];
-
-        if (props != null) {
-            String ss = props.getProperty(S_LEAD + "CardBackImage");
-            if ((ss != null) && (!"".equals(ss))) {
-                int ii = 0;
-                try {
-                    ii = Integer.parseInt(ss);
-                }
-                catch (Exception e) {
-                    ii = I_CARDBACK;
-                }
-                if ((ii < 0) || (ii >= cardBacks.length)) ii = I_CARDBACK;
-                ceRet = cardBacks[ii];
-            }
-        }
-
-        return ceRet;
+        return cardBacks[config.getCardBack()];
     }
 
     /** Method to return the number of decks to use to the caller.
     */
     public int getNumDecks()
     {
-        int iRet = START_DECKS;
-
-        if (props != null) {
-            String ss = props.getProperty(S_LEAD + "NumDecks");
-            if ((ss != null) && (!"".equals(ss))) {
-                int ii = 0;
-                try {
-                    ii = Integer.parseInt(ss);
-                }
-                catch (Exception e) {
-                    ii = START_DECKS;
-                }
-                if ((ii < CardDeck.JC_ONE_DECK) || (ii > CardDeck.JC_SEVEN_DECK))
-                    iRet = START_DECKS;
-                else
-                    iRet = ii;
-            }
-        }
+        return config.getNumDecks();
+    }
 
-        return iRet;
+    /** Method to return the shoe penetration (percent of the shoe dealt
+     * before it is reshuffled) to the caller.
+    */
+    public int getPenetration()
+    {
+        return config.getPenetration();
     }
 
     /** Method to return the minimum bet to the caller.
     */
     public int getMinimumBet()
     {
-        int iRet = MIN_BET_AMT;
-
-        if (props != null) {
-            String ss = props.getProperty(S_LEAD + "MinimumBet");
-            if ((ss != null) && (!"".equals(ss))) {
-                int ii = 0;
-                try {
-                    ii = Integer.parseInt(ss);
-                }
-                catch (Exception e) {
-                    ii = 1;
-                }
-                if ((ii < MIN_BET_AMT) || (ii > MAX_BET_AMT))
-                    iRet = MIN_BET_AMT;
-                else
-                    iRet = ii;
-            }
-        }
-
-        return iRet;
+        return config.getMinimumBet();
     }
 
     /** Method to return the maximum bet to the caller.
@@ -210,26 +360,11 @@ public class TwentyOneProps
     */
     public int getMaximumBet(int minBetAmt)
     {
-        int iRet = START_MAX;
+        Config c = config;
 
-        if (props != null) {
-            String ss = props.getProperty(S_LEAD + "MaximumBet");
-            if ((ss != null) && (!"".equals(ss))) {
-                int ii = 0;
-                try {
-                    ii = Integer.parseInt(ss);
-                }
-                catch (Exception e) {
-                    ii = START_MAX;
-                }
-                if ((ii < minBetAmt) || (ii > MAX_BET_AMT))
-                    iRet = minBetAmt;
-                else
-                    iRet = ii;
-            }
-        }
+        if (minBetAmt == c.getMinimumBet()) return c.getMaximumBet();
 
-        return iRet;
+        return getInt(c.p, "MaximumBet", START_MAX, START_MAX, minBetAmt, MAX_BET_AMT, minBetAmt);
     }
 
     /** Method to return the players starting bank to the caller.
@@ -238,26 +373,28 @@ public class TwentyOneProps
     */
     public int getInitialBank(int minBetAmt)
     {
-        int iRet = START_IBANK;
+        Config c = config;
 
-        if (props != null) {
-            String ss = props.getProperty(S_LEAD + "InitialBank");
-            if ((ss != null) && (!"".equals(ss))) {
-                int ii = 0;
-                try {
-                    ii = Integer.parseInt(ss);
-                }
-                catch (Exception e) {
-                    ii = START_IBANK;
-                }
-                if ((ii < minBetAmt) || (ii > MAX_IBANK_AMT))
-                    iRet = START_IBANK;
-                else
-                    iRet = ii;
-            }
-        }
+        if (minBetAmt == c.getMinimumBet()) return c.getInitialBank();
+
+        return getInt(c.p, "InitialBank", START_IBANK, START_IBANK, minBetAmt, MAX_IBANK_AMT,
+                      START_IBANK);
+    }
 
-        return iRet;
+    /** Method to return the hand journal file name to the caller.  Returns
+     * an empty string if hands are not to be journaled.
+    */
+    public String getJournal()
+    {
+        return config.getJournal();
+    }
+
+    /** Method to return the session store file name to the caller.
+     * Returns an empty string if there is no session store.
+    */
+    public String getSession()
+    {
+        return config.getSession();
     }
 
     /** Method to return if 'try to be maximum bet' is turned on or
@@ -265,14 +402,132 @@ public class TwentyOneProps
     */
     public boolean getBetMax()
     {
-        boolean bRet = false;
+        return config.isBetMax();
+    }
+
+    // ---------------------- Inner Classes -------------------------
 
-        if (props != null) {
-            String ss = props.getProperty(S_LEAD + "BetMax");
-            // assume on if set in property file...
-            if ((ss != null) && (!"".equals(ss))) bRet = true;
+    /**
+     * Class holding an immutable snapshot of the settings, parsed and
+     * checked once when the properties are loaded.
+    */
+    public static final class Config
+    {
+        private final Properties p; // parsed from, not changed after
+        private final String sVersion;
+        private final String sEMail;
+        private final int iCardBack;
+        private final int iNumDecks;
+        private final int iPenetration;
+        private final int iMinimumBet;
+        private final int iMaximumBet;
+        private final int iInitialBank;
+        private final boolean bBetMax;
+        private final String sJournal;
+        private final String sSession;
+        private final int iHandRing;
+        private final TO_Rules rules;
+
+        /** Constructor - parses the properties given, bad values fall back
+         * to the defaults.
+        */
+        Config(Properties p)
+        {
+            this(p, false);
         }
 
-        return bRet;
+        /** Constructor - parses the properties given.  If 'strict' a bad
+         * value (not a number, out of range or bad rules) is an error
+         * instead of falling back to the default.
+         * @throws IllegalArgumentException If strict and a value is bad.
+        */
+        Config(Properties p, boolean strict)
+        {
+            String ss;
+
+            this.p = p;
+            sVersion = p.getProperty(S_LEAD + "Version");
+            sEMail = p.getProperty(S_LEAD + "eMail");
+            iCardBack = getInt(p, "CardBackImage", I_CARDBACK, I_CARDBACK, 0,
+                               CARD_BACKS - 1, I_CARDBACK, strict);
+            int decks = getInt(p, "NumDecks", START_DECKS, START_DECKS, CardDeck.JC_ONE_DECK,
+                               MAX_DECKS, START_DECKS, strict);
+            int pen = getInt(p, "Penetration", MAX_PENETRATION, MAX_PENETRATION,
+                             MIN_PENETRATION, MAX_PENETRATION, MAX_PENETRATION, strict);
+            TO_Rules base = new TO_Rules(decks, pen, false, TO_Rules.NAT_1_1, false,
+                                         TO_Rules.MAX_CHARLIE, TO_Rules.DEFAULT.getInsurance());
+            TO_Rules r = base;
+            ss = p.getProperty(S_LEAD + "Rules");
+            if ((ss != null) && (!"".equals(ss.trim()))) {
+                try {
+                    r = TO_Rules.parse(ss, base);
+                }
+                catch (IllegalArgumentException e) {
+                    if (strict) throw new IllegalArgumentException("Rules=" + ss + ", " +
+                                                                   e.getMessage());
+                    r = base;
+                }
+                if (r.getDecks() > MAX_DECKS) {
+                    if (strict) throw new IllegalArgumentException("Rules=" + ss + " is over " +
+                                                                   MAX_DECKS + " decks");
+                    r = base;
+                }
+            }
+            rules = r;
+            iNumDecks = r.getDecks();
+            iPenetration = r.getPenetration();
+            iMinimumBet = getInt(p, "MinimumBet", MIN_BET_AMT, 1, MIN_BET_AMT, MAX_BET_AMT,
+                                 MIN_BET_AMT, strict);
+            iMaximumBet = getInt(p, "MaximumBet", START_MAX, START_MAX, iMinimumBet, MAX_BET_AMT,
+                                 iMinimumBet, strict);
+            iInitialBank = getInt(p, "InitialBank", START_IBANK, START_IBANK, iMinimumBet,
+                                  MAX_IBANK_AMT, START_IBANK, strict);
+            ss = p.getProperty(S_LEAD + "BetMax");
+            bBetMax = (ss != null) && (!"".equals(ss)); // assume on if set
+            ss = p.getProperty(S_LEAD + "Journal");
+            sJournal = (ss == null) ? "" : ss.trim();
+            ss = p.getProperty(S_LEAD + "Session");
+            sSession = (ss == null) ? "" : ss.trim();
+            iHandRing = getInt(p, "HandRing", 0, 0, 0, TO_HandRing.MAX_HANDS, 0, strict);
+        }
+
+        /** Method to return the version information string. */
+        public String getVersionInfo() { return sVersion; }
+
+        /** Method to return the author email string. */
+        public String getAuthorEmail() { return sEMail; }
+
+        /** Method to return the card back image (index into 'cardBacks'). */
+        public int getCardBack() { return iCardBack; }
+
+        /** Method to return the number of decks. */
+        public int getNumDecks() { return iNumDecks; }
+
+        /** Method to return the shoe penetration (percent). */
+        public int getPenetration() { return iPenetration; }
+
+        /** Method to return the minimum bet. */
+        public int getMinimumBet() { return iMinimumBet; }
+
+        /** Method to return the maximum bet. */
+        public int getMaximumBet() { return iMaximumBet; }
+
+        /** Method to return the players starting bank. */
+        public int getInitialBank() { return iInitialBank; }
+
+        /** Method to return true if bets start at the maximum. */
+        public boolean isBetMax() { return bBetMax; }
+
+        /** Method to return the hand journal file name ("" if none). */
+        public String getJournal() { return sJournal; }
+
+        /** Method to return the session store file name ("" if none). */
+        public String getSession() { return sSession; }
+
+        /** Method to return the number of recent hands kept (0 if none). */
+        public int getHandRing() { return iHandRing; }
+
+        /** Method to return the table rules (decks and penetration as above). */
+        public TO_Rules getRules() { return rules; }
     }
-}
\ No newline at end of file
+}